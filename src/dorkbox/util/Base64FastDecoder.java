@@ -0,0 +1,308 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A streaming BASE64 decoder that works on {@link ByteBuffer}s (heap or direct), without creating temporary arrays. This can decode the
+ * output of {@link Base64Fast} (with or without line separators) and {@link Base64FastEncoder}, one block at a time, so the whole input
+ * (and output) never has to be in memory.
+ * <p>
+ * Like a {@link java.nio.charset.CharsetDecoder}, a decoder keeps the characters of an incomplete block (and the decoded bytes that did
+ * not fit into the output buffer) between calls, so an instance must only be used for one stream at a time. Call {@link #reset()} before using it for another stream.
+ * <p>
+ * There are three variants:
+ * <ul>
+ * <li>{@link #basic()} - the RFC 4648 alphabet. "\r" and "\n" are skipped, any other character that is not in the alphabet is an error.</li>
+ * <li>{@link #urlSafe()} - the RFC 4648 "URL and filename safe" alphabet ('-' and '_' instead of '+' and '/'). "\r" and "\n" are skipped,
+ * any other character that is not in the alphabet is an error.</li>
+ * <li>{@link #mime()} - the RFC 2045 alphabet. All characters that are not in the alphabet are skipped, the same as
+ * {@link Base64Fast#decode(byte[])}.</li>
+ * </ul>
+ * The '=' padding at the end is optional, but if it is there it must be complete.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public
+class Base64FastDecoder {
+    private static final int ILLEGAL = -1;
+    private static final int PAD = -2;
+
+    private static final int[] STANDARD = toTable(Base64FastEncoder.STANDARD);
+    private static final int[] URL_SAFE = toTable(Base64FastEncoder.URL_SAFE);
+
+    private static
+    int[] toTable(final byte[] alphabet) {
+        int[] table = new int[256];
+        Arrays.fill(table, ILLEGAL);
+        for (int i = 0; i < alphabet.length; i++) {
+            table[alphabet[i]] = i;
+        }
+        table['='] = PAD;
+        return table;
+    }
+
+    /**
+     * @return a new decoder for the RFC 4648 alphabet, which skips line separators
+     */
+    public static
+    Base64FastDecoder basic() {
+        return new Base64FastDecoder(false, false);
+    }
+
+    /**
+     * @return a new decoder for the RFC 4648 "URL and filename safe" alphabet, which skips line separators
+     */
+    public static
+    Base64FastDecoder urlSafe() {
+        return new Base64FastDecoder(true, false);
+    }
+
+    /**
+     * @return a new decoder for the RFC 2045 alphabet, which skips all characters that are not in the alphabet
+     */
+    public static
+    Base64FastDecoder mime() {
+        return new Base64FastDecoder(false, true);
+    }
+
+    private final int[] table;
+    private final boolean ignoreIllegal;
+
+    // the characters (6 bits each) of the current, incomplete block
+    private int bits;
+    private int count;
+
+    // the decoded bytes (up to 3, BIG_ENDIAN) that did not fit into dst yet
+    private int pending;
+    private int pendingCount;
+
+    // one '=' of two was read
+    private boolean padExpected;
+
+    // the padding was read, so there can be no more data
+    private boolean finished;
+
+    /**
+     * @param urlSafe true to use '-' and '_' instead of '+' and '/'
+     * @param ignoreIllegal true to skip all characters that are not in the alphabet, false to only skip "\r" and "\n"
+     */
+    public
+    Base64FastDecoder(final boolean urlSafe, final boolean ignoreIllegal) {
+        this.table = urlSafe ? URL_SAFE : STANDARD;
+        this.ignoreIllegal = ignoreIllegal;
+    }
+
+    /**
+     * Forgets the characters of the current block, so that this decoder can be used for a new stream.
+     */
+    public
+    void reset() {
+        this.bits = 0;
+        this.count = 0;
+        this.pending = 0;
+        this.pendingCount = 0;
+        this.padExpected = false;
+        this.finished = false;
+    }
+
+    /**
+     * @return the maximum number of bytes that decoding <code>length</code> characters can produce
+     */
+    public static
+    long maxDecodedLength(final long length) {
+        return (length + 3) / 4 * 3;
+    }
+
+    /**
+     * Decodes as many characters from <code>src</code> into <code>dst</code> as possible. Characters that do not make a complete block
+     * are remembered by this decoder (and consumed from <code>src</code>), so <code>src</code> can be split anywhere. Likewise, decoded
+     * bytes that do not fit into <code>dst</code> are remembered and written by the next call, so <code>dst</code> can be any size.
+     *
+     * @param src the characters to decode. The position is moved past the characters that were decoded.
+     * @param dst where the bytes are written. The position is moved past the bytes that were written.
+     * @param endOfInput true if <code>src</code> contains the last characters of the stream, in which case a final block without '='
+     *                   padding is decoded as well
+     *
+     * @return true if all of <code>src</code> was decoded and written, false if <code>dst</code> is full and must be emptied before calling
+     *         this again
+     *
+     * @throws IllegalArgumentException if <code>src</code> is not valid BASE64. The positions of the buffers are at the illegal character.
+     */
+    public
+    boolean decode(final ByteBuffer src, final ByteBuffer dst, final boolean endOfInput) throws IllegalArgumentException {
+        final int[] table = this.table;
+
+        int s = src.position();
+        final int sLimit = src.limit();
+        int d = dst.position();
+        final int dLimit = dst.limit();
+
+        int bits = this.bits;
+        int count = this.count;
+
+        boolean underflow = true;
+        while (s < sLimit) {
+            if (this.pendingCount > 0) {
+                d = flush(dst, d, dLimit);
+                if (this.pendingCount > 0) {
+                    underflow = false;
+                    break;
+                }
+            }
+
+            if (count == 0 && sLimit - s >= 4 && dLimit - d >= 3 && !this.finished) {
+                // the common case, 4 characters of the alphabet (no padding or separators) make 3 bytes
+                int a = table[src.get(s) & 0xff];
+                int b = table[src.get(s + 1) & 0xff];
+                int c = table[src.get(s + 2) & 0xff];
+                int e = table[src.get(s + 3) & 0xff];
+
+                if ((a | b | c | e) >= 0) {
+                    int i = a << 18 | b << 12 | c << 6 | e;
+                    dst.put(d++, (byte) (i >> 16));
+                    dst.put(d++, (byte) (i >> 8));
+                    dst.put(d++, (byte) i);
+                    s += 4;
+                    continue;
+                }
+            }
+
+            int ch = src.get(s) & 0xff;
+            int value = table[ch];
+
+            if (value >= 0) {
+                if (this.finished || this.padExpected) {
+                    if (this.ignoreIllegal) {
+                        s++;
+                        continue;
+                    }
+                    throw illegal(src, s, dst, d, "Input byte after padding: 0x" + Integer.toHexString(ch));
+                }
+
+                if (count == 3) {
+                    // written at the start of the next iteration (or after the loop), as much as fits
+                    this.pending = bits << 6 | value;
+                    this.pendingCount = 3;
+                    bits = 0;
+                    count = 0;
+                }
+                else {
+                    bits = bits << 6 | value;
+                    count++;
+                }
+                s++;
+            }
+            else if (value == PAD) {
+                if (this.finished) {
+                    if (this.ignoreIllegal) {
+                        s++;
+                        continue;
+                    }
+                    throw illegal(src, s, dst, d, "Input byte after padding: 0x" + Integer.toHexString(ch));
+                }
+
+                if (this.padExpected) {
+                    this.padExpected = false;
+                    this.finished = true;
+                }
+                else if (count == 2) {
+                    this.pending = bits >> 4;
+                    this.pendingCount = 1;
+                    this.padExpected = true;
+                    bits = 0;
+                    count = 0;
+                }
+                else if (count == 3) {
+                    this.pending = bits >> 2;
+                    this.pendingCount = 2;
+                    this.finished = true;
+                    bits = 0;
+                    count = 0;
+                }
+                else {
+                    throw illegal(src, s, dst, d, "Illegal base64 padding");
+                }
+                s++;
+            }
+            else if (this.ignoreIllegal || ch == '\r' || ch == '\n') {
+                s++;
+            }
+            else {
+                throw illegal(src, s, dst, d, "Illegal base64 character: 0x" + Integer.toHexString(ch));
+            }
+        }
+
+        if (underflow && this.pendingCount > 0) {
+            d = flush(dst, d, dLimit);
+            underflow = this.pendingCount == 0;
+        }
+
+        if (underflow && endOfInput) {
+            if (this.padExpected) {
+                throw illegal(src, s, dst, d, "Incomplete base64 padding");
+            }
+
+            if (count == 1) {
+                throw illegal(src, s, dst, d, "The last base64 block does not have enough bits");
+            }
+
+            if (count == 2 || count == 3) {
+                this.pending = count == 2 ? bits >> 4 : bits >> 2;
+                this.pendingCount = count - 1;
+                bits = 0;
+                count = 0;
+                this.finished = true;
+
+                d = flush(dst, d, dLimit);
+                underflow = this.pendingCount == 0;
+            }
+        }
+
+        src.position(s);
+        dst.position(d);
+        this.bits = bits;
+        this.count = count;
+        return underflow;
+    }
+
+    /**
+     * Writes as many of the pending bytes as fit into dst.
+     *
+     * @return the new position of dst
+     */
+    private
+    int flush(final ByteBuffer dst, int d, final int dLimit) {
+        int pending = this.pending;
+        int pendingCount = this.pendingCount;
+
+        while (pendingCount > 0 && d < dLimit) {
+            pendingCount--;
+            dst.put(d++, (byte) (pending >> (pendingCount << 3)));
+        }
+
+        this.pendingCount = pendingCount;
+        return d;
+    }
+
+    private
+    IllegalArgumentException illegal(final ByteBuffer src, final int s, final ByteBuffer dst, final int d, final String message) {
+        src.position(s);
+        dst.position(d);
+        return new IllegalArgumentException(message);
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A streaming BASE64 encoder that works on {@link ByteBuffer}s (heap or direct), without creating temporary arrays. The output is the
+ * same as {@link Base64Fast#encodeToByte(byte[], boolean)}, but the data can be encoded one block at a time, so the whole input (and
+ * output) never has to be in memory.
+ * <p>
+ * Like a {@link java.nio.charset.CharsetEncoder}, an encoder remembers where it is on the current line, so an instance must only be used
+ * for one stream at a time. Call {@link #reset()} before using it for another stream.
+ * <p>
+ * There are three variants:
+ * <ul>
+ * <li>{@link #basic()} - the RFC 4648 alphabet, on a single line</li>
+ * <li>{@link #urlSafe()} - the RFC 4648 "URL and filename safe" alphabet ('-' and '_' instead of '+' and '/'), on a single line</li>
+ * <li>{@link #mime()} - the RFC 2045 alphabet, with "\r\n" after every 76 characters (the same as the <code>lineSep</code> option of
+ * {@link Base64Fast})</li>
+ * </ul>
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public
+class Base64FastEncoder {
+    static final byte[] STANDARD = toBytes("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/");
+    static final byte[] URL_SAFE = toBytes("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_");
+
+    /**
+     * The maximum number of characters per line for {@link #mime()}, from RFC 2045
+     */
+    public static final int MIME_LINE_LENGTH = 76;
+
+    private static
+    byte[] toBytes(final String alphabet) {
+        byte[] bytes = new byte[alphabet.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) alphabet.charAt(i);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return a new encoder that uses the RFC 4648 alphabet and does not add line separators
+     */
+    public static
+    Base64FastEncoder basic() {
+        return new Base64FastEncoder(false, 0);
+    }
+
+    /**
+     * @return a new encoder that uses the RFC 4648 "URL and filename safe" alphabet and does not add line separators
+     */
+    public static
+    Base64FastEncoder urlSafe() {
+        return new Base64FastEncoder(true, 0);
+    }
+
+    /**
+     * @return a new encoder that adds "\r\n" after every 76 characters, as specified in RFC 2045
+     */
+    public static
+    Base64FastEncoder mime() {
+        return new Base64FastEncoder(false, MIME_LINE_LENGTH);
+    }
+
+    private final byte[] alphabet;
+    private final int lineLength;
+
+    // the number of characters on the current line
+    private int lineCount;
+
+    /**
+     * @param urlSafe true to use '-' and '_' instead of '+' and '/'
+     * @param lineLength the number of characters after which "\r\n" is added (rounded down to a multiple of 4), or 0 for a single line.
+     *                   There is never a line separator after the last line.
+     */
+    public
+    Base64FastEncoder(final boolean urlSafe, final int lineLength) {
+        if (lineLength < 0) {
+            throw new IllegalArgumentException("lineLength cannot be negative");
+        }
+
+        this.alphabet = urlSafe ? URL_SAFE : STANDARD;
+        this.lineLength = lineLength & ~3;
+    }
+
+    /**
+     * Forgets the position on the current line, so that this encoder can be used for a new stream.
+     */
+    public
+    void reset() {
+        this.lineCount = 0;
+    }
+
+    /**
+     * @return the maximum number of characters (including line separators) that encoding <code>length</code> bytes can produce, when
+     *         starting at the beginning of a line.
+     */
+    public
+    long maxEncodedLength(final long length) {
+        long count = (length + 2) / 3 * 4;
+        if (this.lineLength > 0 && count > 0) {
+            count += (count - 1) / this.lineLength * 2;
+        }
+        return count;
+    }
+
+    /**
+     * Encodes as many bytes from <code>src</code> into <code>dst</code> as possible, in blocks of 3 bytes (4 characters). When this is not
+     * the end of the input, the last 1 or 2 bytes that do not make a complete block are left in <code>src</code> so that they can be
+     * encoded together with the next bytes (use {@link ByteBuffer#compact()} before filling <code>src</code> again).
+     *
+     * @param src the bytes to encode. The position is moved past the bytes that were encoded.
+     * @param dst where the characters are written. The position is moved past the characters that were written.
+     * @param endOfInput true if <code>src</code> contains the last bytes of the stream, in which case the last 1 or 2 bytes are encoded
+     *                   with '=' padding
+     *
+     * @return true if all of the bytes in <code>src</code> that could be encoded were encoded, false if <code>dst</code> is full and must be
+     *         emptied before calling this again
+     */
+    public
+    boolean encode(final ByteBuffer src, final ByteBuffer dst, final boolean endOfInput) {
+        final byte[] alphabet = this.alphabet;
+        final int lineLength = this.lineLength;
+
+        int s = src.position();
+        final int sLimit = src.limit();
+        int d = dst.position();
+        final int dLimit = dst.limit();
+        int lineCount = this.lineCount;
+
+        boolean underflow = true;
+        while (sLimit - s >= 3) {
+            int needed = 4;
+            if (lineCount == lineLength && lineLength > 0) {
+                needed = 6;
+            }
+            if (dLimit - d < needed) {
+                underflow = false;
+                break;
+            }
+
+            if (needed == 6) {
+                dst.put(d++, (byte) '\r');
+                dst.put(d++, (byte) '\n');
+                lineCount = 0;
+            }
+
+            // Copy next three bytes into lower 24 bits of int, paying attention to sign.
+            int i = (src.get(s++) & 0xff) << 16 | (src.get(s++) & 0xff) << 8 | src.get(s++) & 0xff;
+
+            // Encode the int into four chars
+            dst.put(d++, alphabet[i >>> 18 & 0x3f]);
+            dst.put(d++, alphabet[i >>> 12 & 0x3f]);
+            dst.put(d++, alphabet[i >>> 6 & 0x3f]);
+            dst.put(d++, alphabet[i & 0x3f]);
+            lineCount += 4;
+        }
+
+        int left = sLimit - s; // 0 - 2 (unless dst is full)
+        if (underflow && endOfInput && left > 0 && left < 3) {
+            int needed = 4;
+            if (lineCount == lineLength && lineLength > 0) {
+                needed = 6;
+            }
+
+            if (dLimit - d < needed) {
+                underflow = false;
+            }
+            else {
+                if (needed == 6) {
+                    dst.put(d++, (byte) '\r');
+                    dst.put(d++, (byte) '\n');
+                    lineCount = 0;
+                }
+
+                // Pad and encode last bits if source isn't an even 24 bits.
+                int i = (src.get(s++) & 0xff) << 10 | (left == 2 ? (src.get(s++) & 0xff) << 2 : 0);
+
+                dst.put(d++, alphabet[i >> 12]);
+                dst.put(d++, alphabet[i >>> 6 & 0x3f]);
+                dst.put(d++, left == 2 ? alphabet[i & 0x3f] : (byte) '=');
+                dst.put(d++, (byte) '=');
+                lineCount += 4;
+            }
+        }
+
+        src.position(s);
+        dst.position(d);
+        this.lineCount = lineCount;
+        return underflow;
+    }
+}
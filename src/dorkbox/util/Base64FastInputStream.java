@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream that decodes the BASE64 characters read from another stream, one fixed size block at a time, so that only the current
+ * block is held in memory.
+ * <p>
+ * Invalid BASE64 is reported as an {@link IOException}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public
+class Base64FastInputStream extends FilterInputStream {
+    private static final int BLOCK_SIZE = 8192;
+
+    private final Base64FastDecoder decoder;
+
+    private final byte[] inputArray = new byte[BLOCK_SIZE];
+    private final ByteBuffer input = ByteBuffer.wrap(this.inputArray);
+    private final ByteBuffer output = ByteBuffer.allocate((int) Base64FastDecoder.maxDecodedLength(BLOCK_SIZE));
+
+    private boolean endOfInput = false;
+    private boolean closed = false;
+
+    /**
+     * Creates a stream that skips all characters that are not in the BASE64 alphabet (including line separators), the same as
+     * {@link Base64Fast#decode(byte[])}.
+     *
+     * @param in where the encoded characters are read from
+     */
+    public
+    Base64FastInputStream(final InputStream in) {
+        this(in, Base64FastDecoder.mime());
+    }
+
+    /**
+     * @param in where the encoded characters are read from
+     * @param decoder the decoder (and variant) to use. It must not be used by anything else while this stream is open.
+     */
+    public
+    Base64FastInputStream(final InputStream in, final Base64FastDecoder decoder) {
+        super(in);
+        this.decoder = decoder;
+
+        // both buffers start out empty
+        this.input.flip();
+        this.output.flip();
+    }
+
+    @Override
+    public
+    int read() throws IOException {
+        ensureOpen();
+
+        if (!this.output.hasRemaining() && !fill()) {
+            return -1;
+        }
+        return this.output.get() & 0xFF;
+    }
+
+    @Override
+    public
+    int read(final byte[] b, final int off, final int len) throws IOException {
+        ensureOpen();
+
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+
+        if (!this.output.hasRemaining() && !fill()) {
+            return -1;
+        }
+
+        int count = Math.min(len, this.output.remaining());
+        this.output.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public
+    long skip(final long n) throws IOException {
+        ensureOpen();
+
+        long skipped = 0;
+        while (skipped < n) {
+            if (!this.output.hasRemaining() && !fill()) {
+                break;
+            }
+
+            int count = (int) Math.min(n - skipped, this.output.remaining());
+            this.output.position(this.output.position() + count);
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    /**
+     * @return the number of decoded bytes that can be read without blocking
+     */
+    @Override
+    public
+    int available() throws IOException {
+        ensureOpen();
+        return this.output.remaining();
+    }
+
+    @Override
+    public
+    boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public
+    void mark(final int readlimit) {
+    }
+
+    @Override
+    public
+    void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public
+    void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+        this.in.close();
+    }
+
+    /**
+     * Decodes the next block into the (empty) output buffer
+     *
+     * @return false if there are no more bytes
+     */
+    private
+    boolean fill() throws IOException {
+        final ByteBuffer input = this.input;
+        final ByteBuffer output = this.output;
+
+        output.clear();
+        while (true) {
+            if (!input.hasRemaining() && !this.endOfInput) {
+                int count = this.in.read(this.inputArray, 0, this.inputArray.length);
+                input.clear();
+                if (count < 0) {
+                    this.endOfInput = true;
+                    input.limit(0);
+                }
+                else {
+                    input.limit(count);
+                }
+            }
+
+            try {
+                this.decoder.decode(input, output, this.endOfInput);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage());
+            }
+
+            if (output.position() > 0) {
+                output.flip();
+                return true;
+            }
+
+            if (this.endOfInput && !input.hasRemaining()) {
+                output.flip();
+                return false;
+            }
+        }
+    }
+
+    private
+    void ensureOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An output stream that BASE64 encodes everything written to it, one fixed size block at a time. The encoded output is the same as
+ * {@link Base64Fast#encodeToByte(byte[], boolean)}, but only the current block is held in memory.
+ * <p>
+ * The final 1 or 2 bytes (and the '=' padding) are written when the stream is closed, so {@link #close()} must always be called.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public
+class Base64FastOutputStream extends FilterOutputStream {
+    // must be a multiple of 3, so a full block never leaves bytes behind
+    private static final int BLOCK_SIZE = 3 * 2730;
+
+    private final Base64FastEncoder encoder;
+
+    private final ByteBuffer input = ByteBuffer.allocate(BLOCK_SIZE);
+    private final byte[] outputArray;
+    private final ByteBuffer output;
+
+    private boolean closed = false;
+
+    /**
+     * @param out where the encoded characters are written
+     * @param lineSep true to add "\r\n" after 76 characters (as specified in RFC 2045), the same as {@link Base64Fast}
+     */
+    public
+    Base64FastOutputStream(final OutputStream out, final boolean lineSep) {
+        this(out, lineSep ? Base64FastEncoder.mime() : Base64FastEncoder.basic());
+    }
+
+    /**
+     * @param out where the encoded characters are written
+     * @param encoder the encoder (and variant) to use. It must not be used by anything else while this stream is open.
+     */
+    public
+    Base64FastOutputStream(final OutputStream out, final Base64FastEncoder encoder) {
+        super(out);
+        this.encoder = encoder;
+
+        // room for one more line separator, in case the block starts at the end of a line
+        this.outputArray = new byte[(int) encoder.maxEncodedLength(BLOCK_SIZE) + 2];
+        this.output = ByteBuffer.wrap(this.outputArray);
+    }
+
+    @Override
+    public
+    void write(final int b) throws IOException {
+        ensureOpen();
+
+        this.input.put((byte) b);
+        if (!this.input.hasRemaining()) {
+            encode(false);
+        }
+    }
+
+    @Override
+    public
+    void write(final byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        final ByteBuffer input = this.input;
+        while (len > 0) {
+            int count = Math.min(len, input.remaining());
+            input.put(b, off, count);
+            off += count;
+            len -= count;
+
+            if (!input.hasRemaining()) {
+                encode(false);
+            }
+        }
+    }
+
+    /**
+     * Writes all of the complete 3 byte blocks that have been written so far and flushes the underlying stream. The last 1 or 2 bytes
+     * are kept until more bytes are written or the stream is closed, because they cannot be encoded without padding.
+     */
+    @Override
+    public
+    void flush() throws IOException {
+        ensureOpen();
+
+        encode(false);
+        this.out.flush();
+    }
+
+    /**
+     * Writes the remaining bytes (with '=' padding, if necessary) and closes the underlying stream.
+     */
+    @Override
+    public
+    void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+
+        this.closed = true;
+        try {
+            encode(true);
+        } finally {
+            this.out.close();
+        }
+    }
+
+    private
+    void encode(final boolean endOfInput) throws IOException {
+        final ByteBuffer input = this.input;
+        final ByteBuffer output = this.output;
+
+        input.flip();
+        boolean done;
+        do {
+            done = this.encoder.encode(input, output, endOfInput);
+
+            this.out.write(this.outputArray, 0, output.position());
+            output.clear();
+        } while (!done);
+        input.compact();
+    }
+
+    private
+    void ensureOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,663 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * A BASE64 codec (RFC 2045, the same output as {@link Base64Fast}) that handles several characters per lookup, for large arrays.
+ * <p>
+ * The encoder splits 6 input bytes (48 bits, in a <code>long</code>) into four 12 bit indexes, and each lookup in a 4096 entry table
+ * gives two characters at once. Two of these 6 byte groups are done per loop iteration.
+ * <p>
+ * The decoder looks up each character in a table that already has it shifted into place, so that 4 characters become 3 bytes with a
+ * single OR. Illegal characters are -1 in the tables, and because a bitwise OR with -1 is always negative, the whole input is validated
+ * with a single check at the end instead of one branch per character.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final
+class Base64Swar {
+    private static final char[] CA = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    // the characters per line, and the number of bytes that fill a line
+    private static final int LINE_LENGTH = 76;
+    private static final int LINE_BYTES = LINE_LENGTH / 4 * 3;
+
+    // two characters (each in 8 bits) for every 12 bit value
+    private static final char[] ENCODE_12 = new char[4096];
+
+    // the 6 bits of a character, shifted to its position in a 24 bit group, or -1 if illegal
+    private static final int[] DECODE_0 = new int[256];
+    private static final int[] DECODE_1 = new int[256];
+    private static final int[] DECODE_2 = new int[256];
+    private static final int[] DECODE_3 = new int[256];
+
+    static {
+        for (int i = 0; i < 4096; i++) {
+            ENCODE_12[i] = (char) (CA[i >>> 6] << 8 | CA[i & 0x3F]);
+        }
+
+        Arrays.fill(DECODE_0, -1);
+        Arrays.fill(DECODE_1, -1);
+        Arrays.fill(DECODE_2, -1);
+        Arrays.fill(DECODE_3, -1);
+        for (int i = 0; i < CA.length; i++) {
+            DECODE_0[CA[i]] = i << 18;
+            DECODE_1[CA[i]] = i << 12;
+            DECODE_2[CA[i]] = i << 6;
+            DECODE_3[CA[i]] = i;
+        }
+    }
+
+    // ****************************************************************************************
+    // *  encoding
+    // ****************************************************************************************
+
+    /**
+     * Encodes a raw byte array into a BASE64 <code>byte[]</code> representation in accordance with RFC 2045.
+     *
+     * @param src The bytes to convert. If <code>null</code> or length 0 an empty array will be returned.
+     * @param lineSep Optional "\r\n" after 76 characters, unless end of file.
+     *
+     * @return A BASE64 encoded array. Never <code>null</code>.
+     */
+    public static
+    byte[] encodeToByte(final byte[] src, final boolean lineSep) {
+        return encodeToByte(src, 0, src != null ? src.length : 0, lineSep);
+    }
+
+    /**
+     * Encodes a raw byte array into a BASE64 <code>byte[]</code> representation in accordance with RFC 2045.
+     *
+     * @param src The bytes to convert. If <code>null</code> an empty array will be returned.
+     * @param offset The starting position in the bytes to convert.
+     * @param length The number of bytes to convert. If 0 an empty array will be returned.
+     * @param lineSep Optional "\r\n" after 76 characters, unless end of file.
+     *
+     * @return A BASE64 encoded array. Never <code>null</code>.
+     */
+    public static
+    byte[] encodeToByte(final byte[] src, final int offset, final int length, final boolean lineSep) {
+        if (src == null || length == 0) {
+            return new byte[0];
+        }
+
+        final byte[] dst = new byte[encodedLength(length, lineSep)];
+        final int evenLength = length / 3 * 3; // Length of even 24-bits.
+        final int evenEnd = offset + evenLength;
+
+        int s = offset;
+        int d = 0;
+        if (lineSep) {
+            while (s < evenEnd) {
+                int count = Math.min(LINE_BYTES, evenEnd - s);
+                d = encode(src, s, count, dst, d);
+                s += count;
+
+                if (count == LINE_BYTES && d < dst.length) {
+                    dst[d++] = '\r';
+                    dst[d++] = '\n';
+                }
+            }
+        }
+        else {
+            encode(src, s, evenLength, dst, d);
+        }
+
+        // Pad and encode last bits if source isn't an even 24 bits.
+        int left = length - evenLength; // 0 - 2.
+        if (left > 0) {
+            int i = (src[evenEnd] & 0xff) << 10 | (left == 2 ? (src[evenEnd + 1] & 0xff) << 2 : 0);
+
+            final int dLength = dst.length;
+            dst[dLength - 4] = (byte) CA[i >> 12];
+            dst[dLength - 3] = (byte) CA[i >>> 6 & 0x3f];
+            dst[dLength - 2] = left == 2 ? (byte) CA[i & 0x3f] : (byte) '=';
+            dst[dLength - 1] = '=';
+        }
+        return dst;
+    }
+
+    /**
+     * Encodes a raw byte array into a BASE64 <code>char[]</code> representation in accordance with RFC 2045.
+     *
+     * @param src The bytes to convert. If <code>null</code> or length 0 an empty array will be returned.
+     * @param lineSep Optional "\r\n" after 76 characters, unless end of file.
+     *
+     * @return A BASE64 encoded array. Never <code>null</code>.
+     */
+    public static
+    char[] encodeToChar(final byte[] src, final boolean lineSep) {
+        if (src == null || src.length == 0) {
+            return new char[0];
+        }
+
+        final int length = src.length;
+        final char[] dst = new char[encodedLength(length, lineSep)];
+        final int evenLength = length / 3 * 3; // Length of even 24-bits.
+
+        int s = 0;
+        int d = 0;
+        if (lineSep) {
+            while (s < evenLength) {
+                int count = Math.min(LINE_BYTES, evenLength - s);
+                d = encode(src, s, count, dst, d);
+                s += count;
+
+                if (count == LINE_BYTES && d < dst.length) {
+                    dst[d++] = '\r';
+                    dst[d++] = '\n';
+                }
+            }
+        }
+        else {
+            encode(src, s, evenLength, dst, d);
+        }
+
+        // Pad and encode last bits if source isn't an even 24 bits.
+        int left = length - evenLength; // 0 - 2.
+        if (left > 0) {
+            int i = (src[evenLength] & 0xff) << 10 | (left == 2 ? (src[evenLength + 1] & 0xff) << 2 : 0);
+
+            final int dLength = dst.length;
+            dst[dLength - 4] = CA[i >> 12];
+            dst[dLength - 3] = CA[i >>> 6 & 0x3f];
+            dst[dLength - 2] = left == 2 ? CA[i & 0x3f] : '=';
+            dst[dLength - 1] = '=';
+        }
+        return dst;
+    }
+
+    /**
+     * Encodes a raw byte array into a BASE64 <code>String</code> representation in accordance with RFC 2045.
+     *
+     * @param src The bytes to convert. If <code>null</code> or length 0 an empty string will be returned.
+     * @param lineSep Optional "\r\n" after 76 characters, unless end of file.
+     *
+     * @return A BASE64 encoded string. Never <code>null</code>.
+     */
+    public static
+    String encodeToString(final byte[] src, final boolean lineSep) {
+        return new String(encodeToChar(src, lineSep));
+    }
+
+    /**
+     * @return the number of characters (including line separators) needed to encode <code>length</code> bytes
+     */
+    public static
+    int encodedLength(final int length, final boolean lineSep) {
+        if (length == 0) {
+            return 0;
+        }
+
+        int count = (length - 1) / 3 + 1 << 2;
+        return count + (lineSep ? (count - 1) / LINE_LENGTH << 1 : 0);
+    }
+
+    /**
+     * Encodes <code>length</code> bytes (a multiple of 3), without padding or line separators.
+     *
+     * @return the position after the last character that was written
+     */
+    private static
+    int encode(final byte[] src, int s, final int length, final byte[] dst, int d) {
+        final char[] table = ENCODE_12;
+        final int end = s + length;
+
+        // 12 bytes -> 16 characters
+        while (end - s >= 12) {
+            long v = readLong48(src, s);
+            char a = table[(int) (v >>> 36) & 0xFFF];
+            char b = table[(int) (v >>> 24) & 0xFFF];
+            char c = table[(int) (v >>> 12) & 0xFFF];
+            char e = table[(int) v & 0xFFF];
+
+            dst[d] = (byte) (a >>> 8);
+            dst[d + 1] = (byte) a;
+            dst[d + 2] = (byte) (b >>> 8);
+            dst[d + 3] = (byte) b;
+            dst[d + 4] = (byte) (c >>> 8);
+            dst[d + 5] = (byte) c;
+            dst[d + 6] = (byte) (e >>> 8);
+            dst[d + 7] = (byte) e;
+
+            v = readLong48(src, s + 6);
+            a = table[(int) (v >>> 36) & 0xFFF];
+            b = table[(int) (v >>> 24) & 0xFFF];
+            c = table[(int) (v >>> 12) & 0xFFF];
+            e = table[(int) v & 0xFFF];
+
+            dst[d + 8] = (byte) (a >>> 8);
+            dst[d + 9] = (byte) a;
+            dst[d + 10] = (byte) (b >>> 8);
+            dst[d + 11] = (byte) b;
+            dst[d + 12] = (byte) (c >>> 8);
+            dst[d + 13] = (byte) c;
+            dst[d + 14] = (byte) (e >>> 8);
+            dst[d + 15] = (byte) e;
+
+            s += 12;
+            d += 16;
+        }
+
+        // 3 bytes -> 4 characters
+        while (s < end) {
+            int i = (src[s] & 0xff) << 16 | (src[s + 1] & 0xff) << 8 | src[s + 2] & 0xff;
+            char a = table[i >>> 12];
+            char b = table[i & 0xFFF];
+
+            dst[d] = (byte) (a >>> 8);
+            dst[d + 1] = (byte) a;
+            dst[d + 2] = (byte) (b >>> 8);
+            dst[d + 3] = (byte) b;
+
+            s += 3;
+            d += 4;
+        }
+
+        return d;
+    }
+
+    /**
+     * Encodes <code>length</code> bytes (a multiple of 3), without padding or line separators.
+     *
+     * @return the position after the last character that was written
+     */
+    private static
+    int encode(final byte[] src, int s, final int length, final char[] dst, int d) {
+        final char[] table = ENCODE_12;
+        final int end = s + length;
+
+        // 12 bytes -> 16 characters
+        while (end - s >= 12) {
+            long v = readLong48(src, s);
+            char a = table[(int) (v >>> 36) & 0xFFF];
+            char b = table[(int) (v >>> 24) & 0xFFF];
+            char c = table[(int) (v >>> 12) & 0xFFF];
+            char e = table[(int) v & 0xFFF];
+
+            dst[d] = (char) (a >>> 8);
+            dst[d + 1] = (char) (a & 0xFF);
+            dst[d + 2] = (char) (b >>> 8);
+            dst[d + 3] = (char) (b & 0xFF);
+            dst[d + 4] = (char) (c >>> 8);
+            dst[d + 5] = (char) (c & 0xFF);
+            dst[d + 6] = (char) (e >>> 8);
+            dst[d + 7] = (char) (e & 0xFF);
+
+            v = readLong48(src, s + 6);
+            a = table[(int) (v >>> 36) & 0xFFF];
+            b = table[(int) (v >>> 24) & 0xFFF];
+            c = table[(int) (v >>> 12) & 0xFFF];
+            e = table[(int) v & 0xFFF];
+
+            dst[d + 8] = (char) (a >>> 8);
+            dst[d + 9] = (char) (a & 0xFF);
+            dst[d + 10] = (char) (b >>> 8);
+            dst[d + 11] = (char) (b & 0xFF);
+            dst[d + 12] = (char) (c >>> 8);
+            dst[d + 13] = (char) (c & 0xFF);
+            dst[d + 14] = (char) (e >>> 8);
+            dst[d + 15] = (char) (e & 0xFF);
+
+            s += 12;
+            d += 16;
+        }
+
+        // 3 bytes -> 4 characters
+        while (s < end) {
+            int i = (src[s] & 0xff) << 16 | (src[s + 1] & 0xff) << 8 | src[s + 2] & 0xff;
+            char a = table[i >>> 12];
+            char b = table[i & 0xFFF];
+
+            dst[d] = (char) (a >>> 8);
+            dst[d + 1] = (char) (a & 0xFF);
+            dst[d + 2] = (char) (b >>> 8);
+            dst[d + 3] = (char) (b & 0xFF);
+
+            s += 3;
+            d += 4;
+        }
+
+        return d;
+    }
+
+    /**
+     * @return 6 bytes, BIG_ENDIAN, in the lower 48 bits
+     */
+    private static
+    long readLong48(final byte[] src, final int s) {
+        return (long) (src[s] & 0xff) << 40
+               | (long) (src[s + 1] & 0xff) << 32
+               | (long) (src[s + 2] & 0xff) << 24
+               | (src[s + 3] & 0xff) << 16
+               | (src[s + 4] & 0xff) << 8
+               | src[s + 5] & 0xff;
+    }
+
+    // ****************************************************************************************
+    // *  decoding
+    // ****************************************************************************************
+
+    /**
+     * Decodes a BASE64 encoded byte array, and validates it.
+     * <p>
+     * Unlike {@link Base64Fast#decodeFast(byte[])}, all of the characters are checked (without slowing down the decoding), but the
+     * format must be the same as what the encoders produce:<br>
+     * + The array must have a line length of 76 chars and "\r\n" line separators, OR no line separators at all (one line).<br>
+     * + Whitespace at the beginning and end is ignored.<br>
+     * + The '=' padding at the end is optional.<br>
+     *
+     * @param src The source array. Length 0 will return an empty array. <code>null</code> will throw an exception.
+     *
+     * @return The decoded array of bytes. May be of length 0.
+     *
+     * @throws IllegalArgumentException if the array is not valid BASE64
+     */
+    public static
+    byte[] decodeFast(final byte[] src) throws IllegalArgumentException {
+        return decodeFast(src, 0, src.length);
+    }
+
+    /**
+     * Decodes a BASE64 encoded byte array, and validates it. See {@link #decodeFast(byte[])} for the format.
+     *
+     * @param src The source array. <code>null</code> will throw an exception.
+     * @param offset The starting position in the source array.
+     * @param length The number of bytes to decode from the source array. Length 0 will return an empty array.
+     *
+     * @return The decoded array of bytes. May be of length 0.
+     *
+     * @throws IllegalArgumentException if the array is not valid BASE64
+     */
+    public static
+    byte[] decodeFast(final byte[] src, final int offset, final int length) throws IllegalArgumentException {
+        // Trim whitespace from start and end
+        int start = offset;
+        int end = offset + length;
+        while (start < end && (src[start] & 0xff) <= ' ') {
+            start++;
+        }
+        while (end > start && (src[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+
+        if (start == end) {
+            return new byte[0];
+        }
+
+        int pad = 0;
+        if (src[end - 1] == '=') {
+            pad = end - 2 > start && src[end - 2] == '=' ? 2 : 1;
+        }
+
+        final int count = end - start;
+        final int separators = count > LINE_LENGTH && src[start + LINE_LENGTH] == '\r' ? (count - 1) / (LINE_LENGTH + 2) : 0;
+
+        final int[] lengths = lengths(count - (separators << 1), pad);
+        final int fullChars = lengths[0];
+        final byte[] dst = new byte[lengths[1]];
+
+        int error = 0;
+        int s = start;
+        int d = 0;
+        int remaining = fullChars;
+        if (separators == 0) {
+            error = decode(src, s, remaining, dst, d);
+            s += remaining;
+            d += remaining / 4 * 3;
+        }
+        else {
+            while (remaining > 0) {
+                int chars = Math.min(LINE_LENGTH, remaining);
+                error |= decode(src, s, chars, dst, d);
+                s += chars;
+                d += chars / 4 * 3;
+                remaining -= chars;
+
+                if (chars == LINE_LENGTH && s < end) {
+                    if (end - s < 2 || src[s] != '\r' || src[s + 1] != '\n') {
+                        throw new IllegalArgumentException("Illegal base64 line separator at " + s);
+                    }
+                    s += 2;
+                }
+            }
+        }
+
+        // Decode last 1-3 bytes (incl '=') into 1-3 bytes
+        final int tail = end - s - pad;
+        if (tail < 0 || tail > 3 || pad > 0 && tail + pad != 4) {
+            throw new IllegalArgumentException("Illegal base64 length");
+        }
+
+        int i = 0;
+        for (int j = 0; j < tail; j++) {
+            int value = DECODE_3[src[s + j] & 0xff];
+            error |= value;
+            i |= value << 18 - j * 6;
+        }
+
+        for (int r = 16; d < dst.length; r -= 8) {
+            dst[d++] = (byte) (i >> r);
+        }
+
+        if (error < 0) {
+            throw new IllegalArgumentException("Illegal base64 character");
+        }
+        return dst;
+    }
+
+    /**
+     * Decodes a BASE64 encoded <code>char[]</code>, and validates it. See {@link #decodeFast(byte[])} for the format.
+     *
+     * @throws IllegalArgumentException if the array is not valid BASE64
+     */
+    public static
+    byte[] decodeFast(final char[] src) throws IllegalArgumentException {
+        return decodeFast(CharBuffer.wrap(src));
+    }
+
+    /**
+     * Decodes BASE64 encoded characters (a <code>String</code>, <code>StringBuilder</code>, etc), and validates them. See
+     * {@link #decodeFast(byte[])} for the format.
+     *
+     * @throws IllegalArgumentException if the characters are not valid BASE64
+     */
+    public static
+    byte[] decodeFast(final CharSequence src) throws IllegalArgumentException {
+        // Trim whitespace from start and end
+        int start = 0;
+        int end = src.length();
+        while (start < end && src.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && src.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        if (start == end) {
+            return new byte[0];
+        }
+
+        int pad = 0;
+        if (src.charAt(end - 1) == '=') {
+            pad = end - 2 > start && src.charAt(end - 2) == '=' ? 2 : 1;
+        }
+
+        final int count = end - start;
+        final int separators = count > LINE_LENGTH && src.charAt(start + LINE_LENGTH) == '\r' ? (count - 1) / (LINE_LENGTH + 2) : 0;
+
+        final int[] lengths = lengths(count - (separators << 1), pad);
+        final int fullChars = lengths[0];
+        final byte[] dst = new byte[lengths[1]];
+
+        int error = 0;
+        int s = start;
+        int d = 0;
+        int remaining = fullChars;
+        while (remaining > 0) {
+            int chars = separators == 0 ? remaining : Math.min(LINE_LENGTH, remaining);
+            error |= decode(src, s, chars, dst, d);
+            s += chars;
+            d += chars / 4 * 3;
+            remaining -= chars;
+
+            if (separators > 0 && chars == LINE_LENGTH && s < end) {
+                if (end - s < 2 || src.charAt(s) != '\r' || src.charAt(s + 1) != '\n') {
+                    throw new IllegalArgumentException("Illegal base64 line separator at " + s);
+                }
+                s += 2;
+            }
+        }
+
+        // Decode last 1-3 bytes (incl '=') into 1-3 bytes
+        final int tail = end - s - pad;
+        if (tail < 0 || tail > 3 || pad > 0 && tail + pad != 4) {
+            throw new IllegalArgumentException("Illegal base64 length");
+        }
+
+        int i = 0;
+        for (int j = 0; j < tail; j++) {
+            char c = src.charAt(s + j);
+            int value = c < 256 ? DECODE_3[c] : -1;
+            error |= value;
+            i |= value << 18 - j * 6;
+        }
+
+        for (int r = 16; d < dst.length; r -= 8) {
+            dst[d++] = (byte) (i >> r);
+        }
+
+        if (error < 0) {
+            throw new IllegalArgumentException("Illegal base64 character");
+        }
+        return dst;
+    }
+
+    /**
+     * @param chars the number of characters, without line separators
+     *
+     * @return the number of characters in complete (unpadded) 4 character groups, and the number of decoded bytes
+     */
+    private static
+    int[] lengths(final int chars, final int pad) {
+        final int left = chars & 3;
+        if (pad > 0 && left != 0 || left == 1) {
+            throw new IllegalArgumentException("Illegal base64 length");
+        }
+
+        final int fullChars;
+        final int length;
+        if (pad > 0) {
+            fullChars = chars - 4;
+            length = fullChars / 4 * 3 + 3 - pad;
+        }
+        else {
+            fullChars = chars - left;
+            length = fullChars / 4 * 3 + (left == 0 ? 0 : left - 1);
+        }
+        return new int[] {fullChars, length};
+    }
+
+    /**
+     * Decodes <code>length</code> characters (a multiple of 4), which must not contain padding or line separators.
+     *
+     * @return a negative number if there was an illegal character
+     */
+    private static
+    int decode(final byte[] src, int s, final int length, final byte[] dst, int d) {
+        final int[] d0 = DECODE_0;
+        final int[] d1 = DECODE_1;
+        final int[] d2 = DECODE_2;
+        final int[] d3 = DECODE_3;
+        final int end = s + length;
+
+        int error = 0;
+
+        // 8 characters -> 6 bytes
+        while (end - s >= 8) {
+            int a = d0[src[s] & 0xff] | d1[src[s + 1] & 0xff] | d2[src[s + 2] & 0xff] | d3[src[s + 3] & 0xff];
+            int b = d0[src[s + 4] & 0xff] | d1[src[s + 5] & 0xff] | d2[src[s + 6] & 0xff] | d3[src[s + 7] & 0xff];
+            error |= a | b;
+
+            dst[d] = (byte) (a >> 16);
+            dst[d + 1] = (byte) (a >> 8);
+            dst[d + 2] = (byte) a;
+            dst[d + 3] = (byte) (b >> 16);
+            dst[d + 4] = (byte) (b >> 8);
+            dst[d + 5] = (byte) b;
+
+            s += 8;
+            d += 6;
+        }
+
+        // 4 characters -> 3 bytes
+        if (s < end) {
+            int a = d0[src[s] & 0xff] | d1[src[s + 1] & 0xff] | d2[src[s + 2] & 0xff] | d3[src[s + 3] & 0xff];
+            error |= a;
+
+            dst[d] = (byte) (a >> 16);
+            dst[d + 1] = (byte) (a >> 8);
+            dst[d + 2] = (byte) a;
+        }
+
+        return error;
+    }
+
+    /**
+     * Decodes <code>length</code> characters (a multiple of 4), which must not contain padding or line separators.
+     *
+     * @return a negative number if there was an illegal character
+     */
+    private static
+    int decode(final CharSequence src, int s, final int length, final byte[] dst, int d) {
+        final int[] d0 = DECODE_0;
+        final int[] d1 = DECODE_1;
+        final int[] d2 = DECODE_2;
+        final int[] d3 = DECODE_3;
+        final int end = s + length;
+
+        int error = 0;
+
+        // chars above 0xFF are illegal, and are found by checking the OR of all of the chars at the end
+        int high = 0;
+
+        while (s < end) {
+            char c0 = src.charAt(s);
+            char c1 = src.charAt(s + 1);
+            char c2 = src.charAt(s + 2);
+            char c3 = src.charAt(s + 3);
+            high |= c0 | c1 | c2 | c3;
+
+            int a = d0[c0 & 0xff] | d1[c1 & 0xff] | d2[c2 & 0xff] | d3[c3 & 0xff];
+            error |= a;
+
+            dst[d] = (byte) (a >> 16);
+            dst[d + 1] = (byte) (a >> 8);
+            dst[d + 2] = (byte) a;
+
+            s += 4;
+            d += 3;
+        }
+
+        return (high & 0xFF00) != 0 ? -1 : error;
+    }
+
+    private
+    Base64Swar() {
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+/**
+ * A thread that stores its own {@link IndexedThreadLocal} index, so that {@link IndexedThreadLocal#get()} and
+ * {@link IndexedThreadLocal#set(Object)} are a field read and two array accesses, instead of a {@link ThreadLocal} lookup to find the
+ * index first.
+ * <p>
+ * Threads created by {@link NamedThreadFactory} are indexed threads. Other threads still work with an {@link IndexedThreadLocal}, but
+ * are slower.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public
+class IndexedThread extends Thread {
+    // only accessed by this thread. -1 until this thread uses an IndexedThreadLocal for the first time
+    int threadIndex = -1;
+
+    public
+    IndexedThread() {
+        super();
+    }
+
+    public
+    IndexedThread(final Runnable target) {
+        super(target);
+    }
+
+    public
+    IndexedThread(final Runnable target, final String name) {
+        super(target, name);
+    }
+
+    public
+    IndexedThread(final String name) {
+        super(name);
+    }
+
+    public
+    IndexedThread(final ThreadGroup group, final Runnable target, final String name) {
+        super(group, target, name);
+    }
+
+    public
+    IndexedThread(final ThreadGroup group, final Runnable target, final String name, final long stackSize) {
+        super(group, target, name, stackSize);
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import dorkbox.util.collections.IntArray;
+
+/**
+ * A thread-local that stores the value for each thread in an array, like {@link FastThreadLocal}, but where the array is indexed by a
+ * dense, recycled index for each thread instead of by {@link Thread#getId()}.
+ * <p>
+ * Thread IDs are never reused, so with thread pools that replace their threads (and especially with virtual threads), the array for a
+ * {@link FastThreadLocal} grows forever. Here, every live thread that uses an indexed thread-local is assigned the lowest free index,
+ * and once the thread has exited (and been garbage collected), its values are removed from every indexed thread-local, and the index is
+ * reused by the next new thread. The arrays are only as large as the largest number of threads that were alive at the same time.
+ * <p>
+ * Dead threads are noticed the next time a new thread is assigned an index, or when {@link #expungeExitedThreads()} is called.
+ * <p>
+ * The values are stored in fixed size chunks, where only the array of chunks is grown (without locking). Each index is only written by
+ * its own thread, so a {@link #get()} is two array accesses after finding the index of the current thread. An {@link IndexedThread}
+ * stores its own index, otherwise the index is found with a {@link ThreadLocal} lookup first.
+ * <p>
+ * This is NOT faster than a {@link ThreadLocal} (it is about the same speed for an {@link IndexedThread}, and slower for other threads).
+ * Use it when the values must be bounded by the number of live threads, or when {@link #threadExited(Object)} is needed.
+ *
+ * @param <T> the thread-local value type
+ */
+@SuppressWarnings({"unchecked", "unused", "WeakerAccess"})
+public
+class IndexedThreadLocal<T> {
+    // Recommended for best performance while adhering to the "single writer principle". Must be static-final
+    private static final AtomicReferenceFieldUpdater<IndexedThreadLocal, Object[][]> chunksREF = AtomicReferenceFieldUpdater.newUpdater(
+            IndexedThreadLocal.class,
+            Object[][].class,
+            "chunks");
+
+    private static final int CHUNK_SHIFT = 5;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final Object lock = new Object();
+
+    // guarded by "lock"
+    private static final ReferenceQueue<Thread> exitedThreads = new ReferenceQueue<Thread>();
+    private static final IntArray freeIndices = new IntArray();
+    private static final ArrayList<WeakReference<IndexedThreadLocal<?>>> instances = new ArrayList<WeakReference<IndexedThreadLocal<?>>>();
+    private static ThreadIndex[] threadIndices = new ThreadIndex[16];
+    private static int nextIndex = 0;
+
+    private static final ThreadLocal<ThreadIndex> currentIndex = new ThreadLocal<ThreadIndex>() {
+        @Override
+        protected
+        ThreadIndex initialValue() {
+            return assignIndex(Thread.currentThread());
+        }
+    };
+
+
+    /**
+     * The index for a thread. It is weak, so that we know when the thread has exited.
+     */
+    private static final
+    class ThreadIndex extends WeakReference<Thread> {
+        final int index;
+
+        ThreadIndex(final Thread thread, final int index) {
+            super(thread, exitedThreads);
+            this.index = index;
+        }
+    }
+
+
+    // the values are stored in fixed size chunks, which are never copied, so a value can never be lost while the outer array is grown
+    private volatile Object[][] chunks = new Object[][] {new Object[CHUNK_SIZE]};
+
+    /** Creates a thread local variable. */
+    public
+    IndexedThreadLocal() {
+        synchronized (lock) {
+            instances.add(new WeakReference<IndexedThreadLocal<?>>(this));
+        }
+    }
+
+    /**
+     * @return the index of the current thread, assigning it if necessary
+     */
+    private static
+    int currentIndex() {
+        Thread thread = Thread.currentThread();
+        if (thread instanceof IndexedThread) {
+            IndexedThread indexedThread = (IndexedThread) thread;
+            int index = indexedThread.threadIndex;
+            if (index < 0) {
+                index = assignIndex(thread).index;
+                indexedThread.threadIndex = index;
+            }
+            return index;
+        }
+
+        return currentIndex.get().index;
+    }
+
+    private static
+    ThreadIndex assignIndex(final Thread thread) {
+        synchronized (lock) {
+            expungeExitedThreadsLocked();
+
+            int index;
+            if (freeIndices.size > 0) {
+                index = freeIndices.pop();
+            }
+            else {
+                index = nextIndex++;
+            }
+
+            if (index >= threadIndices.length) {
+                threadIndices = Arrays.copyOf(threadIndices, threadIndices.length << 1);
+            }
+
+            // the ThreadIndex must be strongly referenced, otherwise it would not be enqueued when the thread is collected
+            ThreadIndex threadIndex = new ThreadIndex(thread, index);
+            threadIndices[index] = threadIndex;
+            return threadIndex;
+        }
+    }
+
+    /**
+     * Removes the values of every thread that has exited (and was garbage collected), and frees their indices to be reused.
+     * <p>
+     * This happens automatically when a new thread uses an indexed thread-local, and only needs to be called to release the values of
+     * exited threads sooner.
+     */
+    public static
+    void expungeExitedThreads() {
+        synchronized (lock) {
+            expungeExitedThreadsLocked();
+        }
+    }
+
+    // must be called while holding the lock
+    private static
+    void expungeExitedThreadsLocked() {
+        Object reference;
+        while ((reference = exitedThreads.poll()) != null) {
+            int index = ((ThreadIndex) reference).index;
+
+            // the values MUST be removed before the index can be reused by a new thread
+            for (int i = instances.size() - 1; i >= 0; i--) {
+                IndexedThreadLocal<?> instance = instances.get(i).get();
+                if (instance == null) {
+                    instances.remove(i);
+                }
+                else {
+                    instance.clearExited(index);
+                }
+            }
+
+            threadIndices[index] = null;
+            freeIndices.add(index);
+        }
+    }
+
+    private
+    void clearExited(final int index) {
+        Object[][] chunks = this.chunks;
+        int chunkIndex = index >>> CHUNK_SHIFT;
+        if (chunkIndex >= chunks.length || chunks[chunkIndex] == null) {
+            return;
+        }
+
+        Object[] chunk = chunks[chunkIndex];
+        Object value = chunk[index & CHUNK_MASK];
+        chunk[index & CHUNK_MASK] = null;
+
+        if (value != null) {
+            threadExited((T) value);
+        }
+    }
+
+    /**
+     * Called when a thread that had a value has exited, and its value has been removed. This is called by whichever thread noticed
+     * that the thread exited.
+     *
+     * @param value the value that the thread had
+     */
+    protected
+    void threadExited(final T value) {
+    }
+
+    /**
+     * Returns the current thread's "initial value" for this thread-local variable.
+     *
+     * @see ThreadLocal#initialValue()
+     */
+    public
+    T initialValue() {
+        return null;
+    }
+
+    /**
+     * Sets the current thread's copy of this thread-local variable to the specified value.
+     *
+     * @param value the value to be stored in the current thread's copy of this thread-local.
+     *
+     * @see ThreadLocal#set(T)
+     */
+    public
+    void set(final T value) {
+        int index = currentIndex();
+        chunk(index >>> CHUNK_SHIFT)[index & CHUNK_MASK] = value;
+    }
+
+    /**
+     * Returns the chunk, creating it if necessary. The array of chunks is never modified in place, only replaced (copy, then CAS), so
+     * a chunk is never lost while another thread grows the array.
+     */
+    private
+    Object[] chunk(final int chunkIndex) {
+        while (true) {
+            Object[][] chunks = this.chunks;
+            if (chunkIndex < chunks.length) {
+                Object[] chunk = chunks[chunkIndex];
+                if (chunk != null) {
+                    return chunk;
+                }
+            }
+
+            Object[][] newChunks = Arrays.copyOf(chunks, Math.max(chunkIndex + 1, chunks.length));
+            newChunks[chunkIndex] = new Object[CHUNK_SIZE];
+
+            if (chunksREF.compareAndSet(this, chunks, newChunks)) {
+                return newChunks[chunkIndex];
+            }
+            // another thread changed the array of chunks first, try again
+        }
+    }
+
+    /**
+     * Returns the value in the current thread's copy of this thread-local variable.
+     *
+     * @see ThreadLocal#get()
+     */
+    public final
+    T get() {
+        int index = currentIndex();
+
+        // It's OK if the array is resized after this access, the chunks in the old array are the same.
+        Object[][] chunks = this.chunks;
+        int chunkIndex = index >>> CHUNK_SHIFT;
+
+        T value = null;
+        if (chunkIndex < chunks.length) {
+            Object[] chunk = chunks[chunkIndex];
+            if (chunk != null) {
+                value = (T) chunk[index & CHUNK_MASK];
+            }
+        }
+
+        if (value == null) {
+            value = initialValue();
+            set(value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Removes the current thread's value for this thread-local variable.
+     *
+     * @see ThreadLocal#remove()
+     */
+    public
+    void remove() {
+        set(null);
+    }
+
+    /**
+     * @return the number of indices that have been assigned to threads. This is the largest number of threads that were using indexed
+     *         thread-locals at the same time (and not the number of threads that have ever used them).
+     */
+    public static
+    int indexCount() {
+        synchronized (lock) {
+            return nextIndex;
+        }
+    }
+}
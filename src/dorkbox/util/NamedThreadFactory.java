@@ -114,7 +114,7 @@ class NamedThreadFactory implements ThreadFactory {
         // 8k is the size of the android stack. Depending on the version of android, this can either change, or will always be 8k
         // To be honest, 8k is pretty reasonable for an asynchronous/event based system (32bit) or 16k (64bit)
         // Setting the size MAY or MAY NOT have any effect!!!
-        Thread t = new Thread(this.group, r, this.namePrefix + '-' + this.poolId.incrementAndGet());
+        Thread t = new IndexedThread(this.group, r, this.namePrefix + '-' + this.poolId.incrementAndGet());
         t.setDaemon(this.daemon);
         if (t.getPriority() != this.threadPriority) {
             t.setPriority(this.threadPriority);
@@ -37,6 +37,27 @@ class Sys {
 
     public static final char[] HEX_CHARS = new char[] {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
 
+    // the two hex characters of every byte value
+    private static final char[] HEX_PAIRS = new char[512];
+
+    // the value of every hex character (upper or lower case), or -1
+    private static final int[] HEX_DECODE = new int[256];
+    static {
+        for (int i = 0; i < 256; i++) {
+            HEX_PAIRS[i << 1] = HEX_CHARS[i >> 4];
+            HEX_PAIRS[(i << 1) + 1] = HEX_CHARS[i & 0x0F];
+        }
+
+        Arrays.fill(HEX_DECODE, -1);
+        for (int i = 0; i < 10; i++) {
+            HEX_DECODE['0' + i] = i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX_DECODE['A' + i] = 10 + i;
+            HEX_DECODE['a' + i] = 10 + i;
+        }
+    }
+
     public static
     char[] convertStringToChars(String string) {
         char[] charArray = string.toCharArray();
@@ -364,27 +385,66 @@ class Sys {
     String bytesToHex(byte[] bytes, boolean padding) {
         if (padding) {
             char[] hexString = new char[3 * bytes.length];
-            int j = 0;
-
-            for (int i = 0; i < bytes.length; i++) {
-                hexString[j++] = HEX_CHARS[(bytes[i] & 0xF0) >> 4];
-                hexString[j++] = HEX_CHARS[bytes[i] & 0x0F];
-                hexString[j++] = ' ';
-            }
-
+            Arrays.fill(hexString, ' ');
+            toHexChars(bytes, hexString, 3);
             return new String(hexString);
         }
         else {
             char[] hexString = new char[2 * bytes.length];
-            int j = 0;
+            toHexChars(bytes, hexString, 2);
+            return new String(hexString);
+        }
+    }
 
-            for (int i = 0; i < bytes.length; i++) {
-                hexString[j++] = HEX_CHARS[(bytes[i] & 0xF0) >> 4];
-                hexString[j++] = HEX_CHARS[bytes[i] & 0x0F];
-            }
+    /**
+     * Writes the two hex characters of each byte, starting every <code>stride</code> characters, with one lookup per byte.
+     */
+    private static
+    void toHexChars(final byte[] bytes, final char[] chars, final int stride) {
+        final char[] table = HEX_PAIRS;
+        for (int i = 0, j = 0, length = bytes.length; i < length; i++, j += stride) {
+            int index = (bytes[i] & 0xFF) << 1;
+            chars[j] = table[index];
+            chars[j + 1] = table[index + 1];
+        }
+    }
 
-            return new String(hexString);
+    /**
+     * Converts a series of hexadecimal characters (upper or lower case, without separators) into a byte array. This is the reverse
+     * of {@link #toHexString(byte[])}.
+     * <p>
+     * Illegal characters are -1 in the lookup table, so all of the characters are validated with a single check at the end.
+     *
+     * @throws IllegalArgumentException if the length is odd, or there is a character that is not hexadecimal
+     */
+    public static
+    byte[] hexToBytes(final CharSequence hex) throws IllegalArgumentException {
+        final int length = hex.length();
+        if ((length & 1) != 0) {
+            throw new IllegalArgumentException("Hex string must have an even length");
         }
+
+        final int[] table = HEX_DECODE;
+        final byte[] bytes = new byte[length >> 1];
+
+        int error = 0;
+        int high = 0;
+        for (int i = 0, j = 0; i < length; i += 2, j++) {
+            char c0 = hex.charAt(i);
+            char c1 = hex.charAt(i + 1);
+            high |= c0 | c1;
+
+            int a = table[c0 & 0xFF];
+            int b = table[c1 & 0xFF];
+            error |= a | b;
+
+            bytes[j] = (byte) (a << 4 | b);
+        }
+
+        if (error < 0 || (high & 0xFF00) != 0) {
+            throw new IllegalArgumentException("Error decoding hex string");
+        }
+        return bytes;
     }
 
     /**
@@ -460,13 +520,7 @@ class Sys {
     public static
     String toHexString(byte[] bytes) {
         char[] hexString = new char[2 * bytes.length];
-        int j = 0;
-
-        for (int i = 0; i < bytes.length; i++) {
-            hexString[j++] = HEX_CHARS[(bytes[i] & 0xF0) >> 4];
-            hexString[j++] = HEX_CHARS[bytes[i] & 0x0F];
-        }
-
+        toHexChars(bytes, hexString, 2);
         return new String(hexString);
     }
 
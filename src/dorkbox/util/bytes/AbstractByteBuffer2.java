@@ -0,0 +1,1411 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.bytes;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.CharBuffer;
+
+/**
+ * The read/write API and wire format of {@link ByteBuffer2}, for buffers that are not a single byte[]. The encoding is implemented
+ * once, here, over a few methods that access the bytes at an absolute position, and {@link DirectByteBuffer2} and
+ * {@link ChunkedByteBuffer2} only provide the storage. Data written by any of them can be read by the others.
+ * <p>
+ * {@link ByteBuffer2} keeps its own copy of the encoding (see its class documentation for why), which must produce the same bytes as
+ * this one.
+ * <p>
+ * The bytes between zero and the position that have been written to a channel/stream are tracked by {@link #flushed()}, so that a
+ * short write (to a non-blocking channel) can be continued later without writing the same bytes again.
+ * <p>
+ * Encoding of integers: BIG_ENDIAN is used for storing fixed native size integer values LITTLE_ENDIAN is used for a variable
+ * length encoding of integer values
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public abstract class AbstractByteBuffer2 {
+    int capacity;  // exactly how many bytes can be used
+    int maxCapacity;  // how large we can grow
+
+    int position;  // current pointer to the point where data is read/written
+    int flushed;  // the bytes before this have already been written to a channel/stream
+
+    private char[] chars = new char[32]; // small buffer for reading strings
+
+    private InternPool stringPool; // optional, to deduplicate short strings that are read
+    private int stringPoolMaxLength;
+
+    AbstractByteBuffer2() {
+    }
+
+    // storage
+
+    /**
+     * Reads the byte at the position, which must be less than the capacity.
+     */
+    abstract byte get(int position);
+
+    /**
+     * Writes the byte at the position, which must be less than the capacity.
+     */
+    abstract void put(int position, byte value);
+
+    /**
+     * Copies count bytes, starting at the position, into the array. The bytes must be available.
+     */
+    abstract void get(int position, byte[] bytes, int offset, int count);
+
+    /**
+     * Copies count bytes from the array to the position. There must be enough space.
+     */
+    abstract void put(int position, byte[] bytes, int offset, int count);
+
+    /**
+     * Grows the storage so that it can hold at least minCapacity bytes (and no more than the max capacity), keeping the bytes that
+     * have been written so far, and updates the capacity.
+     */
+    abstract void grow(int minCapacity);
+
+    /**
+     * Reads a BIG_ENDIAN value of 1-8 bytes at the position. Storage that can read multiple bytes at once should override this.
+     */
+    long getFixed(int position, int length) {
+        long value = 0;
+        for (int i = position, n = position + length; i < n; i++) {
+            value = value << 8 | get(i) & 0xFF;
+        }
+        return value;
+    }
+
+    /**
+     * Writes a BIG_ENDIAN value of 1-8 bytes at the position. There must be enough space. Storage that can write multiple bytes at
+     * once should override this.
+     */
+    void putFixed(int position, long value, int length) {
+        for (int i = position + length - 1; i >= position; i--) {
+            put(i, (byte) value);
+            value >>>= 8;
+        }
+    }
+
+    short getShort(int position) {
+        return (short) getFixed(position, 2);
+    }
+
+    void putShort(int position, short value) {
+        putFixed(position, value, 2);
+    }
+
+    int getInt(int position) {
+        return (int) getFixed(position, 4);
+    }
+
+    void putInt(int position, int value) {
+        putFixed(position, value, 4);
+    }
+
+    long getLong(int position) {
+        return getFixed(position, 8);
+    }
+
+    void putLong(int position, long value) {
+        putFixed(position, value, 8);
+    }
+
+    /**
+     * Throws an exception if fewer than count bytes can be read from the position.
+     */
+    final void checkAvailable(int count) {
+        if (this.capacity - this.position < count) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    /**
+     * Sets the pool that short strings are deduplicated with when they are read by {@link #readString()}. Strings that are read
+     * over and over again (such as map keys or enum-like values) are then only created once, and are decoded without allocating.
+     *
+     * @param pool
+     *            May be null, to not deduplicate strings.
+     * @param maxLength
+     *            Only strings with at most this many chars are deduplicated.
+     */
+    public void setStringPool(InternPool pool, int maxLength) {
+        this.stringPool = pool;
+        this.stringPoolMaxLength = maxLength;
+    }
+
+    /**
+     * Returns a new byte array containing the bytes currently in the buffer between zero and {@link #position()}.
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[this.position];
+        get(0, bytes, 0, this.position);
+        return bytes;
+    }
+
+    /**
+     * Returns the remaining read/write bytes available before the end of the buffer
+     */
+    public int remaining() {
+        return this.capacity - this.position;
+    }
+
+    /**
+     * Returns the size of the buffer
+     */
+    public int capacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the current position in the buffer. This is the number of bytes that have not been flushed.
+     */
+    public int position() {
+        return this.position;
+    }
+
+    /**
+     * Sets the current position in the buffer.
+     */
+    public void setPosition(int position) {
+        this.position = position;
+        if (this.flushed > position) {
+            this.flushed = position;
+        }
+    }
+
+    /**
+     * Returns how many of the bytes between zero and {@link #position()} have already been written to a channel/stream. The next
+     * write continues from here.
+     */
+    public int flushed() {
+        return this.flushed;
+    }
+
+    /**
+     * Sets the position to zero, and forgets what was flushed.
+     */
+    public void clear() {
+        this.position = 0;
+        this.flushed = 0;
+    }
+
+    /**
+     * Sets the position to zero, and forgets what was flushed.
+     */
+    public void rewind() {
+        this.position = 0;
+        this.flushed = 0;
+    }
+
+    /**
+     * Discards the specified number of bytes. The buffer grows (once) if the bytes are past the end of the buffer.
+     */
+    public void skip(int count) {
+        reserve(count);
+        this.position += count;
+    }
+
+    /**
+     * Makes sure there is space for at least the specified number of bytes after the current position, growing the buffer (once)
+     * if needed. Bulk writes can then write without checking the space for every value.
+     *
+     * @return true if the buffer has been resized.
+     */
+    public boolean reserve(int count) {
+        if (this.capacity - this.position >= count) {
+            return false;
+        }
+        if (count > this.maxCapacity - this.position) {
+            throw new RuntimeException("Buffer overflow. Max capacity: " + this.maxCapacity + ", required: " + count);
+        }
+
+        grow(this.position + count);
+        return true;
+    }
+
+    /**
+     * Makes sure the buffer can hold at least the specified total number of bytes, growing the buffer (once) if needed.
+     *
+     * @return true if the buffer has been resized.
+     */
+    public boolean ensureCapacity(int totalBytes) {
+        if (totalBytes <= this.capacity) {
+            return false;
+        }
+        if (totalBytes > this.maxCapacity) {
+            throw new RuntimeException("Buffer overflow. Max capacity: " + this.maxCapacity + ", required: " + totalBytes);
+        }
+
+        grow(totalBytes);
+        return true;
+    }
+
+    // byte
+
+    /**
+     * Writes a byte.
+     */
+    public void writeByte(byte value) {
+        if (this.position == this.capacity) {
+            reserve(1);
+        }
+        put(this.position++, value);
+    }
+
+    /**
+     * Writes a byte.
+     */
+    public void writeByte(int value) {
+        if (this.position == this.capacity) {
+            reserve(1);
+        }
+        put(this.position++, (byte) value);
+    }
+
+    /**
+     * Writes the bytes. Note the byte[] length is not written.
+     */
+    public void writeBytes(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("bytes cannot be null.");
+        }
+        writeBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes the bytes. Note the byte[] length is not written.
+     */
+    public void writeBytes(byte[] bytes, int offset, int count) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("bytes cannot be null.");
+        }
+
+        reserve(count);
+        put(this.position, bytes, offset, count);
+        this.position += count;
+    }
+
+    /**
+     * Reads a single byte.
+     */
+    public byte readByte() {
+        return get(this.position++);
+    }
+
+    /**
+     * Reads a byte as an int from 0 to 255.
+     */
+    public int readByteUnsigned() {
+        return get(this.position++) & 0xFF;
+    }
+
+    /**
+     * Reads a single byte, does not advance the position
+     */
+    public byte readByte(int position) {
+        return get(position);
+    }
+
+    /**
+     * Reads a byte as an int from 0 to 255, does not advance the position
+     */
+    public int readByteUnsigned(int position) {
+        return get(position) & 0xFF;
+    }
+
+    /**
+     * Reads the specified number of bytes into a new byte[].
+     */
+    public byte[] readBytes(int length) {
+        byte[] bytes = new byte[length];
+        readBytes(bytes, 0, length);
+        return bytes;
+    }
+
+    /**
+     * Reads bytes.length bytes and writes them to the specified byte[], starting at index 0.
+     */
+    public void readBytes(byte[] bytes) {
+        readBytes(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Reads count bytes and writes them to the specified byte[], starting at offset in target byte array.
+     */
+    public void readBytes(byte[] bytes, int offset, int count) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("bytes cannot be null.");
+        }
+        checkAvailable(count);
+
+        get(this.position, bytes, offset, count);
+        this.position += count;
+    }
+
+    // int
+
+    /**
+     * Writes a 4 byte int. Uses BIG_ENDIAN byte order.
+     */
+    public void writeInt(int value) {
+        reserve(4);
+        putInt(this.position, value);
+        this.position += 4;
+    }
+
+    /**
+     * Writes a 1-5 byte int. This stream may consider such a variable length encoding request as a hint. It is not
+     * guaranteed that a variable length encoding will be really used. The stream may decide to use native-sized integer
+     * representation for efficiency reasons.
+     *
+     * @param optimizePositive
+     *            If true, small positive numbers will be more efficient (1 byte) and small negative numbers will be
+     *            inefficient (5 bytes).
+     */
+    public int writeInt(int value, boolean optimizePositive) {
+        return writeVarInt(value, optimizePositive);
+    }
+
+    /**
+     * Writes a 1-5 byte int. It is guaranteed that a varible length encoding will be used.
+     *
+     * @param optimizePositive
+     *            If true, small positive numbers will be more efficient (1 byte) and small negative numbers will be
+     *            inefficient (5 bytes).
+     */
+    public int writeVarInt(int value, boolean optimizePositive) {
+        if (!optimizePositive) {
+            value = value << 1 ^ value >> 31;
+        }
+
+        int length = ByteBuffer2.intLength(value, true);
+        reserve(length);
+        this.position = putVar(this.position, value & 0xFFFFFFFFL, length);
+        return length;
+    }
+
+    /**
+     * Writes the 7 bit groups of a variable length value, where the last byte holds all of the remaining bits. There must be enough
+     * space.
+     *
+     * @return the position after the value
+     */
+    private int putVar(int position, long value, int length) {
+        for (int i = 1; i < length; i++) {
+            put(position++, (byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        put(position++, (byte) value);
+        return position;
+    }
+
+    /**
+     * Reads a 4 byte int.
+     */
+    public int readInt() {
+        int value = getInt(this.position);
+        this.position += 4;
+        return value;
+    }
+
+    /**
+     * Reads a 4 byte int, does not advance the position
+     */
+    public int readInt(int position) {
+        return getInt(position);
+    }
+
+    /**
+     * Reads a 1-5 byte int. This stream may consider such a variable length encoding request as a hint. It is not
+     * guaranteed that a variable length encoding will be really used. The stream may decide to use native-sized integer
+     * representation for efficiency reasons.
+     */
+    public int readInt(boolean optimizePositive) {
+        int result = (int) readVar(5);
+        return optimizePositive ? result : result >>> 1 ^ -(result & 1);
+    }
+
+    /**
+     * Reads a 1-5 byte int. This stream may consider such a variable length encoding request as a hint. It is not
+     * guaranteed that a variable length encoding will be really used. The stream may decide to use native-sized integer
+     * representation for efficiency reasons.
+     * <p>
+     * does not advance the position
+     */
+    public int readInt(int position, boolean optimizePositive) {
+        int pos = this.position;
+        this.position = position;
+        int value = readInt(optimizePositive);
+        this.position = pos;
+        return value;
+    }
+
+    /**
+     * Reads the 7 bit groups of a variable length value, where the last possible byte holds all of the remaining bits.
+     */
+    private long readVar(int maxLength) {
+        int position = this.position;
+
+        long result = 0;
+        for (int shift = 0, n = (maxLength - 1) * 7; shift < n; shift += 7) {
+            int b = get(position++);
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                this.position = position;
+                return result;
+            }
+        }
+
+        result |= (long) (get(position++) & 0xFF) << (maxLength - 1) * 7;
+        this.position = position;
+        return result;
+    }
+
+    /**
+     * Returns true if enough bytes are available to read an int with {@link #readInt(boolean)}.
+     */
+    public boolean canReadInt() {
+        return canReadVar(this.position, 5);
+    }
+
+    /**
+     * Returns true if enough bytes are available to read an int with {@link #readInt(boolean)}.
+     */
+    public boolean canReadInt(int position) {
+        return canReadVar(position, 5);
+    }
+
+    private boolean canReadVar(int position, int maxLength) {
+        if (this.capacity - position >= maxLength) {
+            return true;
+        }
+
+        for (int p = position; p < this.capacity; p++) {
+            if ((get(p) & 0x80) == 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+   // string
+
+    /**
+     * Writes the length and string, or null. Short strings are checked and if ASCII they are written more efficiently,
+     * else they are written as UTF8. If a string is known to be ASCII, {@link #writeAscii(String)} may be used. The string can be
+     * read using {@link #readString()} or {@link #readStringBuilder()}.
+     *
+     * @param value
+     *            May be null.
+     */
+    public void writeString(String value) {
+        if (value == null) {
+            writeByte(0x80); // 0 means null, bit 8 means UTF8.
+            return;
+        }
+
+        int charCount = value.length();
+        if (charCount == 0) {
+            writeByte(1 | 0x80); // 1 means empty string, bit 8 means UTF8.
+            return;
+        }
+
+        // Detect ASCII.
+        boolean ascii = false;
+        if (charCount > 1 && charCount < 64) {
+            ascii = true;
+            for (int i = 0; i < charCount; i++) {
+                if (value.charAt(i) > 127) {
+                    ascii = false;
+                    break;
+                }
+            }
+        }
+
+        if (ascii) {
+            writeAscii_fast(value, charCount);
+        } else {
+            writeUtf8Length(charCount + 1);
+            writeUtf8(value, charCount);
+        }
+    }
+
+    /**
+     * Writes the length and CharSequence as UTF8, or null. The string can be read using {@link #readString()} or
+     * {@link #readStringBuilder()}.
+     *
+     * @param value
+     *            May be null.
+     */
+    public void writeString(CharSequence value) {
+        if (value == null) {
+            writeByte(0x80); // 0 means null, bit 8 means UTF8.
+            return;
+        }
+
+        int charCount = value.length();
+        if (charCount == 0) {
+            writeByte(1 | 0x80); // 1 means empty string, bit 8 means UTF8.
+            return;
+        }
+
+        writeUtf8Length(charCount + 1);
+        writeUtf8(value, charCount);
+    }
+
+    /**
+     * Writes a string that is known to contain only ASCII characters. Non-ASCII strings passed to this method will be
+     * corrupted. Each byte is a 7 bit character with the remaining byte denoting if another character is available.
+     * This is slightly more efficient than {@link #writeString(String)}. The string can be read using {@link #readString()} or
+     * {@link #readStringBuilder()}.
+     *
+     * @param value
+     *            May be null.
+     */
+    public void writeAscii(String value) {
+        if (value == null) {
+            writeByte(0x80); // 0 means null, bit 8 means UTF8.
+            return;
+        }
+
+        int charCount = value.length();
+        switch (charCount) {
+            case 0 :
+                writeByte(1 | 0x80); // 1 is string length + 1, bit 8 means UTF8.
+                return;
+            case 1 :
+                writeByte(2 | 0x80); // 2 is string length + 1, bit 8 means UTF8.
+                writeByte(value.charAt(0));
+                return;
+        }
+
+        writeAscii_fast(value, charCount);
+    }
+
+    private void writeAscii_fast(String value, int charCount) {
+        reserve(charCount);
+
+        int position = this.position;
+        for (int i = 0, n = charCount - 1; i < n; i++) {
+            put(position++, (byte) value.charAt(i));
+        }
+
+        // Bit 8 means end of ASCII.
+        put(position++, (byte) (value.charAt(charCount - 1) | 0x80));
+        this.position = position;
+    }
+
+    /**
+     * Writes the length of a string, which is a variable length encoded int except the first byte uses bit 8 to denote
+     * UTF8 and bit 7 to denote if another byte is present.
+     */
+    private void writeUtf8Length(int value) {
+        if (value >>> 6 == 0) {
+            reserve(1);
+            put(this.position++, (byte) (value | 0x80)); // Set bit 8.
+            return;
+        }
+
+        int length = value >>> 13 == 0 ? 2 : value >>> 20 == 0 ? 3 : value >>> 27 == 0 ? 4 : 5;
+        reserve(length);
+
+        int position = this.position;
+        put(position++, (byte) (value | 0x40 | 0x80)); // Set bit 7 and 8.
+        value >>>= 6;
+        for (int i = 2; i < length; i++) {
+            put(position++, (byte) (value | 0x80)); // Set bit 8.
+            value >>>= 7;
+        }
+        put(position++, (byte) value);
+
+        this.position = position;
+    }
+
+    private void writeUtf8(CharSequence value, int charCount) {
+        if (this.capacity - this.position < charCount * 3L) {
+            // not every char is guaranteed to fit (a char is at most 3 bytes), so count the exact size and grow the buffer once
+            int byteCount = charCount;
+            for (int charIndex = 0; charIndex < charCount; charIndex++) {
+                int c = value.charAt(charIndex);
+                if (c > 0x007F) {
+                    byteCount += c > 0x07FF ? 2 : 1;
+                }
+            }
+            reserve(byteCount);
+        }
+
+        int position = this.position;
+        for (int charIndex = 0; charIndex < charCount; charIndex++) {
+            int c = value.charAt(charIndex);
+            if (c <= 0x007F) {
+                put(position++, (byte) c);
+            } else if (c <= 0x07FF) {
+                put(position++, (byte) (0xC0 | c >> 6 & 0x1F));
+                put(position++, (byte) (0x80 | c & 0x3F));
+            } else {
+                put(position++, (byte) (0xE0 | c >> 12 & 0x0F));
+                put(position++, (byte) (0x80 | c >> 6 & 0x3F));
+                put(position++, (byte) (0x80 | c & 0x3F));
+            }
+        }
+        this.position = position;
+    }
+
+    /**
+     * Reads the length and string of UTF8 characters, or null. This can read strings written by {@link #writeString(String)},
+     * {@link #writeString(CharSequence)}, and {@link #writeAscii(String)}.
+     *
+     * @return May be null.
+     */
+    public String readString() {
+        int charCount = readChars();
+        switch (charCount) {
+            case -1 :
+                return null;
+            case 0 :
+                return "";
+        }
+
+        if (this.stringPool != null && charCount <= this.stringPoolMaxLength) {
+            return this.stringPool.intern(this.chars, 0, charCount);
+        }
+        return new String(this.chars, 0, charCount);
+    }
+
+    /**
+     * Reads the length and string of UTF8 characters, or null. This can read strings written by {@link #writeString(String)},
+     * {@link #writeString(CharSequence)}, and {@link #writeAscii(String)}.
+     *
+     * @return May be null.
+     */
+    public StringBuilder readStringBuilder() {
+        int charCount = readChars();
+        if (charCount < 0) {
+            return null;
+        }
+
+        StringBuilder builder = new StringBuilder(charCount);
+        builder.append(this.chars, 0, charCount);
+        return builder;
+    }
+
+    /**
+     * Reads the length and string of UTF8 characters into the array, without allocating. This can read strings written by
+     * {@link #writeString(String)}, {@link #writeString(CharSequence)}, and {@link #writeAscii(String)}.
+     *
+     * @return the number of chars, or -1 if the string was null
+     *
+     * @throws IndexOutOfBoundsException if the string does not fit into the array. The position is not changed.
+     */
+    public int readString(char[] chars, int offset) {
+        int start = this.position;
+        int charCount = readChars();
+
+        if (charCount > chars.length - offset) {
+            this.position = start;
+            throw new IndexOutOfBoundsException("The string (" + charCount + " chars) does not fit into the array at offset " + offset);
+        }
+
+        if (charCount > 0) {
+            System.arraycopy(this.chars, 0, chars, offset, charCount);
+        }
+        return charCount;
+    }
+
+    /**
+     * Reads the length and string of UTF8 characters, and appends the string to the builder. This does not allocate, unless the
+     * builder has to grow. This can read strings written by {@link #writeString(String)}, {@link #writeString(CharSequence)}, and
+     * {@link #writeAscii(String)}.
+     *
+     * @return false if the string was null
+     */
+    public boolean readString(StringBuilder builder) {
+        int charCount = readChars();
+        if (charCount < 0) {
+            return false;
+        }
+
+        builder.append(this.chars, 0, charCount);
+        return true;
+    }
+
+    /**
+     * Reads the length and string of UTF8 characters into the char buffer, without allocating. This can read strings written by
+     * {@link #writeString(String)}, {@link #writeString(CharSequence)}, and {@link #writeAscii(String)}.
+     *
+     * @return false if the string was null
+     *
+     * @throws BufferOverflowException if the string does not fit into the char buffer. The position is not changed.
+     */
+    public boolean readString(CharBuffer buffer) {
+        int start = this.position;
+        int charCount = readChars();
+        if (charCount < 0) {
+            return false;
+        }
+
+        if (buffer.remaining() < charCount) {
+            this.position = start;
+            throw new BufferOverflowException();
+        }
+
+        buffer.put(this.chars, 0, charCount);
+        return true;
+    }
+
+    /**
+     * Reads the next string into {@link #chars}.
+     *
+     * @return the number of chars, or -1 if the string was null
+     */
+    private int readChars() {
+        int b = get(this.position++);
+        if ((b & 0x80) == 0) {
+            return readAscii(); // ASCII.
+        }
+
+        // Null, empty, or UTF8.
+        int charCount = readUtf8Length(b);
+        if (charCount == 0) {
+            return -1;
+        }
+        charCount--;
+
+        readUtf8(charCount);
+        return charCount;
+    }
+
+    private int readUtf8Length(int b) {
+        int result = b & 0x3F; // Mask all but first 6 bits.
+        if ((b & 0x40) != 0) { // Bit 7 means another byte, bit 8 means UTF8.
+            b = get(this.position++);
+            result |= (b & 0x7F) << 6;
+            if ((b & 0x80) != 0) {
+                b = get(this.position++);
+                result |= (b & 0x7F) << 13;
+                if ((b & 0x80) != 0) {
+                    b = get(this.position++);
+                    result |= (b & 0x7F) << 20;
+                    if ((b & 0x80) != 0) {
+                        b = get(this.position++);
+                        result |= (b & 0x7F) << 27;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private void readUtf8(int charCount) {
+        // every char is at least 1 byte
+        checkAvailable(charCount);
+
+        if (this.chars.length < charCount) {
+            this.chars = new char[charCount];
+        }
+
+        char[] chars = this.chars;
+        int position = this.position;
+
+        for (int charIndex = 0; charIndex < charCount; charIndex++) {
+            int b = get(position++) & 0xFF;
+            switch (b >> 4) {
+                case 12 :
+                case 13 :
+                    chars[charIndex] = (char) ((b & 0x1F) << 6 | get(position++) & 0x3F);
+                    break;
+                case 14 :
+                    chars[charIndex] = (char) ((b & 0x0F) << 12 | (get(position++) & 0x3F) << 6 | get(position++) & 0x3F);
+                    break;
+                default:
+                    chars[charIndex] = (char) b;
+                    break;
+            }
+        }
+
+        this.position = position;
+    }
+
+    /**
+     * Reads ASCII chars into {@link #chars}, where the last char has bit 8 set. The first char has already been read.
+     *
+     * @return the number of chars
+     */
+    private int readAscii() {
+        int start = this.position - 1;
+        int end = start;
+        int limit = this.capacity;
+
+        int b;
+        do {
+            if (end == limit) {
+                throw new BufferUnderflowException();
+            }
+            b = get(end++);
+        } while ((b & 0x80) == 0);
+
+        int charCount = end - start;
+        if (this.chars.length < charCount) {
+            this.chars = new char[charCount * 2];
+        }
+
+        char[] chars = this.chars;
+        for (int i = 0; i < charCount; i++) {
+            chars[i] = (char) get(start + i);
+        }
+        chars[charCount - 1] &= 0x7F; // Mask end of ascii bit.
+
+        this.position = end;
+        return charCount;
+    }
+
+   // float
+
+    /**
+     * Writes a 4 byte float.
+     */
+    public void writeFloat(float value) {
+        writeInt(Float.floatToIntBits(value));
+    }
+
+    /**
+     * Writes a 1-5 byte float with reduced precision.
+     *
+     * @param optimizePositive
+     *            If true, small positive numbers will be more efficient (1 byte) and small negative numbers will be
+     *            inefficient (5 bytes).
+     */
+    public int writeFloat(float value, float precision, boolean optimizePositive) {
+        return writeInt((int) (value * precision), optimizePositive);
+    }
+
+    /**
+     * Reads a 4 byte float.
+     */
+    public float readFloat() {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    /**
+     * Reads a 1-5 byte float with reduced precision.
+     */
+    public float readFloat(float precision, boolean optimizePositive) {
+        return readInt(optimizePositive) / precision;
+    }
+
+    /**
+     * Reads a 4 byte float, does not advance the position
+     */
+    public float readFloat(int position) {
+        return Float.intBitsToFloat(readInt(position));
+    }
+
+    /**
+     * Reads a 1-5 byte float with reduced precision, does not advance the position
+     */
+    public float readFloat(int position, float precision, boolean optimizePositive) {
+        return readInt(position, optimizePositive) / precision;
+    }
+
+    // short
+
+    /**
+     * Writes a 2 byte short. Uses BIG_ENDIAN byte order.
+     */
+    public void writeShort(int value) {
+        reserve(2);
+        putShort(this.position, (short) value);
+        this.position += 2;
+    }
+
+    /**
+     * Reads a 2 byte short.
+     */
+    public short readShort() {
+        short value = getShort(this.position);
+        this.position += 2;
+        return value;
+    }
+
+    /**
+     * Reads a 2 byte short as an int from 0 to 65535.
+     */
+    public int readShortUnsigned() {
+        return readShort() & 0xFFFF;
+    }
+
+    /**
+     * Reads a 2 byte short, does not advance the position
+     */
+    public short readShort(int position) {
+        return getShort(position);
+    }
+
+    /**
+     * Reads a 2 byte short as an int from 0 to 65535, does not advance the position
+     */
+    public int readShortUnsigned(int position) {
+        return getShort(position) & 0xFFFF;
+    }
+
+   // long
+
+    /**
+     * Writes an 8 byte long. Uses BIG_ENDIAN byte order.
+     */
+    public void writeLong(long value) {
+        reserve(8);
+        putLong(this.position, value);
+        this.position += 8;
+    }
+
+    /**
+     * Writes a 1-9 byte long. This stream may consider such a variable length encoding request as a hint. It is not
+     * guaranteed that a variable length encoding will be really used. The stream may decide to use native-sized integer
+     * representation for efficiency reasons.
+     *
+     * @param optimizePositive
+     *            If true, small positive numbers will be more efficient (1 byte) and small negative numbers will be
+     *            inefficient (9 bytes).
+     */
+    public int writeLong(long value, boolean optimizePositive) {
+        return writeVarLong(value, optimizePositive);
+    }
+
+    /**
+     * Writes a 1-9 byte long. It is guaranteed that a varible length encoding will be used.
+     *
+     * @param optimizePositive
+     *            If true, small positive numbers will be more efficient (1 byte) and small negative numbers will be
+     *            inefficient (9 bytes).
+     */
+    public int writeVarLong(long value, boolean optimizePositive) {
+        if (!optimizePositive) {
+            value = value << 1 ^ value >> 63;
+        }
+
+        int length = ByteBuffer2.longLength(value, true);
+        reserve(length);
+        this.position = putVar(this.position, value, length);
+        return length;
+    }
+
+    /**
+     * Returns true if enough bytes are available to read a long with {@link #readLong(boolean)}.
+     */
+    public boolean canReadLong() {
+        return canReadVar(this.position, 9);
+    }
+
+    /**
+     * Returns true if enough bytes are available to read a long with {@link #readLong(boolean)}.
+     */
+    public boolean canReadLong(int position) {
+        return canReadVar(position, 9);
+    }
+
+    /**
+     * Reads an 8 byte long.
+     */
+    public long readLong() {
+        long value = getLong(this.position);
+        this.position += 8;
+        return value;
+    }
+
+    /**
+     * Reads a 1-9 byte long. This stream may consider such a variable length encoding request as a hint. It is not
+     * guaranteed that a variable length encoding will be really used. The stream may decide to use native-sized integer
+     * representation for efficiency reasons.
+     */
+    public long readLong(boolean optimizePositive) {
+        long result = readVar(9);
+        return optimizePositive ? result : result >>> 1 ^ -(result & 1);
+    }
+
+    /**
+     * Reads an 8 byte long, does not advance the position
+     */
+    public long readLong(int position) {
+        return getLong(position);
+    }
+
+    /**
+     * Reads a 1-9 byte long. This stream may consider such a variable length encoding request as a hint. It is not
+     * guaranteed that a variable length encoding will be really used. The stream may decide to use native-sized integer
+     * representation for efficiency reasons.
+     * <p>
+     * does not advance the position
+     */
+    public long readLong(int position, boolean optimizePositive) {
+        int pos = this.position;
+        this.position = position;
+        long value = readLong(optimizePositive);
+        this.position = pos;
+        return value;
+    }
+
+   // boolean
+
+    /**
+     * Writes a 1 byte boolean.
+     */
+    public void writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+    }
+
+    /**
+     * Reads a 1 byte boolean.
+     */
+    public boolean readBoolean() {
+        return get(this.position++) == 1;
+    }
+
+    /**
+     * Reads a 1 byte boolean, does not advance the position
+     */
+    public boolean readBoolean(int position) {
+        return get(position) == 1;
+    }
+
+    // char
+
+    /**
+     * Writes a 2 byte char. Uses BIG_ENDIAN byte order.
+     */
+    public void writeChar(char value) {
+        reserve(2);
+        putShort(this.position, (short) value);
+        this.position += 2;
+    }
+
+    /**
+     * Reads a 2 byte char.
+     */
+    public char readChar() {
+        char value = (char) getShort(this.position);
+        this.position += 2;
+        return value;
+    }
+
+    /**
+     * Reads a 2 byte char, does not advance the position
+     */
+    public char readChar(int position) {
+        return (char) getShort(position);
+    }
+
+    // double
+
+    /**
+     * Writes an 8 byte double.
+     */
+    public void writeDouble(double value) {
+        writeLong(Double.doubleToLongBits(value));
+    }
+
+    /**
+     * Writes a 1-9 byte double with reduced precision
+     *
+     * @param optimizePositive
+     *            If true, small positive numbers will be more efficient (1 byte) and small negative numbers will be
+     *            inefficient (9 bytes).
+     */
+    public int writeDouble(double value, double precision, boolean optimizePositive) {
+        return writeLong((long) (value * precision), optimizePositive);
+    }
+
+    /**
+     * Reads an 8 bytes double.
+     */
+    public double readDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Reads a 1-9 byte double with reduced precision.
+     */
+    public double readDouble(double precision, boolean optimizePositive) {
+        return readLong(optimizePositive) / precision;
+    }
+
+    /**
+     * Reads an 8 bytes double, does not advance the position
+     */
+    public double readDouble(int position) {
+        return Double.longBitsToDouble(readLong(position));
+    }
+
+    /**
+     * Reads a 1-9 byte double with reduced precision, does not advance the position
+     */
+    public double readDouble(int position, double precision, boolean optimizePositive) {
+        return readLong(position, optimizePositive) / precision;
+    }
+
+   // Methods implementing bulk operations on arrays of primitive types
+
+    /**
+     * Bulk output of an int array.
+     */
+    public void writeInts(int[] object, boolean optimizePositive) {
+        int count = object.length;
+
+        // the exact size is known up front, so the buffer is only checked (and grown) once
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            total += ByteBuffer2.intLength(object[i], optimizePositive);
+        }
+        reserve(total);
+
+        int position = this.position;
+        for (int i = 0; i < count; i++) {
+            int value = object[i];
+            if (!optimizePositive) {
+                value = value << 1 ^ value >> 31;
+            }
+            position = putVar(position, value & 0xFFFFFFFFL, ByteBuffer2.intLength(value, true));
+        }
+        this.position = position;
+    }
+
+    /**
+     * Bulk input of an int array.
+     */
+    public int[] readInts(int length, boolean optimizePositive) {
+        int[] array = new int[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = readInt(optimizePositive);
+        }
+        return array;
+    }
+
+    /**
+     * Bulk output of an long array.
+     */
+    public void writeLongs(long[] object, boolean optimizePositive) {
+        int count = object.length;
+
+        // the exact size is known up front, so the buffer is only checked (and grown) once
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            total += ByteBuffer2.longLength(object[i], optimizePositive);
+        }
+        reserve(total);
+
+        int position = this.position;
+        for (int i = 0; i < count; i++) {
+            long value = object[i];
+            if (!optimizePositive) {
+                value = value << 1 ^ value >> 63;
+            }
+            position = putVar(position, value, ByteBuffer2.longLength(value, true));
+        }
+        this.position = position;
+    }
+
+    /**
+     * Bulk input of a long array.
+     */
+    public long[] readLongs(int length, boolean optimizePositive) {
+        long[] array = new long[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = readLong(optimizePositive);
+        }
+        return array;
+    }
+
+    /**
+     * Bulk output of an int array.
+     */
+    public void writeInts(int[] object) {
+        reserve(object.length << 2);
+
+        int position = this.position;
+        for (int i = 0, n = object.length; i < n; i++) {
+            putInt(position, object[i]);
+            position += 4;
+        }
+        this.position = position;
+    }
+
+    /**
+     * Bulk input of an int array.
+     */
+    public int[] readInts(int length) {
+        checkAvailable(length << 2);
+
+        int[] array = new int[length];
+        int position = this.position;
+        for (int i = 0; i < length; i++) {
+            array[i] = getInt(position);
+            position += 4;
+        }
+        this.position = position;
+        return array;
+    }
+
+    /**
+     * Bulk output of an long array.
+     */
+    public void writeLongs(long[] object) {
+        reserve(object.length << 3);
+
+        int position = this.position;
+        for (int i = 0, n = object.length; i < n; i++) {
+            putLong(position, object[i]);
+            position += 8;
+        }
+        this.position = position;
+    }
+
+    /**
+     * Bulk input of a long array.
+     */
+    public long[] readLongs(int length) {
+        checkAvailable(length << 3);
+
+        long[] array = new long[length];
+        int position = this.position;
+        for (int i = 0; i < length; i++) {
+            array[i] = getLong(position);
+            position += 8;
+        }
+        this.position = position;
+        return array;
+    }
+
+    /**
+     * Bulk output of a float array.
+     */
+    public void writeFloats(float[] object) {
+        reserve(object.length << 2);
+
+        int position = this.position;
+        for (int i = 0, n = object.length; i < n; i++) {
+            putInt(position, Float.floatToIntBits(object[i]));
+            position += 4;
+        }
+        this.position = position;
+    }
+
+    /**
+     * Bulk input of a float array.
+     */
+    public float[] readFloats(int length) {
+        checkAvailable(length << 2);
+
+        float[] array = new float[length];
+        int position = this.position;
+        for (int i = 0; i < length; i++) {
+            array[i] = Float.intBitsToFloat(getInt(position));
+            position += 4;
+        }
+        this.position = position;
+        return array;
+    }
+
+    /**
+     * Bulk output of a short array.
+     */
+    public void writeShorts(short[] object) {
+        reserve(object.length << 1);
+
+        int position = this.position;
+        for (int i = 0, n = object.length; i < n; i++) {
+            putShort(position, object[i]);
+            position += 2;
+        }
+        this.position = position;
+    }
+
+    /**
+     * Bulk input of a short array.
+     */
+    public short[] readShorts(int length) {
+        checkAvailable(length << 1);
+
+        short[] array = new short[length];
+        int position = this.position;
+        for (int i = 0; i < length; i++) {
+            array[i] = getShort(position);
+            position += 2;
+        }
+        this.position = position;
+        return array;
+    }
+
+    /**
+     * Bulk output of a char array.
+     */
+    public void writeChars(char[] object) {
+        reserve(object.length << 1);
+
+        int position = this.position;
+        for (int i = 0, n = object.length; i < n; i++) {
+            putShort(position, (short) object[i]);
+            position += 2;
+        }
+        this.position = position;
+    }
+
+    /**
+     * Bulk input of a char array.
+     */
+    public char[] readChars(int length) {
+        checkAvailable(length << 1);
+
+        char[] array = new char[length];
+        int position = this.position;
+        for (int i = 0; i < length; i++) {
+            array[i] = (char) getShort(position);
+            position += 2;
+        }
+        this.position = position;
+        return array;
+    }
+
+    /**
+     * Bulk output of a double array.
+     */
+    public void writeDoubles(double[] object) {
+        reserve(object.length << 3);
+
+        int position = this.position;
+        for (int i = 0, n = object.length; i < n; i++) {
+            putLong(position, Double.doubleToLongBits(object[i]));
+            position += 8;
+        }
+        this.position = position;
+    }
+
+    /**
+     * Bulk input of a double array
+     */
+    public double[] readDoubles(int length) {
+        checkAvailable(length << 3);
+
+        double[] array = new double[length];
+        int position = this.position;
+        for (int i = 0; i < length; i++) {
+            array[i] = Double.longBitsToDouble(getLong(position));
+            position += 8;
+        }
+        this.position = position;
+        return array;
+    }
+}
@@ -23,7 +23,9 @@ import java.util.Arrays;
 public
 class ByteArrayWrapper {
     private byte[] data;
-    private Integer hashCode;
+
+    // 0 means "not calculated yet". A primitive, so that it is not boxed (and there is no indirection when it is read)
+    private transient int hashCode;
 
     private
     ByteArrayWrapper() {
@@ -83,13 +85,26 @@ class ByteArrayWrapper {
         return this.data;
     }
 
+    /**
+     * @return the hash of the range of bytes, which is the same as the hashCode of a wrapper of those bytes. It is the 64-bit
+     *         xxHash folded into an int, which is both faster and has far fewer collisions than {@link Arrays#hashCode(byte[])}
+     */
+    public static
+    int hashCode(final byte[] data, final int offset, final int length) {
+        int hash = XXHash64.hash32(data, offset, length);
+
+        // 0 is reserved for "not calculated yet"
+        return hash != 0 ? hash : 1;
+    }
+
     @Override
     public
     int hashCode() {
-        // might be null for a thread because it's stale. who cares, get the value again
-        Integer hashCode = this.hashCode;
-        if (hashCode == null) {
-            hashCode = Arrays.hashCode(this.data);
+        // might be 0 for a thread because it's stale. who cares, get the value again
+        int hashCode = this.hashCode;
+        if (hashCode == 0) {
+            byte[] data = this.data;
+            hashCode = hashCode(data, 0, data.length);
             this.hashCode = hashCode;
         }
         return hashCode;
@@ -98,12 +113,30 @@ class ByteArrayWrapper {
     @Override
     public
     boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
         if (!(other instanceof ByteArrayWrapper)) {
             return false;
         }
 
         // CANNOT be null, so we don't have to null check!
-        return Arrays.equals(this.data, ((ByteArrayWrapper) other).data);
+        ByteArrayWrapper wrapper = (ByteArrayWrapper) other;
+        byte[] data = this.data;
+        byte[] otherData = wrapper.data;
+
+        if (data.length != otherData.length) {
+            return false;
+        }
+
+        // only compare the hashes if both have already been calculated (which is always the case for keys in a map)
+        int hashCode = this.hashCode;
+        int otherHashCode = wrapper.hashCode;
+        if (hashCode != 0 && otherHashCode != 0 && hashCode != otherHashCode) {
+            return false;
+        }
+
+        return Arrays.equals(data, otherData);
     }
 
     @Override
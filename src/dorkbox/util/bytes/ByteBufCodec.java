@@ -0,0 +1,690 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.bytes;
+
+import java.nio.charset.Charset;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * String, float, double and array codecs that read and write a Netty {@link ByteBuf} directly, using the same wire format as
+ * {@link ByteBuffer2} (and Kryo). Anything written here can be read by {@link ByteBuffer2} and the other way around, so there is no need
+ * to copy through a <code>byte[]</code> first.
+ * <p>
+ * Only the reader/writer index and the get/set/read/write methods of the buffer are used, so this works for every kind of buffer (heap,
+ * direct, pooled and {@link io.netty.buffer.CompositeByteBuf}). Heap buffers have a faster path that uses the backing array.
+ * <p>
+ * The int and long varints are in {@link OptimizeUtilsByteBuf}. Fixed size values (int, long, short, char, boolean, float, double) are
+ * BIG_ENDIAN, which is the same as the normal {@link ByteBuf} methods.
+ * <p>
+ * Kryo 5 uses the same string and varint encoding, but only writes strings of up to 32 chars as ASCII (see
+ * {@link #writeString(ByteBuf, String, int)}) and writes fixed size values LITTLE_ENDIAN.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final
+class ByteBufCodec {
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * The longest string that {@link ByteBuffer2} writes as ASCII.
+     */
+    public static final int MAX_ASCII_LENGTH = 63;
+
+    /**
+     * The longest string that the Kryo 5 <code>Output</code> writes as ASCII.
+     */
+    public static final int KRYO_MAX_ASCII_LENGTH = 32;
+
+    // string
+
+    /**
+     * Writes the length and string, or null. Short strings are checked and if ASCII they are written more efficiently, else they are
+     * written as UTF8. The string can be read using {@link #readString(ByteBuf)} or {@link ByteBuffer2#readString()}.
+     *
+     * @param value May be null.
+     */
+    public static
+    void writeString(final ByteBuf buffer, final String value) {
+        writeString(buffer, value, MAX_ASCII_LENGTH);
+    }
+
+    /**
+     * Writes the length and string, or null. Strings of at most maxAsciiLength chars are checked and if ASCII they are written more
+     * efficiently, else they are written as UTF8. Both are read the same way, so the max length only changes which bytes are written.
+     *
+     * @param value May be null.
+     * @param maxAsciiLength {@link #MAX_ASCII_LENGTH} for the same bytes as {@link ByteBuffer2}, {@link #KRYO_MAX_ASCII_LENGTH} for the
+     *                       same bytes as the Kryo 5 <code>Output</code>.
+     */
+    public static
+    void writeString(final ByteBuf buffer, final String value, final int maxAsciiLength) {
+        if (value == null) {
+            buffer.writeByte(0x80); // 0 means null, bit 8 means UTF8.
+            return;
+        }
+
+        int charCount = value.length();
+        if (charCount == 0) {
+            buffer.writeByte(1 | 0x80); // 1 means empty string, bit 8 means UTF8.
+            return;
+        }
+
+        // Detect ASCII.
+        if (charCount > 1 && charCount <= maxAsciiLength && isAscii(value, charCount)) {
+            writeAsciiChars(buffer, value, charCount);
+        }
+        else {
+            writeVarIntFlag(buffer, true, charCount + 1, true);
+            writeUtf8(buffer, value, charCount);
+        }
+    }
+
+    /**
+     * Writes the length and CharSequence as UTF8, or null. The string can be read using {@link #readString(ByteBuf)} or
+     * {@link ByteBuffer2#readString()}.
+     *
+     * @param value May be null.
+     */
+    public static
+    void writeString(final ByteBuf buffer, final CharSequence value) {
+        if (value == null) {
+            buffer.writeByte(0x80); // 0 means null, bit 8 means UTF8.
+            return;
+        }
+
+        int charCount = value.length();
+        if (charCount == 0) {
+            buffer.writeByte(1 | 0x80); // 1 means empty string, bit 8 means UTF8.
+            return;
+        }
+
+        writeVarIntFlag(buffer, true, charCount + 1, true);
+        writeUtf8(buffer, value, charCount);
+    }
+
+    /**
+     * Writes a string that is known to contain only ASCII characters. Non-ASCII strings passed to this method will be corrupted. The
+     * string can be read using {@link #readString(ByteBuf)} or {@link ByteBuffer2#readString()}.
+     *
+     * @param value May be null.
+     */
+    public static
+    void writeAscii(final ByteBuf buffer, final String value) {
+        if (value == null) {
+            buffer.writeByte(0x80); // 0 means null, bit 8 means UTF8.
+            return;
+        }
+
+        int charCount = value.length();
+        switch (charCount) {
+            case 0:
+                buffer.writeByte(1 | 0x80); // 1 is string length + 1, bit 8 means UTF8.
+                return;
+            case 1:
+                buffer.writeByte(2 | 0x80); // 2 is string length + 1, bit 8 means UTF8.
+                buffer.writeByte(value.charAt(0));
+                return;
+        }
+
+        writeAsciiChars(buffer, value, charCount);
+    }
+
+    /**
+     * Reads the length and string of UTF8 characters, or null. This can read strings written by {@link #writeString(ByteBuf, String)},
+     * {@link #writeAscii(ByteBuf, String)} and the matching {@link ByteBuffer2} methods.
+     *
+     * @return May be null.
+     */
+    public static
+    String readString(final ByteBuf buffer) {
+        int b = buffer.readByte();
+        if ((b & 0x80) == 0) {
+            return new String(readAscii(buffer, b)); // ASCII.
+        }
+
+        // Null, empty, or UTF8.
+        int charCount = readUtf8Length(buffer, b);
+        switch (charCount) {
+            case 0:
+                return null;
+            case 1:
+                return "";
+        }
+        charCount--;
+
+        char[] chars = new char[charCount];
+        readUtf8(buffer, chars, charCount);
+        return new String(chars);
+    }
+
+    /**
+     * Reads the length and string of UTF8 characters, or null. This can read strings written by {@link #writeString(ByteBuf, String)},
+     * {@link #writeAscii(ByteBuf, String)} and the matching {@link ByteBuffer2} methods.
+     *
+     * @return May be null.
+     */
+    public static
+    StringBuilder readStringBuilder(final ByteBuf buffer) {
+        int b = buffer.readByte();
+        if ((b & 0x80) == 0) {
+            char[] chars = readAscii(buffer, b);
+            return new StringBuilder(chars.length).append(chars); // ASCII.
+        }
+
+        // Null, empty, or UTF8.
+        int charCount = readUtf8Length(buffer, b);
+        switch (charCount) {
+            case 0:
+                return null;
+            case 1:
+                return new StringBuilder("");
+        }
+        charCount--;
+
+        char[] chars = new char[charCount];
+        readUtf8(buffer, chars, charCount);
+
+        StringBuilder builder = new StringBuilder(charCount);
+        builder.append(chars);
+        return builder;
+    }
+
+    /**
+     * Checks 8 chars at a time (the chars are OR'ed together, so there is only one branch for every 8 chars).
+     */
+    private static
+    boolean isAscii(final String value, final int charCount) {
+        int i = 0;
+        for (int n = charCount - 7; i < n; i += 8) {
+            if ((value.charAt(i) | value.charAt(i + 1) | value.charAt(i + 2) | value.charAt(i + 3) |
+                 value.charAt(i + 4) | value.charAt(i + 5) | value.charAt(i + 6) | value.charAt(i + 7)) > 127) {
+                return false;
+            }
+        }
+        for (; i < charCount; i++) {
+            if (value.charAt(i) > 127) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the ASCII chars, with bit 8 set on the last one to mark the end.
+     */
+    @SuppressWarnings("deprecation")
+    private static
+    void writeAsciiChars(final ByteBuf buffer, final String value, final int charCount) {
+        buffer.ensureWritable(charCount);
+
+        int writerIndex = buffer.writerIndex();
+        if (buffer.hasArray()) {
+            value.getBytes(0, charCount, buffer.array(), buffer.arrayOffset() + writerIndex);
+            buffer.writerIndex(writerIndex + charCount);
+        }
+        else {
+            buffer.writeCharSequence(value, US_ASCII);
+        }
+
+        int last = writerIndex + charCount - 1;
+        buffer.setByte(last, buffer.getByte(last) | 0x80); // Bit 8 means end of ASCII.
+    }
+
+    /**
+     * Writes a 1-5 byte int with a flag in bit 8 of the first byte, the same as Kryo 5 <code>Output.writeVarIntFlag()</code>. The first
+     * byte holds 6 bits of the value (bit 7 denotes if another byte is present), the other bytes hold 7 bits each. This is also how the
+     * length of a UTF8 string is written, with the flag set.
+     *
+     * @param optimizePositive If true, small positive numbers will be more efficient (1 byte) and small negative numbers will be
+     *                         inefficient (5 bytes).
+     *
+     * @return the number of bytes written.
+     */
+    public static
+    int writeVarIntFlag(final ByteBuf buffer, final boolean flag, int value, final boolean optimizePositive) {
+        if (!optimizePositive) {
+            value = value << 1 ^ value >> 31;
+        }
+        int first = value & 0x3F | (flag ? 0x80 : 0);
+
+        if (value >>> 6 == 0) {
+            buffer.writeByte(first);
+            return 1;
+        }
+        if (value >>> 13 == 0) {
+            buffer.writeByte(first | 0x40); // Set bit 7.
+            buffer.writeByte(value >>> 6);
+            return 2;
+        }
+        if (value >>> 20 == 0) {
+            buffer.writeByte(first | 0x40); // Set bit 7.
+            buffer.writeByte(value >>> 6 | 0x80); // Set bit 8.
+            buffer.writeByte(value >>> 13);
+            return 3;
+        }
+        if (value >>> 27 == 0) {
+            buffer.writeByte(first | 0x40); // Set bit 7.
+            buffer.writeByte(value >>> 6 | 0x80); // Set bit 8.
+            buffer.writeByte(value >>> 13 | 0x80); // Set bit 8.
+            buffer.writeByte(value >>> 20);
+            return 4;
+        }
+        buffer.writeByte(first | 0x40); // Set bit 7.
+        buffer.writeByte(value >>> 6 | 0x80); // Set bit 8.
+        buffer.writeByte(value >>> 13 | 0x80); // Set bit 8.
+        buffer.writeByte(value >>> 20 | 0x80); // Set bit 8.
+        buffer.writeByte(value >>> 27);
+        return 5;
+    }
+
+    /**
+     * Reads the flag of an int written by {@link #writeVarIntFlag(ByteBuf, boolean, int, boolean)}, without moving the reader index.
+     */
+    public static
+    boolean readVarIntFlag(final ByteBuf buffer) {
+        return (buffer.getByte(buffer.readerIndex()) & 0x80) != 0;
+    }
+
+    /**
+     * Reads an int written by {@link #writeVarIntFlag(ByteBuf, boolean, int, boolean)}, ignoring the flag.
+     */
+    public static
+    int readVarIntFlag(final ByteBuf buffer, final boolean optimizePositive) {
+        int result = readUtf8Length(buffer, buffer.readByte());
+        return optimizePositive ? result : result >>> 1 ^ -(result & 1);
+    }
+
+    private static
+    int readUtf8Length(final ByteBuf buffer, int b) {
+        int result = b & 0x3F; // Mask all but first 6 bits.
+        if ((b & 0x40) != 0) { // Bit 7 means another byte, bit 8 means UTF8.
+            b = buffer.readByte();
+            result |= (b & 0x7F) << 6;
+            if ((b & 0x80) != 0) {
+                b = buffer.readByte();
+                result |= (b & 0x7F) << 13;
+                if ((b & 0x80) != 0) {
+                    b = buffer.readByte();
+                    result |= (b & 0x7F) << 20;
+                    if ((b & 0x80) != 0) {
+                        b = buffer.readByte();
+                        result |= (b & 0x7F) << 27;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the chars as UTF8 (each char on its own, 1-3 bytes, the same as Kryo). The exact number of bytes is counted first, so the
+     * buffer only grows once.
+     */
+    private static
+    void writeUtf8(final ByteBuf buffer, final CharSequence value, final int charCount) {
+        int byteCount = charCount;
+        for (int i = 0; i < charCount; i++) {
+            int c = value.charAt(i);
+            if (c > 0x007F) {
+                byteCount += c > 0x07FF ? 2 : 1;
+            }
+        }
+        buffer.ensureWritable(byteCount);
+
+        int writerIndex = buffer.writerIndex();
+        if (buffer.hasArray()) {
+            byte[] array = buffer.array();
+            int position = buffer.arrayOffset() + writerIndex;
+
+            for (int i = 0; i < charCount; i++) {
+                int c = value.charAt(i);
+                if (c <= 0x007F) {
+                    array[position++] = (byte) c;
+                }
+                else if (c <= 0x07FF) {
+                    array[position++] = (byte) (0xC0 | c >> 6 & 0x1F);
+                    array[position++] = (byte) (0x80 | c & 0x3F);
+                }
+                else {
+                    array[position++] = (byte) (0xE0 | c >> 12 & 0x0F);
+                    array[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                    array[position++] = (byte) (0x80 | c & 0x3F);
+                }
+            }
+        }
+        else {
+            int position = writerIndex;
+
+            for (int i = 0; i < charCount; i++) {
+                int c = value.charAt(i);
+                if (c <= 0x007F) {
+                    buffer.setByte(position++, c);
+                }
+                else if (c <= 0x07FF) {
+                    buffer.setByte(position++, 0xC0 | c >> 6 & 0x1F);
+                    buffer.setByte(position++, 0x80 | c & 0x3F);
+                }
+                else {
+                    buffer.setByte(position++, 0xE0 | c >> 12 & 0x0F);
+                    buffer.setByte(position++, 0x80 | c >> 6 & 0x3F);
+                    buffer.setByte(position++, 0x80 | c & 0x3F);
+                }
+            }
+        }
+
+        buffer.writerIndex(writerIndex + byteCount);
+    }
+
+    private static
+    void readUtf8(final ByteBuf buffer, final char[] chars, final int charCount) {
+        for (int charIndex = 0; charIndex < charCount; charIndex++) {
+            int b = buffer.readByte() & 0xFF;
+            switch (b >> 4) {
+                case 0:
+                case 1:
+                case 2:
+                case 3:
+                case 4:
+                case 5:
+                case 6:
+                case 7:
+                    chars[charIndex] = (char) b;
+                    break;
+                case 12:
+                case 13:
+                    chars[charIndex] = (char) ((b & 0x1F) << 6 | buffer.readByte() & 0x3F);
+                    break;
+                case 14:
+                    chars[charIndex] = (char) ((b & 0x0F) << 12 | (buffer.readByte() & 0x3F) << 6 | buffer.readByte() & 0x3F);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of an ASCII string, where the first byte was already read. The last byte has bit 8 set.
+     */
+    private static
+    char[] readAscii(final ByteBuf buffer, final int first) {
+        int start = buffer.readerIndex() - 1;
+        int end = buffer.writerIndex();
+
+        // find the last char
+        int last = -1;
+        if (buffer.hasArray()) {
+            byte[] array = buffer.array();
+            int offset = buffer.arrayOffset();
+            for (int i = start + 1; i < end; i++) {
+                if (array[offset + i] < 0) {
+                    last = i;
+                    break;
+                }
+            }
+        }
+        else {
+            for (int i = start + 1; i < end; i++) {
+                if (buffer.getByte(i) < 0) {
+                    last = i;
+                    break;
+                }
+            }
+        }
+
+        if (last == -1) {
+            throw new IndexOutOfBoundsException("End of ASCII string not found");
+        }
+
+        int count = last - start + 1;
+        char[] chars = new char[count];
+        chars[0] = (char) first;
+        for (int i = 1; i < count; i++) {
+            chars[i] = (char) (buffer.readByte() & 0x7F);
+        }
+        return chars;
+    }
+
+    // float
+
+    /**
+     * Writes a 1-5 byte float with reduced precision, the same as {@link ByteBuffer2#writeFloat(float, float, boolean)}.
+     *
+     * @param optimizePositive If true, small positive numbers will be more efficient (1 byte) and small negative numbers will be
+     *                         inefficient (5 bytes).
+     */
+    public static
+    int writeFloat(final ByteBuf buffer, final float value, final float precision, final boolean optimizePositive) {
+        return OptimizeUtilsByteBuf.writeInt(buffer, (int) (value * precision), optimizePositive);
+    }
+
+    /**
+     * Reads a 1-5 byte float with reduced precision.
+     */
+    public static
+    float readFloat(final ByteBuf buffer, final float precision, final boolean optimizePositive) {
+        return OptimizeUtilsByteBuf.readInt(buffer, optimizePositive) / precision;
+    }
+
+    // double
+
+    /**
+     * Writes a 1-9 byte double with reduced precision, the same as {@link ByteBuffer2#writeDouble(double, double, boolean)}.
+     *
+     * @param optimizePositive If true, small positive numbers will be more efficient (1 byte) and small negative numbers will be
+     *                         inefficient (9 bytes).
+     */
+    public static
+    int writeDouble(final ByteBuf buffer, final double value, final double precision, final boolean optimizePositive) {
+        return OptimizeUtilsByteBuf.writeLong(buffer, (long) (value * precision), optimizePositive);
+    }
+
+    /**
+     * Reads a 1-9 byte double with reduced precision.
+     */
+    public static
+    double readDouble(final ByteBuf buffer, final double precision, final boolean optimizePositive) {
+        return OptimizeUtilsByteBuf.readLong(buffer, optimizePositive) / precision;
+    }
+
+    // arrays
+
+    /**
+     * Writes an int array as variable length ints, without the length.
+     */
+    public static
+    void writeInts(final ByteBuf buffer, final int[] object, final boolean optimizePositive) {
+        buffer.ensureWritable(object.length);
+        for (int i = 0, n = object.length; i < n; i++) {
+            OptimizeUtilsByteBuf.writeInt(buffer, object[i], optimizePositive);
+        }
+    }
+
+    /**
+     * Reads an int array of variable length ints.
+     */
+    public static
+    int[] readInts(final ByteBuf buffer, final int length, final boolean optimizePositive) {
+        int[] array = new int[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = OptimizeUtilsByteBuf.readInt(buffer, optimizePositive);
+        }
+        return array;
+    }
+
+    /**
+     * Writes a long array as variable length longs, without the length.
+     */
+    public static
+    void writeLongs(final ByteBuf buffer, final long[] object, final boolean optimizePositive) {
+        buffer.ensureWritable(object.length);
+        for (int i = 0, n = object.length; i < n; i++) {
+            OptimizeUtilsByteBuf.writeLong(buffer, object[i], optimizePositive);
+        }
+    }
+
+    /**
+     * Reads a long array of variable length longs.
+     */
+    public static
+    long[] readLongs(final ByteBuf buffer, final int length, final boolean optimizePositive) {
+        long[] array = new long[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = OptimizeUtilsByteBuf.readLong(buffer, optimizePositive);
+        }
+        return array;
+    }
+
+    /**
+     * Writes an int array in bulk, without the length.
+     */
+    public static
+    void writeInts(final ByteBuf buffer, final int[] object) {
+        buffer.ensureWritable(object.length << 2);
+        for (int i = 0, n = object.length; i < n; i++) {
+            buffer.writeInt(object[i]);
+        }
+    }
+
+    /**
+     * Reads an int array in bulk.
+     */
+    public static
+    int[] readInts(final ByteBuf buffer, final int length) {
+        int[] array = new int[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = buffer.readInt();
+        }
+        return array;
+    }
+
+    /**
+     * Writes a long array in bulk, without the length.
+     */
+    public static
+    void writeLongs(final ByteBuf buffer, final long[] object) {
+        buffer.ensureWritable(object.length << 3);
+        for (int i = 0, n = object.length; i < n; i++) {
+            buffer.writeLong(object[i]);
+        }
+    }
+
+    /**
+     * Reads a long array in bulk.
+     */
+    public static
+    long[] readLongs(final ByteBuf buffer, final int length) {
+        long[] array = new long[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = buffer.readLong();
+        }
+        return array;
+    }
+
+    /**
+     * Writes a float array in bulk, without the length.
+     */
+    public static
+    void writeFloats(final ByteBuf buffer, final float[] object) {
+        buffer.ensureWritable(object.length << 2);
+        for (int i = 0, n = object.length; i < n; i++) {
+            buffer.writeFloat(object[i]);
+        }
+    }
+
+    /**
+     * Reads a float array in bulk.
+     */
+    public static
+    float[] readFloats(final ByteBuf buffer, final int length) {
+        float[] array = new float[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = buffer.readFloat();
+        }
+        return array;
+    }
+
+    /**
+     * Writes a short array in bulk, without the length.
+     */
+    public static
+    void writeShorts(final ByteBuf buffer, final short[] object) {
+        buffer.ensureWritable(object.length << 1);
+        for (int i = 0, n = object.length; i < n; i++) {
+            buffer.writeShort(object[i]);
+        }
+    }
+
+    /**
+     * Reads a short array in bulk.
+     */
+    public static
+    short[] readShorts(final ByteBuf buffer, final int length) {
+        short[] array = new short[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = buffer.readShort();
+        }
+        return array;
+    }
+
+    /**
+     * Writes a char array in bulk, without the length.
+     */
+    public static
+    void writeChars(final ByteBuf buffer, final char[] object) {
+        buffer.ensureWritable(object.length << 1);
+        for (int i = 0, n = object.length; i < n; i++) {
+            buffer.writeChar(object[i]);
+        }
+    }
+
+    /**
+     * Reads a char array in bulk.
+     */
+    public static
+    char[] readChars(final ByteBuf buffer, final int length) {
+        char[] array = new char[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = buffer.readChar();
+        }
+        return array;
+    }
+
+    /**
+     * Writes a double array in bulk, without the length.
+     */
+    public static
+    void writeDoubles(final ByteBuf buffer, final double[] object) {
+        buffer.ensureWritable(object.length << 3);
+        for (int i = 0, n = object.length; i < n; i++) {
+            buffer.writeDouble(object[i]);
+        }
+    }
+
+    /**
+     * Reads a double array in bulk.
+     */
+    public static
+    double[] readDoubles(final ByteBuf buffer, final int length) {
+        double[] array = new double[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = buffer.readDouble();
+        }
+        return array;
+    }
+
+    private
+    ByteBufCodec() {
+    }
+}
@@ -19,7 +19,9 @@
  */
 package dorkbox.util.bytes;
 
+import java.nio.BufferOverflowException;
 import java.nio.BufferUnderflowException;
+import java.nio.CharBuffer;
 import java.util.Arrays;
 
 /**
@@ -30,6 +32,16 @@ import java.util.Arrays;
  * Encoding of integers: BIG_ENDIAN is used for storing fixed native size integer values LITTLE_ENDIAN is used for a variable
  * length encoding of integer values
  *
+ * This class deliberately does not extend {@link AbstractByteBuffer2}, and keeps its own copy of the encoding that works directly on
+ * the byte[]. The shared encoding reads and writes through virtual get/put calls, and once {@link DirectByteBuffer2} or
+ * {@link ChunkedByteBuffer2} have also been used, those call sites are no longer monomorphic and the JIT can not inline them. Measured
+ * on a byte[] subclass of {@link AbstractByteBuffer2}, reading and writing short ASCII strings was about 2x slower than this class
+ * on its own, and about 10x slower after the other buffers had been used. Varints were about the same.
+ *
+ * The two copies MUST produce the same bytes. AbstractByteBuffer2Test writes random data with this class and every
+ * {@link AbstractByteBuffer2}, and fails if the bytes (or the values that are read back) differ, so any change to the wire format has
+ * to be made in both.
+ *
  * @author Nathan Sweet <misc@n4te.com>
  */
 public class ByteBuffer2 {
@@ -42,6 +54,9 @@ public class ByteBuffer2 {
     private byte[] bytes; // the backing buffer
     private char[] chars = new char[32]; // small buffer for reading strings
 
+    private InternPool stringPool; // optional, to deduplicate short strings that are read
+    private int stringPoolMaxLength;
+
     /**
      * Creates an uninitialized object. {@link #setBuffer(byte[], int)} must be called before the object is used.
      */
@@ -134,6 +149,20 @@ public class ByteBuffer2 {
         return this.bytes;
     }
 
+    /**
+     * Sets the pool that short strings are deduplicated with when they are read by {@link #readString()}. Strings that are read
+     * over and over again (such as map keys or enum-like values) are then only created once, and are decoded without allocating.
+     *
+     * @param pool
+     *            May be null, to not deduplicate strings.
+     * @param maxLength
+     *            Only strings with at most this many chars are deduplicated.
+     */
+    public void setStringPool(InternPool pool, int maxLength) {
+        this.stringPool = pool;
+        this.stringPoolMaxLength = maxLength;
+    }
+
     /**
      * Returns a new byte array containing the bytes currently in the buffer between zero and {@link #position()}.
      */
@@ -202,56 +231,61 @@ public class ByteBuffer2 {
     }
 
     /**
-     * Discards the specified number of bytes.
+     * Discards the specified number of bytes. The buffer grows (once) if the bytes are past the end of the buffer.
      */
     public void skip(int count) {
-        int skipCount = Math.min(this.capacity - this.position, count);
-
-        while (true) {
-            this.position += skipCount;
-            count -= skipCount;
-            if (count == 0) {
-                break;
-            }
-
-            skipCount = Math.min(count, this.capacity);
-            require(skipCount);
-        }
+        reserve(count);
+        this.position += count;
     }
 
     /**
+     * Makes sure there is space for at least the specified number of bytes after the current position, growing the buffer (once)
+     * if needed. Bulk writes can then write without checking the space for every value.
+     *
      * @return true if the buffer has been resized.
      */
-    private boolean require(int required) {
-        if (this.capacity - this.position >= required) {
+    public boolean reserve(int count) {
+        if (this.capacity - this.position >= count) {
             return false;
         }
-        if (required > this.maxCapacity) {
-            throw new RuntimeException("Buffer overflow. Max capacity: " + this.maxCapacity + ", required: " + required);
+        if (count > this.maxCapacity - this.position) {
+            throw new RuntimeException("Buffer overflow. Max capacity: " + this.maxCapacity + ", required: " + count);
         }
 
-        while (this.capacity - this.position < required) {
-            if (this.capacity == this.maxCapacity) {
-                throw new RuntimeException("Buffer overflow. Available: " + (this.capacity - this.position)
-                        + ", required: " + required);
-            }
+        grow(this.position + count);
+        return true;
+    }
 
-            // Grow buffer.
-            if (this.capacity == 0) {
-                this.capacity = 1;
-            }
-            this.capacity = Math.min((int)(this.capacity * 1.6D), this.maxCapacity);
-            if (this.capacity < 0) {
-                this.capacity = this.maxCapacity;
-            }
-            byte[] newBuffer = new byte[this.capacity];
-            System.arraycopy(this.bytes, 0, newBuffer, 0, this.position);
-            this.bytes = newBuffer;
+    /**
+     * Makes sure the buffer can hold at least the specified total number of bytes, growing the buffer (once) if needed.
+     *
+     * @return true if the buffer has been resized.
+     */
+    public boolean ensureCapacity(int totalBytes) {
+        if (totalBytes <= this.capacity) {
+            return false;
+        }
+        if (totalBytes > this.maxCapacity) {
+            throw new RuntimeException("Buffer overflow. Max capacity: " + this.maxCapacity + ", required: " + totalBytes);
         }
 
+        grow(totalBytes);
         return true;
     }
 
+    /**
+     * Grows the buffer by 1.6x, or to the minimum capacity if that is larger, but never past the max capacity.
+     */
+    private void grow(int minCapacity) {
+        // as a double, so that large capacities do not overflow
+        int newCapacity = (int) Math.min(Math.max(this.capacity * 1.6D, minCapacity), this.maxCapacity);
+
+        byte[] newBuffer = new byte[newCapacity];
+        System.arraycopy(this.bytes, 0, newBuffer, 0, this.capacity);
+        this.bytes = newBuffer;
+        this.capacity = newCapacity;
+    }
+
     // byte
 
     /**
@@ -259,7 +293,7 @@ public class ByteBuffer2 {
      */
     public void writeByte(byte value) {
         if (this.position == this.capacity) {
-            require(1);
+            reserve(1);
         }
         this.bytes[this.position++] = value;
     }
@@ -269,7 +303,7 @@ public class ByteBuffer2 {
      */
     public void writeByte(int value) {
         if (this.position == this.capacity) {
-            require(1);
+            reserve(1);
         }
         this.bytes[this.position++] = (byte) value;
     }
@@ -292,18 +326,9 @@ public class ByteBuffer2 {
             throw new IllegalArgumentException("bytes cannot be null.");
         }
 
-        int copyCount = Math.min(this.capacity - this.position, count);
-        while (true) {
-            System.arraycopy(bytes, offset, this.bytes, this.position, copyCount);
-            this.position += copyCount;
-            count -= copyCount;
-            if (count == 0) {
-                return;
-            }
-            offset += copyCount;
-            copyCount = Math.min(this.capacity, count);
-            require(copyCount);
-        }
+        reserve(count);
+        System.arraycopy(bytes, offset, this.bytes, this.position, count);
+        this.position += count;
     }
 
     /**
@@ -368,7 +393,7 @@ public class ByteBuffer2 {
      * Writes a 4 byte int. Uses BIG_ENDIAN byte order.
      */
     public void writeInt(int value) {
-        require(4);
+        reserve(4);
 
         byte[] buffer = this.bytes;
         buffer[this.position++] = (byte) (value >> 24);
@@ -403,19 +428,28 @@ public class ByteBuffer2 {
         }
 
         if (value >>> 7 == 0) {
-            require(1);
+            reserve(1);
             this.bytes[this.position++] = (byte) value;
             return 1;
         }
+
+        return writeVarInt_slow(value);
+    }
+
+    /**
+     * Writes the (already zig-zag encoded, if necessary) 2-5 byte value. This is kept out of line, so that the common 1 byte case
+     * can be inlined.
+     */
+    private int writeVarInt_slow(int value) {
         if (value >>> 14 == 0) {
-            require(2);
+            reserve(2);
             byte[] buffer = this.bytes;
             buffer[this.position++] = (byte) (value & 0x7F | 0x80);
             buffer[this.position++] = (byte) (value >>> 7);
             return 2;
         }
         if (value >>> 21 == 0) {
-            require(3);
+            reserve(3);
             byte[] buffer = this.bytes;
             buffer[this.position++] = (byte) (value & 0x7F | 0x80);
             buffer[this.position++] = (byte) (value >>> 7 | 0x80);
@@ -423,7 +457,7 @@ public class ByteBuffer2 {
             return 3;
         }
         if (value >>> 28 == 0) {
-            require(4);
+            reserve(4);
             byte[] buffer = this.bytes;
             buffer[this.position++] = (byte) (value & 0x7F | 0x80);
             buffer[this.position++] = (byte) (value >>> 7 | 0x80);
@@ -432,7 +466,7 @@ public class ByteBuffer2 {
             return 4;
         }
 
-        require(5);
+        reserve(5);
         byte[] buffer = this.bytes;
         buffer[this.position++] = (byte) (value & 0x7F | 0x80);
         buffer[this.position++] = (byte) (value >>> 7 | 0x80);
@@ -660,46 +694,16 @@ public class ByteBuffer2 {
         }
 
         // Detect ASCII.
-        boolean ascii = false;
-        if (charCount > 1 && charCount < 64) {
-            ascii = true;
-            for (int i = 0; i < charCount; i++) {
-                int c = value.charAt(i);
-                if (c > 127) {
-                    ascii = false;
-                    break;
-                }
-            }
-        }
+        boolean ascii = charCount > 1 && charCount < 64 && isAscii(value, charCount);
 
         if (ascii) {
-            if (this.capacity - this.position < charCount) {
-                writeAscii_slow(value, charCount);
-            } else {
-                value.getBytes(0, charCount, this.bytes, this.position);
-                this.position += charCount;
-            }
+            reserve(charCount);
+            value.getBytes(0, charCount, this.bytes, this.position);
+            this.position += charCount;
             this.bytes[this.position - 1] |= 0x80;
         } else {
             writeUtf8Length(charCount + 1);
-            int charIndex = 0;
-            if (this.capacity - this.position >= charCount) {
-                // Try to write 8 bit chars.
-                byte[] buffer = this.bytes;
-                int position = this.position;
-                for (; charIndex < charCount; charIndex++) {
-                    int c = value.charAt(charIndex);
-                    if (c > 127) {
-                        break;
-                    }
-                    buffer[position++] = (byte) c;
-                }
-                this.position = position;
-            }
-
-            if (charIndex < charCount) {
-                writeString_slow(value, charCount, charIndex);
-            }
+            writeUtf8(value, charCount);
         }
     }
 
@@ -723,25 +727,7 @@ public class ByteBuffer2 {
         }
 
         writeUtf8Length(charCount + 1);
-        int charIndex = 0;
-        if (this.capacity - this.position >= charCount) {
-            // Try to write 8 bit chars.
-            byte[] buffer = this.bytes;
-            int position = this.position;
-
-            for (; charIndex < charCount; charIndex++) {
-                int c = value.charAt(charIndex);
-                if (c > 127) {
-                    break;
-                }
-                buffer[position++] = (byte) c;
-            }
-            this.position = position;
-        }
-
-        if (charIndex < charCount) {
-            writeString_slow(value, charCount, charIndex);
-        }
+        writeUtf8(value, charCount);
     }
 
     /**
@@ -771,12 +757,9 @@ public class ByteBuffer2 {
                 return;
         }
 
-        if (this.capacity - this.position < charCount) {
-            writeAscii_slow(value, charCount);
-        } else {
-            value.getBytes(0, charCount, this.bytes, this.position);
-            this.position += charCount;
-        }
+        reserve(charCount);
+        value.getBytes(0, charCount, this.bytes, this.position);
+        this.position += charCount;
 
         this.bytes[this.position - 1] |= 0x80; // Bit 8 means end of ASCII.
     }
@@ -788,28 +771,28 @@ public class ByteBuffer2 {
     private void writeUtf8Length(int value) {
 
         if (value >>> 6 == 0) {
-            require(1);
+            reserve(1);
             this.bytes[this.position++] = (byte) (value | 0x80); // Set bit 8.
         } else if (value >>> 13 == 0) {
-            require(2);
+            reserve(2);
             byte[] buffer = this.bytes;
             buffer[this.position++] = (byte) (value | 0x40 | 0x80); // Set bit 7 and 8.
             buffer[this.position++] = (byte) (value >>> 6);
         } else if (value >>> 20 == 0) {
-            require(3);
+            reserve(3);
             byte[] buffer = this.bytes;
             buffer[this.position++] = (byte) (value | 0x40 | 0x80); // Set bit 7 and 8.
             buffer[this.position++] = (byte) (value >>> 6 | 0x80); // Set bit 8.
             buffer[this.position++] = (byte) (value >>> 13);
         } else if (value >>> 27 == 0) {
-            require(4);
+            reserve(4);
             byte[] buffer = this.bytes;
             buffer[this.position++] = (byte) (value | 0x40 | 0x80); // Set bit 7 and 8.
             buffer[this.position++] = (byte) (value >>> 6 | 0x80); // Set bit 8.
             buffer[this.position++] = (byte) (value >>> 13 | 0x80); // Set bit 8.
             buffer[this.position++] = (byte) (value >>> 20);
         } else {
-            require(5);
+            reserve(5);
             byte[] buffer = this.bytes;
             buffer[this.position++] = (byte) (value | 0x40 | 0x80); // Set bit 7 and 8.
             buffer[this.position++] = (byte) (value >>> 6 | 0x80); // Set bit 8.
@@ -819,48 +802,61 @@ public class ByteBuffer2 {
         }
     }
 
-    private void writeString_slow(CharSequence value, int charCount, int charIndex) {
-        byte[] buffer = this.bytes;
-        for (; charIndex < charCount; charIndex++) {
-            if (this.position == this.capacity) {
-                require(Math.min(this.capacity, charCount - charIndex));
-                buffer = this.bytes;
+    /**
+     * Checks 8 chars at a time (the chars are OR'ed together, so there is only one branch for every 8 chars).
+     */
+    private static boolean isAscii(String value, int charCount) {
+        int i = 0;
+        for (int n = charCount - 7; i < n; i += 8) {
+            if ((value.charAt(i) | value.charAt(i + 1) | value.charAt(i + 2) | value.charAt(i + 3) |
+                 value.charAt(i + 4) | value.charAt(i + 5) | value.charAt(i + 6) | value.charAt(i + 7)) > 127) {
+                return false;
+            }
+        }
+        for (; i < charCount; i++) {
+            if (value.charAt(i) > 127) {
+                return false;
             }
+        }
+        return true;
+    }
 
-            int c = value.charAt(charIndex);
-            if (c <= 0x007F) {
-                this.bytes[this.position++] = (byte) c;
-            } else if (c > 0x07FF) {
-                buffer[this.position++] = (byte) (0xE0 | c >> 12 & 0x0F);
-                require(2);
-
-                buffer = this.bytes;
-                buffer[this.position++] = (byte) (0x80 | c >> 6 & 0x3F);
-                buffer[this.position++] = (byte) (0x80 | c & 0x3F);
-            } else {
-                buffer[this.position++] = (byte) (0xC0 | c >> 6 & 0x1F);
-                require(1);
-                buffer = this.bytes;
-                buffer[this.position++] = (byte) (0x80 | c & 0x3F);
+    private void writeUtf8(CharSequence value, int charCount) {
+        if (this.capacity - this.position < charCount * 3L) {
+            // not every char is guaranteed to fit (a char is at most 3 bytes), so count the exact size and grow the buffer once
+            int byteCount = charCount;
+            for (int charIndex = 0; charIndex < charCount; charIndex++) {
+                int c = value.charAt(charIndex);
+                if (c > 0x007F) {
+                    byteCount += c > 0x07FF ? 2 : 1;
+                }
             }
+            reserve(byteCount);
         }
+
+        writeUtf8_fast(value, charCount);
     }
 
-    @SuppressWarnings("deprecation")
-    private void writeAscii_slow(String value, int charCount) {
+    private void writeUtf8_fast(CharSequence value, int charCount) {
         byte[] buffer = this.bytes;
-        int charIndex = 0;
-        int charsToWrite = Math.min(charCount, this.capacity - this.position);
+        int position = this.position;
 
-        while (charIndex < charCount) {
-            value.getBytes(charIndex, charIndex + charsToWrite, buffer, this.position);
-            charIndex += charsToWrite;
-            this.position += charsToWrite;
-            charsToWrite = Math.min(charCount - charIndex, this.capacity);
-            if (require(charsToWrite)) {
-                buffer = this.bytes;
+        for (int charIndex = 0; charIndex < charCount; charIndex++) {
+            int c = value.charAt(charIndex);
+            if (c <= 0x007F) {
+                buffer[position++] = (byte) c;
+            } else if (c <= 0x07FF) {
+                // Latin-1 (and the rest of the 2 byte chars)
+                buffer[position++] = (byte) (0xC0 | c >> 6 & 0x1F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
+            } else {
+                buffer[position++] = (byte) (0xE0 | c >> 12 & 0x0F);
+                buffer[position++] = (byte) (0x80 | c >> 6 & 0x3F);
+                buffer[position++] = (byte) (0x80 | c & 0x3F);
             }
         }
+
+        this.position = position;
     }
 
     /**
@@ -871,6 +867,10 @@ public class ByteBuffer2 {
      * @return May be null.
      */
     public String readString() {
+        if (this.stringPool != null) {
+            return readString_pooled();
+        }
+
         int available = this.capacity - this.position;
 
         int b = this.bytes[this.position++];
@@ -956,6 +956,15 @@ public class ByteBuffer2 {
         int spaceAvailable = this.capacity - this.position;
         int count = Math.min(spaceAvailable, charCount);
 
+        // 8 at a time, while all 8 are ASCII
+        while (charIndex + 8 <= count && isAscii8(buffer, position)) {
+            for (int i = 0; i < 8; i++) {
+                chars[charIndex + i] = (char) buffer[position + i];
+            }
+            charIndex += 8;
+            position += 8;
+        }
+
         int b;
         while (charIndex < count) {
             b = buffer[position++];
@@ -973,6 +982,34 @@ public class ByteBuffer2 {
         }
     }
 
+    /**
+     * @return true if all 8 bytes at the position are ASCII (the bytes are OR'ed together, so there is only one branch)
+     */
+    private static boolean isAscii8(byte[] buffer, int position) {
+        return (buffer[position] | buffer[position + 1] | buffer[position + 2] | buffer[position + 3] |
+                buffer[position + 4] | buffer[position + 5] | buffer[position + 6] | buffer[position + 7]) >= 0;
+    }
+
+    /**
+     * Finds the end of an ASCII string, which is the first byte with bit 8 set. Scans 8 bytes at a time.
+     *
+     * @return the index after the last byte of the string, or -1 if the string does not end before the capacity
+     */
+    private int asciiEnd(int position) {
+        byte[] buffer = this.bytes;
+        int limit = this.capacity;
+
+        for (int n = limit - 8; position <= n && isAscii8(buffer, position); ) {
+            position += 8;
+        }
+        while (position < limit) {
+            if (buffer[position++] < 0) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
     private void readUtf8_slow(int charCount, int charIndex) {
         char[] chars = this.chars;
         byte[] buffer = this.bytes;
@@ -1004,17 +1041,12 @@ public class ByteBuffer2 {
 
     private String readAscii() {
         byte[] buffer = this.bytes;
-        int end = this.position;
-        int start = end - 1;
-        int limit = this.capacity;
-        int b;
+        int start = this.position - 1;
 
-        do {
-            if (end == limit) {
-                return readAscii_slow();
-            }
-            b = buffer[end++];
-        } while ((b & 0x80) == 0);
+        int end = asciiEnd(this.position);
+        if (end < 0) {
+            return new String(this.chars, 0, readAscii_slow());
+        }
 
         buffer[end - 1] &= 0x7F; // Mask end of ascii bit.
 
@@ -1026,7 +1058,36 @@ public class ByteBuffer2 {
         return value;
     }
 
-    private String readAscii_slow() {
+    /**
+     * Reads the ASCII chars into {@link #chars}. The first byte has already been read.
+     *
+     * @return the number of chars
+     */
+    private int readAsciiChars() {
+        byte[] buffer = this.bytes;
+        int start = this.position - 1;
+
+        int end = asciiEnd(this.position);
+        if (end < 0) {
+            return readAscii_slow();
+        }
+
+        int charCount = end - start;
+        if (this.chars.length < charCount) {
+            this.chars = new char[charCount * 2];
+        }
+
+        char[] chars = this.chars;
+        for (int i = 0; i < charCount; i++) {
+            chars[i] = (char) buffer[start + i];
+        }
+        chars[charCount - 1] &= 0x7F; // Mask end of ascii bit.
+
+        this.position = end;
+        return charCount;
+    }
+
+    private int readAscii_slow() {
         this.position--; // Re-read the first byte.
 
         // Copy chars currently in buffer.
@@ -1058,7 +1119,7 @@ public class ByteBuffer2 {
             chars[charCount++] = (char) b;
         }
 
-        return new String(chars, 0, charCount);
+        return charCount;
     }
 
     /**
@@ -1095,6 +1156,115 @@ public class ByteBuffer2 {
         return builder;
     }
 
+    /**
+     * Reads the length and string of UTF8 characters into the array, without allocating. This can read strings written by
+     * {@link ByteBuffer2#writeString(String)} , {@link ByteBuffer2#writeString(CharSequence)}, and
+     * {@link ByteBuffer2#writeAscii(String)}.
+     *
+     * @return the number of chars, or -1 if the string was null
+     *
+     * @throws IndexOutOfBoundsException if the string does not fit into the array. The position is not changed.
+     */
+    public int readString(char[] chars, int offset) {
+        int start = this.position;
+        int charCount = readChars();
+
+        if (charCount > chars.length - offset) {
+            this.position = start;
+            throw new IndexOutOfBoundsException("The string (" + charCount + " chars) does not fit into the array at offset " + offset);
+        }
+
+        if (charCount > 0) {
+            System.arraycopy(this.chars, 0, chars, offset, charCount);
+        }
+        return charCount;
+    }
+
+    /**
+     * Reads the length and string of UTF8 characters, and appends the string to the builder. This does not allocate, unless the
+     * builder has to grow. This can read strings written by {@link ByteBuffer2#writeString(String)} ,
+     * {@link ByteBuffer2#writeString(CharSequence)}, and {@link ByteBuffer2#writeAscii(String)}.
+     *
+     * @return false if the string was null
+     */
+    public boolean readString(StringBuilder builder) {
+        int charCount = readChars();
+        if (charCount < 0) {
+            return false;
+        }
+
+        builder.append(this.chars, 0, charCount);
+        return true;
+    }
+
+    /**
+     * Reads the length and string of UTF8 characters into the char buffer, without allocating. This can read strings written by
+     * {@link ByteBuffer2#writeString(String)} , {@link ByteBuffer2#writeString(CharSequence)}, and
+     * {@link ByteBuffer2#writeAscii(String)}.
+     *
+     * @return false if the string was null
+     *
+     * @throws BufferOverflowException if the string does not fit into the char buffer. The position is not changed.
+     */
+    public boolean readString(CharBuffer buffer) {
+        int start = this.position;
+        int charCount = readChars();
+        if (charCount < 0) {
+            return false;
+        }
+
+        if (buffer.remaining() < charCount) {
+            this.position = start;
+            throw new BufferOverflowException();
+        }
+
+        buffer.put(this.chars, 0, charCount);
+        return true;
+    }
+
+    /**
+     * Reads the next string into {@link #chars}.
+     *
+     * @return the number of chars, or -1 if the string was null
+     */
+    private int readChars() {
+        int available = this.capacity - this.position;
+
+        int b = this.bytes[this.position++];
+        if ((b & 0x80) == 0) {
+            return readAsciiChars(); // ASCII.
+        }
+
+        // Null, empty, or UTF8.
+        int charCount = available >= 5 ? readUtf8Length(b) : readUtf8Length_slow(b);
+        if (charCount == 0) {
+            return -1;
+        }
+        charCount--;
+
+        if (this.chars.length < charCount) {
+            this.chars = new char[charCount];
+        }
+
+        readUtf8(charCount);
+        return charCount;
+    }
+
+    private String readString_pooled() {
+        int charCount = readChars();
+        switch (charCount) {
+            case -1 :
+                return null;
+            case 0 :
+                return "";
+        }
+
+        if (charCount <= this.stringPoolMaxLength) {
+            return this.stringPool.intern(this.chars, 0, charCount);
+        }
+        return new String(this.chars, 0, charCount);
+    }
+
 
    // float
 
@@ -1150,7 +1320,7 @@ public class ByteBuffer2 {
      * Writes a 2 byte short. Uses BIG_ENDIAN byte order.
      */
     public void writeShort(int value) {
-        require(2);
+        reserve(2);
         byte[] buffer = this.bytes;
         buffer[this.position++] = (byte) (value >>> 8);
         buffer[this.position++] = (byte) value;
@@ -1194,7 +1364,7 @@ public class ByteBuffer2 {
      * Writes an 8 byte long. Uses BIG_ENDIAN byte order.
      */
     public void writeLong(long value) {
-        require(8);
+        reserve(8);
 
         byte[] buffer = this.bytes;
         buffer[this.position++] = (byte) (value >>> 56);
@@ -1232,19 +1402,28 @@ public class ByteBuffer2 {
             value = value << 1 ^ value >> 63;
         }
         if (value >>> 7 == 0) {
-            require(1);
+            reserve(1);
             this.bytes[this.position++] = (byte) value;
             return 1;
         }
+
+        return writeVarLong_slow(value);
+    }
+
+    /**
+     * Writes the (already zig-zag encoded, if necessary) 2-9 byte value. This is kept out of line, so that the common 1 byte case
+     * can be inlined.
+     */
+    private int writeVarLong_slow(long value) {
         if (value >>> 14 == 0) {
-            require(2);
+            reserve(2);
             byte[] buffer = this.bytes;
             buffer[this.position++] = (byte) (value & 0x7F | 0x80);
             buffer[this.position++] = (byte) (value >>> 7);
             return 2;
         }
         if (value >>> 21 == 0) {
-            require(3);
+            reserve(3);
             byte[] buffer = this.bytes;
             buffer[this.position++] = (byte) (value & 0x7F | 0x80);
             buffer[this.position++] = (byte) (value >>> 7 | 0x80);
@@ -1252,7 +1431,7 @@ public class ByteBuffer2 {
             return 3;
         }
         if (value >>> 28 == 0) {
-            require(4);
+            reserve(4);
             byte[] buffer = this.bytes;
             buffer[this.position++] = (byte) (value & 0x7F | 0x80);
             buffer[this.position++] = (byte) (value >>> 7 | 0x80);
@@ -1261,7 +1440,7 @@ public class ByteBuffer2 {
             return 4;
         }
         if (value >>> 35 == 0) {
-            require(5);
+            reserve(5);
             byte[] buffer = this.bytes;
             buffer[this.position++] = (byte) (value & 0x7F | 0x80);
             buffer[this.position++] = (byte) (value >>> 7 | 0x80);
@@ -1271,7 +1450,7 @@ public class ByteBuffer2 {
             return 5;
         }
         if (value >>> 42 == 0) {
-            require(6);
+            reserve(6);
             byte[] buffer = this.bytes;
             buffer[this.position++] = (byte) (value & 0x7F | 0x80);
             buffer[this.position++] = (byte) (value >>> 7 | 0x80);
@@ -1282,7 +1461,7 @@ public class ByteBuffer2 {
             return 6;
         }
         if (value >>> 49 == 0) {
-            require(7);
+            reserve(7);
             byte[] buffer = this.bytes;
             buffer[this.position++] = (byte) (value & 0x7F | 0x80);
             buffer[this.position++] = (byte) (value >>> 7 | 0x80);
@@ -1294,7 +1473,7 @@ public class ByteBuffer2 {
             return 7;
         }
         if (value >>> 56 == 0) {
-            require(8);
+            reserve(8);
             byte[] buffer = this.bytes;
             buffer[this.position++] = (byte) (value & 0x7F | 0x80);
             buffer[this.position++] = (byte) (value >>> 7 | 0x80);
@@ -1307,7 +1486,7 @@ public class ByteBuffer2 {
             return 8;
         }
 
-        require(9);
+        reserve(9);
         byte[] buffer = this.bytes;
         buffer[this.position++] = (byte) (value & 0x7F | 0x80);
         buffer[this.position++] = (byte) (value >>> 7 | 0x80);
@@ -1517,39 +1696,31 @@ public class ByteBuffer2 {
             return readLong_slow(optimizePositive);
         }
 
-        int b = this.bytes[this.position++];
-        long result = b & 0x7F;
-        if ((b & 0x80) != 0) {
-            byte[] buffer = this.bytes;
-            b = buffer[this.position++];
-            result |= (b & 0x7F) << 7;
-            if ((b & 0x80) != 0) {
-                b = buffer[this.position++];
-                result |= (b & 0x7F) << 14;
-                if ((b & 0x80) != 0) {
-                    b = buffer[this.position++];
-                    result |= (b & 0x7F) << 21;
-                    if ((b & 0x80) != 0) {
-                        b = buffer[this.position++];
-                        result |= (long) (b & 0x7F) << 28;
-                        if ((b & 0x80) != 0) {
-                            b = buffer[this.position++];
-                            result |= (long) (b & 0x7F) << 35;
-                            if ((b & 0x80) != 0) {
-                                b = buffer[this.position++];
-                                result |= (long) (b & 0x7F) << 42;
-                                if ((b & 0x80) != 0) {
-                                    b = buffer[this.position++];
-                                    result |= (long) (b & 0x7F) << 49;
-                                    if ((b & 0x80) != 0) {
-                                        b = buffer[this.position++];
-                                        result |= (long) b << 56;
-                                    }
-                                }
-                            }
-                        }
-                    }
+        byte[] buffer = this.bytes;
+        int position = this.position;
+
+        long result = buffer[position];
+        if (result >= 0) {
+            this.position = position + 1;
+        }
+        else {
+            int b = buffer[position + 1];
+            if (b >= 0) {
+                result = result & 0x7F | (long) b << 7;
+                this.position = position + 2;
+            }
+            else {
+                // 3-9 bytes. Find the last byte of (up to) the first 8 at once, instead of one byte at a time
+                long word = VarIntSwar.getLongLE(buffer, position);
+                int length = VarIntSwar.length(word);
+
+                if (length == 9) {
+                    result = VarIntSwar.decode(word, 8) | (long) buffer[position + 8] << 56;
                 }
+                else {
+                    result = VarIntSwar.decode(word, length);
+                }
+                this.position = position + length;
             }
         }
 
@@ -1611,7 +1782,7 @@ public class ByteBuffer2 {
      * Writes a 1 byte boolean.
      */
     public void writeBoolean(boolean value) {
-        require(1);
+        reserve(1);
         this.bytes[this.position++] = (byte) (value ? 1 : 0);
     }
 
@@ -1635,7 +1806,7 @@ public class ByteBuffer2 {
      * Writes a 2 byte char. Uses BIG_ENDIAN byte order.
      */
     public void writeChar(char value) {
-        require(2);
+        reserve(2);
         byte[] buffer = this.bytes;
         buffer[this.position++] = (byte) (value >>> 8);
         buffer[this.position++] = (byte) value;
@@ -1812,9 +1983,11 @@ public class ByteBuffer2 {
      * Bulk output of an int array.
      */
     public void writeInts(int[] object) {
-        for (int i = 0, n = object.length; i < n; i++) {
-            writeInt(object[i]);
-        }
+        int count = object.length << 2;
+        reserve(count);
+
+        BigEndian.Int_.toBytes(object, this.bytes, this.position);
+        this.position += count;
     }
 
     /**
@@ -1832,9 +2005,11 @@ public class ByteBuffer2 {
      * Bulk output of an long array.
      */
     public void writeLongs(long[] object) {
-        for (int i = 0, n = object.length; i < n; i++) {
-            writeLong(object[i]);
-        }
+        int count = object.length << 3;
+        reserve(count);
+
+        BigEndian.Long_.toBytes(object, this.bytes, this.position);
+        this.position += count;
     }
 
     /**
@@ -1852,9 +2027,19 @@ public class ByteBuffer2 {
      * Bulk output of a float array.
      */
     public void writeFloats(float[] object) {
+        reserve(object.length << 2);
+
+        // floatToIntBits (not the raw bits), the same as writeFloat()
+        byte[] buffer = this.bytes;
+        int position = this.position;
         for (int i = 0, n = object.length; i < n; i++) {
-            writeFloat(object[i]);
+            int value = Float.floatToIntBits(object[i]);
+            buffer[position++] = (byte) (value >> 24);
+            buffer[position++] = (byte) (value >> 16);
+            buffer[position++] = (byte) (value >> 8);
+            buffer[position++] = (byte) value;
         }
+        this.position = position;
     }
 
     /**
@@ -1872,9 +2057,11 @@ public class ByteBuffer2 {
      * Bulk output of a short array.
      */
     public void writeShorts(short[] object) {
-        for (int i = 0, n = object.length; i < n; i++) {
-            writeShort(object[i]);
-        }
+        int count = object.length << 1;
+        reserve(count);
+
+        BigEndian.Short_.toBytes(object, this.bytes, this.position);
+        this.position += count;
     }
 
     /**
@@ -1892,9 +2079,16 @@ public class ByteBuffer2 {
      * Bulk output of a char array.
      */
     public void writeChars(char[] object) {
+        reserve(object.length << 1);
+
+        byte[] buffer = this.bytes;
+        int position = this.position;
         for (int i = 0, n = object.length; i < n; i++) {
-            writeChar(object[i]);
+            char value = object[i];
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
         }
+        this.position = position;
     }
 
     /**
@@ -1912,9 +2106,23 @@ public class ByteBuffer2 {
      * Bulk output of a double array.
      */
     public void writeDoubles(double[] object) {
+        reserve(object.length << 3);
+
+        // doubleToLongBits (not the raw bits), the same as writeDouble()
+        byte[] buffer = this.bytes;
+        int position = this.position;
         for (int i = 0, n = object.length; i < n; i++) {
-            writeDouble(object[i]);
+            long value = Double.doubleToLongBits(object[i]);
+            buffer[position++] = (byte) (value >>> 56);
+            buffer[position++] = (byte) (value >>> 48);
+            buffer[position++] = (byte) (value >>> 40);
+            buffer[position++] = (byte) (value >>> 32);
+            buffer[position++] = (byte) (value >>> 24);
+            buffer[position++] = (byte) (value >>> 16);
+            buffer[position++] = (byte) (value >>> 8);
+            buffer[position++] = (byte) value;
         }
+        this.position = position;
     }
 
     /**
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.bytes;
+
+import dorkbox.util.collections.SizeClassPool;
+
+/**
+ * A {@link SizeClassPool} of {@link ByteBuffer2}, where the capacity is the size of the backing byte array. Obtained buffers have a
+ * position of 0 and can grow without limit. A buffer that grew while it was in use is returned to the size class of its new capacity,
+ * so the larger backing array is reused instead of being allocated (and copied into) again.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public
+class ByteBuffer2Pool extends SizeClassPool<ByteBuffer2> {
+    /**
+     * Creates a pool for buffers with a capacity from 256 bytes to 1 MB, caching 8 buffers per size class per thread, and 32 globally.
+     */
+    public
+    ByteBuffer2Pool() {
+        this(256, 1024 * 1024, 8, 32);
+    }
+
+    /**
+     * @see SizeClassPool#SizeClassPool(int, int, int, int)
+     */
+    public
+    ByteBuffer2Pool(final int minCapacity, final int maxCapacity, final int threadCacheSize, final int globalCacheSize) {
+        super(minCapacity, maxCapacity, threadCacheSize, globalCacheSize);
+    }
+
+    @Override
+    protected
+    ByteBuffer2 create(final int capacity) {
+        return new ByteBuffer2(capacity, -1);
+    }
+
+    @Override
+    protected
+    int capacity(final ByteBuffer2 buffer) {
+        return buffer.capacity();
+    }
+
+    @Override
+    protected
+    void reset(final ByteBuffer2 buffer) {
+        // also removes any maximum size that was set while it was in use
+        buffer.setBuffer(buffer.getBuffer(), -1);
+    }
+}
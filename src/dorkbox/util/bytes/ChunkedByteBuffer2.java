@@ -0,0 +1,269 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.bytes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+
+import dorkbox.util.MathUtil;
+
+/**
+ * A self-growing version of {@link ByteBuffer2} that is made of fixed size chunks (a rope), instead of a single byte array. It has the
+ * same read/write API and wire format, so data written by one can be read by the other.
+ * <p>
+ * When the buffer grows, a new chunk is appended and nothing is copied, so writing very large messages does not copy the message
+ * over and over again, and does not (temporarily) need twice the memory. Reads walk the chunks transparently, and values that
+ * cross the boundary between two chunks are handled byte-by-byte.
+ * <p>
+ * {@link #writeTo(OutputStream)} and {@link #writeTo(GatheringByteChannel)} write the chunks directly, without first consolidating
+ * them into a single array.
+ * <p>
+ * Encoding of integers: BIG_ENDIAN is used for storing fixed native size integer values LITTLE_ENDIAN is used for a variable
+ * length encoding of integer values
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class ChunkedByteBuffer2 extends AbstractByteBuffer2 {
+    private final int chunkSize;
+    private final int chunkShift;
+    private final int chunkMask;
+
+    private byte[][] chunks = new byte[4][];
+    private int chunkCount;
+
+    /**
+     * Creates a new object for writing to a chunked buffer, that can grow without limit.
+     *
+     * @param chunkSize
+     *            The size of each chunk. This is rounded up to the next power of two.
+     */
+    public ChunkedByteBuffer2(int chunkSize) {
+        this(chunkSize, -1);
+    }
+
+    /**
+     * Creates a new object for writing to a chunked buffer.
+     *
+     * @param chunkSize
+     *            The size of each chunk. This is rounded up to the next power of two.
+     * @param maxBufferSize
+     *            The buffer is grown as needed until it exceeds maxBufferSize and an exception is thrown. Can be -1
+     *            for no maximum.
+     */
+    public ChunkedByteBuffer2(int chunkSize, int maxBufferSize) {
+        if (chunkSize < 16) {
+            throw new IllegalArgumentException("chunkSize cannot be < 16: " + chunkSize);
+        }
+        if (maxBufferSize < -1) {
+            throw new IllegalArgumentException("maxBufferSize cannot be < -1: " + maxBufferSize);
+        }
+
+        this.chunkSize = MathUtil.nextPowerOfTwo(chunkSize);
+        this.chunkShift = Integer.numberOfTrailingZeros(this.chunkSize);
+        this.chunkMask = this.chunkSize - 1;
+        this.maxCapacity = maxBufferSize == -1 ? Integer.MAX_VALUE : maxBufferSize;
+
+        addChunk();
+    }
+
+    /**
+     * Returns the size of each chunk.
+     */
+    public int chunkSize() {
+        return this.chunkSize;
+    }
+
+    /**
+     * Returns the number of chunks that have been allocated.
+     */
+    public int chunkCount() {
+        return this.chunkCount;
+    }
+
+    /**
+     * Writes the bytes between {@link #flushed()} and {@link #position()} to the stream, one chunk at a time. Afterwards, all of the
+     * bytes are flushed.
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        int position = this.flushed;
+        while (position < this.position) {
+            int offset = position & this.chunkMask;
+            int length = Math.min(this.position - position, this.chunkSize - offset);
+            outputStream.write(this.chunks[position >>> this.chunkShift], offset, length);
+            position += length;
+        }
+        this.flushed = position;
+    }
+
+    /**
+     * Writes the bytes between {@link #flushed()} and {@link #position()} to the channel, with as few (gathering) writes as possible.
+     * This will block until all of the bytes are written if the channel is blocking, otherwise it writes as many bytes as the
+     * channel will accept, and the next call continues where this one stopped.
+     *
+     * @return the number of bytes that were written
+     */
+    public long writeTo(GatheringByteChannel channel) throws IOException {
+        int start = this.flushed;
+        if (start >= this.position) {
+            return 0;
+        }
+
+        int first = start >>> this.chunkShift;
+        int count = ((this.position + this.chunkMask) >>> this.chunkShift) - first;
+
+        ByteBuffer[] views = new ByteBuffer[count];
+        for (int i = 0, position = start; i < count; i++) {
+            int offset = position & this.chunkMask;
+            int length = Math.min(this.position - position, this.chunkSize - offset);
+            views[i] = ByteBuffer.wrap(this.chunks[first + i], offset, length);
+            position += length;
+        }
+
+        long total = 0;
+        int index = 0;
+        while (index < count) {
+            long written = channel.write(views, index, count - index);
+            if (written <= 0) {
+                break;
+            }
+            total += written;
+
+            while (index < count && !views[index].hasRemaining()) {
+                index++;
+            }
+        }
+
+        this.flushed = start + (int) total;
+        return total;
+    }
+
+    /**
+     * Sets the position to zero, and write 0 to all bytes in the buffer
+     */
+    public void clearSecure() {
+        clear();
+        for (int i = 0; i < this.chunkCount; i++) {
+            Arrays.fill(this.chunks[i], (byte) 0);
+        }
+    }
+
+    /**
+     * Sets the position to zero, and releases all but the first chunk.
+     */
+    public void trim() {
+        clear();
+        for (int i = 1; i < this.chunkCount; i++) {
+            this.chunks[i] = null;
+        }
+        this.chunkCount = 1;
+        this.capacity = Math.min(this.chunkSize, this.maxCapacity);
+    }
+
+    @Override
+    void grow(int minCapacity) {
+        // Nothing is copied, new chunks are appended.
+        while (this.capacity < minCapacity) {
+            addChunk();
+        }
+    }
+
+    private void addChunk() {
+        if (this.chunkCount == this.chunks.length) {
+            // only the (small) array of references is copied
+            this.chunks = Arrays.copyOf(this.chunks, this.chunkCount << 1);
+        }
+
+        this.chunks[this.chunkCount++] = new byte[this.chunkSize];
+        this.capacity = (int) Math.min((long) this.chunkCount << this.chunkShift, this.maxCapacity);
+    }
+
+    @Override
+    byte get(int position) {
+        return this.chunks[position >>> this.chunkShift][position & this.chunkMask];
+    }
+
+    @Override
+    void put(int position, byte value) {
+        this.chunks[position >>> this.chunkShift][position & this.chunkMask] = value;
+    }
+
+    @Override
+    void get(int position, byte[] bytes, int offset, int count) {
+        while (count > 0) {
+            int chunkOffset = position & this.chunkMask;
+            int length = Math.min(count, this.chunkSize - chunkOffset);
+
+            System.arraycopy(this.chunks[position >>> this.chunkShift], chunkOffset, bytes, offset, length);
+
+            position += length;
+            offset += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    void put(int position, byte[] bytes, int offset, int count) {
+        while (count > 0) {
+            int chunkOffset = position & this.chunkMask;
+            int length = Math.min(count, this.chunkSize - chunkOffset);
+
+            System.arraycopy(bytes, offset, this.chunks[position >>> this.chunkShift], chunkOffset, length);
+
+            position += length;
+            offset += length;
+            count -= length;
+        }
+    }
+
+    @Override
+    void putFixed(int position, long value, int length) {
+        int offset = position & this.chunkMask;
+        if (offset <= this.chunkSize - length) {
+            byte[] chunk = this.chunks[position >>> this.chunkShift];
+            for (int i = offset + length - 1; i >= offset; i--) {
+                chunk[i] = (byte) value;
+                value >>>= 8;
+            }
+        }
+        else {
+            // crosses into the next chunk
+            super.putFixed(position, value, length);
+        }
+    }
+
+    @Override
+    long getFixed(int position, int length) {
+        int offset = position & this.chunkMask;
+        if (offset <= this.chunkSize - length) {
+            long value = 0;
+            byte[] chunk = this.chunks[position >>> this.chunkShift];
+            for (int i = offset, n = offset + length; i < n; i++) {
+                value = value << 8 | chunk[i] & 0xFF;
+            }
+            return value;
+        }
+
+        // crosses into the next chunk
+        return super.getFixed(position, length);
+    }
+
+    @Override
+    public String toString() {
+        return "ChunkedByteBuffer2 (position=" + this.position + ", capacity=" + this.capacity + ", chunks=" + this.chunkCount + ")";
+    }
+}
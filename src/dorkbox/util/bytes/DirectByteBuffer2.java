@@ -0,0 +1,430 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.bytes;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A self-growing, off-heap version of {@link ByteBuffer2}, backed by a direct {@link ByteBuffer}. It has the same read/write API and
+ * wire format, so data written by one can be read by the other.
+ * <p>
+ * Because the memory is off-heap, the data can be written to (or read from) NIO channels without first being copied into a temporary
+ * direct buffer by the JVM. Multiple buffers can be written with a single gathering write with
+ * {@link #writeTo(GatheringByteChannel, DirectByteBuffer2...)}.
+ * <p>
+ * The backing buffers are obtained from a {@link DirectByteBufferPool}, and when the buffer grows, the old backing buffer is returned to
+ * the pool. Call {@link #release()} when this buffer is no longer used, to return the backing buffer to the pool. Buffers that are
+ * passed in with {@link #setBuffer(ByteBuffer, int)} belong to the caller, and are never returned to the pool.
+ * <p>
+ * Encoding of integers: BIG_ENDIAN is used for storing fixed native size integer values LITTLE_ENDIAN is used for a variable
+ * length encoding of integer values
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class DirectByteBuffer2 extends AbstractByteBuffer2 {
+    private final DirectByteBufferPool pool;
+
+    private ByteBuffer buffer; // the backing buffer. Only absolute get/put are used, so its position and limit do not matter.
+    private boolean owned; // true if the backing buffer was obtained from the pool (and so must be returned to it)
+
+    /**
+     * Creates a new object for writing to an off-heap buffer, that can grow without limit.
+     *
+     * @param bufferSize
+     *            The initial size of the buffer.
+     */
+    public DirectByteBuffer2(int bufferSize) {
+        this(bufferSize, -1, DirectByteBufferPool.SHARED);
+    }
+
+    /**
+     * Creates a new object for writing to an off-heap buffer.
+     *
+     * @param bufferSize
+     *            The initial size of the buffer.
+     * @param maxBufferSize
+     *            The buffer is grown as needed until it exceeds maxBufferSize and an exception is thrown. Can be -1
+     *            for no maximum.
+     */
+    public DirectByteBuffer2(int bufferSize, int maxBufferSize) {
+        this(bufferSize, maxBufferSize, DirectByteBufferPool.SHARED);
+    }
+
+    /**
+     * Creates a new object for writing to an off-heap buffer.
+     *
+     * @param bufferSize
+     *            The initial size of the buffer.
+     * @param maxBufferSize
+     *            The buffer is grown as needed until it exceeds maxBufferSize and an exception is thrown. Can be -1
+     *            for no maximum.
+     * @param pool
+     *            The pool that the backing buffers are obtained from (and returned to). If null, buffers are not pooled.
+     */
+    public DirectByteBuffer2(int bufferSize, int maxBufferSize, DirectByteBufferPool pool) {
+        if (maxBufferSize < -1) {
+            throw new IllegalArgumentException("maxBufferSize cannot be < -1: " + maxBufferSize);
+        }
+
+        this.pool = pool;
+        this.maxCapacity = maxBufferSize == -1 ? Integer.MAX_VALUE : maxBufferSize;
+        this.buffer = allocate(bufferSize);
+        this.capacity = Math.min(this.buffer.capacity(), this.maxCapacity);
+    }
+
+    /**
+     * Creates a new object that reads/writes the specified direct buffer (from 0 to its capacity). The buffer is not pooled.
+     */
+    public DirectByteBuffer2(ByteBuffer buffer) {
+        this.pool = null;
+        setBuffer(buffer, buffer.capacity());
+    }
+
+    /**
+     * Obtains a new backing buffer, which is owned by this object from now on.
+     */
+    private ByteBuffer allocate(int size) {
+        ByteBuffer buffer;
+        if (this.pool != null) {
+            buffer = this.pool.obtain(size);
+        }
+        else {
+            buffer = ByteBuffer.allocateDirect(size);
+        }
+
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        this.owned = true;
+        return buffer;
+    }
+
+    /**
+     * Sets the buffer that will be written to. The position is reset, discarding any buffered bytes. The previous buffer is returned
+     * to the pool (if it came from the pool). The new buffer still belongs to the caller, and is not returned to the pool by
+     * {@link #release()}.
+     *
+     * @param maxBufferSize
+     *            The buffer is grown as needed until it exceeds maxBufferSize and an exception is thrown. Can be -1
+     *            for no maximum.
+     */
+    public void setBuffer(ByteBuffer buffer, int maxBufferSize) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer cannot be null.");
+        }
+
+        if (maxBufferSize < -1) {
+            throw new IllegalArgumentException("maxBufferSize cannot be < -1: " + maxBufferSize);
+        }
+
+        release();
+
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+
+        this.buffer = buffer;
+        this.owned = false;
+        this.maxCapacity = maxBufferSize == -1 ? Integer.MAX_VALUE : maxBufferSize;
+        this.capacity = Math.min(buffer.capacity(), this.maxCapacity);
+        clear();
+    }
+
+    /**
+     * Returns the backing buffer to the pool (if it came from the pool). This object must not be used afterwards (unless
+     * {@link #setBuffer(ByteBuffer, int)} is called).
+     */
+    public void release() {
+        ByteBuffer buffer = this.buffer;
+        if (buffer != null) {
+            this.buffer = null;
+            this.capacity = 0;
+            clear();
+
+            if (this.owned && this.pool != null) {
+                this.pool.free(buffer);
+            }
+        }
+    }
+
+    /**
+     * Returns the backing buffer. The bytes between zero and {@link #position()} are the data that has been written. The position and
+     * limit of the returned buffer are undefined.
+     */
+    public ByteBuffer getByteBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Returns a new view of the bytes between zero and {@link #position()}, which shares the memory of this buffer.
+     */
+    public ByteBuffer toByteBuffer() {
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(0);
+        view.limit(this.position);
+        return view;
+    }
+
+    /**
+     * Sets the position to zero, and write 0 to all bytes in the buffer
+     */
+    public void clearSecure() {
+        clear();
+        ByteBuffer buffer = this.buffer;
+
+        int i = 0;
+        for (int n = this.capacity - 7; i < n; i += 8) {
+            buffer.putLong(i, 0L);
+        }
+        for (; i < this.capacity; i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    @Override
+    void grow(int minCapacity) {
+        long newCapacity = Math.max(minCapacity, (long) (this.capacity * 1.6D));
+        newCapacity = Math.min(newCapacity, this.maxCapacity);
+
+        ByteBuffer oldBuffer = this.buffer;
+        boolean oldOwned = this.owned;
+        ByteBuffer newBuffer = allocate((int) newCapacity);
+
+        // copy what has been written so far (this is a native memory copy)
+        oldBuffer.position(0);
+        oldBuffer.limit(this.position);
+        newBuffer.clear();
+        newBuffer.put(oldBuffer);
+        oldBuffer.clear();
+
+        if (oldOwned && this.pool != null) {
+            this.pool.free(oldBuffer);
+        }
+
+        this.buffer = newBuffer;
+        this.capacity = Math.min(newBuffer.capacity(), this.maxCapacity);
+    }
+
+    // channels
+
+    /**
+     * Writes the bytes between {@link #flushed()} and {@link #position()} to the channel. This will block until all of the bytes are
+     * written if the channel is blocking, otherwise it writes as many bytes as the channel will accept, and the next call continues
+     * where this one stopped.
+     *
+     * @return the number of bytes that were written
+     */
+    public int writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = this.buffer;
+        buffer.limit(this.position);
+        buffer.position(this.flushed);
+
+        int total = 0;
+        try {
+            while (buffer.hasRemaining()) {
+                int written = channel.write(buffer);
+                if (written <= 0) {
+                    break;
+                }
+                total += written;
+            }
+        } finally {
+            this.flushed = buffer.position();
+            buffer.clear();
+        }
+
+        return total;
+    }
+
+    /**
+     * Writes the bytes between {@link #flushed()} and {@link #position()} of every buffer to the channel, with as few (gathering)
+     * writes as possible. This will block until all of the bytes are written if the channel is blocking, otherwise it writes as many
+     * bytes as the channel will accept, and the next call continues where this one stopped.
+     *
+     * @return the number of bytes that were written
+     */
+    public static long writeTo(GatheringByteChannel channel, DirectByteBuffer2... buffers) throws IOException {
+        int count = buffers.length;
+        ByteBuffer[] views = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            DirectByteBuffer2 buffer = buffers[i];
+            ByteBuffer view = buffer.buffer.duplicate();
+            view.limit(buffer.position);
+            view.position(buffer.flushed);
+            views[i] = view;
+        }
+
+        long total = 0;
+        int first = 0;
+        try {
+            while (first < count && !views[first].hasRemaining()) {
+                first++;
+            }
+
+            while (first < count) {
+                long written = channel.write(views, first, count - first);
+                if (written <= 0) {
+                    break;
+                }
+                total += written;
+
+                while (first < count && !views[first].hasRemaining()) {
+                    first++;
+                }
+            }
+        } finally {
+            for (int i = 0; i < count; i++) {
+                buffers[i].flushed = views[i].position();
+            }
+        }
+
+        return total;
+    }
+
+    /**
+     * Reads exactly this many bytes from the channel into the buffer at the current position, growing the buffer if necessary. The
+     * position is advanced past the bytes.
+     *
+     * @throws EOFException if the end of the channel was reached first
+     */
+    public void readFrom(ReadableByteChannel channel, int length) throws IOException {
+        reserve(length);
+
+        ByteBuffer buffer = this.buffer;
+        buffer.limit(this.position + length);
+        buffer.position(this.position);
+
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("End of channel reached with " + buffer.remaining() + " bytes remaining.");
+                }
+            }
+        } finally {
+            buffer.clear();
+        }
+
+        this.position += length;
+    }
+
+    /**
+     * Fills the remaining space (from the position to the capacity) of every buffer from the channel, with as few (scattering) reads
+     * as possible. The position of each buffer is advanced past the bytes that were read into it.
+     *
+     * @return the number of bytes that were read, or -1 if the end of the channel was reached before anything was read
+     */
+    public static long readFrom(ScatteringByteChannel channel, DirectByteBuffer2... buffers) throws IOException {
+        int count = buffers.length;
+        ByteBuffer[] views = new ByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            DirectByteBuffer2 buffer = buffers[i];
+            ByteBuffer view = buffer.buffer.duplicate();
+            view.limit(buffer.capacity);
+            view.position(buffer.position);
+            views[i] = view;
+        }
+
+        long total = 0;
+        int first = 0;
+        while (first < count) {
+            long read = channel.read(views, first, count - first);
+            if (read < 0) {
+                if (total == 0) {
+                    total = -1;
+                }
+                break;
+            }
+            if (read == 0) {
+                break;
+            }
+            total += read;
+
+            while (first < count && !views[first].hasRemaining()) {
+                first++;
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            buffers[i].position = views[i].position();
+        }
+
+        return total;
+    }
+
+    @Override
+    byte get(int position) {
+        return this.buffer.get(position);
+    }
+
+    @Override
+    void put(int position, byte value) {
+        this.buffer.put(position, value);
+    }
+
+    @Override
+    void get(int position, byte[] bytes, int offset, int count) {
+        ByteBuffer buffer = this.buffer;
+        buffer.position(position);
+        buffer.get(bytes, offset, count);
+        buffer.clear();
+    }
+
+    @Override
+    void put(int position, byte[] bytes, int offset, int count) {
+        ByteBuffer buffer = this.buffer;
+        buffer.position(position);
+        buffer.put(bytes, offset, count);
+        buffer.clear();
+    }
+
+    @Override
+    short getShort(int position) {
+        return this.buffer.getShort(position);
+    }
+
+    @Override
+    void putShort(int position, short value) {
+        this.buffer.putShort(position, value);
+    }
+
+    @Override
+    int getInt(int position) {
+        return this.buffer.getInt(position);
+    }
+
+    @Override
+    void putInt(int position, int value) {
+        this.buffer.putInt(position, value);
+    }
+
+    @Override
+    long getLong(int position) {
+        return this.buffer.getLong(position);
+    }
+
+    @Override
+    void putLong(int position, long value) {
+        this.buffer.putLong(position, value);
+    }
+
+    @Override
+    public String toString() {
+        return "DirectByteBuffer2 (position=" + this.position + ", capacity=" + this.capacity + ")";
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.bytes;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import dorkbox.util.collections.SizeClassPool;
+
+/**
+ * A {@link SizeClassPool} of direct (off-heap) {@link ByteBuffer}, which are expensive to allocate and are only released by the GC.
+ * Obtained buffers are cleared and use BIG_ENDIAN byte order.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public
+class DirectByteBufferPool extends SizeClassPool<ByteBuffer> {
+    /**
+     * The pool that is used by {@link DirectByteBuffer2} when no pool is specified. It uses the (small) default sizes, so buffers that
+     * are larger than 1 MB are never pooled. Create a separate pool for anything that needs to cache more or larger buffers.
+     */
+    public static final DirectByteBufferPool SHARED = new DirectByteBufferPool();
+
+    /**
+     * Creates a pool for buffers with a capacity from 4 KB to 1 MB, caching 2 buffers per size class per thread, and 4 globally.
+     * <p>
+     * Cached buffers are off-heap memory that stays reachable (and counts against -XX:MaxDirectMemorySize). With these sizes, at
+     * most about 4 MB is cached per thread, and about 8 MB globally.
+     */
+    public
+    DirectByteBufferPool() {
+        this(4096, 1024 * 1024, 2, 4);
+    }
+
+    /**
+     * @see SizeClassPool#SizeClassPool(int, int, int, int)
+     */
+    public
+    DirectByteBufferPool(final int minCapacity, final int maxCapacity, final int threadCacheSize, final int globalCacheSize) {
+        super(minCapacity, maxCapacity, threadCacheSize, globalCacheSize);
+    }
+
+    @Override
+    protected
+    ByteBuffer create(final int capacity) {
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    @Override
+    protected
+    int capacity(final ByteBuffer buffer) {
+        return buffer.capacity();
+    }
+
+    @Override
+    protected
+    void reset(final ByteBuffer buffer) {
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+    }
+}
@@ -0,0 +1,435 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.bytes;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import dorkbox.util.Property;
+
+/**
+ * A concurrent pool of canonical {@link ByteArrayWrapper} and String instances, so that identical keys are only stored in memory once.
+ * <p>
+ * Lookups are lock-free, and do not allocate if the value is already in the pool: the hash is calculated directly from the byte[]
+ * (using the same hash as {@link ByteArrayWrapper#hashCode()}) or char[] range, and the bytes are compared in-place against the canonical instances. Only a miss will allocate (and copy) the new
+ * canonical instance, which is then added while holding the lock for one of the segments of the pool.
+ * <p>
+ * The pool either holds the canonical instances with weak references (so they are removed once nothing else references them), or it
+ * holds them strongly, and evicts the oldest instances once there are more than the maximum size.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final
+class InternPool {
+    /**
+     * The number of independently locked segments in a pool. Must be a power of two.
+     */
+    @Property
+    public static int SEGMENTS = 16;
+
+    private static final float LOAD_FACTOR = 0.75F;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    // > 0 when the pool is bounded, otherwise the pool uses weak references
+    private final int maxSizePerSegment;
+
+    /**
+     * Creates a pool that holds the canonical instances with weak references.
+     */
+    public
+    InternPool() {
+        this(0);
+    }
+
+    /**
+     * Creates a pool that holds the canonical instances strongly, and evicts the oldest instances when the pool is full.
+     *
+     * @param maxSize the (approximate) maximum number of instances in the pool. If 0, weak references are used instead.
+     */
+    public
+    InternPool(final int maxSize) {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must be >= 0: " + maxSize);
+        }
+
+        int segmentCount = SEGMENTS;
+        if (segmentCount < 1 || (segmentCount & (segmentCount - 1)) != 0) {
+            throw new IllegalArgumentException("SEGMENTS must be a power of two: " + segmentCount);
+        }
+
+        this.segmentMask = segmentCount - 1;
+        this.maxSizePerSegment = maxSize == 0 ? 0 : Math.max(1, maxSize / segmentCount);
+
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(maxSizePerSegment == 0);
+        }
+    }
+
+    /**
+     * @return the canonical wrapper for these bytes. If they are not in the pool, they are copied.
+     */
+    public
+    ByteArrayWrapper intern(final byte[] bytes) {
+        return intern(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return the canonical wrapper for this range of bytes. If they are not in the pool, they are copied.
+     */
+    public
+    ByteArrayWrapper intern(final byte[] bytes, final int offset, final int length) {
+        return (ByteArrayWrapper) intern(ByteArrayWrapper.hashCode(bytes, offset, length), bytes, offset, length, null);
+    }
+
+    /**
+     * @return the canonical wrapper that is equal to this wrapper. If there is none, this wrapper (NOT a copy) becomes the canonical
+     *         wrapper.
+     */
+    public
+    ByteArrayWrapper intern(final ByteArrayWrapper wrapper) {
+        byte[] bytes = wrapper.getBytes();
+        return (ByteArrayWrapper) intern(wrapper.hashCode(), bytes, 0, bytes.length, wrapper);
+    }
+
+    /**
+     * @return the canonical byte array that is equal to these bytes. If they are not in the pool, they are copied.
+     */
+    public
+    byte[] internBytes(final byte[] bytes) {
+        return intern(bytes, 0, bytes.length).getBytes();
+    }
+
+    /**
+     * @return the canonical string that is equal to this string. If there is none, this string becomes the canonical string.
+     */
+    public
+    String intern(final String string) {
+        return (String) intern(string.hashCode(), string, 0, string.length(), string);
+    }
+
+    /**
+     * @return the canonical string for this range of chars. A new string is only created if it is not in the pool.
+     */
+    public
+    String intern(final char[] chars, final int offset, final int length) {
+        // identical to String.hashCode()
+        int hash = 0;
+        for (int i = offset, n = offset + length; i < n; i++) {
+            hash = 31 * hash + chars[i];
+        }
+
+        return (String) intern(hash, chars, offset, length, null);
+    }
+
+    /**
+     * @return the approximate number of instances in the pool (this includes weak instances that have not been removed yet)
+     */
+    public
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.count;
+        }
+        return size;
+    }
+
+    /**
+     * Removes all of the instances from the pool.
+     */
+    public
+    void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private
+    Object intern(int hash, final Object source, final int offset, final int length, final Object canonical) {
+        hash = spread(hash);
+        Segment segment = segments[(hash >>> 24) & segmentMask];
+
+        // lock-free (and allocation free) lookup
+        Object value = segment.find(hash, source, offset, length);
+        if (value != null) {
+            return value;
+        }
+
+        return segment.add(hash, source, offset, length, canonical, maxSizePerSegment);
+    }
+
+    // spread the bits, so that the segment (high bits) and bucket (low bits) are both well distributed
+    static
+    int spread(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    static
+    boolean matches(final Object value, final Object source, final int offset, final int length) {
+        if (source instanceof byte[]) {
+            if (!(value instanceof ByteArrayWrapper)) {
+                return false;
+            }
+
+            byte[] bytes = (byte[]) source;
+            byte[] other = ((ByteArrayWrapper) value).getBytes();
+            if (other.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (other[i] != bytes[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        if (!(value instanceof String)) {
+            return false;
+        }
+
+        if (source instanceof String) {
+            return value.equals(source);
+        }
+
+        char[] chars = (char[]) source;
+        String other = (String) value;
+        if (other.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (other.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static
+    Object create(final Object source, final int offset, final int length) {
+        if (source instanceof byte[]) {
+            return ByteArrayWrapper.wrap(Arrays.copyOfRange((byte[]) source, offset, offset + length));
+        }
+        return new String((char[]) source, offset, length);
+    }
+
+
+    // immutable, so that readers can traverse the chain without locking
+    private static final
+    class Node {
+        final int hash;
+        final Object value; // either the canonical instance, or a WeakValue
+        final Node next;
+
+        Node(final int hash, final Object value, final Node next) {
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+
+        Object get() {
+            if (value instanceof WeakValue) {
+                return ((WeakValue) value).get();
+            }
+            return value;
+        }
+    }
+
+
+    private static final
+    class WeakValue extends WeakReference<Object> {
+        final int hash;
+
+        WeakValue(final Object referent, final int hash, final ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = hash;
+        }
+    }
+
+
+    private static final
+    class Segment {
+        private volatile AtomicReferenceArray<Node> table = new AtomicReferenceArray<Node>(16);
+
+        // only modified while holding the lock
+        volatile int count;
+        private int threshold = (int) (16 * LOAD_FACTOR);
+
+        private final ReferenceQueue<Object> queue;
+        private final ArrayDeque<Object> insertionOrder;
+
+        Segment(final boolean weak) {
+            if (weak) {
+                queue = new ReferenceQueue<Object>();
+                insertionOrder = null;
+            }
+            else {
+                queue = null;
+                insertionOrder = new ArrayDeque<Object>();
+            }
+        }
+
+        Object find(final int hash, final Object source, final int offset, final int length) {
+            AtomicReferenceArray<Node> table = this.table;
+            Node node = table.get(hash & (table.length() - 1));
+
+            while (node != null) {
+                if (node.hash == hash) {
+                    Object value = node.get();
+                    if (value != null && matches(value, source, offset, length)) {
+                        return value;
+                    }
+                }
+                node = node.next;
+            }
+            return null;
+        }
+
+        synchronized
+        Object add(final int hash, final Object source, final int offset, final int length, Object canonical, final int maxSize) {
+            // another thread might have added it while we were waiting for the lock
+            Object value = find(hash, source, offset, length);
+            if (value != null) {
+                return value;
+            }
+
+            if (queue != null) {
+                expungeStaleValues();
+            }
+
+            if (canonical == null) {
+                canonical = create(source, offset, length);
+            }
+
+            if (count >= threshold) {
+                resize();
+            }
+
+            AtomicReferenceArray<Node> table = this.table;
+            int index = hash & (table.length() - 1);
+
+            Object nodeValue = queue != null ? new WeakValue(canonical, hash, queue) : canonical;
+            table.set(index, new Node(hash, nodeValue, table.get(index)));
+            count++;
+
+            if (insertionOrder != null) {
+                insertionOrder.addLast(canonical);
+                if (count > maxSize) {
+                    // the hash of a canonical instance is always the same as the hash of the bytes/chars that created it
+                    Object oldest = insertionOrder.pollFirst();
+                    removeNode(spread(oldest.hashCode()), oldest);
+                }
+            }
+
+            return canonical;
+        }
+
+        // must be called while holding the lock
+        private
+        void expungeStaleValues() {
+            Object reference;
+            while ((reference = queue.poll()) != null) {
+                removeNode(((WeakValue) reference).hash, reference);
+            }
+        }
+
+        /**
+         * Removes the node that has this value (by identity). The nodes before it in the chain are copied, so that readers always see a
+         * consistent chain.
+         * <p>
+         * must be called while holding the lock
+         */
+        private
+        void removeNode(final int hash, final Object value) {
+            AtomicReferenceArray<Node> table = this.table;
+            int index = hash & (table.length() - 1);
+
+            Node head = table.get(index);
+            Node node = head;
+            while (node != null && node.value != value) {
+                node = node.next;
+            }
+
+            if (node == null) {
+                return;
+            }
+
+            Node newHead = node.next;
+            for (Node copy = head; copy != node; copy = copy.next) {
+                newHead = new Node(copy.hash, copy.value, newHead);
+            }
+
+            table.set(index, newHead);
+            count--;
+        }
+
+        // must be called while holding the lock
+        private
+        void resize() {
+            AtomicReferenceArray<Node> oldTable = this.table;
+            int oldLength = oldTable.length();
+            if (oldLength >= 1 << 30) {
+                return;
+            }
+
+            int newLength = oldLength << 1;
+            AtomicReferenceArray<Node> newTable = new AtomicReferenceArray<Node>(newLength);
+            int newCount = 0;
+
+            for (int i = 0; i < oldLength; i++) {
+                for (Node node = oldTable.get(i); node != null; node = node.next) {
+                    if (node.get() == null) {
+                        // weak value that has already been collected
+                        continue;
+                    }
+
+                    int index = node.hash & (newLength - 1);
+                    newTable.lazySet(index, new Node(node.hash, node.value, newTable.get(index)));
+                    newCount++;
+                }
+            }
+
+            count = newCount;
+            threshold = (int) (newLength * LOAD_FACTOR);
+
+            // the volatile write publishes the new table (and all of the lazySet nodes)
+            this.table = newTable;
+        }
+
+        synchronized
+        void clear() {
+            AtomicReferenceArray<Node> newTable = new AtomicReferenceArray<Node>(16);
+            threshold = (int) (16 * LOAD_FACTOR);
+            count = 0;
+
+            if (insertionOrder != null) {
+                insertionOrder.clear();
+            }
+            if (queue != null) {
+                while (queue.poll() != null) {
+                    // drain
+                }
+            }
+
+            this.table = newTable;
+        }
+    }
+}
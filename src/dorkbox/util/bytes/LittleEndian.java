@@ -19,6 +19,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
 
 /**
  * This is intel/amd/arm arch!
@@ -255,6 +261,46 @@ class LittleEndian {
             bytes[0] = (byte) (x >> 0);
         }
 
+        /**
+         * Converts all of the shorts to bytes, starting at the offset in the byte array.
+         */
+        public static
+        void toBytes(final short[] src, final byte[] bytes, final int offset) {
+            toBytes(src, 0, src.length, bytes, offset);
+        }
+
+        /**
+         * Converts the shorts to bytes, starting at the offset in the byte array. This uses a {@link ShortBuffer} view of the byte array,
+         * which is converted in bulk instead of one value at a time.
+         */
+        public static
+        void toBytes(final short[] src, final int srcOffset, final int length, final byte[] bytes, final int offset) {
+            ByteBuffer.wrap(bytes, offset, length * 2)
+                      .order(ByteOrder.LITTLE_ENDIAN)
+                      .asShortBuffer()
+                      .put(src, srcOffset, length);
+        }
+
+        /**
+         * Converts bytes to shorts, starting at the offset in the byte array, until the destination array is full.
+         */
+        public static
+        void from(final byte[] bytes, final int offset, final short[] dst) {
+            from(bytes, offset, dst, 0, dst.length);
+        }
+
+        /**
+         * Converts bytes to shorts, starting at the offset in the byte array. This uses a {@link ShortBuffer} view of the byte array, which
+         * is converted in bulk instead of one value at a time.
+         */
+        public static
+        void from(final byte[] bytes, final int offset, final short[] dst, final int dstOffset, final int length) {
+            ByteBuffer.wrap(bytes, offset, length * 2)
+                      .order(ByteOrder.LITTLE_ENDIAN)
+                      .asShortBuffer()
+                      .get(dst, dstOffset, length);
+        }
+
         private
         Short_() {
         }
@@ -423,6 +469,46 @@ class LittleEndian {
             bytes[0] = (byte) (x >> 0);
         }
 
+        /**
+         * Converts all of the ints to bytes, starting at the offset in the byte array.
+         */
+        public static
+        void toBytes(final int[] src, final byte[] bytes, final int offset) {
+            toBytes(src, 0, src.length, bytes, offset);
+        }
+
+        /**
+         * Converts the ints to bytes, starting at the offset in the byte array. This uses a {@link IntBuffer} view of the byte array,
+         * which is converted in bulk instead of one value at a time.
+         */
+        public static
+        void toBytes(final int[] src, final int srcOffset, final int length, final byte[] bytes, final int offset) {
+            ByteBuffer.wrap(bytes, offset, length * 4)
+                      .order(ByteOrder.LITTLE_ENDIAN)
+                      .asIntBuffer()
+                      .put(src, srcOffset, length);
+        }
+
+        /**
+         * Converts bytes to ints, starting at the offset in the byte array, until the destination array is full.
+         */
+        public static
+        void from(final byte[] bytes, final int offset, final int[] dst) {
+            from(bytes, offset, dst, 0, dst.length);
+        }
+
+        /**
+         * Converts bytes to ints, starting at the offset in the byte array. This uses a {@link IntBuffer} view of the byte array, which
+         * is converted in bulk instead of one value at a time.
+         */
+        public static
+        void from(final byte[] bytes, final int offset, final int[] dst, final int dstOffset, final int length) {
+            ByteBuffer.wrap(bytes, offset, length * 4)
+                      .order(ByteOrder.LITTLE_ENDIAN)
+                      .asIntBuffer()
+                      .get(dst, dstOffset, length);
+        }
+
         private
         Int_() {
         }
@@ -647,6 +733,46 @@ class LittleEndian {
             bytes[0] = (byte) (x >> 0);
         }
 
+        /**
+         * Converts all of the longs to bytes, starting at the offset in the byte array.
+         */
+        public static
+        void toBytes(final long[] src, final byte[] bytes, final int offset) {
+            toBytes(src, 0, src.length, bytes, offset);
+        }
+
+        /**
+         * Converts the longs to bytes, starting at the offset in the byte array. This uses a {@link LongBuffer} view of the byte array,
+         * which is converted in bulk instead of one value at a time.
+         */
+        public static
+        void toBytes(final long[] src, final int srcOffset, final int length, final byte[] bytes, final int offset) {
+            ByteBuffer.wrap(bytes, offset, length * 8)
+                      .order(ByteOrder.LITTLE_ENDIAN)
+                      .asLongBuffer()
+                      .put(src, srcOffset, length);
+        }
+
+        /**
+         * Converts bytes to longs, starting at the offset in the byte array, until the destination array is full.
+         */
+        public static
+        void from(final byte[] bytes, final int offset, final long[] dst) {
+            from(bytes, offset, dst, 0, dst.length);
+        }
+
+        /**
+         * Converts bytes to longs, starting at the offset in the byte array. This uses a {@link LongBuffer} view of the byte array, which
+         * is converted in bulk instead of one value at a time.
+         */
+        public static
+        void from(final byte[] bytes, final int offset, final long[] dst, final int dstOffset, final int length) {
+            ByteBuffer.wrap(bytes, offset, length * 8)
+                      .order(ByteOrder.LITTLE_ENDIAN)
+                      .asLongBuffer()
+                      .get(dst, dstOffset, length);
+        }
+
         private
         Long_() {
         }
@@ -765,5 +891,176 @@ class LittleEndian {
         ULong_() {
         }
     }
+
+    /**
+     * FLOAT to and from bytes
+     */
+    public static final
+    class Float_ {
+        public static
+        float from(final byte[] bytes, final int offset) {
+            return Float.intBitsToFloat(Int_.from(bytes, offset, 4));
+        }
+
+        public static
+        float from(final byte[] bytes) {
+            return Float.intBitsToFloat(Int_.from(bytes));
+        }
+
+        public static
+        float from(final ByteBuffer buff) {
+            return Float.intBitsToFloat(Int_.from(buff));
+        }
+
+        public static
+        float from(final InputStream inputStream) throws IOException {
+            return Float.intBitsToFloat(Int_.from(inputStream));
+        }
+
+        public static
+        byte[] toBytes(final float x) {
+            return Int_.toBytes(Float.floatToRawIntBits(x));
+        }
+
+        public static
+        void toBytes(final float x, final byte[] bytes, final int offset) {
+            Int_.toBytes(Float.floatToRawIntBits(x), bytes, offset);
+        }
+
+        public static
+        void toBytes(final float x, final byte[] bytes) {
+            Int_.toBytes(Float.floatToRawIntBits(x), bytes);
+        }
+
+        /**
+         * Converts all of the floats to bytes, starting at the offset in the byte array.
+         */
+        public static
+        void toBytes(final float[] src, final byte[] bytes, final int offset) {
+            toBytes(src, 0, src.length, bytes, offset);
+        }
+
+        /**
+         * Converts the floats to bytes, starting at the offset in the byte array. This uses a {@link FloatBuffer} view of the byte array,
+         * which is converted in bulk instead of one value at a time.
+         */
+        public static
+        void toBytes(final float[] src, final int srcOffset, final int length, final byte[] bytes, final int offset) {
+            ByteBuffer.wrap(bytes, offset, length * 4)
+                      .order(ByteOrder.LITTLE_ENDIAN)
+                      .asFloatBuffer()
+                      .put(src, srcOffset, length);
+        }
+
+        /**
+         * Converts bytes to floats, starting at the offset in the byte array, until the destination array is full.
+         */
+        public static
+        void from(final byte[] bytes, final int offset, final float[] dst) {
+            from(bytes, offset, dst, 0, dst.length);
+        }
+
+        /**
+         * Converts bytes to floats, starting at the offset in the byte array. This uses a {@link FloatBuffer} view of the byte array, which
+         * is converted in bulk instead of one value at a time.
+         */
+        public static
+        void from(final byte[] bytes, final int offset, final float[] dst, final int dstOffset, final int length) {
+            ByteBuffer.wrap(bytes, offset, length * 4)
+                      .order(ByteOrder.LITTLE_ENDIAN)
+                      .asFloatBuffer()
+                      .get(dst, dstOffset, length);
+        }
+
+        private
+        Float_() {
+        }
+    }
+
+
+    /**
+     * DOUBLE to and from bytes
+     */
+    public static final
+    class Double_ {
+        public static
+        double from(final byte[] bytes, final int offset) {
+            return Double.longBitsToDouble(Long_.from(bytes, offset, 8));
+        }
+
+        public static
+        double from(final byte[] bytes) {
+            return Double.longBitsToDouble(Long_.from(bytes));
+        }
+
+        public static
+        double from(final ByteBuffer buff) {
+            return Double.longBitsToDouble(Long_.from(buff));
+        }
+
+        public static
+        double from(final InputStream inputStream) throws IOException {
+            return Double.longBitsToDouble(Long_.from(inputStream));
+        }
+
+        public static
+        byte[] toBytes(final double x) {
+            return Long_.toBytes(Double.doubleToRawLongBits(x));
+        }
+
+        public static
+        void toBytes(final double x, final byte[] bytes, final int offset) {
+            Long_.toBytes(Double.doubleToRawLongBits(x), bytes, offset);
+        }
+
+        public static
+        void toBytes(final double x, final byte[] bytes) {
+            Long_.toBytes(Double.doubleToRawLongBits(x), bytes);
+        }
+
+        /**
+         * Converts all of the doubles to bytes, starting at the offset in the byte array.
+         */
+        public static
+        void toBytes(final double[] src, final byte[] bytes, final int offset) {
+            toBytes(src, 0, src.length, bytes, offset);
+        }
+
+        /**
+         * Converts the doubles to bytes, starting at the offset in the byte array. This uses a {@link DoubleBuffer} view of the byte array,
+         * which is converted in bulk instead of one value at a time.
+         */
+        public static
+        void toBytes(final double[] src, final int srcOffset, final int length, final byte[] bytes, final int offset) {
+            ByteBuffer.wrap(bytes, offset, length * 8)
+                      .order(ByteOrder.LITTLE_ENDIAN)
+                      .asDoubleBuffer()
+                      .put(src, srcOffset, length);
+        }
+
+        /**
+         * Converts bytes to doubles, starting at the offset in the byte array, until the destination array is full.
+         */
+        public static
+        void from(final byte[] bytes, final int offset, final double[] dst) {
+            from(bytes, offset, dst, 0, dst.length);
+        }
+
+        /**
+         * Converts bytes to doubles, starting at the offset in the byte array. This uses a {@link DoubleBuffer} view of the byte array, which
+         * is converted in bulk instead of one value at a time.
+         */
+        public static
+        void from(final byte[] bytes, final int offset, final double[] dst, final int dstOffset, final int length) {
+            ByteBuffer.wrap(bytes, offset, length * 8)
+                      .order(ByteOrder.LITTLE_ENDIAN)
+                      .asDoubleBuffer()
+                      .get(dst, dstOffset, length);
+        }
+
+        private
+        Double_() {
+        }
+    }
 }
 
@@ -74,33 +74,18 @@ class OptimizeUtilsByteArray {
     @SuppressWarnings("SimplifiableIfStatement")
     public static
     boolean canReadInt(final byte[] buffer, int position) {
-        int length = buffer.length;
-
-        if (length >= 5) {
-            return true;
-        }
-        if ((buffer[position++] & 0x80) == 0) {
-            return true;
-        }
-        if (position == length) {
-            return false;
-        }
-        if ((buffer[position++] & 0x80) == 0) {
-            return true;
-        }
-        if (position == length) {
-            return false;
-        }
-        if ((buffer[position++] & 0x80) == 0) {
+        int limit = buffer.length;
+        if (limit - position >= 5) {
             return true;
         }
-        if (position == length) {
-            return false;
-        }
-        if ((buffer[position++] & 0x80) == 0) {
-            return true;
+
+        // near the end of the buffer, look for the last byte of the int
+        for (; position < limit; position++) {
+            if ((buffer[position] & 0x80) == 0) {
+                return true;
+            }
         }
-        return position != length;
+        return false;
     }
 
     /**
@@ -251,6 +236,43 @@ class OptimizeUtilsByteArray {
      */
     public static
     long readLong(final byte[] buffer, final boolean optimizePositive, int position) {
+        if (buffer.length - position < 9) {
+            return readLong_slow(buffer, optimizePositive, position);
+        }
+
+        long result = buffer[position];
+        if (result < 0) {
+            int b = buffer[position + 1];
+            if (b >= 0) {
+                result = result & 0x7F | (long) b << 7;
+            }
+            else {
+                // 3-9 bytes. Find the last byte of (up to) the first 8 at once, instead of one byte at a time
+                long word = VarIntSwar.getLongLE(buffer, position);
+                int length = VarIntSwar.length(word);
+
+                if (length == 9) {
+                    result = VarIntSwar.decode(word, 8) | (long) buffer[position + 8] << 56;
+                }
+                else {
+                    result = VarIntSwar.decode(word, length);
+                }
+            }
+        }
+
+        if (!optimizePositive) {
+            result = result >>> 1 ^ -(result & 1);
+        }
+        return result;
+    }
+
+    /**
+     * FROM KRYO
+     * <p>
+     * Reads a 1-9 byte long, one byte at a time. Used near the end of the buffer.
+     */
+    private static
+    long readLong_slow(final byte[] buffer, final boolean optimizePositive, int position) {
         int b = buffer[position++];
         long result = b & 0x7F;
         if ((b & 0x80) != 0) {
@@ -417,58 +439,17 @@ class OptimizeUtilsByteArray {
     private static
     boolean canReadLong(final byte[] buffer, int position) {
         int limit = buffer.length;
-
-        if (limit >= 9) {
-            return true;
-        }
-        if ((buffer[position++] & 0x80) == 0) {
-            return true;
-        }
-        if (position == limit) {
-            return false;
-        }
-        if ((buffer[position++] & 0x80) == 0) {
-            return true;
-        }
-        if (position == limit) {
-            return false;
-        }
-        if ((buffer[position++] & 0x80) == 0) {
-            return true;
-        }
-        if (position == limit) {
-            return false;
-        }
-        if ((buffer[position++] & 0x80) == 0) {
-            return true;
-        }
-        if (position == limit) {
-            return false;
-        }
-        if ((buffer[position++] & 0x80) == 0) {
-            return true;
-        }
-        if (position == limit) {
-            return false;
-        }
-        if ((buffer[position++] & 0x80) == 0) {
-            return true;
-        }
-        if (position == limit) {
-            return false;
-        }
-        if ((buffer[position++] & 0x80) == 0) {
-            return true;
-        }
-        if (position == limit) {
-            return false;
-        }
-        //noinspection SimplifiableIfStatement
-        if ((buffer[position++] & 0x80) == 0) {
+        if (limit - position >= 9) {
             return true;
         }
 
-        return position != limit;
+        // near the end of the buffer, look for the last byte of the long
+        for (; position < limit; position++) {
+            if ((buffer[position] & 0x80) == 0) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private
@@ -80,6 +80,12 @@ class OptimizeUtilsByteBuf {
      */
     public static
     int canReadInt(ByteBuf buffer) {
+        if (buffer.readableBytes() >= 8) {
+            // find the last byte of all 8 at once, instead of one byte at a time
+            // the 5th byte of an int is always the last one
+            return Math.min(VarIntSwar.length(buffer.getLongLE(buffer.readerIndex())), 5);
+        }
+
         int startIndex = buffer.readerIndex();
         try {
             int remaining = buffer.readableBytes();
@@ -108,6 +114,35 @@ class OptimizeUtilsByteBuf {
      */
     public static
     int readInt(ByteBuf buffer, boolean optimizePositive) {
+        if (buffer.readableBytes() < 8) {
+            return readInt_slow(buffer, optimizePositive);
+        }
+
+        int readerIndex = buffer.readerIndex();
+        int result = buffer.getByte(readerIndex);
+        if (result >= 0) {
+            // a single byte, which is the most common case
+            buffer.readerIndex(readerIndex + 1);
+        }
+        else {
+            // find the last byte of all 8 at once, instead of one byte at a time
+            long word = buffer.getLongLE(readerIndex);
+            int length = Math.min(VarIntSwar.length(word), 5);
+
+            result = (int) VarIntSwar.decode(word, length);
+            buffer.readerIndex(readerIndex + length);
+        }
+
+        return optimizePositive ? result : result >>> 1 ^ -(result & 1);
+    }
+
+    /**
+     * FROM KRYO
+     * <p>
+     * Reads an int from the buffer that was optimized, one byte at a time. Used near the end of the buffer.
+     */
+    private static
+    int readInt_slow(ByteBuf buffer, boolean optimizePositive) {
         int b = buffer.readByte();
         int result = b & 0x7F;
         if ((b & 0x80) != 0) {
@@ -145,6 +180,27 @@ class OptimizeUtilsByteBuf {
         if (!optimizePositive) {
             value = value << 1 ^ value >> 31;
         }
+
+        if (value >>> 14 != 0 && buffer.writableBytes() >= 8) {
+            // the bytes after the writer index are not readable, so all 8 bytes of the encoded value can be written at once
+            int length = VarIntSwar.intLength(value);
+            int writerIndex = buffer.writerIndex();
+
+            buffer.setLongLE(writerIndex, VarIntSwar.encode(value & 0xFFFFFFFFL, length));
+            buffer.writerIndex(writerIndex + length);
+            return length;
+        }
+
+        return writeInt_slow(buffer, value);
+    }
+
+    /**
+     * FROM KRYO
+     * <p>
+     * Writes the specified (already zig-zag encoded, if necessary) int to the buffer one byte at a time.
+     */
+    private static
+    int writeInt_slow(ByteBuf buffer, int value) {
         if (value >>> 7 == 0) {
             buffer.writeByte((byte) value);
             return 1;
@@ -227,6 +283,43 @@ class OptimizeUtilsByteBuf {
      */
     public static
     long readLong(ByteBuf buffer, boolean optimizePositive) {
+        if (buffer.readableBytes() < 9) {
+            return readLong_slow(buffer, optimizePositive);
+        }
+
+        int readerIndex = buffer.readerIndex();
+        long result = buffer.getByte(readerIndex);
+        if (result >= 0) {
+            // a single byte, which is the most common case
+            buffer.readerIndex(readerIndex + 1);
+        }
+        else {
+            // find the last byte of all 8 at once, instead of one byte at a time
+            long word = buffer.getLongLE(readerIndex);
+            int length = VarIntSwar.length(word);
+
+            if (length == 9) {
+                result = VarIntSwar.decode(word, 8) | (long) buffer.getByte(readerIndex + 8) << 56;
+            }
+            else {
+                result = VarIntSwar.decode(word, length);
+            }
+            buffer.readerIndex(readerIndex + length);
+        }
+
+        if (!optimizePositive) {
+            result = result >>> 1 ^ -(result & 1);
+        }
+        return result;
+    }
+
+    /**
+     * FROM KRYO
+     * <p>
+     * Reads a 1-9 byte long, one byte at a time. Used near the end of the buffer.
+     */
+    private static
+    long readLong_slow(ByteBuf buffer, boolean optimizePositive) {
         int b = buffer.readByte();
         long result = b & 0x7F;
         if ((b & 0x80) != 0) {
@@ -283,6 +376,27 @@ class OptimizeUtilsByteBuf {
         if (!optimizePositive) {
             value = value << 1 ^ value >> 63;
         }
+
+        if (value >>> 14 != 0 && value >>> 56 == 0 && buffer.writableBytes() >= 8) {
+            // the bytes after the writer index are not readable, so all 8 bytes of the encoded value can be written at once
+            int length = VarIntSwar.longLength(value);
+            int writerIndex = buffer.writerIndex();
+
+            buffer.setLongLE(writerIndex, VarIntSwar.encode(value, length));
+            buffer.writerIndex(writerIndex + length);
+            return length;
+        }
+
+        return writeLong_slow(buffer, value);
+    }
+
+    /**
+     * FROM KRYO
+     * <p>
+     * Writes the specified (already zig-zag encoded, if necessary) long to the buffer one byte at a time.
+     */
+    private static
+    int writeLong_slow(ByteBuf buffer, long value) {
         if (value >>> 7 == 0) {
             buffer.writeByte((byte) value);
             return 1;
@@ -364,6 +478,18 @@ class OptimizeUtilsByteBuf {
      */
     public static
     int canReadLong(ByteBuf buffer) {
+        int readableBytes = buffer.readableBytes();
+        if (readableBytes >= 8) {
+            // find the last byte of all 8 at once, instead of one byte at a time
+            int length = VarIntSwar.length(buffer.getLongLE(buffer.readerIndex()));
+            if (length <= 8) {
+                return length;
+            }
+
+            // the 9th byte of a long holds all 8 of the remaining bits, so it is always the last one
+            return readableBytes >= 9 ? 9 : 0;
+        }
+
         int position = buffer.readerIndex();
         try {
             int remaining = buffer.readableBytes();
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.bytes;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size array of <code>unsigned int</code> values, stored as a primitive <code>int[]</code>.
+ * <p>
+ * This is the mutable counterpart of {@link UInteger}: values are read, changed and compared in place, so there are no wrapper objects
+ * created for each operation (outside of the {@link UInteger} precache, every result would otherwise be a new object). Values are
+ * returned as a <code>long</code> between 0 and 2<sup>32</sup>-1. The arithmetic throws {@link NumberFormatException} when the result
+ * is out of range, the same as {@link UInteger}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public
+class UIntegerArray {
+    private final int[] values;
+
+    /**
+     * Creates an array of <code>size</code> values, all 0
+     */
+    public
+    UIntegerArray(final int size) {
+        this.values = new int[size];
+    }
+
+    /**
+     * Uses the specified array (not a copy) to store the values
+     */
+    public
+    UIntegerArray(final int[] values) {
+        this.values = values;
+    }
+
+    /**
+     * @return the number of values
+     */
+    public
+    int size() {
+        return this.values.length;
+    }
+
+    /**
+     * @return the backing array (not a copy)
+     */
+    public
+    int[] array() {
+        return this.values;
+    }
+
+    /**
+     * @return the value at <code>index</code>, between 0 and 2<sup>32</sup>-1
+     */
+    public
+    long get(final int index) {
+        return this.values[index] & UInteger.MAX_VALUE;
+    }
+
+    /**
+     * @return the raw bits of the value at <code>index</code>
+     */
+    public
+    int getRaw(final int index) {
+        return this.values[index];
+    }
+
+    /**
+     * @return the {@link UInteger} for the value at <code>index</code>
+     */
+    public
+    UInteger getUInteger(final int index) {
+        return UInteger.valueOf(this.values[index]);
+    }
+
+    /**
+     * Sets the value at <code>index</code> to the raw bits of <code>value</code>, i.e. <code>-1</code> becomes 2<sup>32</sup>-1
+     */
+    public
+    void set(final int index, final int value) {
+        this.values[index] = value;
+    }
+
+    /**
+     * Sets the value at <code>index</code>
+     *
+     * @throws NumberFormatException if <code>value</code> is not in the range of an <code>unsigned int</code>
+     */
+    public
+    void set(final int index, final long value) throws NumberFormatException {
+        this.values[index] = (int) rangeCheck(value);
+    }
+
+    /**
+     * Sets the value at <code>index</code>
+     */
+    public
+    void set(final int index, final UInteger value) {
+        this.values[index] = value.intValue();
+    }
+
+    /**
+     * Sets every value to the raw bits of <code>value</code>
+     */
+    public
+    void fill(final int value) {
+        Arrays.fill(this.values, value);
+    }
+
+    /**
+     * Adds <code>value</code> (which may be negative) to the value at <code>index</code>
+     *
+     * @return the new value
+     *
+     * @throws NumberFormatException if the result is not in the range of an <code>unsigned int</code>. The value is not changed.
+     */
+    public
+    long add(final int index, final long value) throws NumberFormatException {
+        final long result = rangeCheck(get(index) + value);
+        this.values[index] = (int) result;
+        return result;
+    }
+
+    /**
+     * Subtracts <code>value</code> (which may be negative) from the value at <code>index</code>
+     *
+     * @return the new value
+     *
+     * @throws NumberFormatException if the result is not in the range of an <code>unsigned int</code>. The value is not changed.
+     */
+    public
+    long subtract(final int index, final long value) throws NumberFormatException {
+        final long result = rangeCheck(get(index) - value);
+        this.values[index] = (int) result;
+        return result;
+    }
+
+    /**
+     * Divides the value at <code>index</code> by <code>divisor</code>
+     *
+     * @return the new value
+     *
+     * @throws NumberFormatException if <code>divisor</code> is not in the range of an <code>unsigned int</code>
+     * @throws ArithmeticException if <code>divisor</code> is 0
+     */
+    public
+    long divide(final int index, final long divisor) throws NumberFormatException {
+        final long result = get(index) / rangeCheck(divisor);
+        this.values[index] = (int) result;
+        return result;
+    }
+
+    /**
+     * @return the remainder of dividing the value at <code>index</code> by <code>divisor</code>. The value is not changed.
+     *
+     * @throws NumberFormatException if <code>divisor</code> is not in the range of an <code>unsigned int</code>
+     * @throws ArithmeticException if <code>divisor</code> is 0
+     */
+    public
+    long remainder(final int index, final long divisor) throws NumberFormatException {
+        return get(index) % rangeCheck(divisor);
+    }
+
+    /**
+     * @return a negative number, zero, or a positive number as the value at <code>index</code> is less than, equal to, or greater than
+     *         <code>value</code>
+     */
+    public
+    int compare(final int index, final long value) {
+        final long current = get(index);
+        return (current < value ? -1 : (current == value ? 0 : 1));
+    }
+
+    /**
+     * @return the decimal text of the value at <code>index</code>
+     */
+    public
+    String toString(final int index) {
+        return Long.toString(get(index));
+    }
+
+    /**
+     * Appends the decimal text of the value at <code>index</code>, without creating a string
+     */
+    public
+    StringBuilder append(final StringBuilder builder, final int index) {
+        return builder.append(get(index));
+    }
+
+    private static
+    long rangeCheck(final long value) throws NumberFormatException {
+        if (value < UInteger.MIN_VALUE || value > UInteger.MAX_VALUE) {
+            throw new NumberFormatException("Value is out of range : " + value);
+        }
+
+        return value;
+    }
+
+    @Override
+    public
+    String toString() {
+        final StringBuilder builder = new StringBuilder(this.values.length * 6 + 2);
+        builder.append('[');
+        for (int i = 0; i < this.values.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(get(i));
+        }
+        return builder.append(']')
+                      .toString();
+    }
+
+    @Override
+    public
+    int hashCode() {
+        return Arrays.hashCode(this.values);
+    }
+
+    @Override
+    public
+    boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof UIntegerArray)) {
+            return false;
+        }
+        return Arrays.equals(this.values, ((UIntegerArray) obj).values);
+    }
+}
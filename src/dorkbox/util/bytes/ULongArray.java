@@ -0,0 +1,242 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.bytes;
+
+import java.util.Arrays;
+
+/**
+ * A fixed size array of <code>unsigned long</code> values, stored as a primitive <code>long[]</code>.
+ * <p>
+ * This is the mutable counterpart of {@link ULong}: values are read, changed and compared in place, so there are no wrapper objects (and
+ * no {@link java.math.BigInteger}) created for each operation. Values are handled as their raw 64 bits, i.e. <code>-1L</code> is
+ * 2<sup>64</sup>-1. The arithmetic throws {@link NumberFormatException} when the result is out of range, the same as {@link ULong}.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public
+class ULongArray {
+    private final long[] values;
+
+    /**
+     * Creates an array of <code>size</code> values, all 0
+     */
+    public
+    ULongArray(final int size) {
+        this.values = new long[size];
+    }
+
+    /**
+     * Uses the specified array (not a copy) to store the values
+     */
+    public
+    ULongArray(final long[] values) {
+        this.values = values;
+    }
+
+    /**
+     * @return the number of values
+     */
+    public
+    int size() {
+        return this.values.length;
+    }
+
+    /**
+     * @return the backing array (not a copy)
+     */
+    public
+    long[] array() {
+        return this.values;
+    }
+
+    /**
+     * @return the raw bits of the value at <code>index</code>
+     */
+    public
+    long get(final int index) {
+        return this.values[index];
+    }
+
+    /**
+     * @return a new {@link ULong} for the value at <code>index</code>
+     */
+    public
+    ULong getULong(final int index) {
+        return ULong.valueOf(this.values[index]);
+    }
+
+    /**
+     * Sets the value at <code>index</code> to the raw bits of <code>value</code>
+     */
+    public
+    void set(final int index, final long value) {
+        this.values[index] = value;
+    }
+
+    /**
+     * Sets the value at <code>index</code>
+     */
+    public
+    void set(final int index, final ULong value) {
+        this.values[index] = value.longValue();
+    }
+
+    /**
+     * Sets every value to <code>value</code>
+     */
+    public
+    void fill(final long value) {
+        Arrays.fill(this.values, value);
+    }
+
+    /**
+     * Adds the unsigned <code>value</code> to the value at <code>index</code>
+     *
+     * @return the new value
+     *
+     * @throws NumberFormatException if the result is larger than 2<sup>64</sup>-1. The value is not changed.
+     */
+    public
+    long add(final int index, final long value) throws NumberFormatException {
+        final long current = this.values[index];
+        final long result = current + value;
+        if (Unsigned.compare(result, current) < 0) {
+            throw new NumberFormatException("Value is out of range : " + Unsigned.toString(current) + " + " + Unsigned.toString(value));
+        }
+
+        this.values[index] = result;
+        return result;
+    }
+
+    /**
+     * Subtracts the unsigned <code>value</code> from the value at <code>index</code>
+     *
+     * @return the new value
+     *
+     * @throws NumberFormatException if the result is less than 0. The value is not changed.
+     */
+    public
+    long subtract(final int index, final long value) throws NumberFormatException {
+        final long current = this.values[index];
+        if (Unsigned.compare(current, value) < 0) {
+            throw new NumberFormatException("Value is out of range : " + Unsigned.toString(current) + " - " + Unsigned.toString(value));
+        }
+
+        final long result = current - value;
+        this.values[index] = result;
+        return result;
+    }
+
+    /**
+     * Multiplies the value at <code>index</code> by the unsigned <code>value</code>
+     *
+     * @return the new value
+     *
+     * @throws NumberFormatException if the result is larger than 2<sup>64</sup>-1. The value is not changed.
+     */
+    public
+    long multiply(final int index, final long value) throws NumberFormatException {
+        final long current = this.values[index];
+        final long result = current * value;
+        if (current != 0 && Unsigned.divide(result, current) != value) {
+            throw new NumberFormatException("Value is out of range : " + Unsigned.toString(current) + " * " + Unsigned.toString(value));
+        }
+
+        this.values[index] = result;
+        return result;
+    }
+
+    /**
+     * Divides the value at <code>index</code> by the unsigned <code>divisor</code>
+     *
+     * @return the new value
+     *
+     * @throws ArithmeticException if <code>divisor</code> is 0
+     */
+    public
+    long divide(final int index, final long divisor) {
+        final long result = Unsigned.divide(this.values[index], divisor);
+        this.values[index] = result;
+        return result;
+    }
+
+    /**
+     * @return the remainder of dividing the value at <code>index</code> by the unsigned <code>divisor</code>. The value is not changed.
+     *
+     * @throws ArithmeticException if <code>divisor</code> is 0
+     */
+    public
+    long remainder(final int index, final long divisor) {
+        return Unsigned.remainder(this.values[index], divisor);
+    }
+
+    /**
+     * @return a negative number, zero, or a positive number as the value at <code>index</code> is less than, equal to, or greater than
+     *         the unsigned <code>value</code>
+     */
+    public
+    int compare(final int index, final long value) {
+        return Unsigned.compare(this.values[index], value);
+    }
+
+    /**
+     * @return the decimal text of the value at <code>index</code>
+     */
+    public
+    String toString(final int index) {
+        return Unsigned.toString(this.values[index]);
+    }
+
+    /**
+     * Appends the decimal text of the value at <code>index</code>, without creating a string
+     */
+    public
+    StringBuilder append(final StringBuilder builder, final int index) {
+        return Unsigned.append(builder, this.values[index]);
+    }
+
+    @Override
+    public
+    String toString() {
+        final StringBuilder builder = new StringBuilder(this.values.length * 8 + 2);
+        builder.append('[');
+        for (int i = 0; i < this.values.length; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            Unsigned.append(builder, this.values[i]);
+        }
+        return builder.append(']')
+                      .toString();
+    }
+
+    @Override
+    public
+    int hashCode() {
+        return Arrays.hashCode(this.values);
+    }
+
+    @Override
+    public
+    boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ULongArray)) {
+            return false;
+        }
+        return Arrays.equals(this.values, ((ULongArray) obj).values);
+    }
+}
@@ -20,9 +20,12 @@ import java.math.BigInteger;
 /**
  * A utility class for static access to unsigned number functionality.
  * <p>
- * It essentially contains factory methods for unsigned number wrappers. In
- * future versions, it will also contain some arithmetic methods, handling
- * regular arithmetic and bitwise operations
+ * It contains factory methods for unsigned number wrappers, as well as
+ * static helpers that treat a primitive <code>int</code> or <code>long</code>
+ * as unsigned. Addition, subtraction, multiplication and the bitwise
+ * operations are the same for signed and unsigned values, so only comparison,
+ * division, remainder and conversion to/from text need special handling. None
+ * of these helpers create a wrapper object.
  *
  * @author Lukas Eder
  */
@@ -185,6 +188,229 @@ public final class Unsigned {
         return ULong.valueOf(value);
     }
 
+    /**
+     * The largest unsigned long that can be multiplied by 10 without overflow
+     */
+    private static final long MAX_LONG_DIV_10 = 0x1999999999999999L;
+
+    /**
+     * @return <code>value</code> as an <code>unsigned byte</code>, i.e. <code>(byte) -1</code> becomes <code>255</code>
+     */
+    public static int toInt(byte value) {
+        return value & 0xFF;
+    }
+
+    /**
+     * @return <code>value</code> as an <code>unsigned short</code>, i.e. <code>(short) -1</code> becomes <code>65535</code>
+     */
+    public static int toInt(short value) {
+        return value & 0xFFFF;
+    }
+
+    /**
+     * @return <code>value</code> as an <code>unsigned int</code>, i.e. <code>-1</code> becomes <code>4294967295</code>
+     */
+    public static long toLong(int value) {
+        return value & UInteger.MAX_VALUE;
+    }
+
+    /**
+     * Compares two <code>unsigned int</code> values.
+     *
+     * @return a negative number, zero, or a positive number as <code>x</code> is less than, equal to, or greater than <code>y</code>
+     */
+    public static int compare(int x, int y) {
+        x += Integer.MIN_VALUE;
+        y += Integer.MIN_VALUE;
+        return (x < y) ? -1 : ((x == y) ? 0 : 1);
+    }
+
+    /**
+     * Compares two <code>unsigned long</code> values.
+     *
+     * @return a negative number, zero, or a positive number as <code>x</code> is less than, equal to, or greater than <code>y</code>
+     */
+    public static int compare(long x, long y) {
+        return ULong.compare(x, y);
+    }
+
+    /**
+     * Divides two <code>unsigned int</code> values.
+     *
+     * @throws ArithmeticException if <code>divisor</code> is 0
+     */
+    public static int divide(int dividend, int divisor) {
+        return (int) (toLong(dividend) / toLong(divisor));
+    }
+
+    /**
+     * Divides two <code>unsigned long</code> values.
+     *
+     * @throws ArithmeticException if <code>divisor</code> is 0
+     */
+    public static long divide(long dividend, long divisor) {
+        if (divisor < 0) {
+            // the divisor is at least 2^63, so the quotient can only be 0 or 1
+            return compare(dividend, divisor) < 0 ? 0 : 1;
+        }
+
+        if (dividend >= 0) {
+            return dividend / divisor;
+        }
+
+        // halve the dividend so the signed division works, then fix up the (at most off by one) result
+        long quotient = ((dividend >>> 1) / divisor) << 1;
+        long remainder = dividend - quotient * divisor;
+        return quotient + (compare(remainder, divisor) >= 0 ? 1 : 0);
+    }
+
+    /**
+     * @return the remainder of dividing two <code>unsigned int</code> values.
+     *
+     * @throws ArithmeticException if <code>divisor</code> is 0
+     */
+    public static int remainder(int dividend, int divisor) {
+        return (int) (toLong(dividend) % toLong(divisor));
+    }
+
+    /**
+     * @return the remainder of dividing two <code>unsigned long</code> values.
+     *
+     * @throws ArithmeticException if <code>divisor</code> is 0
+     */
+    public static long remainder(long dividend, long divisor) {
+        if (divisor < 0) {
+            return compare(dividend, divisor) < 0 ? dividend : dividend - divisor;
+        }
+
+        if (dividend >= 0) {
+            return dividend % divisor;
+        }
+
+        long quotient = ((dividend >>> 1) / divisor) << 1;
+        long remainder = dividend - quotient * divisor;
+        return compare(remainder, divisor) >= 0 ? remainder - divisor : remainder;
+    }
+
+    /**
+     * @return the decimal text of an <code>unsigned int</code>, i.e. <code>-1</code> becomes <code>"4294967295"</code>
+     */
+    public static String toString(int value) {
+        return Long.toString(toLong(value));
+    }
+
+    /**
+     * @return the decimal text of an <code>unsigned long</code>, i.e. <code>-1L</code> becomes <code>"18446744073709551615"</code>
+     */
+    public static String toString(long value) {
+        if (value >= 0) {
+            return Long.toString(value);
+        }
+
+        // 2^64-1 has 20 digits. After the first (unsigned) division the rest fits in a signed long
+        char[] chars = new char[20];
+        int position = chars.length;
+
+        long quotient = divide(value, 10);
+        chars[--position] = (char) ('0' + (int) (value - quotient * 10));
+
+        while (quotient > 0) {
+            chars[--position] = (char) ('0' + (int) (quotient % 10));
+            quotient /= 10;
+        }
+
+        return new String(chars, position, chars.length - position);
+    }
+
+    /**
+     * Appends the decimal text of an <code>unsigned int</code> without creating a string.
+     */
+    public static StringBuilder append(StringBuilder builder, int value) {
+        return builder.append(toLong(value));
+    }
+
+    /**
+     * Appends the decimal text of an <code>unsigned long</code> without creating a string.
+     */
+    public static StringBuilder append(StringBuilder builder, long value) {
+        if (value >= 0) {
+            return builder.append(value);
+        }
+
+        long quotient = divide(value, 10);
+        return builder.append(quotient)
+                      .append((char) ('0' + (int) (value - quotient * 10)));
+    }
+
+    /**
+     * Parses the decimal text of an <code>unsigned int</code>, i.e. <code>"4294967295"</code> becomes <code>-1</code>
+     *
+     * @throws NumberFormatException If <code>value</code> does not contain a
+     *             parsable <code>unsigned int</code>.
+     */
+    public static int parseInt(String value) throws NumberFormatException {
+        if (value == null)
+            throw new NumberFormatException("null");
+
+        if (value.length() > 0 && value.charAt(0) == '-')
+            throw new NumberFormatException(
+                    String.format("Illegal leading minus sign on unsigned string %s", value));
+
+        long result = Long.parseLong(value, 10);
+        if (result > UInteger.MAX_VALUE)
+            throw new NumberFormatException(
+                    String.format("String value %s exceeds range of unsigned int", value));
+
+        return (int) result;
+    }
+
+    /**
+     * Parses the decimal text of an <code>unsigned long</code>, i.e. <code>"18446744073709551615"</code> becomes <code>-1L</code>
+     *
+     * @throws NumberFormatException If <code>value</code> does not contain a
+     *             parsable <code>unsigned long</code>.
+     */
+    public static long parseLong(String value) throws NumberFormatException {
+        if (value == null)
+            throw new NumberFormatException("null");
+
+        int length = value.length();
+
+        if (length == 0)
+            throw new NumberFormatException("Empty input string");
+
+        char first = value.charAt(0);
+        if (first == '-')
+            throw new NumberFormatException(
+                    String.format("Illegal leading minus sign on unsigned string %s", value));
+
+        if (length <= 18) {
+            // cannot overflow a signed long
+            return Long.parseLong(value, 10);
+        }
+
+        int index = first == '+' ? 1 : 0;
+        long result = 0;
+        for (; index < length; index++) {
+            int digit = Character.digit(value.charAt(index), 10);
+            if (digit < 0)
+                throw new NumberFormatException("For input string: \"" + value + "\"");
+
+            if (compare(result, MAX_LONG_DIV_10) > 0)
+                throw new NumberFormatException(
+                        String.format("String value %s exceeds range of unsigned long", value));
+
+            long next = result * 10 + digit;
+            if (compare(next, result * 10) < 0)
+                throw new NumberFormatException(
+                        String.format("String value %s exceeds range of unsigned long", value));
+
+            result = next;
+        }
+
+        return result;
+    }
+
     /**
      * No instances
      */
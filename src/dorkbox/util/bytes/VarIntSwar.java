@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.bytes;
+
+/**
+ * SWAR (SIMD within a register) helpers for the variable length int/long encoding used by {@link ByteBuffer2},
+ * {@link OptimizeUtilsByteArray} and {@link OptimizeUtilsByteBuf}.
+ * <p>
+ * Instead of testing one byte at a time, 8 bytes are loaded into a long (the first byte in the lowest bits), the terminating byte (the
+ * first byte without bit 8 set) is found with a single trailing-zero count, and the 7 bit groups are gathered (or spread out) with
+ * three shift/mask steps. There are no data dependent branches, which matters because the length of a varint is hard to predict.
+ * <p>
+ * For short values this is slower than the byte-at-a-time loop, so it is only used where it was measured to be faster: reading longs
+ * of 3 or more bytes from a byte[], and reading multi-byte values from (or writing values of 3 or more bytes to) a ByteBuf, where every
+ * single byte access is bounds checked.
+ * <p>
+ * The encoding is the same as Kryo: 7 bits per byte, LITTLE_ENDIAN, where bit 8 means that another byte follows. The 9th byte of a long
+ * holds all 8 of the remaining bits.
+ */
+final
+class VarIntSwar {
+    // bit 8 of every byte
+    private static final long CONTINUATION_BITS = 0x8080808080808080L;
+
+    /**
+     * @return the number of bytes (1-5) needed for the (already zig-zag encoded, if necessary) value
+     */
+    static
+    int intLength(final int value) {
+        return (31 - Integer.numberOfLeadingZeros(value | 1)) / 7 + 1;
+    }
+
+    /**
+     * @return the number of bytes (1-9) needed for the (already zig-zag encoded, if necessary) value
+     */
+    static
+    int longLength(final long value) {
+        return Math.min((63 - Long.numberOfLeadingZeros(value | 1)) / 7 + 1, 9);
+    }
+
+    /**
+     * Reads 8 bytes, where the first byte is in the lowest bits. There must be at least 8 bytes available.
+     */
+    static
+    long getLongLE(final byte[] buffer, final int position) {
+        return (long) (buffer[position] & 0xFF)
+               | (long) (buffer[position + 1] & 0xFF) << 8
+               | (long) (buffer[position + 2] & 0xFF) << 16
+               | (long) (buffer[position + 3] & 0xFF) << 24
+               | (long) (buffer[position + 4] & 0xFF) << 32
+               | (long) (buffer[position + 5] & 0xFF) << 40
+               | (long) (buffer[position + 6] & 0xFF) << 48
+               | (long) buffer[position + 7] << 56;
+    }
+
+    /**
+     * @param word 8 bytes, where the first byte of the varint is in the lowest bits
+     *
+     * @return the number of bytes (1-8) of the varint that starts in the word, or 9 if none of the 8 bytes terminates it
+     */
+    static
+    int length(final long word) {
+        long stopBits = ~word & CONTINUATION_BITS;
+        if (stopBits == 0) {
+            return 9;
+        }
+        return (Long.numberOfTrailingZeros(stopBits) + 1) >>> 3;
+    }
+
+    /**
+     * Gathers the 7 bit groups of the first length (1-8) bytes of the word into a single value.
+     */
+    static
+    long decode(long word, final int length) {
+        // keep only the bytes of this varint, without bit 8
+        word &= 0x7F7F7F7F7F7F7F7FL >>> ((8 - length) << 3);
+
+        // 2 x 7 bits -> 14 bits in every 16 bit lane, 2 x 14 -> 28 bits in every 32 bit lane, then 2 x 28 -> 56 bits
+        word = word & 0x007F007F007F007FL | (word & 0x7F007F007F007F00L) >>> 1;
+        word = word & 0x00003FFF00003FFFL | (word & 0x3FFF00003FFF0000L) >>> 2;
+        return word & 0x000000000FFFFFFFL | (word & 0x0FFFFFFF00000000L) >>> 4;
+    }
+
+    /**
+     * Spreads the value into 7 bit groups, one group per byte, and sets bit 8 on every byte except the last. This is the reverse of
+     * {@link #decode(long, int)}.
+     *
+     * @param length the number of bytes (1-8) to encode. For 9 byte longs, the 9th byte is (value >>> 56).
+     */
+    static
+    long encode(long value, final int length) {
+        // 56 bits -> 2 x 28 bits in 32 bit lanes, -> 2 x 14 bits in 16 bit lanes, -> 2 x 7 bits in 8 bit lanes
+        value = value & 0x000000000FFFFFFFL | (value & 0x00FFFFFFF0000000L) << 4;
+        value = value & 0x00003FFF00003FFFL | (value & 0x0FFFC0000FFFC000L) << 2;
+        value = value & 0x007F007F007F007FL | (value & 0x3F803F803F803F80L) << 1;
+
+        return value | CONTINUATION_BITS & (1L << ((length - 1) << 3)) - 1;
+    }
+
+    private
+    VarIntSwar() {
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.bytes;
+
+/**
+ * Pure java implementation of the 64-bit xxHash (https://github.com/Cyan4973/xxHash), for hashing byte arrays in memory.
+ * <p>
+ * The native xxHash (used by {@link dorkbox.util.crypto.Crypto#xxHashFile}) is better for large files, however the JNI overhead is
+ * far larger than the hash itself for the short arrays that are used as keys.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final
+class XXHash64 {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private
+    XXHash64() {
+    }
+
+    /**
+     * @return the 64-bit xxHash of the bytes, using a seed of 0
+     */
+    public static
+    long hash(final byte[] bytes) {
+        return hash(bytes, 0, bytes.length, 0L);
+    }
+
+    /**
+     * @return the 64-bit xxHash of the range of bytes
+     */
+    public static
+    long hash(final byte[] bytes, int offset, final int length, final long seed) {
+        final int end = offset + length;
+        long hash;
+
+        if (length >= 32) {
+            final int limit = end - 32;
+            long v1 = seed + PRIME1 + PRIME2;
+            long v2 = seed + PRIME2;
+            long v3 = seed;
+            long v4 = seed - PRIME1;
+
+            do {
+                v1 = round(v1, readLong(bytes, offset));
+                v2 = round(v2, readLong(bytes, offset + 8));
+                v3 = round(v3, readLong(bytes, offset + 16));
+                v4 = round(v4, readLong(bytes, offset + 24));
+                offset += 32;
+            } while (offset <= limit);
+
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        }
+        else {
+            hash = seed + PRIME5;
+        }
+
+        hash += length;
+
+        while (offset <= end - 8) {
+            hash ^= round(0, readLong(bytes, offset));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+            offset += 8;
+        }
+
+        if (offset <= end - 4) {
+            hash ^= (readInt(bytes, offset) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            offset += 4;
+        }
+
+        while (offset < end) {
+            hash ^= (bytes[offset] & 0xFF) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+            offset++;
+        }
+
+        // avalanche
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+
+        return hash;
+    }
+
+    /**
+     * @return the 64-bit xxHash of the range of bytes, folded into an int
+     */
+    public static
+    int hash32(final byte[] bytes, final int offset, final int length) {
+        long hash = hash(bytes, offset, length, 0L);
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private static
+    long round(long acc, final long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static
+    long mergeRound(long acc, final long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+
+    private static
+    long readLong(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xFFL) |
+               (bytes[offset + 1] & 0xFFL) << 8 |
+               (bytes[offset + 2] & 0xFFL) << 16 |
+               (bytes[offset + 3] & 0xFFL) << 24 |
+               (bytes[offset + 4] & 0xFFL) << 32 |
+               (bytes[offset + 5] & 0xFFL) << 40 |
+               (bytes[offset + 6] & 0xFFL) << 48 |
+               (bytes[offset + 7] & 0xFFL) << 56;
+    }
+
+    private static
+    int readInt(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xFF) |
+               (bytes[offset + 1] & 0xFF) << 8 |
+               (bytes[offset + 2] & 0xFF) << 16 |
+               (bytes[offset + 3] & 0xFF) << 24;
+    }
+}
@@ -94,6 +94,17 @@ public class BinarySearch<T> {
         return index == -1 ? null : this.indexed.get(index);
     }
 
+    /**
+     * Create a static index over the (unchanging) data, which is much faster
+     * when the same data is searched many times.  The index returns the same
+     * positions as {@link #search(long, Bias)}.
+     *
+     * @return a new index
+     */
+    public SortedLongIndex<T> toIndex() {
+        return new SortedLongIndex<T>(this.eval, this.indexed);
+    }
+
     private long search(long start, long end, long value, Bias bias) {
         long range = end - start;
         if (range == 0) {
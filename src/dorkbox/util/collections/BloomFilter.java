@@ -0,0 +1,267 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import dorkbox.util.bytes.ByteBuffer2;
+
+/**
+ * A thread-safe Bloom filter, which is a compact set that can only answer "definitely not present" or "might be present".
+ * <p>
+ * This is meant to sit in front of expensive lookups (such as disk storage), so that a miss can be answered without doing the lookup.
+ * The filter is sized from the number of expected values and the desired false-positive rate. Adding more values than expected will
+ * increase the false-positive rate, but will never cause a false negative.
+ * <p>
+ * Adding and checking are both lock-free, and values can never be removed (see {@link CuckooFilter} if removal is necessary).
+ * <p>
+ * Objects are hashed with their {@link Object#hashCode()}, except for byte[] and {@link dorkbox.util.bytes.ByteArrayWrapper}, which
+ * are hashed by their contents.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final
+class BloomFilter {
+    private final AtomicLongArray words;
+    private final long numBits;
+    private final int numHashes;
+
+    /**
+     * @param expectedCount the number of values that are expected to be added
+     * @param falsePositiveRate the desired probability that {@link #mightContain} returns true for a value that was never added
+     */
+    public
+    BloomFilter(final long expectedCount, final double falsePositiveRate) {
+        if (expectedCount <= 0) {
+            throw new IllegalArgumentException("expectedCount must be > 0: " + expectedCount);
+        }
+        if (falsePositiveRate <= 0.0D || falsePositiveRate >= 1.0D) {
+            throw new IllegalArgumentException("falsePositiveRate must be > 0 and < 1: " + falsePositiveRate);
+        }
+
+        // m = -n ln(p) / ln(2)^2, k = m/n ln(2)
+        double ln2 = Math.log(2.0D);
+        long bits = (long) Math.ceil(-expectedCount * Math.log(falsePositiveRate) / (ln2 * ln2));
+
+        long wordCount = Math.max(1L, (bits + 63) >>> 6);
+        if (wordCount > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("The filter would be too large. Expected count: " + expectedCount +
+                                               " false positive rate: " + falsePositiveRate);
+        }
+
+        this.words = new AtomicLongArray((int) wordCount);
+        this.numBits = wordCount << 6;
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedCount * ln2));
+    }
+
+    private
+    BloomFilter(final long[] words, final int numHashes) {
+        this.words = new AtomicLongArray(words);
+        this.numBits = (long) words.length << 6;
+        this.numHashes = numHashes;
+    }
+
+    public
+    boolean add(final byte[] bytes) {
+        return addHash(FilterHash.hash(bytes, 0, bytes.length));
+    }
+
+    public
+    boolean add(final byte[] bytes, final int offset, final int length) {
+        return addHash(FilterHash.hash(bytes, offset, length));
+    }
+
+    public
+    boolean add(final long value) {
+        return addHash(FilterHash.hash(value));
+    }
+
+    public
+    boolean add(final Object value) {
+        return addHash(FilterHash.hash(value));
+    }
+
+    public
+    boolean mightContain(final byte[] bytes) {
+        return containsHash(FilterHash.hash(bytes, 0, bytes.length));
+    }
+
+    public
+    boolean mightContain(final byte[] bytes, final int offset, final int length) {
+        return containsHash(FilterHash.hash(bytes, offset, length));
+    }
+
+    public
+    boolean mightContain(final long value) {
+        return containsHash(FilterHash.hash(value));
+    }
+
+    public
+    boolean mightContain(final Object value) {
+        return containsHash(FilterHash.hash(value));
+    }
+
+    /**
+     * Sets the bits for the hash, using double hashing (Kirsch and Mitzenmacher) to derive each of the bit indices.
+     *
+     * @return true if any bit changed, meaning the value was definitely not in the filter before
+     */
+    private
+    boolean addHash(final long hash) {
+        final AtomicLongArray words = this.words;
+        final long numBits = this.numBits;
+
+        long combined = hash;
+        final long increment = (hash >>> 32) | (hash << 32) | 1L;
+
+        boolean changed = false;
+        for (int i = 0; i < numHashes; i++) {
+            long bitIndex = (combined & Long.MAX_VALUE) % numBits;
+            int wordIndex = (int) (bitIndex >>> 6);
+            long mask = 1L << bitIndex;
+
+            long word;
+            while (((word = words.get(wordIndex)) & mask) == 0) {
+                if (words.compareAndSet(wordIndex, word, word | mask)) {
+                    changed = true;
+                    break;
+                }
+            }
+
+            combined += increment;
+        }
+
+        return changed;
+    }
+
+    private
+    boolean containsHash(final long hash) {
+        final AtomicLongArray words = this.words;
+        final long numBits = this.numBits;
+
+        long combined = hash;
+        final long increment = (hash >>> 32) | (hash << 32) | 1L;
+
+        for (int i = 0; i < numHashes; i++) {
+            long bitIndex = (combined & Long.MAX_VALUE) % numBits;
+            if ((words.get((int) (bitIndex >>> 6)) & (1L << bitIndex)) == 0) {
+                return false;
+            }
+
+            combined += increment;
+        }
+
+        return true;
+    }
+
+    /**
+     * Adds all of the values of another filter to this filter. Both filters must have been created with the same size and rate.
+     */
+    public
+    void addAll(final BloomFilter other) {
+        if (other.numBits != numBits || other.numHashes != numHashes) {
+            throw new IllegalArgumentException("The filters must be the same size.");
+        }
+
+        final AtomicLongArray words = this.words;
+        for (int i = 0, n = words.length(); i < n; i++) {
+            long otherWord = other.words.get(i);
+            long word;
+            while (((word = words.get(i)) | otherWord) != word) {
+                if (words.compareAndSet(i, word, word | otherWord)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the estimated false-positive rate, based on how many bits are currently set
+     */
+    public
+    double estimatedFalsePositiveRate() {
+        return Math.pow((double) bitCount() / numBits, numHashes);
+    }
+
+    /**
+     * @return an estimate of the number of distinct values that were added
+     */
+    public
+    long estimatedCount() {
+        long bitCount = bitCount();
+        if (bitCount == numBits) {
+            return Long.MAX_VALUE;
+        }
+        return Math.round(-numBits * Math.log(1.0D - (double) bitCount / numBits) / numHashes);
+    }
+
+    private
+    long bitCount() {
+        long count = 0;
+        for (int i = 0, n = words.length(); i < n; i++) {
+            count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+
+    public
+    long bitSize() {
+        return numBits;
+    }
+
+    public
+    int hashCount() {
+        return numHashes;
+    }
+
+    /**
+     * Removes all of the values. This is not atomic, so values added at the same time may be lost.
+     */
+    public
+    void clear() {
+        for (int i = 0, n = words.length(); i < n; i++) {
+            words.set(i, 0L);
+        }
+    }
+
+    public
+    void write(final ByteBuffer2 buffer) {
+        int length = words.length();
+        long[] copy = new long[length];
+        for (int i = 0; i < length; i++) {
+            copy[i] = words.get(i);
+        }
+
+        buffer.writeInt(numHashes, true);
+        buffer.writeInt(length, true);
+        buffer.writeLongs(copy);
+    }
+
+    /**
+     * Reads a filter that was written by {@link #write(ByteBuffer2)}
+     */
+    public static
+    BloomFilter read(final ByteBuffer2 buffer) {
+        int numHashes = buffer.readInt(true);
+        int length = buffer.readInt(true);
+        return new BloomFilter(buffer.readLongs(length), numHashes);
+    }
+
+    @Override
+    public
+    String toString() {
+        return "BloomFilter (bits=" + numBits + ", hashes=" + numHashes + ")";
+    }
+}
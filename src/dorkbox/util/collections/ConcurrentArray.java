@@ -0,0 +1,284 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * An array-backed replacement for {@link ConcurrentIterator}, intended for listener/subscriber lists that are iterated far more often
+ * than they are modified.
+ * <p>
+ * Readers iterate (wait-free) directly over the backing array returned by {@link #elements()}. This array is never modified once it
+ * has been published: every modification copies the current array, changes the copy and then publishes the copy (copy-on-write). A
+ * reader therefore always sees a complete snapshot, without null elements, and elements that are added/removed while a reader is
+ * iterating are not seen by that reader.
+ * <p>
+ * This class uses the "single-writer-principle" for lock-free publication. 'synchronized' is used to make sure that only one thread can
+ * modify the array at a time.
+ * <p>
+ * Elements are compared by identity, and the same element can only be added once. Elements are found with a single scan of the current
+ * snapshot, so {@link #add(Object)} and {@link #remove(Object)} each cost exactly one scan and one array copy. Use
+ * {@link #addAll(Object[])} and {@link #removeAll(Object[])} to change many elements with a single copy.
+ *
+ * @author dorkbox, llc
+ */
+@SuppressWarnings({"unchecked", "unused", "WeakerAccess"})
+public
+class ConcurrentArray<T> {
+    private static final AtomicInteger ID_COUNTER = new AtomicInteger();
+    private final int ID = ID_COUNTER.getAndIncrement();
+
+    // Recommended for best performance while adhering to the "single writer principle". Must be static-final
+    private static final AtomicReferenceFieldUpdater<ConcurrentArray, Object[]> itemsREF = AtomicReferenceFieldUpdater.newUpdater(
+            ConcurrentArray.class,
+            Object[].class,
+            "items");
+
+    private volatile T[] items;
+
+    private final Class arrayType;
+
+    /**
+     * Creates an empty array.
+     */
+    public
+    ConcurrentArray() {
+        this(Object.class);
+    }
+
+    /**
+     * Creates a new array with {@link #elements()} of the specified type.
+     */
+    public
+    ConcurrentArray(Class arrayType) {
+        this.arrayType = arrayType;
+        this.items = newArray(0);
+    }
+
+    private
+    T[] newArray(int capacity) {
+        return (T[]) java.lang.reflect.Array.newInstance(arrayType, capacity);
+    }
+
+    /**
+     * Lock-free/wait-free access to the backing array. This array is a snapshot that contains exactly the current elements, and MUST
+     * NOT be modified.
+     * <p>
+     * If the generic type is not Object, this may only be accessed if the {@link ConcurrentArray#ConcurrentArray(Class)} constructor
+     * was used.
+     */
+    public final
+    T[] elements() {
+        return (T[]) itemsREF.get(this);
+    }
+
+    /**
+     * single writer principle!
+     * called from within SYNCHRONIZE
+     *
+     * @param element the object that will receive messages during publication
+     *
+     * @return true if the element was added, false if it was already present
+     */
+    public synchronized
+    boolean add(final T element) {
+        checkNotNull(element);
+
+        final T[] oldItems = this.items;
+        final int length = oldItems.length;
+        if (indexOf(oldItems, length, element) >= 0) {
+            return false;
+        }
+
+        final T[] newItems = newArray(length + 1);
+        System.arraycopy(oldItems, 0, newItems, 0, length);
+        newItems[length] = element;
+
+        // publish the new array
+        itemsREF.lazySet(this, newItems);
+        return true;
+    }
+
+    /**
+     * single writer principle!
+     * called from within SYNCHRONIZE
+     * <p>
+     * The array is only republished once, after all of the elements have been added.
+     *
+     * @return the number of elements that were added
+     */
+    public synchronized
+    int addAll(final T... elements) {
+        final T[] oldItems = this.items;
+        final int length = oldItems.length;
+
+        final T[] newItems = newArray(length + elements.length);
+        System.arraycopy(oldItems, 0, newItems, 0, length);
+
+        int newLength = length;
+        for (int i = 0; i < elements.length; i++) {
+            final T element = elements[i];
+            checkNotNull(element);
+
+            // also skips duplicates within the elements being added
+            if (indexOf(newItems, newLength, element) < 0) {
+                newItems[newLength++] = element;
+            }
+        }
+
+        final int count = newLength - length;
+        if (count > 0) {
+            itemsREF.lazySet(this, newLength == newItems.length ? newItems : trim(newItems, newLength));
+        }
+
+        return count;
+    }
+
+    /**
+     * single writer principle!
+     * called from within SYNCHRONIZE
+     *
+     * @param element the object that will NO LONGER receive messages during publication
+     *
+     * @return true if the element was removed
+     */
+    public synchronized
+    boolean remove(final T element) {
+        final T[] oldItems = this.items;
+        final int length = oldItems.length;
+
+        final int removedIndex = indexOf(oldItems, length, element);
+        if (removedIndex < 0) {
+            return false;
+        }
+
+        final T[] newItems = newArray(length - 1);
+        System.arraycopy(oldItems, 0, newItems, 0, removedIndex);
+        System.arraycopy(oldItems, removedIndex + 1, newItems, removedIndex, length - removedIndex - 1);
+
+        itemsREF.lazySet(this, newItems);
+        return true;
+    }
+
+    /**
+     * single writer principle!
+     * called from within SYNCHRONIZE
+     * <p>
+     * The array is only republished once, after all of the elements have been removed.
+     *
+     * @return the number of elements that were removed
+     */
+    public synchronized
+    int removeAll(final T... elements) {
+        final T[] oldItems = this.items;
+        final int length = oldItems.length;
+
+        // copy the remaining elements into a new array, in their original order
+        final T[] newItems = newArray(length);
+
+        int newLength = 0;
+        for (int i = 0; i < length; i++) {
+            final T item = oldItems[i];
+            if (indexOf(elements, elements.length, item) < 0) {
+                newItems[newLength++] = item;
+            }
+        }
+
+        final int count = length - newLength;
+        if (count > 0) {
+            itemsREF.lazySet(this, trim(newItems, newLength));
+        }
+
+        return count;
+    }
+
+    /**
+     * Lock-free check of the current snapshot.
+     */
+    public
+    boolean contains(final T element) {
+        final T[] items = elements();
+        return indexOf(items, items.length, element) >= 0;
+    }
+
+    /**
+     * single writer principle!
+     * called from within SYNCHRONIZE
+     */
+    public synchronized
+    void clear() {
+        // readers that are currently iterating will still see the old array
+        itemsREF.lazySet(this, newArray(0));
+    }
+
+    /**
+     * Lock-free size of the current snapshot.
+     */
+    public
+    int size() {
+        return elements().length;
+    }
+
+    private static
+    void checkNotNull(final Object element) {
+        if (element == null) {
+            throw new IllegalArgumentException("element cannot be null.");
+        }
+    }
+
+    /**
+     * @return the index of the element (compared by identity) in the first length elements of the array, or -1 if it is not there
+     */
+    private static
+    int indexOf(final Object[] array, final int length, final Object element) {
+        for (int i = 0; i < length; i++) {
+            if (array[i] == element) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private
+    T[] trim(final T[] array, final int length) {
+        final T[] newArray = newArray(length);
+        System.arraycopy(array, 0, newArray, 0, length);
+        return newArray;
+    }
+
+    @Override
+    public final
+    int hashCode() {
+        return this.ID;
+    }
+
+    @Override
+    public final
+    boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        ConcurrentArray other = (ConcurrentArray) obj;
+        return this.ID == other.ID;
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import dorkbox.util.MathUtil;
+
+/**
+ * An unordered set of int keys, where {@link #add(int)}, {@link #contains(int)} and {@link #remove(int)} are lock-free and can be called
+ * by any number of threads at the same time. Keys are never boxed.
+ * <p>
+ * Keys are stored in an open-addressing table (linear probing), where each slot is a single long that holds both the state of the slot
+ * and the key, so that every change to a slot is a single CAS. Slots are only ever claimed when they are empty, and removed keys leave a
+ * tombstone, so a key can never be in the table twice. Tombstones are removed when the table is resized.
+ * <p>
+ * The only time a thread will block is while the table is being resized (which happens O(log n) times). Threads that are only checking
+ * keys never block.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final
+class ConcurrentIntSet {
+    // the state is in the high 32 bits, the key is in the low 32 bits
+    private static final long EMPTY = 0L;
+    private static final long LIVE = 1L << 32;
+    private static final long TOMBSTONE = 2L << 32;
+
+    // the states of slots that were frozen while the table was resized
+    private static final long MOVED_EMPTY = 3L << 32;
+    private static final long MOVED_TOMBSTONE = 4L << 32;
+    private static final long MOVED_LIVE = 5L << 32;
+
+    private static final long STATE_MASK = 0xFFFFFFFF00000000L;
+
+    // Recommended for best performance while adhering to the "single writer principle". Must be static-final
+    private static final AtomicReferenceFieldUpdater<ConcurrentIntSet, Table> tableREF = AtomicReferenceFieldUpdater.newUpdater(
+            ConcurrentIntSet.class,
+            Table.class,
+            "table");
+
+    private volatile Table table;
+    private final AtomicInteger size = new AtomicInteger();
+    private final float loadFactor;
+
+
+    private static final
+    class Table {
+        final int mask;
+        final int threshold;
+        final AtomicLongArray slots;
+
+        // the number of slots that are not empty (keys + tombstones)
+        final AtomicInteger used = new AtomicInteger();
+
+        // set before this table is resized, so readers can follow MOVED slots
+        volatile Table next;
+
+        Table(final int capacity, final float loadFactor) {
+            this.mask = capacity - 1;
+            this.threshold = Math.min(capacity - 1, (int) (capacity * loadFactor));
+            this.slots = new AtomicLongArray(capacity);
+        }
+    }
+
+
+    /**
+     * Creates a new set with an initial capacity of 64 and a load factor of 0.7.
+     */
+    public
+    ConcurrentIntSet() {
+        this(64, 0.7F);
+    }
+
+    /**
+     * @param initialCapacity the number of keys that can be added before the table is resized
+     * @param loadFactor the maximum fraction of the table that is used before it is resized
+     */
+    public
+    ConcurrentIntSet(final int initialCapacity, final float loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must be >= 0: " + initialCapacity);
+        }
+        if (loadFactor <= 0.0F || loadFactor >= 1.0F) {
+            throw new IllegalArgumentException("loadFactor must be > 0 and < 1: " + loadFactor);
+        }
+
+        this.loadFactor = loadFactor;
+        this.table = new Table(tableSize(initialCapacity), loadFactor);
+    }
+
+    private
+    int tableSize(final int capacity) {
+        return MathUtil.nextPowerOfTwo(Math.max(4, (int) Math.ceil(capacity / loadFactor)));
+    }
+
+    private static
+    int hash(final int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return true if the key was added, false if it was already in the set
+     */
+    public
+    boolean add(final int key) {
+        final int hash = hash(key);
+        final long live = LIVE | (key & 0xFFFFFFFFL);
+        final long movedLive = MOVED_LIVE | (key & 0xFFFFFFFFL);
+
+        retry:
+        while (true) {
+            final Table table = tableREF.get(this);
+            final AtomicLongArray slots = table.slots;
+            final int mask = table.mask;
+
+            int index = hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                long slot = slots.get(index);
+
+                if (slot == EMPTY) {
+                    if (!slots.compareAndSet(index, EMPTY, live)) {
+                        // someone else changed this slot first, check it again
+                        probes--;
+                        continue;
+                    }
+
+                    size.incrementAndGet();
+                    if (table.used.incrementAndGet() >= table.threshold) {
+                        resize(table, 0);
+                    }
+                    return true;
+                }
+
+                if (slot == live || slot == movedLive) {
+                    return false;
+                }
+
+                if (slot == MOVED_EMPTY) {
+                    // wait for the resize to finish, so that we do not add a duplicate into the new table
+                    awaitResize();
+                    continue retry;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            // every slot has been used, because many threads added at the same time
+            resize(table, 0);
+        }
+    }
+
+    /**
+     * Adds all of the keys. The table is resized (at most once) before the keys are added.
+     *
+     * @return the number of keys that were added (and were not already in the set)
+     */
+    public
+    int addAll(final int... keys) {
+        return addAll(keys, 0, keys.length);
+    }
+
+    /**
+     * Adds all of the keys. The table is resized (at most once) before the keys are added.
+     *
+     * @return the number of keys that were added (and were not already in the set)
+     */
+    public
+    int addAll(final int[] keys, final int offset, final int length) {
+        if (offset + length > keys.length) {
+            throw new IllegalArgumentException("offset + length must be <= keys.length: " + offset + " + " + length + " <= " + keys.length);
+        }
+
+        ensureCapacity(length);
+
+        int added = 0;
+        for (int i = offset, n = offset + length; i < n; i++) {
+            if (add(keys[i])) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Adds all of the keys. The table is resized (at most once) before the keys are added.
+     *
+     * @return the number of keys that were added (and were not already in the set)
+     */
+    public
+    int addAll(final IntArray keys) {
+        return addAll(keys.items, 0, keys.size);
+    }
+
+    /**
+     * Lock-free check if the key is in the set. This never blocks, even while the table is being resized.
+     */
+    public
+    boolean contains(final int key) {
+        final int hash = hash(key);
+        final long live = LIVE | (key & 0xFFFFFFFFL);
+        final long movedLive = MOVED_LIVE | (key & 0xFFFFFFFFL);
+
+        Table table = tableREF.get(this);
+        while (true) {
+            final AtomicLongArray slots = table.slots;
+            final int mask = table.mask;
+
+            int index = hash & mask;
+            boolean moved = false;
+
+            for (int probes = 0; probes <= mask; probes++) {
+                long slot = slots.get(index);
+
+                if (slot == EMPTY) {
+                    return false;
+                }
+                if (slot == live || slot == movedLive) {
+                    return true;
+                }
+                if (slot == MOVED_EMPTY) {
+                    moved = true;
+                    break;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            if (!moved) {
+                return false;
+            }
+
+            // the key was not in this table when it was resized, but might have been added to the new table since then
+            table = table.next;
+        }
+    }
+
+    /**
+     * @return true if the key was removed, false if it was not in the set
+     */
+    public
+    boolean remove(final int key) {
+        final int hash = hash(key);
+        final long live = LIVE | (key & 0xFFFFFFFFL);
+        final long movedLive = MOVED_LIVE | (key & 0xFFFFFFFFL);
+
+        retry:
+        while (true) {
+            final Table table = tableREF.get(this);
+            final AtomicLongArray slots = table.slots;
+            final int mask = table.mask;
+
+            int index = hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                long slot = slots.get(index);
+
+                if (slot == EMPTY) {
+                    return false;
+                }
+
+                if (slot == live) {
+                    if (slots.compareAndSet(index, live, TOMBSTONE)) {
+                        size.decrementAndGet();
+                        return true;
+                    }
+
+                    // removed by another thread, or frozen by a resize. Check it again
+                    probes--;
+                    continue;
+                }
+
+                if (slot == movedLive || slot == MOVED_EMPTY) {
+                    awaitResize();
+                    continue retry;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Makes sure that there is enough room for this many more keys, so the table is not resized while they are added.
+     */
+    public
+    void ensureCapacity(final int additionalCapacity) {
+        Table table = tableREF.get(this);
+        if (table.used.get() + additionalCapacity >= table.threshold) {
+            resize(table, size.get() + additionalCapacity);
+        }
+    }
+
+    private synchronized
+    void awaitResize() {
+        // the resize happens while holding the lock, so by the time we get here, it has finished
+    }
+
+    /**
+     * Freezes every slot in the table, and copies the keys into a new table. New keys cannot be added while this happens, but checks
+     * can. Tombstones are not copied.
+     *
+     * @param minimumCapacity the minimum number of keys the new table must hold (if 0, the new table is sized from the current keys)
+     */
+    private synchronized
+    void resize(final Table table, final int minimumCapacity) {
+        if (tableREF.get(this) != table) {
+            // another thread already resized it
+            return;
+        }
+
+        int capacity;
+        if (minimumCapacity > 0) {
+            capacity = tableSize(minimumCapacity);
+        }
+        else {
+            // if most of the used slots are tombstones, the table does not need to grow
+            int length = table.mask + 1;
+            capacity = size.get() >= table.threshold >> 1 ? length << 1 : length;
+        }
+
+        Table next = new Table(Math.max(capacity, 4), loadFactor);
+        table.next = next;
+        freeze(table, next);
+
+        tableREF.set(this, next);
+    }
+
+    // must be called while holding the lock
+    private static
+    void freeze(final Table table, final Table next) {
+        final AtomicLongArray slots = table.slots;
+        for (int i = 0, n = table.mask + 1; i < n; i++) {
+            while (true) {
+                long slot = slots.get(i);
+                long state = slot & STATE_MASK;
+
+                long frozen;
+                if (state == LIVE) {
+                    frozen = MOVED_LIVE | (slot & 0xFFFFFFFFL);
+                }
+                else if (state == TOMBSTONE) {
+                    frozen = MOVED_TOMBSTONE;
+                }
+                else {
+                    frozen = MOVED_EMPTY;
+                }
+
+                if (slots.compareAndSet(i, slot, frozen)) {
+                    if (state == LIVE && next != null) {
+                        insertMoved(next, (int) slot);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    // only called while resizing, before the new table can be modified by any other thread
+    private static
+    void insertMoved(final Table table, final int key) {
+        final int mask = table.mask;
+        int index = hash(key) & mask;
+        while (table.slots.get(index) != EMPTY) {
+            index = (index + 1) & mask;
+        }
+
+        table.slots.lazySet(index, LIVE | (key & 0xFFFFFFFFL));
+        table.used.lazySet(table.used.get() + 1);
+    }
+
+    /**
+     * Removes every key. Keys that are added at the same time may or may not be removed.
+     */
+    public synchronized
+    void clear() {
+        Table table = tableREF.get(this);
+        Table next = new Table(table.mask + 1, loadFactor);
+
+        table.next = next;
+        freeze(table, null);
+
+        size.set(0);
+        tableREF.set(this, next);
+    }
+
+    /**
+     * @return the number of keys in the set
+     */
+    public
+    int size() {
+        return size.get();
+    }
+
+    public
+    boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    /**
+     * @return a copy of the keys. Keys that are added or removed at the same time may or may not be included.
+     */
+    public
+    IntArray toArray() {
+        Table table = tableREF.get(this);
+        IntArray array = new IntArray(Math.max(1, size.get()));
+
+        AtomicLongArray slots = table.slots;
+        for (int i = 0, n = table.mask + 1; i < n; i++) {
+            long slot = slots.get(i);
+            long state = slot & STATE_MASK;
+            if (state == LIVE || state == MOVED_LIVE) {
+                array.add((int) slot);
+            }
+        }
+        return array;
+    }
+
+    /**
+     * @return a copy of the keys as an (unsynchronized) {@link IntSet}
+     */
+    public
+    IntSet toIntSet() {
+        IntArray keys = toArray();
+        IntSet set = new IntSet(Math.max(1, keys.size));
+        set.addAll(keys);
+        return set;
+    }
+
+    /**
+     * Identity equals only!
+     */
+    @Override
+    public
+    boolean equals(final Object o) {
+        return this == o;
+    }
+
+    @Override
+    public
+    int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    @Override
+    public
+    String toString() {
+        return "ConcurrentIntSet " + toArray();
+    }
+}
@@ -0,0 +1,513 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import dorkbox.util.MathUtil;
+
+/**
+ * An unordered set of objects, where {@link #add(Object)}, {@link #contains(Object)} and {@link #remove(Object)} are lock-free and can
+ * be called by any number of threads at the same time. This is the object version of {@link ConcurrentIntSet}, and unlike
+ * {@link LockFreeSet}, writers do not block each other.
+ * <p>
+ * Keys are stored in an open-addressing table (linear probing), and every change to a slot is a single CAS. Slots are only ever claimed
+ * when they are empty, and removed keys leave a tombstone, so a key can never be in the table twice. Tombstones are removed when the
+ * table is resized.
+ * <p>
+ * The only time a thread will block is while the table is being resized (which happens O(log n) times). Threads that are only checking
+ * keys never block. Null keys are not allowed.
+ */
+@SuppressWarnings({"unchecked", "unused", "WeakerAccess"})
+public final
+class ConcurrentObjectSet<T> {
+    private static final Object TOMBSTONE = new Object();
+
+    // the states of slots that were frozen while the table was resized
+    private static final Object MOVED_EMPTY = new Object();
+    private static final Object MOVED_TOMBSTONE = new Object();
+
+    // Recommended for best performance while adhering to the "single writer principle". Must be static-final
+    private static final AtomicReferenceFieldUpdater<ConcurrentObjectSet, Table> tableREF = AtomicReferenceFieldUpdater.newUpdater(
+            ConcurrentObjectSet.class,
+            Table.class,
+            "table");
+
+    private volatile Table table;
+    private final AtomicInteger size = new AtomicInteger();
+    private final float loadFactor;
+
+
+    // a key that was frozen while the table was resized
+    private static final
+    class MovedKey {
+        final Object key;
+
+        MovedKey(final Object key) {
+            this.key = key;
+        }
+    }
+
+
+    private static final
+    class Table {
+        final int mask;
+        final int threshold;
+        final AtomicReferenceArray<Object> slots;
+
+        // the number of slots that are not empty (keys + tombstones)
+        final AtomicInteger used = new AtomicInteger();
+
+        // set before this table is resized, so readers can follow MOVED slots
+        volatile Table next;
+
+        Table(final int capacity, final float loadFactor) {
+            this.mask = capacity - 1;
+            this.threshold = Math.min(capacity - 1, (int) (capacity * loadFactor));
+            this.slots = new AtomicReferenceArray<Object>(capacity);
+        }
+    }
+
+
+    /**
+     * Creates a new set with an initial capacity of 64 and a load factor of 0.7.
+     */
+    public
+    ConcurrentObjectSet() {
+        this(64, 0.7F);
+    }
+
+    /**
+     * @param initialCapacity the number of keys that can be added before the table is resized
+     * @param loadFactor the maximum fraction of the table that is used before it is resized
+     */
+    public
+    ConcurrentObjectSet(final int initialCapacity, final float loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must be >= 0: " + initialCapacity);
+        }
+        if (loadFactor <= 0.0F || loadFactor >= 1.0F) {
+            throw new IllegalArgumentException("loadFactor must be > 0 and < 1: " + loadFactor);
+        }
+
+        this.loadFactor = loadFactor;
+        this.table = new Table(tableSize(initialCapacity), loadFactor);
+    }
+
+    private
+    int tableSize(final int capacity) {
+        return MathUtil.nextPowerOfTwo(Math.max(4, (int) Math.ceil(capacity / loadFactor)));
+    }
+
+    private static
+    int hash(final Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the key in the slot, if the slot holds a key (live or frozen), otherwise null
+     */
+    private static
+    Object keyOf(final Object slot) {
+        if (slot == null || slot == TOMBSTONE || slot == MOVED_EMPTY || slot == MOVED_TOMBSTONE) {
+            return null;
+        }
+        if (slot instanceof MovedKey) {
+            return ((MovedKey) slot).key;
+        }
+        return slot;
+    }
+
+    /**
+     * @return true if the key was added, false if it was already in the set
+     */
+    public
+    boolean add(final T key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null.");
+        }
+
+        final int hash = hash(key);
+
+        retry:
+        while (true) {
+            final Table table = tableREF.get(this);
+            final AtomicReferenceArray<Object> slots = table.slots;
+            final int mask = table.mask;
+
+            int index = hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                Object slot = slots.get(index);
+
+                if (slot == null) {
+                    if (!slots.compareAndSet(index, null, key)) {
+                        // someone else changed this slot first, check it again
+                        probes--;
+                        continue;
+                    }
+
+                    size.incrementAndGet();
+                    if (table.used.incrementAndGet() >= table.threshold) {
+                        resize(table, 0);
+                    }
+                    return true;
+                }
+
+                if (slot == MOVED_EMPTY) {
+                    // wait for the resize to finish, so that we do not add a duplicate into the new table
+                    awaitResize();
+                    continue retry;
+                }
+
+                Object current = keyOf(slot);
+                if (current == key || (current != null && current.equals(key))) {
+                    return false;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            // every slot has been used, because many threads added at the same time
+            resize(table, 0);
+        }
+    }
+
+    /**
+     * Adds all of the keys. The table is resized (at most once) before the keys are added.
+     *
+     * @return the number of keys that were added (and were not already in the set)
+     */
+    public
+    int addAll(final T... keys) {
+        return addAll(keys, 0, keys.length);
+    }
+
+    /**
+     * Adds all of the keys. The table is resized (at most once) before the keys are added.
+     *
+     * @return the number of keys that were added (and were not already in the set)
+     */
+    public
+    int addAll(final T[] keys, final int offset, final int length) {
+        if (offset + length > keys.length) {
+            throw new IllegalArgumentException("offset + length must be <= keys.length: " + offset + " + " + length + " <= " + keys.length);
+        }
+
+        ensureCapacity(length);
+
+        int added = 0;
+        for (int i = offset, n = offset + length; i < n; i++) {
+            if (add(keys[i])) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Adds all of the keys. The table is resized (at most once) before the keys are added.
+     *
+     * @return the number of keys that were added (and were not already in the set)
+     */
+    public
+    int addAll(final Array<? extends T> keys) {
+        return addAll((T[]) keys.items, 0, keys.size);
+    }
+
+    /**
+     * Lock-free check if the key is in the set. This never blocks, even while the table is being resized.
+     */
+    public
+    boolean contains(final T key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Lock-free lookup of the key in the set that is equal to this key. This never blocks, even while the table is being resized.
+     *
+     * @return the key in the set, or null if there is no equal key
+     */
+    public
+    T get(final T key) {
+        if (key == null) {
+            return null;
+        }
+
+        final int hash = hash(key);
+
+        Table table = tableREF.get(this);
+        while (true) {
+            final AtomicReferenceArray<Object> slots = table.slots;
+            final int mask = table.mask;
+
+            int index = hash & mask;
+            boolean moved = false;
+
+            for (int probes = 0; probes <= mask; probes++) {
+                Object slot = slots.get(index);
+
+                if (slot == null) {
+                    return null;
+                }
+                if (slot == MOVED_EMPTY) {
+                    moved = true;
+                    break;
+                }
+
+                Object current = keyOf(slot);
+                if (current == key || (current != null && current.equals(key))) {
+                    return (T) current;
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            if (!moved) {
+                return null;
+            }
+
+            // the key was not in this table when it was resized, but might have been added to the new table since then
+            table = table.next;
+        }
+    }
+
+    /**
+     * @return true if the key was removed, false if it was not in the set
+     */
+    public
+    boolean remove(final T key) {
+        if (key == null) {
+            return false;
+        }
+
+        final int hash = hash(key);
+
+        retry:
+        while (true) {
+            final Table table = tableREF.get(this);
+            final AtomicReferenceArray<Object> slots = table.slots;
+            final int mask = table.mask;
+
+            int index = hash & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                Object slot = slots.get(index);
+
+                if (slot == null) {
+                    return false;
+                }
+
+                if (slot == MOVED_EMPTY) {
+                    awaitResize();
+                    continue retry;
+                }
+
+                if (slot != TOMBSTONE && slot != MOVED_TOMBSTONE) {
+                    boolean moved = slot instanceof MovedKey;
+                    Object current = moved ? ((MovedKey) slot).key : slot;
+
+                    if (current == key || current.equals(key)) {
+                        if (moved) {
+                            awaitResize();
+                            continue retry;
+                        }
+
+                        if (slots.compareAndSet(index, slot, TOMBSTONE)) {
+                            size.decrementAndGet();
+                            return true;
+                        }
+
+                        // removed by another thread, or frozen by a resize. Check it again
+                        probes--;
+                        continue;
+                    }
+                }
+
+                index = (index + 1) & mask;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Makes sure that there is enough room for this many more keys, so the table is not resized while they are added.
+     */
+    public
+    void ensureCapacity(final int additionalCapacity) {
+        Table table = tableREF.get(this);
+        if (table.used.get() + additionalCapacity >= table.threshold) {
+            resize(table, size.get() + additionalCapacity);
+        }
+    }
+
+    private synchronized
+    void awaitResize() {
+        // the resize happens while holding the lock, so by the time we get here, it has finished
+    }
+
+    /**
+     * Freezes every slot in the table, and copies the keys into a new table. New keys cannot be added while this happens, but checks
+     * can. Tombstones are not copied.
+     *
+     * @param minimumCapacity the minimum number of keys the new table must hold (if 0, the new table is sized from the current keys)
+     */
+    private synchronized
+    void resize(final Table table, final int minimumCapacity) {
+        if (tableREF.get(this) != table) {
+            // another thread already resized it
+            return;
+        }
+
+        int capacity;
+        if (minimumCapacity > 0) {
+            capacity = tableSize(minimumCapacity);
+        }
+        else {
+            // if most of the used slots are tombstones, the table does not need to grow
+            int length = table.mask + 1;
+            capacity = size.get() >= table.threshold >> 1 ? length << 1 : length;
+        }
+
+        Table next = new Table(Math.max(capacity, 4), loadFactor);
+        table.next = next;
+        freeze(table, next);
+
+        tableREF.set(this, next);
+    }
+
+    // must be called while holding the lock
+    private static
+    void freeze(final Table table, final Table next) {
+        final AtomicReferenceArray<Object> slots = table.slots;
+        for (int i = 0, n = table.mask + 1; i < n; i++) {
+            while (true) {
+                Object slot = slots.get(i);
+
+                Object frozen;
+                if (slot == null) {
+                    frozen = MOVED_EMPTY;
+                }
+                else if (slot == TOMBSTONE) {
+                    frozen = MOVED_TOMBSTONE;
+                }
+                else {
+                    frozen = new MovedKey(slot);
+                }
+
+                if (slots.compareAndSet(i, slot, frozen)) {
+                    if (next != null && frozen instanceof MovedKey) {
+                        insertMoved(next, slot);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    // only called while resizing, before the new table can be modified by any other thread
+    private static
+    void insertMoved(final Table table, final Object key) {
+        final int mask = table.mask;
+        int index = hash(key) & mask;
+        while (table.slots.get(index) != null) {
+            index = (index + 1) & mask;
+        }
+
+        table.slots.lazySet(index, key);
+        table.used.lazySet(table.used.get() + 1);
+    }
+
+    /**
+     * Removes every key. Keys that are added at the same time may or may not be removed.
+     */
+    public synchronized
+    void clear() {
+        Table table = tableREF.get(this);
+        Table next = new Table(table.mask + 1, loadFactor);
+
+        table.next = next;
+        freeze(table, null);
+
+        size.set(0);
+        tableREF.set(this, next);
+    }
+
+    /**
+     * @return the number of keys in the set
+     */
+    public
+    int size() {
+        return size.get();
+    }
+
+    public
+    boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    /**
+     * @return a copy of the keys. Keys that are added or removed at the same time may or may not be included.
+     */
+    public
+    Array<T> toArray() {
+        Table table = tableREF.get(this);
+        Array<T> array = new Array<T>(true, Math.max(1, size.get()));
+
+        AtomicReferenceArray<Object> slots = table.slots;
+        for (int i = 0, n = table.mask + 1; i < n; i++) {
+            Object key = keyOf(slots.get(i));
+            if (key != null) {
+                array.add((T) key);
+            }
+        }
+        return array;
+    }
+
+    /**
+     * @return a copy of the keys as an (unsynchronized) {@link ObjectSet}
+     */
+    public
+    ObjectSet<T> toObjectSet() {
+        Array<T> keys = toArray();
+        ObjectSet<T> set = new ObjectSet<T>(Math.max(1, keys.size));
+        set.addAll(keys);
+        return set;
+    }
+
+    /**
+     * Identity equals only!
+     */
+    @Override
+    public
+    boolean equals(final Object o) {
+        return this == o;
+    }
+
+    @Override
+    public
+    int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    @Override
+    public
+    String toString() {
+        return "ConcurrentObjectSet " + toArray();
+    }
+}
@@ -0,0 +1,461 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import dorkbox.util.MathUtil;
+import dorkbox.util.bytes.ByteBuffer2;
+
+/**
+ * A thread-safe cuckoo filter (Fan et al, "Cuckoo Filter: Practically Better Than Bloom"), which is a compact set that can only answer
+ * "definitely not present" or "might be present". Unlike a {@link BloomFilter}, values can also be removed.
+ * <p>
+ * Each bucket holds 4 fingerprints of up to 16 bits, packed into a single long. Checking is lock-free, and adding/removing are
+ * synchronized. When a fingerprint has to be relocated to make room, it is briefly in neither of the buckets that a concurrent check
+ * looks at (the check can read the new bucket before the fingerprint arrives, and the old bucket after it has left). Relocations are
+ * therefore guarded by a sequence lock: a check that does not find the value retries if a relocation happened at the same time, so a
+ * concurrent check will never miss a value that was already added.
+ * <p>
+ * Adding the same value more than once stores it more than once (and it must then be removed the same number of times). Only remove
+ * values that were definitely added, otherwise a different value with the same fingerprint can be removed.
+ * <p>
+ * Objects are hashed with their {@link Object#hashCode()}, except for byte[] and {@link dorkbox.util.bytes.ByteArrayWrapper}, which
+ * are hashed by their contents. A filter that is {@link #write(ByteBuffer2) written} and read again (possibly by a different JVM) can
+ * only find objects whose hashCode() is stable, such as String or Long. Objects that use the identity hashCode will not be found, so
+ * use the byte[] or long methods with a stable key for those.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final
+class CuckooFilter {
+    /**
+     * The lowest false-positive rate that is possible with 16-bit fingerprints
+     */
+    public static final double MIN_FALSE_POSITIVE_RATE = 8.0D / 65536.0D;
+
+    private static final int SLOTS = 4;
+    private static final int MAX_KICKS = 500;
+    private static final double LOAD_FACTOR = 0.95D;
+
+    private static final long LANES = 0x0001000100010001L;
+    private static final long HIGH_BITS = 0x8000800080008000L;
+
+    private final AtomicLongArray buckets;
+    private final int bucketMask;
+    private final int fingerprintBits;
+    private final int fingerprintMask;
+
+    // only modified while holding the lock
+    private volatile int size;
+
+    // sequence lock for relocations. Odd while fingerprints are being moved, and incremented (by the writer) before and after moving
+    private volatile int version;
+    private int random = 0x2545F491;
+
+    // used while relocating fingerprints. Guarded by the lock
+    private final int[] pathBucket = new int[MAX_KICKS];
+    private final int[] pathSlot = new int[MAX_KICKS];
+    private final int[] pathFingerprint = new int[MAX_KICKS];
+
+    /**
+     * @param expectedCount the number of values that are expected to be added
+     * @param falsePositiveRate the desired probability that {@link #mightContain} returns true for a value that was never added. This
+     *         cannot be lower than {@link #MIN_FALSE_POSITIVE_RATE}
+     */
+    public
+    CuckooFilter(final int expectedCount, final double falsePositiveRate) {
+        if (expectedCount <= 0) {
+            throw new IllegalArgumentException("expectedCount must be > 0: " + expectedCount);
+        }
+        if (falsePositiveRate < MIN_FALSE_POSITIVE_RATE || falsePositiveRate >= 1.0D) {
+            throw new IllegalArgumentException("falsePositiveRate must be >= " + MIN_FALSE_POSITIVE_RATE + " and < 1: " +
+                                               falsePositiveRate);
+        }
+
+        // the false-positive rate is about 2 * SLOTS / 2^bits
+        int bits = (int) Math.ceil(Math.log(2.0D * SLOTS / falsePositiveRate) / Math.log(2.0D));
+        this.fingerprintBits = Math.max(4, Math.min(16, bits));
+        this.fingerprintMask = (1 << fingerprintBits) - 1;
+
+        long bucketCount = (long) Math.ceil(expectedCount / (SLOTS * LOAD_FACTOR));
+        if (bucketCount > 1 << 30) {
+            throw new IllegalArgumentException("The filter would be too large. Expected count: " + expectedCount);
+        }
+
+        int length = MathUtil.nextPowerOfTwo(Math.max(1, (int) bucketCount));
+        this.buckets = new AtomicLongArray(length);
+        this.bucketMask = length - 1;
+    }
+
+    private
+    CuckooFilter(final int fingerprintBits, final int size, final long[] buckets) {
+        this.fingerprintBits = fingerprintBits;
+        this.fingerprintMask = (1 << fingerprintBits) - 1;
+        this.size = size;
+        this.buckets = new AtomicLongArray(buckets);
+        this.bucketMask = buckets.length - 1;
+    }
+
+    /**
+     * @return true if the value was added, false if the filter is too full
+     */
+    public
+    boolean add(final byte[] bytes) {
+        return addHash(FilterHash.hash(bytes, 0, bytes.length));
+    }
+
+    /**
+     * @return true if the value was added, false if the filter is too full
+     */
+    public
+    boolean add(final byte[] bytes, final int offset, final int length) {
+        return addHash(FilterHash.hash(bytes, offset, length));
+    }
+
+    /**
+     * @return true if the value was added, false if the filter is too full
+     */
+    public
+    boolean add(final long value) {
+        return addHash(FilterHash.hash(value));
+    }
+
+    /**
+     * The value is hashed with its {@link Object#hashCode()}, which must be stable if this filter is written and read again.
+     *
+     * @return true if the value was added, false if the filter is too full
+     */
+    public
+    boolean add(final Object value) {
+        return addHash(FilterHash.hash(value));
+    }
+
+    public
+    boolean mightContain(final byte[] bytes) {
+        return containsHash(FilterHash.hash(bytes, 0, bytes.length));
+    }
+
+    public
+    boolean mightContain(final byte[] bytes, final int offset, final int length) {
+        return containsHash(FilterHash.hash(bytes, offset, length));
+    }
+
+    public
+    boolean mightContain(final long value) {
+        return containsHash(FilterHash.hash(value));
+    }
+
+    public
+    boolean mightContain(final Object value) {
+        return containsHash(FilterHash.hash(value));
+    }
+
+    /**
+     * @return true if the value was found (and removed)
+     */
+    public
+    boolean remove(final byte[] bytes) {
+        return removeHash(FilterHash.hash(bytes, 0, bytes.length));
+    }
+
+    /**
+     * @return true if the value was found (and removed)
+     */
+    public
+    boolean remove(final byte[] bytes, final int offset, final int length) {
+        return removeHash(FilterHash.hash(bytes, offset, length));
+    }
+
+    /**
+     * @return true if the value was found (and removed)
+     */
+    public
+    boolean remove(final long value) {
+        return removeHash(FilterHash.hash(value));
+    }
+
+    /**
+     * @return true if the value was found (and removed)
+     */
+    public
+    boolean remove(final Object value) {
+        return removeHash(FilterHash.hash(value));
+    }
+
+    private
+    int fingerprint(final long hash) {
+        int fingerprint = (int) (hash >>> 48) & fingerprintMask;
+
+        // 0 is an empty slot
+        return fingerprint != 0 ? fingerprint : 1;
+    }
+
+    private
+    int alternateIndex(final int index, final int fingerprint) {
+        return (index ^ (int) FilterHash.hash((long) fingerprint)) & bucketMask;
+    }
+
+    private static
+    int getSlot(final long bucket, final int slot) {
+        return (int) (bucket >>> (slot << 4)) & 0xFFFF;
+    }
+
+    private static
+    long setSlot(final long bucket, final int slot, final int fingerprint) {
+        int shift = slot << 4;
+        return (bucket & ~(0xFFFFL << shift)) | ((long) fingerprint << shift);
+    }
+
+    /**
+     * Checks all 4 fingerprints in the bucket at the same time (SWAR). This is exact, because the fingerprint is never 0.
+     */
+    private static
+    boolean hasFingerprint(final long bucket, final int fingerprint) {
+        long x = bucket ^ (fingerprint * LANES);
+        return ((x - LANES) & ~x & HIGH_BITS) != 0;
+    }
+
+    /**
+     * @return the index of the first slot with this fingerprint (0 finds an empty slot), or -1 if there is none
+     */
+    private static
+    int findSlot(final long bucket, final int fingerprint) {
+        for (int slot = 0; slot < SLOTS; slot++) {
+            if (getSlot(bucket, slot) == fingerprint) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private
+    boolean containsHash(final long hash) {
+        final AtomicLongArray buckets = this.buckets;
+
+        int fingerprint = fingerprint(hash);
+        int index1 = (int) hash & bucketMask;
+        int index2 = alternateIndex(index1, fingerprint);
+
+        while (true) {
+            int version = this.version;
+
+            // a fingerprint that is found is always valid, even while it is being relocated
+            if (hasFingerprint(buckets.get(index1), fingerprint) || hasFingerprint(buckets.get(index2), fingerprint)) {
+                return true;
+            }
+
+            // not found. This is only correct if no relocation was in progress while the buckets were read
+            if ((version & 1) == 0 && version == this.version) {
+                return false;
+            }
+        }
+    }
+
+    private synchronized
+    boolean addHash(final long hash) {
+        final AtomicLongArray buckets = this.buckets;
+
+        int fingerprint = fingerprint(hash);
+        int index1 = (int) hash & bucketMask;
+        int index2 = alternateIndex(index1, fingerprint);
+
+        if (insertIntoEmpty(index1, fingerprint) || insertIntoEmpty(index2, fingerprint)) {
+            size++;
+            return true;
+        }
+
+        // both buckets are full. Find a path of fingerprints to relocate, WITHOUT changing anything yet.
+        final int[] pathBucket = this.pathBucket;
+        final int[] pathSlot = this.pathSlot;
+        final int[] pathFingerprint = this.pathFingerprint;
+
+        int index = (nextRandom() & 1) == 0 ? index1 : index2;
+        for (int kick = 0; kick < MAX_KICKS; kick++) {
+            int slot = chooseSlot(index, kick);
+            if (slot < 0) {
+                // every slot in this bucket is already part of the path
+                return false;
+            }
+
+            int victim = getSlot(buckets.get(index), slot);
+            pathBucket[kick] = index;
+            pathSlot[kick] = slot;
+            pathFingerprint[kick] = victim;
+
+            index = alternateIndex(index, victim);
+            int emptySlot = findSlot(buckets.get(index), 0);
+            if (emptySlot >= 0) {
+                // move the fingerprints starting from the END of the path, so every fingerprint is always in at least one bucket.
+                // Concurrent checks that do not find a fingerprint will retry until the version is even (and unchanged) again.
+                version++;
+
+                buckets.set(index, setSlot(buckets.get(index), emptySlot, victim));
+
+                for (int i = kick; i > 0; i--) {
+                    int bucketIndex = pathBucket[i];
+                    buckets.set(bucketIndex, setSlot(buckets.get(bucketIndex), pathSlot[i], pathFingerprint[i - 1]));
+                }
+
+                int bucketIndex = pathBucket[0];
+                buckets.set(bucketIndex, setSlot(buckets.get(bucketIndex), pathSlot[0], fingerprint));
+
+                version++;
+                size++;
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // must be called while holding the lock
+    private
+    boolean insertIntoEmpty(final int index, final int fingerprint) {
+        long bucket = buckets.get(index);
+        int slot = findSlot(bucket, 0);
+        if (slot < 0) {
+            return false;
+        }
+
+        buckets.set(index, setSlot(bucket, slot, fingerprint));
+        return true;
+    }
+
+    /**
+     * Chooses a random slot in the bucket that is not already part of the relocation path.
+     * <p>
+     * must be called while holding the lock
+     */
+    private
+    int chooseSlot(final int index, final int pathLength) {
+        int start = nextRandom() & (SLOTS - 1);
+
+        outer:
+        for (int i = 0; i < SLOTS; i++) {
+            int slot = (start + i) & (SLOTS - 1);
+            for (int j = 0; j < pathLength; j++) {
+                if (pathBucket[j] == index && pathSlot[j] == slot) {
+                    continue outer;
+                }
+            }
+            return slot;
+        }
+
+        return -1;
+    }
+
+    // must be called while holding the lock
+    private
+    int nextRandom() {
+        // xorshift
+        int x = random;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        random = x;
+        return x;
+    }
+
+    private synchronized
+    boolean removeHash(final long hash) {
+        int fingerprint = fingerprint(hash);
+        int index1 = (int) hash & bucketMask;
+
+        if (removeFrom(index1, fingerprint) || removeFrom(alternateIndex(index1, fingerprint), fingerprint)) {
+            size--;
+            return true;
+        }
+
+        return false;
+    }
+
+    // must be called while holding the lock
+    private
+    boolean removeFrom(final int index, final int fingerprint) {
+        long bucket = buckets.get(index);
+        int slot = findSlot(bucket, fingerprint);
+        if (slot < 0) {
+            return false;
+        }
+
+        buckets.set(index, setSlot(bucket, slot, 0));
+        return true;
+    }
+
+    /**
+     * @return the number of values in the filter
+     */
+    public
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the maximum number of values that the filter can hold (in practice, adding will fail before it is completely full)
+     */
+    public
+    int capacity() {
+        return buckets.length() * SLOTS;
+    }
+
+    public
+    int fingerprintBits() {
+        return fingerprintBits;
+    }
+
+    public synchronized
+    void clear() {
+        for (int i = 0, n = buckets.length(); i < n; i++) {
+            buckets.set(i, 0L);
+        }
+        size = 0;
+    }
+
+    /**
+     * Writes the fingerprints of this filter. Values that were added via {@link #add(Object)} can only be found after the filter is read
+     * again if their {@link Object#hashCode()} is stable.
+     */
+    public synchronized
+    void write(final ByteBuffer2 buffer) {
+        int length = buckets.length();
+        long[] copy = new long[length];
+        for (int i = 0; i < length; i++) {
+            copy[i] = buckets.get(i);
+        }
+
+        buffer.writeInt(fingerprintBits, true);
+        buffer.writeInt(size, true);
+        buffer.writeInt(length, true);
+        buffer.writeLongs(copy);
+    }
+
+    /**
+     * Reads a filter that was written by {@link #write(ByteBuffer2)}
+     */
+    public static
+    CuckooFilter read(final ByteBuffer2 buffer) {
+        int fingerprintBits = buffer.readInt(true);
+        int size = buffer.readInt(true);
+        int length = buffer.readInt(true);
+        return new CuckooFilter(fingerprintBits, size, buffer.readLongs(length));
+    }
+
+    @Override
+    public
+    String toString() {
+        return "CuckooFilter (size=" + size + ", capacity=" + capacity() + ", fingerprintBits=" + fingerprintBits + ")";
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import dorkbox.util.bytes.ByteArrayWrapper;
+import dorkbox.util.bytes.XXHash64;
+
+/**
+ * 64-bit hashes used by the {@link BloomFilter} and {@link CuckooFilter}. Both halves of the hash are used, so they must be well mixed.
+ */
+final
+class FilterHash {
+    private
+    FilterHash() {
+    }
+
+    static
+    long hash(final byte[] bytes, final int offset, final int length) {
+        return XXHash64.hash(bytes, offset, length, 0L);
+    }
+
+    static
+    long hash(final long value) {
+        // the finalizer from murmur3
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    static
+    long hash(final Object value) {
+        if (value instanceof ByteArrayWrapper) {
+            byte[] bytes = ((ByteArrayWrapper) value).getBytes();
+            return hash(bytes, 0, bytes.length);
+        }
+        if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            return hash(bytes, 0, bytes.length);
+        }
+        return hash((long) value.hashCode());
+    }
+}
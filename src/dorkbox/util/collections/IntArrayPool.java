@@ -0,0 +1,59 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+/**
+ * A {@link SizeClassPool} of {@link IntArray}, where the capacity is the length of the backing array. Obtained arrays are empty and
+ * ordered.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public
+class IntArrayPool extends SizeClassPool<IntArray> {
+    /**
+     * Creates a pool for arrays with a capacity from 16 to 65536, caching 16 arrays per size class per thread, and 64 globally.
+     */
+    public
+    IntArrayPool() {
+        this(16, 65536, 16, 64);
+    }
+
+    /**
+     * @see SizeClassPool#SizeClassPool(int, int, int, int)
+     */
+    public
+    IntArrayPool(final int minCapacity, final int maxCapacity, final int threadCacheSize, final int globalCacheSize) {
+        super(minCapacity, maxCapacity, threadCacheSize, globalCacheSize);
+    }
+
+    @Override
+    protected
+    IntArray create(final int capacity) {
+        return new IntArray(true, capacity);
+    }
+
+    @Override
+    protected
+    int capacity(final IntArray array) {
+        return array.items.length;
+    }
+
+    @Override
+    protected
+    void reset(final IntArray array) {
+        array.clear();
+        array.ordered = true;
+    }
+}
@@ -0,0 +1,1563 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import dorkbox.util.bytes.ByteBuffer2;
+
+/**
+ * A compressed bitmap set of ints (in the style of "Roaring" bitmaps), which is MUCH smaller than {@link IntSet} for dense sets of ints.
+ * <p>
+ * The int space is split into chunks of 65536 values (by the high 16 bits of the value), and each chunk is stored in whichever
+ * container is smallest for it:
+ * <ul>
+ * <li>array: a sorted char[] of the low 16 bits, for chunks with up to 4096 values (2 bytes per value)</li>
+ * <li>bitmap: a long[1024], for chunks with more than 4096 values (8kb)</li>
+ * <li>run: sorted (start, length) pairs, for chunks with long consecutive runs of values. These are only created by
+ * {@link #runOptimize()}</li>
+ * </ul>
+ * Values are ordered (for iteration and {@link #toIntArray()}) the same as signed ints, so results can be used directly with
+ * {@link SortedArrays}.
+ * <p>
+ * This class is not thread safe.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public
+class IntBitmap {
+    /**
+     * Chunks with more values than this are stored as a bitmap
+     */
+    static final int ARRAY_MAX = 4096;
+
+    private static final byte TYPE_ARRAY = 0;
+    private static final byte TYPE_BITMAP = 1;
+    private static final byte TYPE_RUN = 2;
+
+    public int size;
+
+    char[] keys;
+    Container[] containers;
+    int count;
+
+    private BitmapIterator iterator1, iterator2;
+
+    /**
+     * Creates a new set with room for 4 chunks (of 65536 values each)
+     */
+    public
+    IntBitmap() {
+        this(4);
+    }
+
+    /**
+     * @param initialChunks the number of chunks (of 65536 values each) that can be stored before growing the backing arrays
+     */
+    public
+    IntBitmap(int initialChunks) {
+        initialChunks = Math.max(1, initialChunks);
+        keys = new char[initialChunks];
+        containers = new Container[initialChunks];
+    }
+
+    /**
+     * Creates a new set identical to the specified set.
+     */
+    public
+    IntBitmap(final IntBitmap set) {
+        this(set.count);
+        for (int i = 0; i < set.count; i++) {
+            keys[i] = set.keys[i];
+            containers[i] = set.containers[i].copy();
+        }
+        count = set.count;
+        size = set.size;
+    }
+
+    // the sign bit is flipped, so that the unsigned ordering of the chunks is identical to signed int ordering
+    private static
+    char high(final int value) {
+        return (char) ((value ^ Integer.MIN_VALUE) >>> 16);
+    }
+
+    private static
+    char low(final int value) {
+        return (char) value;
+    }
+
+    static
+    int combine(final char high, final int low) {
+        return ((high << 16) | low) ^ Integer.MIN_VALUE;
+    }
+
+    private
+    int indexOf(final char key) {
+        final char[] keys = this.keys;
+        int lo = 0;
+        int hi = count - 1;
+
+        // most additions are sequential, so check the last chunk first
+        if (hi >= 0 && keys[hi] == key) {
+            return hi;
+        }
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char midKey = keys[mid];
+            if (midKey < key) {
+                lo = mid + 1;
+            }
+            else if (midKey > key) {
+                hi = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    private
+    void insertAt(final int index, final char key, final Container container) {
+        if (count == keys.length) {
+            int newLength = Math.max(4, (int) (count * 1.75f));
+            keys = Arrays.copyOf(keys, newLength);
+            containers = Arrays.copyOf(containers, newLength);
+        }
+
+        System.arraycopy(keys, index, keys, index + 1, count - index);
+        System.arraycopy(containers, index, containers, index + 1, count - index);
+        keys[index] = key;
+        containers[index] = container;
+        count++;
+    }
+
+    private
+    void removeAt(final int index) {
+        System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, count - index - 1);
+        count--;
+        containers[count] = null;
+    }
+
+    private
+    void append(final char key, final Container container) {
+        insertAt(count, key, container);
+        size += container.cardinality();
+    }
+
+    /**
+     * Returns true if the value was not already in the set.
+     */
+    public
+    boolean add(final int value) {
+        final char high = high(value);
+        int index = indexOf(high);
+
+        if (index < 0) {
+            ArrayContainer container = new ArrayContainer(4);
+            container.content[0] = low(value);
+            container.cardinality = 1;
+
+            insertAt(-index - 1, high, container);
+            size++;
+            return true;
+        }
+
+        Container container = containers[index];
+        int before = container.cardinality();
+        container = container.add(low(value));
+        containers[index] = container;
+
+        if (container.cardinality() != before) {
+            size++;
+            return true;
+        }
+        return false;
+    }
+
+    public
+    void addAll(final IntArray array) {
+        addAll(array.items, 0, array.size);
+    }
+
+    public
+    void addAll(final int... array) {
+        addAll(array, 0, array.length);
+    }
+
+    public
+    void addAll(final int[] array, final int offset, final int length) {
+        for (int i = offset, n = i + length; i < n; i++) {
+            add(array[i]);
+        }
+    }
+
+    public
+    void addAll(final IntSet set) {
+        IntSet.IntSetIterator iterator = new IntSet.IntSetIterator(set);
+        while (iterator.hasNext) {
+            add(iterator.next());
+        }
+    }
+
+    /**
+     * Adds all of the values in the specified set to this set.
+     */
+    public
+    void addAll(final IntBitmap set) {
+        IntBitmap union = or(this, set);
+        this.keys = union.keys;
+        this.containers = union.containers;
+        this.count = union.count;
+        this.size = union.size;
+    }
+
+    /**
+     * Returns true if the value was removed.
+     */
+    public
+    boolean remove(final int value) {
+        int index = indexOf(high(value));
+        if (index < 0) {
+            return false;
+        }
+
+        Container container = containers[index];
+        int before = container.cardinality();
+        container = container.remove(low(value));
+
+        if (container.cardinality() == before) {
+            return false;
+        }
+
+        size--;
+        if (container.cardinality() == 0) {
+            removeAt(index);
+        }
+        else {
+            containers[index] = container;
+        }
+        return true;
+    }
+
+    public
+    boolean contains(final int value) {
+        int index = indexOf(high(value));
+        return index >= 0 && containers[index].contains(low(value));
+    }
+
+    /**
+     * Returns the number of values in the set (identical to {@link #size}).
+     */
+    public
+    int cardinality() {
+        return size;
+    }
+
+    public
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    public
+    void clear() {
+        Arrays.fill(containers, 0, count, null);
+        count = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns the lowest value in the set.
+     *
+     * @throws IllegalStateException if the set is empty.
+     */
+    public
+    int first() {
+        if (size == 0) {
+            throw new IllegalStateException("IntBitmap is empty.");
+        }
+        return combine(keys[0], containers[0].nextValue(0));
+    }
+
+    /**
+     * Converts each chunk to a run container, if that is smaller than the current container (and back again, if it is not). This
+     * should be called after adding large numbers of consecutive values.
+     */
+    public
+    void runOptimize() {
+        for (int i = 0; i < count; i++) {
+            containers[i] = containers[i].runOptimize();
+        }
+    }
+
+    /**
+     * Returns the approximate number of bytes used to store the values.
+     */
+    public
+    long sizeInBytes() {
+        long bytes = count * 6L;
+        for (int i = 0; i < count; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns all of the values (in ascending order).
+     */
+    public
+    int[] toArray() {
+        int[] array = new int[size];
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            offset = containers[i].fill(array, offset, keys[i]);
+        }
+        return array;
+    }
+
+    /**
+     * Returns all of the values (in ascending order).
+     */
+    public
+    IntArray toIntArray() {
+        return new IntArray(toArray());
+    }
+
+    public
+    IntSet toIntSet() {
+        IntSet set = new IntSet(Math.max(1, size));
+        set.addAll(toArray());
+        return set;
+    }
+
+    /**
+     * Returns a new set that contains the values that are in both sets.
+     */
+    public static
+    IntBitmap and(final IntBitmap a, final IntBitmap b) {
+        IntBitmap result = new IntBitmap(Math.min(a.count, b.count));
+
+        int i = 0;
+        int j = 0;
+        while (i < a.count && j < b.count) {
+            char aKey = a.keys[i];
+            char bKey = b.keys[j];
+
+            if (aKey < bKey) {
+                i++;
+            }
+            else if (bKey < aKey) {
+                j++;
+            }
+            else {
+                Container container = Container.and(a.containers[i], b.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.append(aKey, container);
+                }
+                i++;
+                j++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a new set that contains the values that are in either set.
+     */
+    public static
+    IntBitmap or(final IntBitmap a, final IntBitmap b) {
+        IntBitmap result = new IntBitmap(a.count + b.count);
+
+        int i = 0;
+        int j = 0;
+        while (i < a.count && j < b.count) {
+            char aKey = a.keys[i];
+            char bKey = b.keys[j];
+
+            if (aKey < bKey) {
+                result.append(aKey, a.containers[i++].copy());
+            }
+            else if (bKey < aKey) {
+                result.append(bKey, b.containers[j++].copy());
+            }
+            else {
+                result.append(aKey, Container.or(a.containers[i++], b.containers[j++]));
+            }
+        }
+
+        for (; i < a.count; i++) {
+            result.append(a.keys[i], a.containers[i].copy());
+        }
+        for (; j < b.count; j++) {
+            result.append(b.keys[j], b.containers[j].copy());
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a new set that contains the values that are in 'a', but not in 'b'.
+     */
+    public static
+    IntBitmap andNot(final IntBitmap a, final IntBitmap b) {
+        IntBitmap result = new IntBitmap(a.count);
+
+        int i = 0;
+        int j = 0;
+        while (i < a.count) {
+            char aKey = a.keys[i];
+
+            while (j < b.count && b.keys[j] < aKey) {
+                j++;
+            }
+
+            Container container;
+            if (j < b.count && b.keys[j] == aKey) {
+                container = Container.andNot(a.containers[i], b.containers[j]);
+            }
+            else {
+                container = a.containers[i].copy();
+            }
+
+            if (container.cardinality() > 0) {
+                result.append(aKey, container);
+            }
+            i++;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns true if there is at least 1 value that is in both sets.
+     */
+    public static
+    boolean intersects(final IntBitmap a, final IntBitmap b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.count && j < b.count) {
+            char aKey = a.keys[i];
+            char bKey = b.keys[j];
+
+            if (aKey < bKey) {
+                i++;
+            }
+            else if (bKey < aKey) {
+                j++;
+            }
+            else {
+                if (Container.and(a.containers[i], b.containers[j]).cardinality() > 0) {
+                    return true;
+                }
+                i++;
+                j++;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes this set to the buffer. The containers are written as-is, so call {@link #runOptimize()} first for the smallest output.
+     */
+    public
+    void write(final ByteBuffer2 buffer) {
+        buffer.writeInt(count, true);
+        for (int i = 0; i < count; i++) {
+            buffer.writeChar(keys[i]);
+            containers[i].write(buffer);
+        }
+    }
+
+    /**
+     * Reads a set that was written by {@link #write(ByteBuffer2)}
+     */
+    public static
+    IntBitmap read(final ByteBuffer2 buffer) {
+        int count = buffer.readInt(true);
+
+        IntBitmap set = new IntBitmap(count);
+        for (int i = 0; i < count; i++) {
+            char key = buffer.readChar();
+
+            Container container;
+            byte type = buffer.readByte();
+            switch (type) {
+                case TYPE_ARRAY:
+                    container = ArrayContainer.read(buffer);
+                    break;
+                case TYPE_BITMAP:
+                    container = BitmapContainer.read(buffer);
+                    break;
+                case TYPE_RUN:
+                    container = RunContainer.read(buffer);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown container type: " + type);
+            }
+
+            set.append(key, container);
+        }
+
+        return set;
+    }
+
+    /**
+     * Returns an iterator for the values in the set (in ascending order). Note that the same iterator instance is returned each time this
+     * method is called. Use the {@link BitmapIterator} constructor for nested or multithreaded iteration.
+     */
+    public
+    BitmapIterator iterator() {
+        if (iterator1 == null) {
+            iterator1 = new BitmapIterator(this);
+            iterator2 = new BitmapIterator(this);
+        }
+        if (!iterator1.valid) {
+            iterator1.reset();
+            iterator1.valid = true;
+            iterator2.valid = false;
+            return iterator1;
+        }
+        iterator2.reset();
+        iterator2.valid = true;
+        iterator1.valid = false;
+        return iterator2;
+    }
+
+    @Override
+    public
+    int hashCode() {
+        int h = size;
+        for (int i = 0; i < count; i++) {
+            h = h * 31 + keys[i];
+            h = h * 31 + containers[i].cardinality();
+        }
+        return h;
+    }
+
+    @Override
+    public
+    boolean equals(final Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof IntBitmap)) {
+            return false;
+        }
+
+        IntBitmap other = (IntBitmap) obj;
+        if (other.size != size || other.count != count) {
+            return false;
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (keys[i] != other.keys[i] || !containers[i].equals(other.containers[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public
+    String toString() {
+        if (size == 0) {
+            return "[]";
+        }
+
+        StringBuilder buffer = new StringBuilder(32);
+        buffer.append('[');
+
+        BitmapIterator iterator = new BitmapIterator(this);
+        buffer.append(iterator.next());
+        while (iterator.hasNext) {
+            buffer.append(", ");
+            buffer.append(iterator.next());
+        }
+
+        buffer.append(']');
+        return buffer.toString();
+    }
+
+    public static
+    IntBitmap with(final int... array) {
+        IntBitmap set = new IntBitmap();
+        set.addAll(array);
+        return set;
+    }
+
+
+    public static
+    class BitmapIterator {
+        public boolean hasNext;
+
+        final IntBitmap set;
+        int index;
+        int nextLow;
+        boolean valid = true;
+
+        public
+        BitmapIterator(final IntBitmap set) {
+            this.set = set;
+            reset();
+        }
+
+        public
+        void reset() {
+            index = 0;
+            nextLow = set.count > 0 ? set.containers[0].nextValue(0) : -1;
+            hasNext = nextLow >= 0;
+        }
+
+        public
+        int next() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            if (!valid) {
+                throw new RuntimeException("#iterator() cannot be used nested.");
+            }
+
+            final IntBitmap set = this.set;
+            int value = combine(set.keys[index], nextLow);
+
+            nextLow = nextLow < 0xFFFF ? set.containers[index].nextValue(nextLow + 1) : -1;
+            while (nextLow < 0) {
+                if (++index >= set.count) {
+                    hasNext = false;
+                    break;
+                }
+                nextLow = set.containers[index].nextValue(0);
+            }
+
+            return value;
+        }
+
+        /**
+         * Returns a new array containing the remaining values.
+         */
+        public
+        IntArray toArray() {
+            IntArray array = new IntArray(true, set.size);
+            while (hasNext) {
+                array.add(next());
+            }
+            return array;
+        }
+    }
+
+
+    abstract static
+    class Container {
+        abstract int cardinality();
+
+        abstract boolean contains(char value);
+
+        /**
+         * @return the container that now holds the values (which might not be this container)
+         */
+        abstract Container add(char value);
+
+        /**
+         * @return the container that now holds the values (which might not be this container)
+         */
+        abstract Container remove(char value);
+
+        /**
+         * @return the lowest value >= 'from', or -1 if there are none
+         */
+        abstract int nextValue(int from);
+
+        /**
+         * Copies all of the values (in ascending order) into the array
+         *
+         * @return the new offset
+         */
+        abstract int fill(int[] array, int offset, char high);
+
+        abstract int numberOfRuns();
+
+        abstract Container copy();
+
+        /**
+         * @return a new bitmap container with the same values
+         */
+        abstract BitmapContainer toBitmap();
+
+        abstract int sizeInBytes();
+
+        abstract void write(ByteBuffer2 buffer);
+
+        // containers of different types can be equal (if runOptimize() was used), so this only depends on the values
+        @Override
+        public
+        int hashCode() {
+            return cardinality();
+        }
+
+        Container runOptimize() {
+            int runBytes = RunContainer.sizeInBytes(numberOfRuns());
+            int card = cardinality();
+            int otherBytes = card <= ARRAY_MAX ? ArrayContainer.sizeInBytes(card) : BitmapContainer.SIZE_IN_BYTES;
+
+            if (runBytes < otherBytes) {
+                return this instanceof RunContainer ? this : RunContainer.from(this);
+            }
+            if (this instanceof RunContainer) {
+                return ((RunContainer) this).toEfficientContainer();
+            }
+            return this;
+        }
+
+        static
+        Container and(final Container a, final Container b) {
+            if (a instanceof ArrayContainer) {
+                if (b instanceof ArrayContainer) {
+                    return ((ArrayContainer) a).and((ArrayContainer) b);
+                }
+                return ((ArrayContainer) a).filter(b, true);
+            }
+            if (b instanceof ArrayContainer) {
+                return ((ArrayContainer) b).filter(a, true);
+            }
+
+            BitmapContainer bitmap = a.toBitmap();
+            bitmap.andInPlace(b);
+            return bitmap.toEfficientContainer();
+        }
+
+        static
+        Container or(final Container a, final Container b) {
+            if (a instanceof ArrayContainer && b instanceof ArrayContainer &&
+                a.cardinality() + b.cardinality() <= ARRAY_MAX) {
+                return ((ArrayContainer) a).or((ArrayContainer) b);
+            }
+
+            // the result is stored in the larger container (so it is less work to add the other values)
+            BitmapContainer bitmap;
+            if (a instanceof BitmapContainer || b instanceof ArrayContainer) {
+                bitmap = a.toBitmap();
+                bitmap.orInPlace(b);
+            }
+            else {
+                bitmap = b.toBitmap();
+                bitmap.orInPlace(a);
+            }
+
+            return bitmap.toEfficientContainer();
+        }
+
+        static
+        Container andNot(final Container a, final Container b) {
+            if (a instanceof ArrayContainer) {
+                return ((ArrayContainer) a).filter(b, false);
+            }
+
+            BitmapContainer bitmap = a.toBitmap();
+            bitmap.andNotInPlace(b);
+            return bitmap.toEfficientContainer();
+        }
+    }
+
+
+    static final
+    class ArrayContainer extends Container {
+        char[] content;
+        int cardinality;
+
+        ArrayContainer(final int capacity) {
+            content = new char[capacity];
+        }
+
+        ArrayContainer(final char[] content, final int cardinality) {
+            this.content = content;
+            this.cardinality = cardinality;
+        }
+
+        static
+        int sizeInBytes(final int cardinality) {
+            return 2 + cardinality * 2;
+        }
+
+        private
+        int indexOf(final char value) {
+            final char[] content = this.content;
+            int lo = 0;
+            int hi = cardinality - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                char midValue = content[mid];
+                if (midValue < value) {
+                    lo = mid + 1;
+                }
+                else if (midValue > value) {
+                    hi = mid - 1;
+                }
+                else {
+                    return mid;
+                }
+            }
+            return -(lo + 1);
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(final char value) {
+            return indexOf(value) >= 0;
+        }
+
+        @Override
+        Container add(final char value) {
+            // most additions are sequential, so check the end first
+            int index;
+            if (cardinality == 0 || content[cardinality - 1] < value) {
+                index = cardinality;
+            }
+            else {
+                index = indexOf(value);
+                if (index >= 0) {
+                    return this;
+                }
+                index = -index - 1;
+            }
+
+            if (cardinality >= ARRAY_MAX) {
+                BitmapContainer bitmap = toBitmap();
+                bitmap.add(value);
+                return bitmap;
+            }
+
+            if (cardinality == content.length) {
+                content = Arrays.copyOf(content, Math.min(ARRAY_MAX, Math.max(4, cardinality * 2)));
+            }
+
+            System.arraycopy(content, index, content, index + 1, cardinality - index);
+            content[index] = value;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(final char value) {
+            int index = indexOf(value);
+            if (index >= 0) {
+                System.arraycopy(content, index + 1, content, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        int nextValue(final int from) {
+            int index = from > 0xFFFF ? -(cardinality + 1) : indexOf((char) from);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index < cardinality ? content[index] : -1;
+        }
+
+        @Override
+        int fill(final int[] array, int offset, final char high) {
+            final char[] content = this.content;
+            for (int i = 0, n = cardinality; i < n; i++) {
+                array[offset++] = combine(high, content[i]);
+            }
+            return offset;
+        }
+
+        @Override
+        int numberOfRuns() {
+            if (cardinality == 0) {
+                return 0;
+            }
+
+            int runs = 1;
+            final char[] content = this.content;
+            for (int i = 1, n = cardinality; i < n; i++) {
+                if (content[i] != content[i - 1] + 1) {
+                    runs++;
+                }
+            }
+            return runs;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(content, Math.max(1, cardinality)), cardinality);
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            final long[] words = bitmap.words;
+            final char[] content = this.content;
+            for (int i = 0, n = cardinality; i < n; i++) {
+                char value = content[i];
+                words[value >>> 6] |= 1L << value;
+            }
+            bitmap.cardinality = cardinality;
+            return bitmap;
+        }
+
+        @Override
+        int sizeInBytes() {
+            return sizeInBytes(cardinality);
+        }
+
+        @Override
+        void write(final ByteBuffer2 buffer) {
+            buffer.writeByte(TYPE_ARRAY);
+            buffer.writeInt(cardinality, true);
+            final char[] content = this.content;
+            for (int i = 0, n = cardinality; i < n; i++) {
+                buffer.writeChar(content[i]);
+            }
+        }
+
+        static
+        ArrayContainer read(final ByteBuffer2 buffer) {
+            int cardinality = buffer.readInt(true);
+            char[] content = new char[Math.max(1, cardinality)];
+            for (int i = 0; i < cardinality; i++) {
+                content[i] = buffer.readChar();
+            }
+            return new ArrayContainer(content, cardinality);
+        }
+
+        ArrayContainer and(final ArrayContainer other) {
+            final char[] a = this.content;
+            final char[] b = other.content;
+            final int aSize = this.cardinality;
+            final int bSize = other.cardinality;
+
+            char[] result = new char[Math.max(1, Math.min(aSize, bSize))];
+            int r = 0;
+            int i = 0;
+            int j = 0;
+            while (i < aSize && j < bSize) {
+                char av = a[i];
+                char bv = b[j];
+                if (av < bv) {
+                    i++;
+                }
+                else if (bv < av) {
+                    j++;
+                }
+                else {
+                    result[r++] = av;
+                    i++;
+                    j++;
+                }
+            }
+            return new ArrayContainer(result, r);
+        }
+
+        ArrayContainer or(final ArrayContainer other) {
+            final char[] a = this.content;
+            final char[] b = other.content;
+            final int aSize = this.cardinality;
+            final int bSize = other.cardinality;
+
+            char[] result = new char[Math.max(1, aSize + bSize)];
+            int r = 0;
+            int i = 0;
+            int j = 0;
+            while (i < aSize && j < bSize) {
+                char av = a[i];
+                char bv = b[j];
+                if (av < bv) {
+                    result[r++] = av;
+                    i++;
+                }
+                else if (bv < av) {
+                    result[r++] = bv;
+                    j++;
+                }
+                else {
+                    result[r++] = av;
+                    i++;
+                    j++;
+                }
+            }
+
+            System.arraycopy(a, i, result, r, aSize - i);
+            r += aSize - i;
+            System.arraycopy(b, j, result, r, bSize - j);
+            r += bSize - j;
+
+            return new ArrayContainer(result, r);
+        }
+
+        /**
+         * @return a new container with the values that are (or are not) in the other container
+         */
+        ArrayContainer filter(final Container other, final boolean keepIfContained) {
+            final char[] content = this.content;
+            char[] result = new char[Math.max(1, cardinality)];
+            int r = 0;
+            for (int i = 0, n = cardinality; i < n; i++) {
+                char value = content[i];
+                if (other.contains(value) == keepIfContained) {
+                    result[r++] = value;
+                }
+            }
+            return new ArrayContainer(result, r);
+        }
+
+        @Override
+        public
+        boolean equals(final Object obj) {
+            if (!(obj instanceof ArrayContainer)) {
+                // containers with the same values always have the same type, unless runOptimize() was used
+                return obj instanceof Container && sameValues(this, (Container) obj);
+            }
+
+            ArrayContainer other = (ArrayContainer) obj;
+            if (other.cardinality != cardinality) {
+                return false;
+            }
+            for (int i = 0; i < cardinality; i++) {
+                if (content[i] != other.content[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+
+    static final
+    class BitmapContainer extends Container {
+        static final int SIZE_IN_BYTES = 8192;
+
+        final long[] words;
+        int cardinality;
+
+        BitmapContainer() {
+            words = new long[1024];
+        }
+
+        BitmapContainer(final long[] words, final int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(final char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        Container add(final char value) {
+            final int index = value >>> 6;
+            final long word = words[index];
+            final long newWord = word | (1L << value);
+            if (word != newWord) {
+                words[index] = newWord;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(final char value) {
+            final int index = value >>> 6;
+            final long word = words[index];
+            final long newWord = word & ~(1L << value);
+            if (word != newWord) {
+                words[index] = newWord;
+                cardinality--;
+
+                if (cardinality <= ARRAY_MAX) {
+                    return toArrayContainer();
+                }
+            }
+            return this;
+        }
+
+        @Override
+        int nextValue(final int from) {
+            if (from > 0xFFFF) {
+                return -1;
+            }
+
+            int index = from >>> 6;
+            long word = words[index] & (-1L << from);
+            while (word == 0) {
+                if (++index == 1024) {
+                    return -1;
+                }
+                word = words[index];
+            }
+            return (index << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        /**
+         * @return the lowest value >= 'from' that is NOT in the bitmap, or 65536 if there are none
+         */
+        int nextClearValue(final int from) {
+            if (from > 0xFFFF) {
+                return 0x10000;
+            }
+
+            int index = from >>> 6;
+            long word = ~words[index] & (-1L << from);
+            while (word == 0) {
+                if (++index == 1024) {
+                    return 0x10000;
+                }
+                word = ~words[index];
+            }
+            return (index << 6) + Long.numberOfTrailingZeros(word);
+        }
+
+        @Override
+        int fill(final int[] array, int offset, final char high) {
+            final long[] words = this.words;
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    array[offset++] = combine(high, (i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        int numberOfRuns() {
+            // count the bits that start a run (they are set, and the previous bit is not)
+            int runs = 0;
+            long previous = 0;
+            final long[] words = this.words;
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                runs += Long.bitCount(word & ~((word << 1) | (previous >>> 63)));
+                previous = word;
+            }
+            return runs;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), cardinality);
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            return (BitmapContainer) copy();
+        }
+
+        ArrayContainer toArrayContainer() {
+            char[] content = new char[Math.max(1, cardinality)];
+            int r = 0;
+            final long[] words = this.words;
+            for (int i = 0; i < 1024; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    content[r++] = (char) ((i << 6) + Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(content, r);
+        }
+
+        Container toEfficientContainer() {
+            if (cardinality <= ARRAY_MAX) {
+                return toArrayContainer();
+            }
+            return this;
+        }
+
+        void setRange(final int start, final int endExclusive) {
+            if (start >= endExclusive) {
+                return;
+            }
+
+            int firstWord = start >>> 6;
+            int lastWord = (endExclusive - 1) >>> 6;
+            long firstMask = -1L << start;
+            long lastMask = -1L >>> -endExclusive;
+
+            if (firstWord == lastWord) {
+                words[firstWord] |= firstMask & lastMask;
+            }
+            else {
+                words[firstWord] |= firstMask;
+                for (int i = firstWord + 1; i < lastWord; i++) {
+                    words[i] = -1L;
+                }
+                words[lastWord] |= lastMask;
+            }
+        }
+
+        void clearRange(final int start, final int endExclusive) {
+            if (start >= endExclusive) {
+                return;
+            }
+
+            int firstWord = start >>> 6;
+            int lastWord = (endExclusive - 1) >>> 6;
+            long firstMask = -1L << start;
+            long lastMask = -1L >>> -endExclusive;
+
+            if (firstWord == lastWord) {
+                words[firstWord] &= ~(firstMask & lastMask);
+            }
+            else {
+                words[firstWord] &= ~firstMask;
+                for (int i = firstWord + 1; i < lastWord; i++) {
+                    words[i] = 0L;
+                }
+                words[lastWord] &= ~lastMask;
+            }
+        }
+
+        void recount() {
+            int cardinality = 0;
+            final long[] words = this.words;
+            for (int i = 0; i < 1024; i++) {
+                cardinality += Long.bitCount(words[i]);
+            }
+            this.cardinality = cardinality;
+        }
+
+        void andInPlace(final Container other) {
+            final long[] words = this.words;
+            if (other instanceof BitmapContainer) {
+                final long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < 1024; i++) {
+                    words[i] &= otherWords[i];
+                }
+            }
+            else {
+                BitmapContainer bitmap = other.toBitmap();
+                for (int i = 0; i < 1024; i++) {
+                    words[i] &= bitmap.words[i];
+                }
+            }
+            recount();
+        }
+
+        void orInPlace(final Container other) {
+            final long[] words = this.words;
+            if (other instanceof BitmapContainer) {
+                final long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < 1024; i++) {
+                    words[i] |= otherWords[i];
+                }
+            }
+            else if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                final char[] content = array.content;
+                for (int i = 0, n = array.cardinality; i < n; i++) {
+                    char value = content[i];
+                    words[value >>> 6] |= 1L << value;
+                }
+            }
+            else {
+                RunContainer runs = (RunContainer) other;
+                for (int i = 0, n = runs.numberOfRuns; i < n; i++) {
+                    int start = runs.runs[i * 2];
+                    setRange(start, start + runs.runs[i * 2 + 1] + 1);
+                }
+            }
+            recount();
+        }
+
+        void andNotInPlace(final Container other) {
+            final long[] words = this.words;
+            if (other instanceof BitmapContainer) {
+                final long[] otherWords = ((BitmapContainer) other).words;
+                for (int i = 0; i < 1024; i++) {
+                    words[i] &= ~otherWords[i];
+                }
+            }
+            else if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                final char[] content = array.content;
+                for (int i = 0, n = array.cardinality; i < n; i++) {
+                    char value = content[i];
+                    words[value >>> 6] &= ~(1L << value);
+                }
+            }
+            else {
+                RunContainer runs = (RunContainer) other;
+                for (int i = 0, n = runs.numberOfRuns; i < n; i++) {
+                    int start = runs.runs[i * 2];
+                    clearRange(start, start + runs.runs[i * 2 + 1] + 1);
+                }
+            }
+            recount();
+        }
+
+        @Override
+        int sizeInBytes() {
+            return SIZE_IN_BYTES;
+        }
+
+        @Override
+        void write(final ByteBuffer2 buffer) {
+            buffer.writeByte(TYPE_BITMAP);
+            buffer.writeLongs(words);
+        }
+
+        static
+        BitmapContainer read(final ByteBuffer2 buffer) {
+            BitmapContainer bitmap = new BitmapContainer(buffer.readLongs(1024), 0);
+            bitmap.recount();
+            return bitmap;
+        }
+
+        @Override
+        public
+        boolean equals(final Object obj) {
+            if (obj instanceof BitmapContainer) {
+                return Arrays.equals(words, ((BitmapContainer) obj).words);
+            }
+            return obj instanceof Container && sameValues(this, (Container) obj);
+        }
+    }
+
+
+    static final
+    class RunContainer extends Container {
+        // pairs of (start, length - 1)
+        final char[] runs;
+        final int numberOfRuns;
+        final int cardinality;
+
+        RunContainer(final char[] runs, final int numberOfRuns) {
+            this.runs = runs;
+            this.numberOfRuns = numberOfRuns;
+
+            int cardinality = 0;
+            for (int i = 0; i < numberOfRuns; i++) {
+                cardinality += runs[i * 2 + 1] + 1;
+            }
+            this.cardinality = cardinality;
+        }
+
+        static
+        int sizeInBytes(final int numberOfRuns) {
+            return 2 + numberOfRuns * 4;
+        }
+
+        static
+        RunContainer from(final Container container) {
+            final int numberOfRuns = container.numberOfRuns();
+            final char[] runs = new char[Math.max(2, numberOfRuns * 2)];
+
+            if (container instanceof BitmapContainer) {
+                BitmapContainer bitmap = (BitmapContainer) container;
+
+                int r = 0;
+                int start = bitmap.nextValue(0);
+                while (start >= 0) {
+                    int end = bitmap.nextClearValue(start);
+                    runs[r++] = (char) start;
+                    runs[r++] = (char) (end - start - 1);
+                    start = bitmap.nextValue(end);
+                }
+            }
+            else {
+                ArrayContainer array = (ArrayContainer) container;
+                final char[] content = array.content;
+
+                int r = 0;
+                int i = 0;
+                while (i < array.cardinality) {
+                    int start = content[i];
+                    int length = 0;
+                    while (i + 1 < array.cardinality && content[i + 1] == content[i] + 1) {
+                        i++;
+                        length++;
+                    }
+                    runs[r++] = (char) start;
+                    runs[r++] = (char) length;
+                    i++;
+                }
+            }
+
+            return new RunContainer(runs, numberOfRuns);
+        }
+
+        /**
+         * @return the index of the run that contains (or is before) the value, or -1 if the value is before the first run.
+         */
+        private
+        int runIndex(final int value) {
+            final char[] runs = this.runs;
+            int lo = 0;
+            int hi = numberOfRuns - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (runs[mid * 2] <= value) {
+                    lo = mid + 1;
+                }
+                else {
+                    hi = mid - 1;
+                }
+            }
+            return hi;
+        }
+
+        Container toEfficientContainer() {
+            if (cardinality <= ARRAY_MAX) {
+                char[] content = new char[Math.max(1, cardinality)];
+                int r = 0;
+                for (int i = 0; i < numberOfRuns; i++) {
+                    int start = runs[i * 2];
+                    for (int value = start, end = start + runs[i * 2 + 1]; value <= end; value++) {
+                        content[r++] = (char) value;
+                    }
+                }
+                return new ArrayContainer(content, r);
+            }
+            return toBitmap();
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        boolean contains(final char value) {
+            int index = runIndex(value);
+            return index >= 0 && value <= runs[index * 2] + runs[index * 2 + 1];
+        }
+
+        @Override
+        Container add(final char value) {
+            if (contains(value)) {
+                return this;
+            }
+            return toEfficientContainer().add(value);
+        }
+
+        @Override
+        Container remove(final char value) {
+            if (!contains(value)) {
+                return this;
+            }
+            return toEfficientContainer().remove(value);
+        }
+
+        @Override
+        int nextValue(final int from) {
+            int index = runIndex(from);
+            if (index >= 0 && from <= runs[index * 2] + runs[index * 2 + 1]) {
+                return from;
+            }
+
+            index++;
+            return index < numberOfRuns ? runs[index * 2] : -1;
+        }
+
+        @Override
+        int fill(final int[] array, int offset, final char high) {
+            for (int i = 0; i < numberOfRuns; i++) {
+                int start = runs[i * 2];
+                for (int value = start, end = start + runs[i * 2 + 1]; value <= end; value++) {
+                    array[offset++] = combine(high, value);
+                }
+            }
+            return offset;
+        }
+
+        @Override
+        int numberOfRuns() {
+            return numberOfRuns;
+        }
+
+        @Override
+        Container copy() {
+            // immutable
+            return this;
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < numberOfRuns; i++) {
+                int start = runs[i * 2];
+                bitmap.setRange(start, start + runs[i * 2 + 1] + 1);
+            }
+            bitmap.cardinality = cardinality;
+            return bitmap;
+        }
+
+        @Override
+        int sizeInBytes() {
+            return sizeInBytes(numberOfRuns);
+        }
+
+        @Override
+        void write(final ByteBuffer2 buffer) {
+            buffer.writeByte(TYPE_RUN);
+            buffer.writeInt(numberOfRuns, true);
+            for (int i = 0, n = numberOfRuns * 2; i < n; i++) {
+                buffer.writeChar(runs[i]);
+            }
+        }
+
+        static
+        RunContainer read(final ByteBuffer2 buffer) {
+            int numberOfRuns = buffer.readInt(true);
+            char[] runs = new char[Math.max(2, numberOfRuns * 2)];
+            for (int i = 0, n = numberOfRuns * 2; i < n; i++) {
+                runs[i] = buffer.readChar();
+            }
+            return new RunContainer(runs, numberOfRuns);
+        }
+
+        @Override
+        public
+        boolean equals(final Object obj) {
+            return obj instanceof Container && sameValues(this, (Container) obj);
+        }
+    }
+
+    static
+    boolean sameValues(final Container a, final Container b) {
+        if (a.cardinality() != b.cardinality()) {
+            return false;
+        }
+
+        int value = a.nextValue(0);
+        int other = b.nextValue(0);
+        while (value >= 0) {
+            if (value != other) {
+                return false;
+            }
+            value = value < 0xFFFF ? a.nextValue(value + 1) : -1;
+            other = other < 0xFFFF ? b.nextValue(other + 1) : -1;
+        }
+        return other < 0;
+    }
+}
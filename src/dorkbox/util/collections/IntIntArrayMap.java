@@ -0,0 +1,473 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** A map of int keys to int values, which stores the (unboxed) keys and values in parallel arrays. This is intended for small maps,
+ * where it uses less memory and is faster than a hash map.
+ * <p>
+ * The keys are kept in ascending order. Lookups in maps smaller than {@link IntObjectArrayMap#BINARY_SEARCH_THRESHOLD} are a
+ * linear scan of the int[] (which the JIT can unroll/vectorize), and lookups in larger maps are a binary search. Keys and values can
+ * be accessed by index, which makes iteration fast. No allocation is done except when growing the backing arrays.
+ * @see IntObjectArrayMap */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public class IntIntArrayMap implements Iterable<IntIntMap.Entry> {
+	public int[] keys;
+	public int[] values;
+	public int size;
+
+	private Entries entries1, entries2;
+	private Values valuesIter1, valuesIter2;
+	private Keys keysIter1, keysIter2;
+
+	/** Creates a map with a capacity of 16. */
+	public IntIntArrayMap () {
+		this(16);
+	}
+
+	/** @param capacity Any elements added beyond this will cause the backing arrays to be grown. */
+	public IntIntArrayMap (int capacity) {
+		keys = new int[capacity];
+		values = new int[capacity];
+	}
+
+	/** Creates a new map containing the elements in the specified map. The capacity is set to the number of elements, so any
+	 * subsequent elements added will cause the backing arrays to be grown. */
+	public IntIntArrayMap (IntIntArrayMap map) {
+		this(map.size);
+		size = map.size;
+		System.arraycopy(map.keys, 0, keys, 0, size);
+		System.arraycopy(map.values, 0, values, 0, size);
+	}
+
+	/** @return the index of the key, or -(insertion point + 1) if the key is not in the map. */
+	int search (int key) {
+		int[] keys = this.keys;
+		int n = size;
+		if (n < IntObjectArrayMap.BINARY_SEARCH_THRESHOLD) {
+			int i = 0;
+			while (i < n && keys[i] < key)
+				i++;
+			if (i < n && keys[i] == key) return i;
+			return -(i + 1);
+		}
+		int low = 0, high = n - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midKey = keys[mid];
+			if (midKey < key)
+				low = mid + 1;
+			else if (midKey > key)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -(low + 1);
+	}
+
+	/** @return the index of the entry. */
+	public int put (int key, int value) {
+		int index = search(key);
+		if (index >= 0) {
+			values[index] = value;
+			return index;
+		}
+		index = -(index + 1);
+		if (size == keys.length) resize(Math.max(8, (int)(size * 1.75f)));
+		System.arraycopy(keys, index, keys, index + 1, size - index);
+		System.arraycopy(values, index, values, index + 1, size - index);
+		keys[index] = key;
+		values[index] = value;
+		size++;
+		return index;
+	}
+
+	public void putAll (IntIntArrayMap map) {
+		ensureCapacity(map.size);
+		int[] keys = map.keys;
+		int[] values = map.values;
+		for (int i = 0, n = map.size; i < n; i++)
+			put(keys[i], values[i]);
+	}
+
+	/** Returns the value for the specified key, or the default value if the key is not in the map. */
+	public int get (int key, int defaultValue) {
+		int index = indexOfKey(key);
+		if (index == -1) return defaultValue;
+		return values[index];
+	}
+
+	/** Returns the key's current value and increments the stored value. If the key is not in the map, defaultValue + increment is
+	 * put into the map. */
+	public int getAndIncrement (int key, int defaultValue, int increment) {
+		int index = search(key);
+		if (index >= 0) {
+			int oldValue = values[index];
+			values[index] += increment;
+			return oldValue;
+		}
+		put(key, defaultValue + increment);
+		return defaultValue;
+	}
+
+	/** Returns the key for the specified value, or notFound if it is not in the map. Note this does a comparison of each value
+	 * until the specified value is found. */
+	public int findKey (int value, int notFound) {
+		int index = indexOfValue(value);
+		if (index == -1) return notFound;
+		return keys[index];
+	}
+
+	public int getKeyAt (int index) {
+		if (index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+		return keys[index];
+	}
+
+	public int getValueAt (int index) {
+		if (index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+		return values[index];
+	}
+
+	/** Returns the lowest key. */
+	public int firstKey () {
+		if (size == 0) throw new IllegalStateException("Map is empty.");
+		return keys[0];
+	}
+
+	public int firstValue () {
+		if (size == 0) throw new IllegalStateException("Map is empty.");
+		return values[0];
+	}
+
+	public void setValue (int index, int value) {
+		if (index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+		values[index] = value;
+	}
+
+	public boolean containsKey (int key) {
+		return search(key) >= 0;
+	}
+
+	public boolean containsValue (int value) {
+		return indexOfValue(value) != -1;
+	}
+
+	/** @return the index of the key, or -1 if the key is not in the map. */
+	public int indexOfKey (int key) {
+		int index = search(key);
+		return index >= 0 ? index : -1;
+	}
+
+	public int indexOfValue (int value) {
+		int[] values = this.values;
+		for (int i = 0, n = size; i < n; i++)
+			if (values[i] == value) return i;
+		return -1;
+	}
+
+	/** Returns the value for the removed key, or the default value if the key is not in the map. */
+	public int remove (int key, int defaultValue) {
+		int index = indexOfKey(key);
+		if (index == -1) return defaultValue;
+		int value = values[index];
+		removeIndex(index);
+		return value;
+	}
+
+	/** Removes the key/values pair at the specified index. */
+	public void removeIndex (int index) {
+		if (index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));
+		size--;
+		System.arraycopy(keys, index + 1, keys, index, size - index);
+		System.arraycopy(values, index + 1, values, index, size - index);
+	}
+
+	/** Returns true if the map is empty. */
+	public boolean isEmpty () {
+		return size == 0;
+	}
+
+	/** Returns the last (highest) key. */
+	public int peekKey () {
+		return keys[size - 1];
+	}
+
+	/** Returns the last value. */
+	public int peekValue () {
+		return values[size - 1];
+	}
+
+	/** Clears the map and reduces the size of the backing arrays to be the specified capacity if they are larger. */
+	public void clear (int maximumCapacity) {
+		size = 0;
+		if (keys.length > maximumCapacity) resize(maximumCapacity);
+	}
+
+	public void clear () {
+		size = 0;
+	}
+
+	/** Reduces the size of the backing arrays to the size of the actual number of entries. This is useful to release memory when
+	 * many items have been removed, or if it is known that more entries will not be added. */
+	public void shrink () {
+		if (keys.length == size) return;
+		resize(size);
+	}
+
+	/** Increases the size of the backing arrays to accommodate the specified number of additional entries. Useful before adding
+	 * many entries to avoid multiple backing array resizes. */
+	public void ensureCapacity (int additionalCapacity) {
+		if (additionalCapacity < 0) throw new IllegalArgumentException("additionalCapacity must be >= 0: " + additionalCapacity);
+		int sizeNeeded = size + additionalCapacity;
+		if (sizeNeeded >= keys.length) resize(Math.max(8, sizeNeeded));
+	}
+
+	protected void resize (int newSize) {
+		int[] newKeys = new int[newSize];
+		System.arraycopy(keys, 0, newKeys, 0, Math.min(size, newKeys.length));
+		this.keys = newKeys;
+
+		int[] newValues = new int[newSize];
+		System.arraycopy(values, 0, newValues, 0, Math.min(size, newValues.length));
+		this.values = newValues;
+	}
+
+	/** Reduces the size of the arrays to the specified size (removing the highest keys). If the arrays are already smaller than the
+	 * specified size, no action is taken. */
+	public void truncate (int newSize) {
+		if (size > newSize) size = newSize;
+	}
+
+	public int hashCode () {
+		int[] keys = this.keys;
+		int[] values = this.values;
+		int h = 0;
+		for (int i = 0, n = size; i < n; i++)
+			h += keys[i] * 31 + values[i];
+		return h;
+	}
+
+	public boolean equals (Object obj) {
+		if (obj == this) return true;
+		if (!(obj instanceof IntIntArrayMap)) return false;
+		IntIntArrayMap other = (IntIntArrayMap)obj;
+		if (other.size != size) return false;
+		// both maps are sorted, so the keys must be in the same positions
+		int[] keys = this.keys;
+		int[] values = this.values;
+		for (int i = 0, n = size; i < n; i++)
+			if (keys[i] != other.keys[i] || values[i] != other.values[i]) return false;
+		return true;
+	}
+
+	public String toString () {
+		if (size == 0) return "{}";
+		int[] keys = this.keys;
+		int[] values = this.values;
+		StringBuilder buffer = new StringBuilder(32);
+		buffer.append('{');
+		buffer.append(keys[0]);
+		buffer.append('=');
+		buffer.append(values[0]);
+		for (int i = 1; i < size; i++) {
+			buffer.append(", ");
+			buffer.append(keys[i]);
+			buffer.append('=');
+			buffer.append(values[i]);
+		}
+		buffer.append('}');
+		return buffer.toString();
+	}
+
+	public Iterator<IntIntMap.Entry> iterator () {
+		return entries();
+	}
+
+	/** Returns an iterator for the entries in the map. Remove is supported. Note that the same iterator instance is returned each
+	 * time this method is called. Use the {@link Entries} constructor for nested or multithreaded iteration. */
+	public Entries entries () {
+		if (entries1 == null) {
+			entries1 = new Entries(this);
+			entries2 = new Entries(this);
+		}
+		if (!entries1.valid) {
+			entries1.index = 0;
+			entries1.valid = true;
+			entries2.valid = false;
+			return entries1;
+		}
+		entries2.index = 0;
+		entries2.valid = true;
+		entries1.valid = false;
+		return entries2;
+	}
+
+	/** Returns an iterator for the values in the map. Remove is supported. Note that the same iterator instance is returned each
+	 * time this method is called. Use the {@link Entries} constructor for nested or multithreaded iteration. */
+	public Values values () {
+		if (valuesIter1 == null) {
+			valuesIter1 = new Values(this);
+			valuesIter2 = new Values(this);
+		}
+		if (!valuesIter1.valid) {
+			valuesIter1.index = 0;
+			valuesIter1.valid = true;
+			valuesIter2.valid = false;
+			return valuesIter1;
+		}
+		valuesIter2.index = 0;
+		valuesIter2.valid = true;
+		valuesIter1.valid = false;
+		return valuesIter2;
+	}
+
+	/** Returns an iterator for the keys in the map. Remove is supported. Note that the same iterator instance is returned each
+	 * time this method is called. Use the {@link Entries} constructor for nested or multithreaded iteration. */
+	public Keys keys () {
+		if (keysIter1 == null) {
+			keysIter1 = new Keys(this);
+			keysIter2 = new Keys(this);
+		}
+		if (!keysIter1.valid) {
+			keysIter1.index = 0;
+			keysIter1.valid = true;
+			keysIter2.valid = false;
+			return keysIter1;
+		}
+		keysIter2.index = 0;
+		keysIter2.valid = true;
+		keysIter1.valid = false;
+		return keysIter2;
+	}
+
+	static public class Entries implements Iterable<IntIntMap.Entry>, Iterator<IntIntMap.Entry> {
+		private final IntIntArrayMap map;
+		IntIntMap.Entry entry = new IntIntMap.Entry();
+		int index;
+		boolean valid = true;
+
+		public Entries (IntIntArrayMap map) {
+			this.map = map;
+		}
+
+		public boolean hasNext () {
+			if (!valid) throw new RuntimeException("#iterator() cannot be used nested.");
+			return index < map.size;
+		}
+
+		public Iterator<IntIntMap.Entry> iterator () {
+			return this;
+		}
+
+		/** Note the same entry instance is returned each time this method is called. */
+		public IntIntMap.Entry next () {
+			if (index >= map.size) throw new NoSuchElementException(String.valueOf(index));
+			if (!valid) throw new RuntimeException("#iterator() cannot be used nested.");
+			entry.key = map.keys[index];
+			entry.value = map.values[index++];
+			return entry;
+		}
+
+		public void remove () {
+			index--;
+			map.removeIndex(index);
+		}
+
+		public void reset () {
+			index = 0;
+		}
+	}
+
+	static public class Values {
+		private final IntIntArrayMap map;
+		int index;
+		boolean valid = true;
+
+		public Values (IntIntArrayMap map) {
+			this.map = map;
+		}
+
+		public boolean hasNext () {
+			if (!valid) throw new RuntimeException("#iterator() cannot be used nested.");
+			return index < map.size;
+		}
+
+		public int next () {
+			if (index >= map.size) throw new NoSuchElementException(String.valueOf(index));
+			if (!valid) throw new RuntimeException("#iterator() cannot be used nested.");
+			return map.values[index++];
+		}
+
+		public void remove () {
+			index--;
+			map.removeIndex(index);
+		}
+
+		public void reset () {
+			index = 0;
+		}
+
+		public IntArray toArray () {
+			return new IntArray(true, map.values, index, map.size - index);
+		}
+
+		public IntArray toArray (IntArray array) {
+			array.addAll(map.values, index, map.size - index);
+			return array;
+		}
+	}
+
+	static public class Keys {
+		private final IntIntArrayMap map;
+		int index;
+		boolean valid = true;
+
+		public Keys (IntIntArrayMap map) {
+			this.map = map;
+		}
+
+		public boolean hasNext () {
+			if (!valid) throw new RuntimeException("#iterator() cannot be used nested.");
+			return index < map.size;
+		}
+
+		public int next () {
+			if (index >= map.size) throw new NoSuchElementException(String.valueOf(index));
+			if (!valid) throw new RuntimeException("#iterator() cannot be used nested.");
+			return map.keys[index++];
+		}
+
+		public void remove () {
+			index--;
+			map.removeIndex(index);
+		}
+
+		public void reset () {
+			index = 0;
+		}
+
+		public IntArray toArray () {
+			return new IntArray(true, map.keys, index, map.size - index);
+		}
+
+		public IntArray toArray (IntArray array) {
+			array.addAll(map.keys, index, map.size - index);
+			return array;
+		}
+	}
+}
@@ -763,7 +763,7 @@ public class IntMap<V> implements Iterable<IntMap.Entry<V>> {
     }
 
     static public class Entries<V> extends MapIterator<V> implements Iterable<Entry<V>>, Iterator<Entry<V>> {
-        private Entry<V> entry = new Entry();
+        Entry<V> entry = new Entry();
 
         public Entries (IntMap map) {
             super(map);
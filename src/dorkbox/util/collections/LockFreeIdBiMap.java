@@ -0,0 +1,374 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import dorkbox.util.MathUtil;
+
+/**
+ * A bimap (or "bidirectional map") of objects to unique int IDs, where the IDs are allocated by the map (0, 1, 2...) the first time an
+ * object is {@link #intern(Object) interned}. This replaces {@link LockFreeObjectIntBiMap} for ID interning.
+ * <p>
+ * Both directions are lock-free. {@link #intern(Object)} claims a slot in an open-addressing table with a CAS, allocates the ID from an
+ * atomic counter, writes the reverse (ID -> object) mapping, and only THEN publishes the ID in the forward table. Because of this, the
+ * forward and reverse directions are never out of sync: if the ID of an object is visible, so is the object for that ID. The int side
+ * is never boxed.
+ * <p>
+ * The only time a thread will block is while the table is being resized (which happens O(log n) times), and threads that are only
+ * reading will never block.
+ * <p>
+ * Mappings cannot be removed, and null keys are not allowed.
+ */
+@SuppressWarnings({"unchecked", "unused", "WeakerAccess"})
+public final
+class LockFreeIdBiMap<V> {
+    /**
+     * The value returned by {@link #get(Object)} when the object has not been interned.
+     */
+    public static final int NOT_FOUND = -1;
+
+    // marks a slot that was empty when the table was resized. Searches must continue in the next table
+    private static final Object MOVED = new Object();
+
+    // Recommended for best performance while adhering to the "single writer principle". Must be static-final
+    private static final AtomicReferenceFieldUpdater<LockFreeIdBiMap, Table> tableREF = AtomicReferenceFieldUpdater.newUpdater(
+            LockFreeIdBiMap.class,
+            Table.class,
+            "table");
+
+    private volatile Table table;
+
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final float loadFactor;
+
+
+    private static final
+    class Table {
+        final int mask;
+        final int threshold;
+
+        final AtomicReferenceArray<Object> keys;
+
+        // the ID + 1 for each key. 0 means the ID has not been published yet
+        final AtomicIntegerArray ids;
+
+        // ID -> key. There are never more IDs than slots in the table
+        final AtomicReferenceArray<Object> reverse;
+
+        // set before this table is resized, so readers can follow MOVED slots
+        volatile Table next;
+
+        Table(final int capacity, final float loadFactor) {
+            this.mask = capacity - 1;
+            this.threshold = Math.min(capacity - 1, (int) (capacity * loadFactor));
+            this.keys = new AtomicReferenceArray<Object>(capacity);
+            this.ids = new AtomicIntegerArray(capacity);
+            this.reverse = new AtomicReferenceArray<Object>(capacity);
+        }
+    }
+
+
+    /**
+     * Creates a new bimap with an initial capacity of 64 and a load factor of 0.7.
+     */
+    public
+    LockFreeIdBiMap() {
+        this(64, 0.7F);
+    }
+
+    /**
+     * @param initialCapacity the number of objects that can be interned before the table is resized
+     * @param loadFactor the maximum fraction of the table that is used before it is resized
+     */
+    public
+    LockFreeIdBiMap(final int initialCapacity, final float loadFactor) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must be >= 0: " + initialCapacity);
+        }
+        if (loadFactor <= 0.0F || loadFactor >= 1.0F) {
+            throw new IllegalArgumentException("loadFactor must be > 0 and < 1: " + loadFactor);
+        }
+
+        this.loadFactor = loadFactor;
+        this.table = new Table(MathUtil.nextPowerOfTwo(Math.max(4, (int) Math.ceil(initialCapacity / loadFactor))), loadFactor);
+    }
+
+    private static
+    int hash(final Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the ID for the object, allocating a new ID if the object has not been interned yet.
+     *
+     * @return the ID (which is >= 0)
+     */
+    public
+    int intern(final V key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null.");
+        }
+
+        final int hash = hash(key);
+        while (true) {
+            int id = intern(tableREF.get(this), key, hash);
+            if (id >= 0) {
+                return id;
+            }
+            // the table was resized, try again with the new table
+        }
+    }
+
+    /**
+     * @return the ID, or -1 if the table was resized (and the caller must try again)
+     */
+    private
+    int intern(final Table table, final Object key, final int hash) {
+        final AtomicReferenceArray<Object> keys = table.keys;
+        final int mask = table.mask;
+
+        int index = hash & mask;
+        int probes = 0;
+
+        while (probes <= mask) {
+            Object current = keys.get(index);
+
+            if (current == null) {
+                if (!keys.compareAndSet(index, null, key)) {
+                    // someone else claimed this slot first, check it again
+                    continue;
+                }
+
+                int id = nextId.getAndIncrement();
+
+                // the reverse mapping MUST be visible before the ID is published
+                table.reverse.set(id, key);
+                table.ids.set(index, id + 1);
+
+                if (id >= table.threshold) {
+                    resize(table);
+                }
+                return id;
+            }
+
+            if (current == MOVED) {
+                // wait for the resize to finish, so that we do not insert a duplicate into the new table
+                awaitResize();
+                return -1;
+            }
+
+            if (current == key || current.equals(key)) {
+                return awaitId(table, index);
+            }
+
+            index = (index + 1) & mask;
+            probes++;
+        }
+
+        // the table is full, because many threads inserted at the same time
+        resize(table);
+        return -1;
+    }
+
+    /**
+     * The key at this index is set, but the thread that set it might not have published the ID yet. This is a very short window.
+     */
+    private static
+    int awaitId(final Table table, final int index) {
+        int id;
+        while ((id = table.ids.get(index)) == 0) {
+            Thread.yield();
+        }
+        return id - 1;
+    }
+
+    private synchronized
+    void awaitResize() {
+        // the resize happens while holding the lock, so by the time we get here, it has finished
+    }
+
+    /**
+     * Copies every key into a new table that is twice the size. New keys cannot be added while this happens, but lookups can.
+     */
+    private synchronized
+    void resize(final Table table) {
+        if (tableREF.get(this) != table) {
+            // another thread already resized it
+            return;
+        }
+
+        final Table next = new Table((table.mask + 1) << 1, loadFactor);
+        table.next = next;
+
+        final AtomicReferenceArray<Object> keys = table.keys;
+        for (int i = 0, n = table.mask + 1; i < n; i++) {
+            Object key = keys.get(i);
+            while (key == null) {
+                if (keys.compareAndSet(i, null, MOVED)) {
+                    break;
+                }
+                key = keys.get(i);
+            }
+
+            if (key != null) {
+                int id = awaitId(table, i);
+                insertMoved(next, key, id);
+            }
+        }
+
+        tableREF.set(this, next);
+    }
+
+    // only called while resizing, before the new table can be modified by any other thread
+    private static
+    void insertMoved(final Table table, final Object key, final int id) {
+        final int mask = table.mask;
+        int index = hash(key) & mask;
+        while (table.keys.get(index) != null) {
+            index = (index + 1) & mask;
+        }
+
+        table.keys.lazySet(index, key);
+        table.ids.lazySet(index, id + 1);
+        table.reverse.lazySet(id, key);
+    }
+
+    /**
+     * Lock-free lookup of the ID for an object
+     *
+     * @return the ID, or {@link #NOT_FOUND} if the object has not been interned
+     */
+    public
+    int get(final V key) {
+        if (key == null) {
+            return NOT_FOUND;
+        }
+
+        final int hash = hash(key);
+        Table table = tableREF.get(this);
+
+        while (true) {
+            final AtomicReferenceArray<Object> keys = table.keys;
+            final int mask = table.mask;
+
+            int index = hash & mask;
+            int probes = 0;
+            boolean moved = false;
+
+            while (probes <= mask) {
+                Object current = keys.get(index);
+                if (current == null) {
+                    return NOT_FOUND;
+                }
+                if (current == MOVED) {
+                    moved = true;
+                    break;
+                }
+                if (current == key || current.equals(key)) {
+                    return awaitId(table, index);
+                }
+
+                index = (index + 1) & mask;
+                probes++;
+            }
+
+            if (!moved) {
+                return NOT_FOUND;
+            }
+
+            // the key was not in this table when it was resized, but might have been added to the new table since then
+            table = table.next;
+        }
+    }
+
+    /**
+     * Lock-free lookup of the object for an ID
+     *
+     * @return the object, or null if there is no object for the ID
+     */
+    public
+    V get(final int id) {
+        if (id < 0) {
+            return null;
+        }
+
+        final AtomicReferenceArray<Object> reverse = tableREF.get(this).reverse;
+        if (id >= reverse.length()) {
+            return null;
+        }
+        return (V) reverse.get(id);
+    }
+
+    public
+    boolean containsKey(final V key) {
+        return get(key) != NOT_FOUND;
+    }
+
+    /**
+     * @return the number of objects that have been interned (and the next ID that will be allocated)
+     */
+    public
+    int size() {
+        return nextId.get();
+    }
+
+    public
+    boolean isEmpty() {
+        return nextId.get() == 0;
+    }
+
+    /**
+     * Returns a copy of the objects, where the index in the array is the ID of the object. Objects that are being interned at the same
+     * time as this is called may be null.
+     */
+    public
+    Array<V> toArray() {
+        final AtomicReferenceArray<Object> reverse = tableREF.get(this).reverse;
+        final int size = Math.min(nextId.get(), reverse.length());
+
+        Array<V> array = new Array<V>(true, Math.max(1, size));
+        for (int i = 0; i < size; i++) {
+            array.add((V) reverse.get(i));
+        }
+        return array;
+    }
+
+    /**
+     * Identity equals only!
+     */
+    @Override
+    public
+    boolean equals(final Object o) {
+        return this == o;
+    }
+
+    @Override
+    public
+    int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    @Override
+    public
+    String toString() {
+        return "LockFreeIdBiMap " + toArray();
+    }
+}
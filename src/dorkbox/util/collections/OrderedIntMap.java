@@ -0,0 +1,257 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.NoSuchElementException;
+
+/** An {@link IntMap} that also stores keys in an {@link IntArray} using the insertion order. Iteration over the
+ * {@link #entries()}, {@link #keys()}, and {@link #values()} is ordered and faster than an unordered map. Keys can also be
+ * accessed and the order changed using {@link #orderedKeys()}. There is some additional overhead for put and remove. When used
+ * for faster iteration versus IntMap and the order does not actually matter, copying during remove can be greatly reduced by
+ * setting {@link IntArray#ordered} to false for {@link OrderedIntMap#orderedKeys()}.
+ * @see OrderedMap */
+@SuppressWarnings({"unchecked", "unused", "WeakerAccess"})
+public class OrderedIntMap<V> extends IntMap<V> {
+	final IntArray keys;
+
+	private Entries entries1, entries2;
+	private Values values1, values2;
+	private Keys keys1, keys2;
+
+	public OrderedIntMap () {
+		keys = new IntArray();
+	}
+
+	public OrderedIntMap (int initialCapacity) {
+		super(initialCapacity);
+		keys = new IntArray(capacity);
+	}
+
+	public OrderedIntMap (int initialCapacity, float loadFactor) {
+		super(initialCapacity, loadFactor);
+		keys = new IntArray(capacity);
+	}
+
+	public OrderedIntMap (OrderedIntMap<? extends V> map) {
+		super(map);
+		keys = new IntArray(map.keys);
+	}
+
+	public V put (int key, V value) {
+		if (!containsKey(key)) keys.add(key);
+		return super.put(key, value);
+	}
+
+	public V remove (int key) {
+		keys.removeValue(key);
+		return super.remove(key);
+	}
+
+	public V removeIndex (int index) {
+		return super.remove(keys.removeIndex(index));
+	}
+
+	public void clear (int maximumCapacity) {
+		keys.clear();
+		super.clear(maximumCapacity);
+	}
+
+	public void clear () {
+		keys.clear();
+		super.clear();
+	}
+
+	public IntArray orderedKeys () {
+		return keys;
+	}
+
+	public Entries<V> iterator () {
+		return entries();
+	}
+
+	/** Returns an iterator for the entries in the map. Remove is supported. Note that the same iterator instance is returned each
+	 * time this method is called. Use the {@link OrderedIntMapEntries} constructor for nested or multithreaded iteration. */
+	public Entries<V> entries () {
+		if (entries1 == null) {
+			entries1 = new OrderedIntMapEntries(this);
+			entries2 = new OrderedIntMapEntries(this);
+		}
+		if (!entries1.valid) {
+			entries1.reset();
+			entries1.valid = true;
+			entries2.valid = false;
+			return entries1;
+		}
+		entries2.reset();
+		entries2.valid = true;
+		entries1.valid = false;
+		return entries2;
+	}
+
+	/** Returns an iterator for the values in the map. Remove is supported. Note that the same iterator instance is returned each
+	 * time this method is called. Use the {@link OrderedIntMapValues} constructor for nested or multithreaded iteration. */
+	public Values<V> values () {
+		if (values1 == null) {
+			values1 = new OrderedIntMapValues(this);
+			values2 = new OrderedIntMapValues(this);
+		}
+		if (!values1.valid) {
+			values1.reset();
+			values1.valid = true;
+			values2.valid = false;
+			return values1;
+		}
+		values2.reset();
+		values2.valid = true;
+		values1.valid = false;
+		return values2;
+	}
+
+	/** Returns an iterator for the keys in the map. Remove is supported. Note that the same iterator instance is returned each
+	 * time this method is called. Use the {@link OrderedIntMapKeys} constructor for nested or multithreaded iteration. */
+	public Keys keys () {
+		if (keys1 == null) {
+			keys1 = new OrderedIntMapKeys(this);
+			keys2 = new OrderedIntMapKeys(this);
+		}
+		if (!keys1.valid) {
+			keys1.reset();
+			keys1.valid = true;
+			keys2.valid = false;
+			return keys1;
+		}
+		keys2.reset();
+		keys2.valid = true;
+		keys1.valid = false;
+		return keys2;
+	}
+
+	public String toString () {
+		if (size == 0) return "[]";
+		StringBuilder buffer = new StringBuilder(32);
+		buffer.append('[');
+		IntArray keys = this.keys;
+		for (int i = 0, n = keys.size; i < n; i++) {
+			int key = keys.get(i);
+			if (i > 0) buffer.append(", ");
+			buffer.append(key);
+			buffer.append('=');
+			buffer.append(get(key));
+		}
+		buffer.append(']');
+		return buffer.toString();
+	}
+
+	static public class OrderedIntMapEntries<V> extends Entries<V> {
+		private IntArray keys;
+
+		public OrderedIntMapEntries (OrderedIntMap<V> map) {
+			super(map);
+			keys = map.keys;
+		}
+
+		public void reset () {
+			currentIndex = -1;
+			nextIndex = 0;
+			hasNext = map.size > 0;
+		}
+
+		public Entry<V> next () {
+			if (!hasNext) throw new NoSuchElementException();
+			if (!valid) throw new RuntimeException("#iterator() cannot be used nested.");
+			entry.key = keys.get(nextIndex);
+			entry.value = map.get(entry.key);
+			currentIndex = nextIndex;
+			nextIndex++;
+			hasNext = nextIndex < map.size;
+			return entry;
+		}
+
+		public void remove () {
+			if (currentIndex < 0) throw new IllegalStateException("next must be called before remove.");
+			((OrderedIntMap)map).removeIndex(currentIndex);
+			nextIndex = currentIndex;
+			currentIndex = -1;
+			hasNext = nextIndex < map.size;
+		}
+	}
+
+	static public class OrderedIntMapKeys extends Keys {
+		private IntArray keys;
+
+		public OrderedIntMapKeys (OrderedIntMap<?> map) {
+			super(map);
+			keys = map.keys;
+		}
+
+		public void reset () {
+			currentIndex = -1;
+			nextIndex = 0;
+			hasNext = map.size > 0;
+		}
+
+		public int next () {
+			if (!hasNext) throw new NoSuchElementException();
+			if (!valid) throw new RuntimeException("#iterator() cannot be used nested.");
+			int key = keys.get(nextIndex);
+			currentIndex = nextIndex;
+			nextIndex++;
+			hasNext = nextIndex < map.size;
+			return key;
+		}
+
+		public void remove () {
+			if (currentIndex < 0) throw new IllegalStateException("next must be called before remove.");
+			((OrderedIntMap)map).removeIndex(currentIndex);
+			nextIndex = currentIndex;
+			currentIndex = -1;
+			hasNext = nextIndex < map.size;
+		}
+	}
+
+	static public class OrderedIntMapValues<V> extends Values<V> {
+		private IntArray keys;
+
+		public OrderedIntMapValues (OrderedIntMap<V> map) {
+			super(map);
+			keys = map.keys;
+		}
+
+		public void reset () {
+			currentIndex = -1;
+			nextIndex = 0;
+			hasNext = map.size > 0;
+		}
+
+		public V next () {
+			if (!hasNext) throw new NoSuchElementException();
+			if (!valid) throw new RuntimeException("#iterator() cannot be used nested.");
+			V value = (V)map.get(keys.get(nextIndex));
+			currentIndex = nextIndex;
+			nextIndex++;
+			hasNext = nextIndex < map.size;
+			return value;
+		}
+
+		public void remove () {
+			if (currentIndex < 0) throw new IllegalStateException("next must be called before remove.");
+			((OrderedIntMap)map).removeIndex(currentIndex);
+			nextIndex = currentIndex;
+			currentIndex = -1;
+			hasNext = nextIndex < map.size;
+		}
+	}
+}
@@ -0,0 +1,910 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import dorkbox.util.NamedThreadFactory;
+import dorkbox.util.Property;
+import dorkbox.util.RandomUtil;
+
+/**
+ * Parallel versions of {@link Sort} and {@link Select}, for very large arrays.
+ * <p>
+ * Sorting splits the array into one chunk per thread, sorts each chunk sequentially (TimSort for objects, Arrays.sort for primitives,
+ * so primitives are never boxed), and then merges the chunks together in rounds. Each merge is also split across the threads, so the
+ * final merge does not run on a single thread. Sorting objects is stable, and sorting floats uses the same ordering as
+ * {@link Arrays#sort(float[])}.
+ * <p>
+ * Selection is a quickselect where every partitioning pass is split across the threads.
+ * <p>
+ * Anything smaller than {@link #SEQUENTIAL_CUTOFF} (or when there is only 1 thread) is done on the calling thread. The calling thread
+ * always does part of the work, and blocks until all of the work is done. Multiple threads may use the same instance at the same time.
+ */
+@SuppressWarnings({"unchecked", "unused", "WeakerAccess"})
+public final
+class ParallelSort {
+    /**
+     * Arrays (or chunks of an array) with fewer elements than this are processed sequentially.
+     */
+    @Property
+    public static int SEQUENTIAL_CUTOFF = 8192;
+
+    private static final Comparator NATURAL_ORDER = new Comparator<Comparable>() {
+        @Override
+        public
+        int compare(final Comparable o1, final Comparable o2) {
+            return o1.compareTo(o2);
+        }
+    };
+
+    private static ParallelSort instance;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+
+    /**
+     * Returns a shared ParallelSort instance (using daemon threads, one per CPU core) for convenience.
+     */
+    public static synchronized
+    ParallelSort instance() {
+        if (instance == null) {
+            instance = new ParallelSort(Runtime.getRuntime()
+                                               .availableProcessors());
+        }
+        return instance;
+    }
+
+    /**
+     * Creates a ParallelSort that uses its own pool of daemon threads.
+     *
+     * @param parallelism the number of threads (including the calling thread) that will share the work
+     */
+    public
+    ParallelSort(final int parallelism) {
+        this(Executors.newFixedThreadPool(Math.max(1, parallelism - 1), new NamedThreadFactory("ParallelSort", true)), parallelism);
+    }
+
+    /**
+     * Creates a ParallelSort that runs its work on the specified executor.
+     *
+     * @param executor this MUST be able to run (parallelism - 1) tasks at the same time
+     * @param parallelism the number of threads (including the calling thread) that will share the work
+     */
+    public
+    ParallelSort(final ExecutorService executor, final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be > 0: " + parallelism);
+        }
+
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Shuts down the executor used by this instance.
+     */
+    public
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public
+    <T> void sort(final Array<T> a) {
+        sort((Object[]) a.items, NATURAL_ORDER, 0, a.size);
+    }
+
+    public
+    <T> void sort(final T[] a) {
+        sort(a, NATURAL_ORDER, 0, a.length);
+    }
+
+    public
+    <T> void sort(final T[] a, final int fromIndex, final int toIndex) {
+        sort(a, NATURAL_ORDER, fromIndex, toIndex);
+    }
+
+    public
+    <T> void sort(final Array<T> a, final Comparator<? super T> c) {
+        sort((Object[]) a.items, (Comparator) c, 0, a.size);
+    }
+
+    public
+    <T> void sort(final T[] a, final Comparator<? super T> c) {
+        sort(a, c, 0, a.length);
+    }
+
+    public
+    <T> void sort(final T[] a, final Comparator<? super T> c, final int fromIndex, final int toIndex) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        run(new ObjectJob(a, (Comparator<Object>) c, fromIndex, toIndex - fromIndex));
+    }
+
+    public
+    void sort(final IntArray a) {
+        sort(a.items, 0, a.size);
+    }
+
+    public
+    void sort(final int[] a, final int fromIndex, final int toIndex) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        run(new IntJob(a, fromIndex, toIndex - fromIndex));
+    }
+
+    public
+    void sort(final LongArray a) {
+        sort(a.items, 0, a.size);
+    }
+
+    public
+    void sort(final long[] a, final int fromIndex, final int toIndex) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        run(new LongJob(a, fromIndex, toIndex - fromIndex));
+    }
+
+    public
+    void sort(final FloatArray a) {
+        sort(a.items, 0, a.size);
+    }
+
+    public
+    void sort(final float[] a, final int fromIndex, final int toIndex) {
+        rangeCheck(a.length, fromIndex, toIndex);
+        run(new FloatJob(a, fromIndex, toIndex - fromIndex));
+    }
+
+    /**
+     * Selects the kth lowest element. The lowest ranking element starts at 1, not 0 (identical to {@link Select}).
+     * <p>
+     * Small arrays are partially sorted (in place) by {@link QuickSelect}, large arrays are not modified.
+     */
+    public
+    <T> T select(final Array<T> items, final Comparator<? super T> comp, final int kthLowest) {
+        return select(items.items, comp, kthLowest, items.size);
+    }
+
+    /**
+     * Selects the kth lowest element. The lowest ranking element starts at 1, not 0 (identical to {@link Select}).
+     * <p>
+     * Small arrays are partially sorted (in place) by {@link QuickSelect}, large arrays are not modified.
+     */
+    public
+    <T> T select(final T[] items, final Comparator<? super T> comp, int kthLowest, final int size) {
+        if (size < 1) {
+            throw new RuntimeException("cannot select from empty array (size < 1)");
+        }
+        else if (kthLowest > size) {
+            throw new RuntimeException("Kth rank is larger than size. k: " + kthLowest + ", size: " + size);
+        }
+        else if (kthLowest < 1) {
+            throw new RuntimeException("Kth rank must be >= 1. k: " + kthLowest);
+        }
+
+        final Comparator<Object> comparator = (Comparator<Object>) comp;
+        final int cutoff = Math.max(2, SEQUENTIAL_CUTOFF);
+
+        Object[] source = items;
+        Object[] destination = null;
+        Object[] spare = null;
+        int count = size;
+
+        while (true) {
+            final int chunks = Math.min(parallelism, count / cutoff);
+            if (chunks <= 1) {
+                int index = new QuickSelect<Object>().select(source, comparator, kthLowest, count);
+                return (T) source[index];
+            }
+
+            final Object pivot = medianOfThree(source, comparator, count);
+
+            // count (in parallel) how many elements are less/greater than the pivot
+            final int[] less = new int[chunks];
+            final int[] greater = new int[chunks];
+            final int[] bounds = split(count, chunks);
+            final Object[] src = source;
+
+            Runnable[] tasks = new Runnable[chunks];
+            for (int i = 0; i < chunks; i++) {
+                final int chunk = i;
+                tasks[i] = new Runnable() {
+                    @Override
+                    public
+                    void run() {
+                        int l = 0;
+                        int g = 0;
+                        for (int j = bounds[chunk], n = bounds[chunk + 1]; j < n; j++) {
+                            int c = comparator.compare(src[j], pivot);
+                            if (c < 0) {
+                                l++;
+                            }
+                            else if (c > 0) {
+                                g++;
+                            }
+                        }
+                        less[chunk] = l;
+                        greater[chunk] = g;
+                    }
+                };
+            }
+            invokeAll(tasks, chunks);
+
+            int totalLess = 0;
+            int totalGreater = 0;
+            for (int i = 0; i < chunks; i++) {
+                totalLess += less[i];
+                totalGreater += greater[i];
+            }
+
+            final int sign;
+            final int[] sideCounts;
+            final int newCount;
+            if (kthLowest <= totalLess) {
+                sign = -1;
+                sideCounts = less;
+                newCount = totalLess;
+            }
+            else if (kthLowest <= count - totalGreater) {
+                return (T) pivot;
+            }
+            else {
+                sign = 1;
+                sideCounts = greater;
+                newCount = totalGreater;
+                kthLowest -= count - totalGreater;
+            }
+
+            // copy (in parallel) the side that contains the kth element into the next buffer. We ping-pong between two buffers.
+            if (destination == null || destination.length < newCount) {
+                destination = new Object[newCount];
+            }
+            final Object[] dst = destination;
+
+            for (int i = 0; i < chunks; i++) {
+                final int chunk = i;
+                int offset = 0;
+                for (int j = 0; j < chunk; j++) {
+                    offset += sideCounts[j];
+                }
+                final int start = offset;
+
+                tasks[i] = new Runnable() {
+                    @Override
+                    public
+                    void run() {
+                        int d = start;
+                        for (int j = bounds[chunk], n = bounds[chunk + 1]; j < n; j++) {
+                            Object value = src[j];
+                            int c = comparator.compare(value, pivot);
+                            if (c < 0 ? sign < 0 : (c > 0 && sign > 0)) {
+                                dst[d++] = value;
+                            }
+                        }
+                    }
+                };
+            }
+            invokeAll(tasks, chunks);
+
+            if (source != items) {
+                spare = source;
+            }
+            source = destination;
+            destination = spare;
+            count = newCount;
+        }
+    }
+
+    private static
+    Object medianOfThree(final Object[] items, final Comparator<Object> comparator, final int size) {
+        Object a = items[RandomUtil.int_(0, size - 1)];
+        Object b = items[RandomUtil.int_(0, size - 1)];
+        Object c = items[RandomUtil.int_(0, size - 1)];
+
+        if (comparator.compare(a, b) > 0) {
+            Object tmp = a;
+            a = b;
+            b = tmp;
+        }
+        if (comparator.compare(b, c) > 0) {
+            b = c;
+            if (comparator.compare(a, b) > 0) {
+                b = a;
+            }
+        }
+        return b;
+    }
+
+    private static
+    void rangeCheck(final int arrayLength, final int fromIndex, final int toIndex) {
+        if (fromIndex > toIndex) {
+            throw new IllegalArgumentException("fromIndex(" + fromIndex + ") > toIndex(" + toIndex + ")");
+        }
+        if (fromIndex < 0) {
+            throw new ArrayIndexOutOfBoundsException(fromIndex);
+        }
+        if (toIndex > arrayLength) {
+            throw new ArrayIndexOutOfBoundsException(toIndex);
+        }
+    }
+
+    /**
+     * @return chunks + 1 boundaries, that evenly split 0 - count
+     */
+    private static
+    int[] split(final int count, final int chunks) {
+        int[] bounds = new int[chunks + 1];
+        for (int i = 0; i <= chunks; i++) {
+            bounds[i] = (int) ((long) count * i / chunks);
+        }
+        return bounds;
+    }
+
+    /**
+     * Runs all of the tasks, using the calling thread for the first task, and waits for all of them to finish.
+     */
+    private
+    void invokeAll(final Runnable[] tasks, final int count) {
+        if (count == 1) {
+            tasks[0].run();
+            return;
+        }
+
+        final CountDownLatch latch = new CountDownLatch(count - 1);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        for (int i = 1; i < count; i++) {
+            final Runnable task = tasks[i];
+            executor.execute(new Runnable() {
+                @Override
+                public
+                void run() {
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        error.compareAndSet(null, t);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+
+        try {
+            tasks[0].run();
+        } catch (Throwable t) {
+            error.compareAndSet(null, t);
+        }
+
+        // the other tasks are still modifying the caller's array, so we cannot return early
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread()
+                  .interrupt();
+        }
+
+        Throwable t = error.get();
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t != null) {
+            throw new RuntimeException(t);
+        }
+    }
+
+    /**
+     * Sorts each chunk, and then merges the chunks together (in rounds) by alternating between the array and a temp buffer.
+     */
+    private
+    void run(final Job job) {
+        final int count = job.count;
+        final int chunks = Math.min(parallelism, count / Math.max(2, SEQUENTIAL_CUTOFF));
+
+        if (chunks <= 1) {
+            job.sort(0, count);
+            return;
+        }
+
+        int[] bounds = split(count, chunks);
+        Runnable[] tasks = new Runnable[parallelism];
+
+        for (int i = 0; i < chunks; i++) {
+            final int from = bounds[i];
+            final int to = bounds[i + 1];
+            tasks[i] = new Runnable() {
+                @Override
+                public
+                void run() {
+                    job.sort(from, to);
+                }
+            };
+        }
+        invokeAll(tasks, chunks);
+
+        job.allocateTemp();
+
+        boolean fromTemp = false;
+        int runs = chunks;
+        while (runs > 1) {
+            final int pairs = runs / 2;
+            final int pieces = Math.max(1, parallelism / pairs);
+            final boolean src = fromTemp;
+
+            int taskCount = 0;
+            if (tasks.length < pairs * pieces + 1) {
+                tasks = new Runnable[pairs * pieces + 1];
+            }
+
+            for (int pair = 0; pair < pairs; pair++) {
+                final int aLo = bounds[pair * 2];
+                final int aHi = bounds[pair * 2 + 1];
+                final int bLo = aHi;
+                final int bHi = bounds[pair * 2 + 2];
+
+                for (int piece = 0; piece < pieces; piece++) {
+                    final int aStart = aLo + (int) ((long) (aHi - aLo) * piece / pieces);
+                    final int aEnd = aLo + (int) ((long) (aHi - aLo) * (piece + 1) / pieces);
+                    final boolean first = piece == 0;
+                    final boolean last = piece == pieces - 1;
+
+                    tasks[taskCount++] = new Runnable() {
+                        @Override
+                        public
+                        void run() {
+                            // stable: elements in 'b' that are equal to 'a' are placed after 'a'
+                            int bStart;
+                            if (first) {
+                                bStart = bLo;
+                            }
+                            else if (aStart == aHi) {
+                                bStart = bHi;
+                            }
+                            else {
+                                bStart = job.lowerBound(src, aStart, bLo, bHi);
+                            }
+
+                            int bEnd;
+                            if (last || aEnd == aHi) {
+                                bEnd = bHi;
+                            }
+                            else {
+                                bEnd = job.lowerBound(src, aEnd, bLo, bHi);
+                            }
+
+                            // everything before aStart and bStart has already been merged by the previous pieces
+                            job.merge(src, aStart, aEnd, bStart, bEnd, aStart + (bStart - bLo));
+                        }
+                    };
+                }
+            }
+
+            if ((runs & 1) != 0) {
+                // the last run has nothing to merge with
+                final int from = bounds[runs - 1];
+                final int to = bounds[runs];
+                tasks[taskCount++] = new Runnable() {
+                    @Override
+                    public
+                    void run() {
+                        job.copy(src, from, to);
+                    }
+                };
+            }
+
+            invokeAll(tasks, taskCount);
+
+            int newRuns = (runs + 1) / 2;
+            int[] newBounds = new int[newRuns + 1];
+            for (int i = 0; i < newRuns; i++) {
+                newBounds[i] = bounds[i * 2];
+            }
+            newBounds[newRuns] = count;
+
+            bounds = newBounds;
+            runs = newRuns;
+            fromTemp = !fromTemp;
+        }
+
+        if (fromTemp) {
+            // the result is in the temp buffer, copy it back (in parallel)
+            bounds = split(count, parallelism);
+            for (int i = 0; i < parallelism; i++) {
+                final int from = bounds[i];
+                final int to = bounds[i + 1];
+                tasks[i] = new Runnable() {
+                    @Override
+                    public
+                    void run() {
+                        job.copy(true, from, to);
+                    }
+                };
+            }
+            invokeAll(tasks, parallelism);
+        }
+    }
+
+
+    /**
+     * The type-specific parts of the sort. All indices are relative to the start of the range being sorted.
+     */
+    private abstract static
+    class Job {
+        final int offset;
+        final int count;
+
+        Job(final int offset, final int count) {
+            this.offset = offset;
+            this.count = count;
+        }
+
+        abstract void allocateTemp();
+
+        /**
+         * Sorts (sequentially) the range in the array
+         */
+        abstract void sort(int from, int to);
+
+        /**
+         * @return the index of the first element in [bLo, bHi) that is >= the element at aIndex
+         */
+        abstract int lowerBound(boolean fromTemp, int aIndex, int bLo, int bHi);
+
+        /**
+         * Merges [aLo, aHi) and [bLo, bHi) from the source into the destination, starting at 'destination'
+         */
+        abstract void merge(boolean fromTemp, int aLo, int aHi, int bLo, int bHi, int destination);
+
+        /**
+         * Copies [from, to) from the source into the destination
+         */
+        abstract void copy(boolean fromTemp, int from, int to);
+    }
+
+
+    private static final
+    class ObjectJob extends Job {
+        private final Object[] a;
+        private final Comparator<Object> c;
+        private Object[] temp;
+
+        ObjectJob(final Object[] a, final Comparator<Object> c, final int offset, final int count) {
+            super(offset, count);
+            this.a = a;
+            this.c = c;
+        }
+
+        @Override
+        void allocateTemp() {
+            temp = new Object[count];
+        }
+
+        @Override
+        void sort(final int from, final int to) {
+            new TimSort<Object>().doSort(a, c, offset + from, offset + to);
+        }
+
+        @Override
+        int lowerBound(final boolean fromTemp, final int aIndex, int bLo, int bHi) {
+            final Object[] src = fromTemp ? temp : a;
+            final int off = fromTemp ? 0 : offset;
+            final Comparator<Object> c = this.c;
+
+            Object key = src[off + aIndex];
+            while (bLo < bHi) {
+                int mid = (bLo + bHi) >>> 1;
+                if (c.compare(src[off + mid], key) < 0) {
+                    bLo = mid + 1;
+                }
+                else {
+                    bHi = mid;
+                }
+            }
+            return bLo;
+        }
+
+        @Override
+        void merge(final boolean fromTemp, int aLo, final int aHi, int bLo, final int bHi, final int destination) {
+            final Object[] src = fromTemp ? temp : a;
+            final int srcOff = fromTemp ? 0 : offset;
+            final Object[] dst = fromTemp ? a : temp;
+            final int dstOff = fromTemp ? offset : 0;
+            final Comparator<Object> c = this.c;
+
+            int d = dstOff + destination;
+            aLo += srcOff;
+            bLo += srcOff;
+            final int aEnd = srcOff + aHi;
+            final int bEnd = srcOff + bHi;
+
+            while (aLo < aEnd && bLo < bEnd) {
+                if (c.compare(src[bLo], src[aLo]) < 0) {
+                    dst[d++] = src[bLo++];
+                }
+                else {
+                    dst[d++] = src[aLo++];
+                }
+            }
+
+            System.arraycopy(src, aLo, dst, d, aEnd - aLo);
+            System.arraycopy(src, bLo, dst, d + aEnd - aLo, bEnd - bLo);
+        }
+
+        @Override
+        void copy(final boolean fromTemp, final int from, final int to) {
+            if (fromTemp) {
+                System.arraycopy(temp, from, a, offset + from, to - from);
+            }
+            else {
+                System.arraycopy(a, offset + from, temp, from, to - from);
+            }
+        }
+    }
+
+
+    private static final
+    class IntJob extends Job {
+        private final int[] a;
+        private int[] temp;
+
+        IntJob(final int[] a, final int offset, final int count) {
+            super(offset, count);
+            this.a = a;
+        }
+
+        @Override
+        void allocateTemp() {
+            temp = new int[count];
+        }
+
+        @Override
+        void sort(final int from, final int to) {
+            Arrays.sort(a, offset + from, offset + to);
+        }
+
+        @Override
+        int lowerBound(final boolean fromTemp, final int aIndex, int bLo, int bHi) {
+            final int[] src = fromTemp ? temp : a;
+            final int off = fromTemp ? 0 : offset;
+
+            int key = src[off + aIndex];
+            while (bLo < bHi) {
+                int mid = (bLo + bHi) >>> 1;
+                if (src[off + mid] < key) {
+                    bLo = mid + 1;
+                }
+                else {
+                    bHi = mid;
+                }
+            }
+            return bLo;
+        }
+
+        @Override
+        void merge(final boolean fromTemp, int aLo, final int aHi, int bLo, final int bHi, final int destination) {
+            final int[] src = fromTemp ? temp : a;
+            final int srcOff = fromTemp ? 0 : offset;
+            final int[] dst = fromTemp ? a : temp;
+            final int dstOff = fromTemp ? offset : 0;
+
+            int d = dstOff + destination;
+            aLo += srcOff;
+            bLo += srcOff;
+            final int aEnd = srcOff + aHi;
+            final int bEnd = srcOff + bHi;
+
+            while (aLo < aEnd && bLo < bEnd) {
+                int av = src[aLo];
+                int bv = src[bLo];
+                if (bv < av) {
+                    dst[d++] = bv;
+                    bLo++;
+                }
+                else {
+                    dst[d++] = av;
+                    aLo++;
+                }
+            }
+
+            System.arraycopy(src, aLo, dst, d, aEnd - aLo);
+            System.arraycopy(src, bLo, dst, d + aEnd - aLo, bEnd - bLo);
+        }
+
+        @Override
+        void copy(final boolean fromTemp, final int from, final int to) {
+            if (fromTemp) {
+                System.arraycopy(temp, from, a, offset + from, to - from);
+            }
+            else {
+                System.arraycopy(a, offset + from, temp, from, to - from);
+            }
+        }
+    }
+
+
+    private static final
+    class LongJob extends Job {
+        private final long[] a;
+        private long[] temp;
+
+        LongJob(final long[] a, final int offset, final int count) {
+            super(offset, count);
+            this.a = a;
+        }
+
+        @Override
+        void allocateTemp() {
+            temp = new long[count];
+        }
+
+        @Override
+        void sort(final int from, final int to) {
+            Arrays.sort(a, offset + from, offset + to);
+        }
+
+        @Override
+        int lowerBound(final boolean fromTemp, final int aIndex, int bLo, int bHi) {
+            final long[] src = fromTemp ? temp : a;
+            final int off = fromTemp ? 0 : offset;
+
+            long key = src[off + aIndex];
+            while (bLo < bHi) {
+                int mid = (bLo + bHi) >>> 1;
+                if (src[off + mid] < key) {
+                    bLo = mid + 1;
+                }
+                else {
+                    bHi = mid;
+                }
+            }
+            return bLo;
+        }
+
+        @Override
+        void merge(final boolean fromTemp, int aLo, final int aHi, int bLo, final int bHi, final int destination) {
+            final long[] src = fromTemp ? temp : a;
+            final int srcOff = fromTemp ? 0 : offset;
+            final long[] dst = fromTemp ? a : temp;
+            final int dstOff = fromTemp ? offset : 0;
+
+            int d = dstOff + destination;
+            aLo += srcOff;
+            bLo += srcOff;
+            final int aEnd = srcOff + aHi;
+            final int bEnd = srcOff + bHi;
+
+            while (aLo < aEnd && bLo < bEnd) {
+                long av = src[aLo];
+                long bv = src[bLo];
+                if (bv < av) {
+                    dst[d++] = bv;
+                    bLo++;
+                }
+                else {
+                    dst[d++] = av;
+                    aLo++;
+                }
+            }
+
+            System.arraycopy(src, aLo, dst, d, aEnd - aLo);
+            System.arraycopy(src, bLo, dst, d + aEnd - aLo, bEnd - bLo);
+        }
+
+        @Override
+        void copy(final boolean fromTemp, final int from, final int to) {
+            if (fromTemp) {
+                System.arraycopy(temp, from, a, offset + from, to - from);
+            }
+            else {
+                System.arraycopy(a, offset + from, temp, from, to - from);
+            }
+        }
+    }
+
+
+    private static final
+    class FloatJob extends Job {
+        private final float[] a;
+        private float[] temp;
+
+        FloatJob(final float[] a, final int offset, final int count) {
+            super(offset, count);
+            this.a = a;
+        }
+
+        @Override
+        void allocateTemp() {
+            temp = new float[count];
+        }
+
+        @Override
+        void sort(final int from, final int to) {
+            Arrays.sort(a, offset + from, offset + to);
+        }
+
+        // Float.compare() is used so that -0.0f and NaN are ordered the same as Arrays.sort()
+        @Override
+        int lowerBound(final boolean fromTemp, final int aIndex, int bLo, int bHi) {
+            final float[] src = fromTemp ? temp : a;
+            final int off = fromTemp ? 0 : offset;
+
+            float key = src[off + aIndex];
+            while (bLo < bHi) {
+                int mid = (bLo + bHi) >>> 1;
+                if (Float.compare(src[off + mid], key) < 0) {
+                    bLo = mid + 1;
+                }
+                else {
+                    bHi = mid;
+                }
+            }
+            return bLo;
+        }
+
+        @Override
+        void merge(final boolean fromTemp, int aLo, final int aHi, int bLo, final int bHi, final int destination) {
+            final float[] src = fromTemp ? temp : a;
+            final int srcOff = fromTemp ? 0 : offset;
+            final float[] dst = fromTemp ? a : temp;
+            final int dstOff = fromTemp ? offset : 0;
+
+            int d = dstOff + destination;
+            aLo += srcOff;
+            bLo += srcOff;
+            final int aEnd = srcOff + aHi;
+            final int bEnd = srcOff + bHi;
+
+            while (aLo < aEnd && bLo < bEnd) {
+                float av = src[aLo];
+                float bv = src[bLo];
+                if (Float.compare(bv, av) < 0) {
+                    dst[d++] = bv;
+                    bLo++;
+                }
+                else {
+                    dst[d++] = av;
+                    aLo++;
+                }
+            }
+
+            System.arraycopy(src, aLo, dst, d, aEnd - aLo);
+            System.arraycopy(src, bLo, dst, d + aEnd - aLo, bEnd - bLo);
+        }
+
+        @Override
+        void copy(final boolean fromTemp, final int from, final int to) {
+            if (fromTemp) {
+                System.arraycopy(temp, from, a, offset + from, to - from);
+            }
+            else {
+                System.arraycopy(a, offset + from, temp, from, to - from);
+            }
+        }
+    }
+}
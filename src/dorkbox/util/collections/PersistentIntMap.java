@@ -0,0 +1,649 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable (persistent) map with int keys, implemented as a hash-array-mapped trie (CHAMP layout). See {@link PersistentObjectMap}.
+ * <p>
+ * The keys are stored unboxed, and the key itself is used as the hash (it is unique), so there are never any hash collisions and the
+ * trie is at most 7 levels deep.
+ * <p>
+ * Null values are allowed.
+ */
+@SuppressWarnings({"unchecked", "unused", "WeakerAccess"})
+public final
+class PersistentIntMap<V> implements Iterable<IntMap.Entry<V>> {
+    private static final int BITS = 5;
+    private static final int MASK = 31;
+    private static final int MAX_DEPTH = 7;
+
+    private static final int[] NO_KEYS = new int[0];
+    private static final PersistentIntMap EMPTY = new PersistentIntMap(new Node(0, 0, NO_KEYS, new Object[0]), 0);
+
+    private static final Object MISSING = new Object();
+
+    public final int size;
+    private final Node root;
+
+    /**
+     * @return the empty map
+     */
+    public static
+    <V> PersistentIntMap<V> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return a new map, which contains all of the entries in the specified map
+     */
+    public static
+    <V> PersistentIntMap<V> from(final IntMap<? extends V> map) {
+        PersistentIntMap<V> result = empty();
+        return result.putAll(map);
+    }
+
+    private
+    PersistentIntMap(final Node root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the value for the specified key, or null if the key is not in the map.
+     */
+    public
+    V get(final int key) {
+        return get(key, null);
+    }
+
+    /**
+     * @return the value for the specified key, or the default value if the key is not in the map.
+     */
+    public
+    V get(final int key, final V defaultValue) {
+        Node node = root;
+        int shift = 0;
+
+        while (true) {
+            int bit = 1 << ((key >>> shift) & MASK);
+
+            if ((node.dataMap & bit) != 0) {
+                int index = Integer.bitCount(node.dataMap & (bit - 1));
+                if (node.keys[index] == key) {
+                    return (V) node.content[index];
+                }
+                return defaultValue;
+            }
+
+            if ((node.nodeMap & bit) == 0) {
+                return defaultValue;
+            }
+
+            node = (Node) node.content[node.nodeIndex(bit)];
+            shift += BITS;
+        }
+    }
+
+    public
+    boolean containsKey(final int key) {
+        return get(key, (V) MISSING) != MISSING;
+    }
+
+    /**
+     * Returns true if the specified value is in the map. Note this traverses the entire map and compares every value, which may be an
+     * expensive operation.
+     *
+     * @param identity If true, uses == to compare the specified value with values in the map. If false, uses {@link #equals(Object)}.
+     */
+    public
+    boolean containsValue(final Object value, final boolean identity) {
+        Values<V> values = new Values<V>(this);
+        while (values.hasNext()) {
+            V v = values.next();
+            if (identity || value == null) {
+                if (v == value) {
+                    return true;
+                }
+            }
+            else if (value.equals(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a new map with the specified entry. If the entry is already in the map, this map is returned.
+     */
+    public
+    PersistentIntMap<V> put(final int key, final V value) {
+        boolean[] added = new boolean[1];
+        Node newRoot = root.put(key, value, 0, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentIntMap<V>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * @return a new map with all of the entries from this map and the specified map.
+     */
+    public
+    PersistentIntMap<V> putAll(final IntMap<? extends V> map) {
+        Node newRoot = root;
+        int newSize = size;
+
+        boolean[] added = new boolean[1];
+        for (IntMap.Entry<? extends V> entry : map.entries()) {
+            added[0] = false;
+            newRoot = newRoot.put(entry.key, entry.value, 0, added);
+            if (added[0]) {
+                newSize++;
+            }
+        }
+
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentIntMap<V>(newRoot, newSize);
+    }
+
+    /**
+     * @return a new map without the specified key. If the key is not in the map, this map is returned.
+     */
+    public
+    PersistentIntMap<V> remove(final int key) {
+        Node newRoot = root.remove(key, 0);
+        if (newRoot == root) {
+            return this;
+        }
+        if (size == 1) {
+            return EMPTY;
+        }
+        return new PersistentIntMap<V>(newRoot, size - 1);
+    }
+
+    /**
+     * @return a new (mutable) copy of this map
+     */
+    public
+    IntMap<V> toIntMap() {
+        IntMap<V> map = new IntMap<V>(Math.max(1, size));
+        Entries<V> entries = new Entries<V>(this);
+        while (entries.hasNext()) {
+            IntMap.Entry<V> entry = entries.next();
+            map.put(entry.key, entry.value);
+        }
+        return map;
+    }
+
+    /**
+     * Returns a new iterator for the entries in the map. The same entry instance is returned for each call to next().
+     */
+    @Override
+    public
+    Entries<V> iterator() {
+        return entries();
+    }
+
+    /**
+     * Returns a new iterator for the entries in the map. The same entry instance is returned for each call to next().
+     */
+    public
+    Entries<V> entries() {
+        return new Entries<V>(this);
+    }
+
+    /**
+     * Returns a new iterator for the keys in the map.
+     */
+    public
+    Keys keys() {
+        return new Keys(this);
+    }
+
+    /**
+     * Returns a new iterator for the values in the map.
+     */
+    public
+    Values<V> values() {
+        return new Values<V>(this);
+    }
+
+    @Override
+    public
+    int hashCode() {
+        int h = 0;
+        Entries<V> entries = new Entries<V>(this);
+        while (entries.hasNext()) {
+            IntMap.Entry<V> entry = entries.next();
+            h += entry.key * 31;
+            if (entry.value != null) {
+                h += entry.value.hashCode();
+            }
+        }
+        return h;
+    }
+
+    @Override
+    public
+    boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof PersistentIntMap)) {
+            return false;
+        }
+
+        PersistentIntMap<V> other = (PersistentIntMap<V>) obj;
+        if (other.size != size) {
+            return false;
+        }
+
+        Entries<V> entries = new Entries<V>(this);
+        while (entries.hasNext()) {
+            IntMap.Entry<V> entry = entries.next();
+            Object otherValue = other.get(entry.key, (V) MISSING);
+            if (entry.value == null) {
+                if (otherValue != null) {
+                    return false;
+                }
+            }
+            else if (!entry.value.equals(otherValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public
+    String toString() {
+        if (size == 0) {
+            return "[]";
+        }
+
+        StringBuilder buffer = new StringBuilder(32);
+        buffer.append('[');
+
+        Entries<V> entries = new Entries<V>(this);
+        boolean first = true;
+        while (entries.hasNext()) {
+            IntMap.Entry<V> entry = entries.next();
+            if (!first) {
+                buffer.append(", ");
+            }
+            first = false;
+
+            buffer.append(entry.key);
+            buffer.append('=');
+            buffer.append(entry.value);
+        }
+
+        buffer.append(']');
+        return buffer.toString();
+    }
+
+
+    static final
+    class Node {
+        final int dataMap;
+        final int nodeMap;
+
+        // the keys for the data entries
+        final int[] keys;
+
+        // the values for the data entries, followed by the child nodes (in reverse order)
+        final Object[] content;
+
+        Node(final int dataMap, final int nodeMap, final int[] keys, final Object[] content) {
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.keys = keys;
+            this.content = content;
+        }
+
+        int nodeIndex(final int bit) {
+            return content.length - 1 - Integer.bitCount(nodeMap & (bit - 1));
+        }
+
+        boolean isSingleEntry() {
+            return keys.length == 1 && nodeMap == 0;
+        }
+
+        /**
+         * @return the new node, or this node if nothing changed
+         */
+        Node put(final int key, final Object value, final int shift, final boolean[] added) {
+            final int bit = 1 << ((key >>> shift) & MASK);
+
+            if ((dataMap & bit) != 0) {
+                final int index = Integer.bitCount(dataMap & (bit - 1));
+                final int currentKey = keys[index];
+
+                if (currentKey == key) {
+                    if (content[index] == value) {
+                        return this;
+                    }
+
+                    Object[] newContent = content.clone();
+                    newContent[index] = value;
+                    return new Node(dataMap, nodeMap, keys, newContent);
+                }
+
+                // two different keys in the same slot, so they are moved into a new child node
+                added[0] = true;
+                Node child = merge(currentKey, content[index], key, value, shift + BITS);
+                return migrateDataToNode(bit, index, child);
+            }
+
+            if ((nodeMap & bit) != 0) {
+                final int index = nodeIndex(bit);
+                final Node child = (Node) content[index];
+                final Node newChild = child.put(key, value, shift + BITS, added);
+                if (newChild == child) {
+                    return this;
+                }
+
+                Object[] newContent = content.clone();
+                newContent[index] = newChild;
+                return new Node(dataMap, nodeMap, keys, newContent);
+            }
+
+            added[0] = true;
+            final int index = Integer.bitCount(dataMap & (bit - 1));
+
+            int[] newKeys = new int[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            newKeys[index] = key;
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+
+            Object[] newContent = new Object[content.length + 1];
+            System.arraycopy(content, 0, newContent, 0, index);
+            newContent[index] = value;
+            System.arraycopy(content, index, newContent, index + 1, content.length - index);
+
+            return new Node(dataMap | bit, nodeMap, newKeys, newContent);
+        }
+
+        /**
+         * @return the new node, or this node if nothing changed
+         */
+        Node remove(final int key, final int shift) {
+            final int bit = 1 << ((key >>> shift) & MASK);
+
+            if ((dataMap & bit) != 0) {
+                final int index = Integer.bitCount(dataMap & (bit - 1));
+                if (keys[index] != key) {
+                    return this;
+                }
+
+                int[] newKeys = keys.length == 1 ? NO_KEYS : new int[keys.length - 1];
+                System.arraycopy(keys, 0, newKeys, 0, index);
+                System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+
+                Object[] newContent = new Object[content.length - 1];
+                System.arraycopy(content, 0, newContent, 0, index);
+                System.arraycopy(content, index + 1, newContent, index, content.length - index - 1);
+
+                // if there is only 1 entry left, the parent will inline it
+                return new Node(dataMap ^ bit, nodeMap, newKeys, newContent);
+            }
+
+            if ((nodeMap & bit) != 0) {
+                final int index = nodeIndex(bit);
+                final Node child = (Node) content[index];
+                final Node newChild = child.remove(key, shift + BITS);
+                if (newChild == child) {
+                    return this;
+                }
+
+                if (newChild.isSingleEntry()) {
+                    return migrateNodeToData(bit, index, newChild.keys[0], newChild.content[0]);
+                }
+
+                Object[] newContent = content.clone();
+                newContent[index] = newChild;
+                return new Node(dataMap, nodeMap, keys, newContent);
+            }
+
+            return this;
+        }
+
+        private
+        Node migrateDataToNode(final int bit, final int dataIndex, final Node child) {
+            int[] newKeys = keys.length == 1 ? NO_KEYS : new int[keys.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, dataIndex);
+            System.arraycopy(keys, dataIndex + 1, newKeys, dataIndex, keys.length - dataIndex - 1);
+
+            // the value is removed, and the node is inserted (nodes are stored in reverse order)
+            final int length = content.length;
+            final int nodeIndex = length - 1 - Integer.bitCount(nodeMap & (bit - 1));
+
+            Object[] newContent = new Object[length];
+            System.arraycopy(content, 0, newContent, 0, dataIndex);
+            System.arraycopy(content, dataIndex + 1, newContent, dataIndex, nodeIndex - dataIndex);
+            newContent[nodeIndex] = child;
+            System.arraycopy(content, nodeIndex + 1, newContent, nodeIndex + 1, length - nodeIndex - 1);
+
+            return new Node(dataMap ^ bit, nodeMap | bit, newKeys, newContent);
+        }
+
+        private
+        Node migrateNodeToData(final int bit, final int nodeIndex, final int key, final Object value) {
+            final int dataIndex = Integer.bitCount(dataMap & (bit - 1));
+
+            int[] newKeys = new int[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, dataIndex);
+            newKeys[dataIndex] = key;
+            System.arraycopy(keys, dataIndex, newKeys, dataIndex + 1, keys.length - dataIndex);
+
+            Object[] newContent = new Object[content.length];
+            System.arraycopy(content, 0, newContent, 0, dataIndex);
+            newContent[dataIndex] = value;
+            System.arraycopy(content, dataIndex, newContent, dataIndex + 1, nodeIndex - dataIndex);
+            System.arraycopy(content, nodeIndex + 1, newContent, nodeIndex + 1, content.length - nodeIndex - 1);
+
+            return new Node(dataMap | bit, nodeMap ^ bit, newKeys, newContent);
+        }
+
+        static
+        Node merge(final int key1, final Object value1, final int key2, final Object value2, final int shift) {
+            // the keys are different, so they will always differ in some bit before the shift reaches 32
+            final int mask1 = (key1 >>> shift) & MASK;
+            final int mask2 = (key2 >>> shift) & MASK;
+
+            if (mask1 != mask2) {
+                int dataMap = (1 << mask1) | (1 << mask2);
+                if (mask1 < mask2) {
+                    return new Node(dataMap, 0, new int[] {key1, key2}, new Object[] {value1, value2});
+                }
+                return new Node(dataMap, 0, new int[] {key2, key1}, new Object[] {value2, value1});
+            }
+
+            Node child = merge(key1, value1, key2, value2, shift + BITS);
+            return new Node(0, 1 << mask1, NO_KEYS, new Object[] {child});
+        }
+    }
+
+
+    abstract static
+    class NodeIterator {
+        private final Node[] nodes = new Node[MAX_DEPTH + 1];
+        private final int[] cursors = new int[MAX_DEPTH + 1];
+        private int depth;
+
+        private boolean hasNext;
+        int nextKey;
+        Object nextValue;
+
+        NodeIterator(final PersistentIntMap map) {
+            nodes[0] = map.root;
+            advance();
+        }
+
+        final
+        void advance() {
+            while (depth >= 0) {
+                final Node node = nodes[depth];
+                final int cursor = cursors[depth];
+                final int dataCount = node.keys.length;
+
+                if (cursor < dataCount) {
+                    cursors[depth]++;
+                    nextKey = node.keys[cursor];
+                    nextValue = node.content[cursor];
+                    hasNext = true;
+                    return;
+                }
+
+                if (cursor < node.content.length) {
+                    cursors[depth]++;
+                    depth++;
+                    nodes[depth] = (Node) node.content[node.content.length - 1 - (cursor - dataCount)];
+                    cursors[depth] = 0;
+                }
+                else {
+                    nodes[depth] = null;
+                    depth--;
+                }
+            }
+
+            hasNext = false;
+            nextValue = null;
+        }
+
+        public
+        boolean hasNext() {
+            return hasNext;
+        }
+
+        final
+        void checkNext() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+        }
+
+        public
+        void remove() {
+            throw new UnsupportedOperationException("The map is immutable.");
+        }
+    }
+
+
+    public static
+    class Entries<V> extends NodeIterator implements Iterable<IntMap.Entry<V>>, Iterator<IntMap.Entry<V>> {
+        private final IntMap.Entry<V> entry = new IntMap.Entry<V>();
+
+        public
+        Entries(final PersistentIntMap<V> map) {
+            super(map);
+        }
+
+        /**
+         * Note the same entry instance is returned each time this method is called.
+         */
+        @Override
+        public
+        IntMap.Entry<V> next() {
+            checkNext();
+            entry.key = nextKey;
+            entry.value = (V) nextValue;
+            advance();
+            return entry;
+        }
+
+        @Override
+        public
+        Iterator<IntMap.Entry<V>> iterator() {
+            return this;
+        }
+    }
+
+
+    public static
+    class Keys extends NodeIterator {
+        public
+        Keys(final PersistentIntMap<?> map) {
+            super(map);
+        }
+
+        public
+        int next() {
+            checkNext();
+            int key = nextKey;
+            advance();
+            return key;
+        }
+
+        /**
+         * Returns a new array containing the remaining keys.
+         */
+        public
+        IntArray toArray() {
+            IntArray array = new IntArray(true, 16);
+            while (hasNext()) {
+                array.add(next());
+            }
+            return array;
+        }
+    }
+
+
+    public static
+    class Values<V> extends NodeIterator implements Iterable<V>, Iterator<V> {
+        public
+        Values(final PersistentIntMap<V> map) {
+            super(map);
+        }
+
+        @Override
+        public
+        V next() {
+            checkNext();
+            V value = (V) nextValue;
+            advance();
+            return value;
+        }
+
+        @Override
+        public
+        Iterator<V> iterator() {
+            return this;
+        }
+
+        /**
+         * Returns a new array containing the remaining values.
+         */
+        public
+        Array<V> toArray() {
+            Array<V> array = new Array<V>(true, 16);
+            while (hasNext()) {
+                array.add(next());
+            }
+            return array;
+        }
+    }
+}
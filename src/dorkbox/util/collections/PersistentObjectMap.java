@@ -0,0 +1,815 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable (persistent) map, implemented as a hash-array-mapped trie (CHAMP layout).
+ * <p>
+ * Modifications return a NEW map, which shares all of the unchanged parts of the trie with the original map. Only the O(log32 n) nodes
+ * on the path to the modified key are copied, so a writer can publish a new version of a large map very cheaply, and every reader
+ * automatically has an immutable snapshot (which can be iterated, etc. without any locking or copying).
+ * <p>
+ * For example, with the "single-writer-principle":
+ * <pre>
+ * private volatile PersistentObjectMap&lt;K, V&gt; map = PersistentObjectMap.empty();
+ *
+ * public synchronized void put(K key, V value) {
+ *     map = map.put(key, value);
+ * }
+ *
+ * public V get(K key) {
+ *     return map.get(key);
+ * }
+ * </pre>
+ * Null keys are not allowed. Null values are allowed.
+ */
+@SuppressWarnings({"unchecked", "unused", "WeakerAccess"})
+public final
+class PersistentObjectMap<K, V> implements Iterable<ObjectMap.Entry<K, V>> {
+    private static final int BITS = 5;
+    private static final int MASK = 31;
+
+    // 32 bit hashes are consumed 5 bits at a time, so the trie is at most 7 levels deep (plus a collision node)
+    private static final int MAX_DEPTH = 8;
+
+    private static final PersistentObjectMap EMPTY = new PersistentObjectMap(new BitmapNode(0, 0, new Object[0]), 0);
+
+    public final int size;
+    private final Node root;
+
+    /**
+     * @return the empty map
+     */
+    public static
+    <K, V> PersistentObjectMap<K, V> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return a new map, which contains all of the entries in the specified map
+     */
+    public static
+    <K, V> PersistentObjectMap<K, V> from(final ObjectMap<? extends K, ? extends V> map) {
+        PersistentObjectMap<K, V> result = empty();
+        return result.putAll(map);
+    }
+
+    private
+    PersistentObjectMap(final Node root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    static
+    int hash(final Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    public
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the value for the specified key, or null if the key is not in the map.
+     */
+    public
+    V get(final K key) {
+        return get(key, null);
+    }
+
+    /**
+     * @return the value for the specified key, or the default value if the key is not in the map.
+     */
+    public
+    V get(final K key, final V defaultValue) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null.");
+        }
+
+        final int hash = hash(key);
+        Node node = root;
+        int shift = 0;
+
+        while (true) {
+            if (node instanceof CollisionNode) {
+                return (V) ((CollisionNode) node).get(key, defaultValue);
+            }
+
+            BitmapNode bitmapNode = (BitmapNode) node;
+            int bit = 1 << ((hash >>> shift) & MASK);
+
+            if ((bitmapNode.dataMap & bit) != 0) {
+                int index = Integer.bitCount(bitmapNode.dataMap & (bit - 1)) << 1;
+                Object candidate = bitmapNode.content[index];
+                if (candidate.equals(key)) {
+                    return (V) bitmapNode.content[index + 1];
+                }
+                return defaultValue;
+            }
+
+            if ((bitmapNode.nodeMap & bit) == 0) {
+                return defaultValue;
+            }
+
+            node = bitmapNode.nodeAt(bit);
+            shift += BITS;
+        }
+    }
+
+    public
+    boolean containsKey(final K key) {
+        return get(key, (V) Missing.VALUE) != Missing.VALUE;
+    }
+
+    /**
+     * Returns true if the specified value is in the map. Note this traverses the entire map and compares every value, which may be an
+     * expensive operation.
+     *
+     * @param identity If true, uses == to compare the specified value with values in the map. If false, uses {@link #equals(Object)}.
+     */
+    public
+    boolean containsValue(final Object value, final boolean identity) {
+        Entries<K, V> entries = new Entries<K, V>(this);
+        while (entries.hasNext()) {
+            V v = entries.next().value;
+            if (identity || value == null) {
+                if (v == value) {
+                    return true;
+                }
+            }
+            else if (value.equals(v)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a new map with the specified entry. If the entry is already in the map, this map is returned.
+     */
+    public
+    PersistentObjectMap<K, V> put(final K key, final V value) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null.");
+        }
+
+        Change change = new Change();
+        Node newRoot = root.put(key, hash(key), value, 0, change);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentObjectMap<K, V>(newRoot, change.added ? size + 1 : size);
+    }
+
+    /**
+     * @return a new map with all of the entries from this map and the specified map.
+     */
+    public
+    PersistentObjectMap<K, V> putAll(final ObjectMap<? extends K, ? extends V> map) {
+        Node newRoot = root;
+        int newSize = size;
+
+        Change change = new Change();
+        for (ObjectMap.Entry<? extends K, ? extends V> entry : map.entries()) {
+            change.added = false;
+            newRoot = newRoot.put(entry.key, hash(entry.key), entry.value, 0, change);
+            if (change.added) {
+                newSize++;
+            }
+        }
+
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentObjectMap<K, V>(newRoot, newSize);
+    }
+
+    /**
+     * @return a new map without the specified key. If the key is not in the map, this map is returned.
+     */
+    public
+    PersistentObjectMap<K, V> remove(final K key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null.");
+        }
+
+        Change change = new Change();
+        Node newRoot = root.remove(key, hash(key), 0, change);
+        if (newRoot == root) {
+            return this;
+        }
+        if (size == 1) {
+            return EMPTY;
+        }
+        return new PersistentObjectMap<K, V>(newRoot, size - 1);
+    }
+
+    /**
+     * @return a new (mutable) copy of this map
+     */
+    public
+    ObjectMap<K, V> toObjectMap() {
+        ObjectMap<K, V> map = new ObjectMap<K, V>(Math.max(1, size));
+        Entries<K, V> entries = new Entries<K, V>(this);
+        while (entries.hasNext()) {
+            ObjectMap.Entry<K, V> entry = entries.next();
+            map.put(entry.key, entry.value);
+        }
+        return map;
+    }
+
+    /**
+     * Returns a new iterator for the entries in the map. The same entry instance is returned for each call to next().
+     */
+    @Override
+    public
+    Entries<K, V> iterator() {
+        return entries();
+    }
+
+    /**
+     * Returns a new iterator for the entries in the map. The same entry instance is returned for each call to next().
+     */
+    public
+    Entries<K, V> entries() {
+        return new Entries<K, V>(this);
+    }
+
+    /**
+     * Returns a new iterator for the keys in the map.
+     */
+    public
+    Keys<K> keys() {
+        return new Keys<K>(this);
+    }
+
+    /**
+     * Returns a new iterator for the values in the map.
+     */
+    public
+    Values<V> values() {
+        return new Values<V>(this);
+    }
+
+    @Override
+    public
+    int hashCode() {
+        int h = 0;
+        Entries<K, V> entries = new Entries<K, V>(this);
+        while (entries.hasNext()) {
+            ObjectMap.Entry<K, V> entry = entries.next();
+            h += entry.key.hashCode();
+            if (entry.value != null) {
+                h += entry.value.hashCode();
+            }
+        }
+        return h;
+    }
+
+    @Override
+    public
+    boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof PersistentObjectMap)) {
+            return false;
+        }
+
+        PersistentObjectMap<K, V> other = (PersistentObjectMap<K, V>) obj;
+        if (other.size != size) {
+            return false;
+        }
+
+        Entries<K, V> entries = new Entries<K, V>(this);
+        while (entries.hasNext()) {
+            ObjectMap.Entry<K, V> entry = entries.next();
+            Object otherValue = other.get(entry.key, (V) Missing.VALUE);
+            if (entry.value == null) {
+                if (otherValue != null) {
+                    return false;
+                }
+            }
+            else if (!entry.value.equals(otherValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public
+    String toString() {
+        if (size == 0) {
+            return "{}";
+        }
+
+        StringBuilder buffer = new StringBuilder(32);
+        buffer.append('{');
+
+        Entries<K, V> entries = new Entries<K, V>(this);
+        boolean first = true;
+        while (entries.hasNext()) {
+            ObjectMap.Entry<K, V> entry = entries.next();
+            if (!first) {
+                buffer.append(", ");
+            }
+            first = false;
+
+            buffer.append(entry.key);
+            buffer.append('=');
+            buffer.append(entry.value);
+        }
+
+        buffer.append('}');
+        return buffer.toString();
+    }
+
+
+    // used to detect missing keys, since null values are allowed
+    private static final
+    class Missing {
+        static final Object VALUE = new Object();
+    }
+
+
+    // what happened during a modification
+    static final
+    class Change {
+        boolean added;
+    }
+
+
+    abstract static
+    class Node {
+        // key/value pairs (and for bitmap nodes, the child nodes at the end, in reverse order)
+        final Object[] content;
+
+        Node(final Object[] content) {
+            this.content = content;
+        }
+
+        abstract int dataCount();
+
+        abstract int nodeCount();
+
+        /**
+         * @return the child node (for iteration), where 0 is the first child node
+         */
+        abstract Node childAt(int index);
+
+        /**
+         * @return the new node, or this node if nothing changed
+         */
+        abstract Node put(Object key, int hash, Object value, int shift, Change change);
+
+        /**
+         * @return the new node, or this node if nothing changed
+         */
+        abstract Node remove(Object key, int hash, int shift, Change change);
+
+        /**
+         * @return true if this node only contains a single key/value pair (and no child nodes). These are inlined into the parent.
+         */
+        final
+        boolean isSingleEntry() {
+            return dataCount() == 1 && nodeCount() == 0;
+        }
+    }
+
+
+    static final
+    class BitmapNode extends Node {
+        final int dataMap;
+        final int nodeMap;
+
+        BitmapNode(final int dataMap, final int nodeMap, final Object[] content) {
+            super(content);
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+        }
+
+        @Override
+        int dataCount() {
+            return Integer.bitCount(dataMap);
+        }
+
+        @Override
+        int nodeCount() {
+            return Integer.bitCount(nodeMap);
+        }
+
+        @Override
+        Node childAt(final int index) {
+            return (Node) content[content.length - 1 - index];
+        }
+
+        Node nodeAt(final int bit) {
+            return (Node) content[nodeIndex(bit)];
+        }
+
+        int nodeIndex(final int bit) {
+            return content.length - 1 - Integer.bitCount(nodeMap & (bit - 1));
+        }
+
+        @Override
+        Node put(final Object key, final int hash, final Object value, final int shift, final Change change) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+
+            if ((dataMap & bit) != 0) {
+                final int index = Integer.bitCount(dataMap & (bit - 1)) << 1;
+                final Object currentKey = content[index];
+
+                if (currentKey.equals(key)) {
+                    if (content[index + 1] == value) {
+                        return this;
+                    }
+
+                    Object[] newContent = content.clone();
+                    newContent[index + 1] = value;
+                    return new BitmapNode(dataMap, nodeMap, newContent);
+                }
+
+                // two different keys in the same slot, so they are moved into a new child node
+                change.added = true;
+                Node child = merge(currentKey, hash(currentKey), content[index + 1], key, hash, value, shift + BITS);
+                return migrateDataToNode(bit, index, child);
+            }
+
+            if ((nodeMap & bit) != 0) {
+                final int index = nodeIndex(bit);
+                final Node child = (Node) content[index];
+                final Node newChild = child.put(key, hash, value, shift + BITS, change);
+                if (newChild == child) {
+                    return this;
+                }
+
+                Object[] newContent = content.clone();
+                newContent[index] = newChild;
+                return new BitmapNode(dataMap, nodeMap, newContent);
+            }
+
+            change.added = true;
+            final int index = Integer.bitCount(dataMap & (bit - 1)) << 1;
+            Object[] newContent = new Object[content.length + 2];
+            System.arraycopy(content, 0, newContent, 0, index);
+            newContent[index] = key;
+            newContent[index + 1] = value;
+            System.arraycopy(content, index, newContent, index + 2, content.length - index);
+            return new BitmapNode(dataMap | bit, nodeMap, newContent);
+        }
+
+        @Override
+        Node remove(final Object key, final int hash, final int shift, final Change change) {
+            final int bit = 1 << ((hash >>> shift) & MASK);
+
+            if ((dataMap & bit) != 0) {
+                final int index = Integer.bitCount(dataMap & (bit - 1)) << 1;
+                if (!content[index].equals(key)) {
+                    return this;
+                }
+
+                Object[] newContent = new Object[content.length - 2];
+                System.arraycopy(content, 0, newContent, 0, index);
+                System.arraycopy(content, index + 2, newContent, index, content.length - index - 2);
+                return new BitmapNode(dataMap ^ bit, nodeMap, newContent);
+            }
+
+            if ((nodeMap & bit) != 0) {
+                final int index = nodeIndex(bit);
+                final Node child = (Node) content[index];
+                final Node newChild = child.remove(key, hash, shift + BITS, change);
+                if (newChild == child) {
+                    return this;
+                }
+
+                if (newChild.isSingleEntry()) {
+                    return migrateNodeToData(bit, index, newChild.content[0], newChild.content[1]);
+                }
+
+                Object[] newContent = content.clone();
+                newContent[index] = newChild;
+                return new BitmapNode(dataMap, nodeMap, newContent);
+            }
+
+            return this;
+        }
+
+        private
+        Node migrateDataToNode(final int bit, final int dataIndex, final Node child) {
+            // the node is inserted at the end (nodes are stored in reverse order)
+            final int newLength = content.length - 1;
+            final int nodeIndex = newLength - 1 - Integer.bitCount(nodeMap & (bit - 1));
+
+            Object[] newContent = new Object[newLength];
+            System.arraycopy(content, 0, newContent, 0, dataIndex);
+            System.arraycopy(content, dataIndex + 2, newContent, dataIndex, nodeIndex - dataIndex);
+            newContent[nodeIndex] = child;
+            System.arraycopy(content, nodeIndex + 2, newContent, nodeIndex + 1, content.length - nodeIndex - 2);
+
+            return new BitmapNode(dataMap ^ bit, nodeMap | bit, newContent);
+        }
+
+        private
+        Node migrateNodeToData(final int bit, final int nodeIndex, final Object key, final Object value) {
+            final int dataIndex = Integer.bitCount(dataMap & (bit - 1)) << 1;
+
+            Object[] newContent = new Object[content.length + 1];
+            System.arraycopy(content, 0, newContent, 0, dataIndex);
+            newContent[dataIndex] = key;
+            newContent[dataIndex + 1] = value;
+            System.arraycopy(content, dataIndex, newContent, dataIndex + 2, nodeIndex - dataIndex);
+            System.arraycopy(content, nodeIndex + 1, newContent, nodeIndex + 2, content.length - nodeIndex - 1);
+
+            return new BitmapNode(dataMap | bit, nodeMap ^ bit, newContent);
+        }
+
+        static
+        Node merge(final Object key1, final int hash1, final Object value1,
+                   final Object key2, final int hash2, final Object value2,
+                   final int shift) {
+
+            if (shift >= 32) {
+                // all of the hash bits are used, so the keys have identical hashes
+                return new CollisionNode(hash1, new Object[] {key1, value1, key2, value2});
+            }
+
+            final int mask1 = (hash1 >>> shift) & MASK;
+            final int mask2 = (hash2 >>> shift) & MASK;
+
+            if (mask1 != mask2) {
+                int dataMap = (1 << mask1) | (1 << mask2);
+                if (mask1 < mask2) {
+                    return new BitmapNode(dataMap, 0, new Object[] {key1, value1, key2, value2});
+                }
+                return new BitmapNode(dataMap, 0, new Object[] {key2, value2, key1, value1});
+            }
+
+            Node child = merge(key1, hash1, value1, key2, hash2, value2, shift + BITS);
+            return new BitmapNode(0, 1 << mask1, new Object[] {child});
+        }
+    }
+
+
+    static final
+    class CollisionNode extends Node {
+        final int hash;
+
+        CollisionNode(final int hash, final Object[] content) {
+            super(content);
+            this.hash = hash;
+        }
+
+        @Override
+        int dataCount() {
+            return content.length >> 1;
+        }
+
+        @Override
+        int nodeCount() {
+            return 0;
+        }
+
+        @Override
+        Node childAt(final int index) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        private
+        int indexOf(final Object key) {
+            for (int i = 0; i < content.length; i += 2) {
+                if (content[i].equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        Object get(final Object key, final Object defaultValue) {
+            int index = indexOf(key);
+            return index >= 0 ? content[index + 1] : defaultValue;
+        }
+
+        @Override
+        Node put(final Object key, final int hash, final Object value, final int shift, final Change change) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                if (content[index + 1] == value) {
+                    return this;
+                }
+
+                Object[] newContent = content.clone();
+                newContent[index + 1] = value;
+                return new CollisionNode(this.hash, newContent);
+            }
+
+            change.added = true;
+            Object[] newContent = new Object[content.length + 2];
+            System.arraycopy(content, 0, newContent, 0, content.length);
+            newContent[content.length] = key;
+            newContent[content.length + 1] = value;
+            return new CollisionNode(this.hash, newContent);
+        }
+
+        @Override
+        Node remove(final Object key, final int hash, final int shift, final Change change) {
+            int index = indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+
+            Object[] newContent = new Object[content.length - 2];
+            System.arraycopy(content, 0, newContent, 0, index);
+            System.arraycopy(content, index + 2, newContent, index, content.length - index - 2);
+
+            // if there is only 1 entry left, the parent will inline it
+            return new CollisionNode(this.hash, newContent);
+        }
+    }
+
+
+    abstract static
+    class NodeIterator {
+        private final Node[] nodes = new Node[MAX_DEPTH + 1];
+        private final int[] cursors = new int[MAX_DEPTH + 1];
+        private int depth;
+
+        private boolean hasNext;
+        Object nextKey;
+        Object nextValue;
+
+        NodeIterator(final PersistentObjectMap map) {
+            nodes[0] = map.root;
+            advance();
+        }
+
+        final
+        void advance() {
+            while (depth >= 0) {
+                final Node node = nodes[depth];
+                final int cursor = cursors[depth];
+                final int dataCount = node.dataCount();
+
+                if (cursor < dataCount) {
+                    cursors[depth]++;
+                    nextKey = node.content[cursor << 1];
+                    nextValue = node.content[(cursor << 1) + 1];
+                    hasNext = true;
+                    return;
+                }
+
+                if (cursor - dataCount < node.nodeCount()) {
+                    cursors[depth]++;
+                    depth++;
+                    nodes[depth] = node.childAt(cursor - dataCount);
+                    cursors[depth] = 0;
+                }
+                else {
+                    nodes[depth] = null;
+                    depth--;
+                }
+            }
+
+            hasNext = false;
+            nextKey = null;
+            nextValue = null;
+        }
+
+        public
+        boolean hasNext() {
+            return hasNext;
+        }
+
+        final
+        void checkNext() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+        }
+
+        public
+        void remove() {
+            throw new UnsupportedOperationException("The map is immutable.");
+        }
+    }
+
+
+    public static
+    class Entries<K, V> extends NodeIterator implements Iterable<ObjectMap.Entry<K, V>>, Iterator<ObjectMap.Entry<K, V>> {
+        private final ObjectMap.Entry<K, V> entry = new ObjectMap.Entry<K, V>();
+
+        public
+        Entries(final PersistentObjectMap<K, V> map) {
+            super(map);
+        }
+
+        /**
+         * Note the same entry instance is returned each time this method is called.
+         */
+        @Override
+        public
+        ObjectMap.Entry<K, V> next() {
+            checkNext();
+            entry.key = (K) nextKey;
+            entry.value = (V) nextValue;
+            advance();
+            return entry;
+        }
+
+        @Override
+        public
+        Iterator<ObjectMap.Entry<K, V>> iterator() {
+            return this;
+        }
+    }
+
+
+    public static
+    class Keys<K> extends NodeIterator implements Iterable<K>, Iterator<K> {
+        public
+        Keys(final PersistentObjectMap<K, ?> map) {
+            super(map);
+        }
+
+        @Override
+        public
+        K next() {
+            checkNext();
+            K key = (K) nextKey;
+            advance();
+            return key;
+        }
+
+        @Override
+        public
+        Iterator<K> iterator() {
+            return this;
+        }
+
+        /**
+         * Returns a new array containing the remaining keys.
+         */
+        public
+        Array<K> toArray() {
+            Array<K> array = new Array<K>(true, 16);
+            while (hasNext()) {
+                array.add(next());
+            }
+            return array;
+        }
+    }
+
+
+    public static
+    class Values<V> extends NodeIterator implements Iterable<V>, Iterator<V> {
+        public
+        Values(final PersistentObjectMap<?, V> map) {
+            super(map);
+        }
+
+        @Override
+        public
+        V next() {
+            checkNext();
+            V value = (V) nextValue;
+            advance();
+            return value;
+        }
+
+        @Override
+        public
+        Iterator<V> iterator() {
+            return this;
+        }
+
+        /**
+         * Returns a new array containing the remaining values.
+         */
+        public
+        Array<V> toArray() {
+            Array<V> array = new Array<V>(true, 16);
+            while (hasNext()) {
+                array.add(next());
+            }
+            return array;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.Arrays;
+
+/**
+ * LSD (least significant digit first) radix sort for int and long arrays, using 8-bit digits. This is O(n) and is faster than
+ * Arrays.sort for large arrays of primitives. Passes where every element has the same digit are skipped.
+ * <p>
+ * Sorting requires working memory (the same size as the array being sorted), and this class allows that memory to be reused to avoid
+ * allocation (identical to {@link Sort}). Multiple threads must not use the same instance at the same time.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final
+class RadixSort {
+    private static RadixSort instance;
+
+    private final int[] counts = new int[256];
+    private int[] intTemp;
+    private long[] longTemp;
+
+    /**
+     * Returns a RadixSort instance for convenience. Multiple threads must not use this instance at the same time.
+     */
+    public static
+    RadixSort instance() {
+        if (instance == null) {
+            instance = new RadixSort();
+        }
+        return instance;
+    }
+
+    public
+    void sort(final IntArray a) {
+        sort(a.items, 0, a.size);
+    }
+
+    public
+    void sort(final int[] a) {
+        sort(a, 0, a.length);
+    }
+
+    /**
+     * Sorts the specified range (fromIndex inclusive, toIndex exclusive) of the array into ascending numerical order.
+     */
+    public
+    void sort(final int[] a, final int fromIndex, final int toIndex) {
+        final int count = toIndex - fromIndex;
+        if (count < 2) {
+            return;
+        }
+
+        int[] temp = intTemp;
+        if (temp == null || temp.length < count) {
+            temp = intTemp = new int[count];
+        }
+
+        final int[] counts = this.counts;
+
+        int[] src = a;
+        int srcOffset = fromIndex;
+        int[] dst = temp;
+        int dstOffset = 0;
+
+        for (int shift = 0; shift < 32; shift += 8) {
+            // the sign bit is flipped for the most significant digit, so that negative numbers are sorted first
+            final int flip = shift == 24 ? 0x80 : 0;
+
+            Arrays.fill(counts, 0);
+            for (int i = srcOffset, n = srcOffset + count; i < n; i++) {
+                counts[((src[i] >>> shift) & 0xFF) ^ flip]++;
+            }
+
+            // every element has the same digit, so this pass would not change the order
+            if (counts[((src[srcOffset] >>> shift) & 0xFF) ^ flip] == count) {
+                continue;
+            }
+
+            int total = dstOffset;
+            for (int i = 0; i < 256; i++) {
+                int c = counts[i];
+                counts[i] = total;
+                total += c;
+            }
+
+            for (int i = srcOffset, n = srcOffset + count; i < n; i++) {
+                int value = src[i];
+                dst[counts[((value >>> shift) & 0xFF) ^ flip]++] = value;
+            }
+
+            int[] swap = src;
+            src = dst;
+            dst = swap;
+
+            int swapOffset = srcOffset;
+            srcOffset = dstOffset;
+            dstOffset = swapOffset;
+        }
+
+        if (src != a) {
+            System.arraycopy(src, srcOffset, a, fromIndex, count);
+        }
+    }
+
+    public
+    void sort(final LongArray a) {
+        sort(a.items, 0, a.size);
+    }
+
+    public
+    void sort(final long[] a) {
+        sort(a, 0, a.length);
+    }
+
+    /**
+     * Sorts the specified range (fromIndex inclusive, toIndex exclusive) of the array into ascending numerical order.
+     */
+    public
+    void sort(final long[] a, final int fromIndex, final int toIndex) {
+        final int count = toIndex - fromIndex;
+        if (count < 2) {
+            return;
+        }
+
+        long[] temp = longTemp;
+        if (temp == null || temp.length < count) {
+            temp = longTemp = new long[count];
+        }
+
+        final int[] counts = this.counts;
+
+        long[] src = a;
+        int srcOffset = fromIndex;
+        long[] dst = temp;
+        int dstOffset = 0;
+
+        for (int shift = 0; shift < 64; shift += 8) {
+            // the sign bit is flipped for the most significant digit, so that negative numbers are sorted first
+            final int flip = shift == 56 ? 0x80 : 0;
+
+            Arrays.fill(counts, 0);
+            for (int i = srcOffset, n = srcOffset + count; i < n; i++) {
+                counts[((int) (src[i] >>> shift) & 0xFF) ^ flip]++;
+            }
+
+            // every element has the same digit, so this pass would not change the order
+            if (counts[((int) (src[srcOffset] >>> shift) & 0xFF) ^ flip] == count) {
+                continue;
+            }
+
+            int total = dstOffset;
+            for (int i = 0; i < 256; i++) {
+                int c = counts[i];
+                counts[i] = total;
+                total += c;
+            }
+
+            for (int i = srcOffset, n = srcOffset + count; i < n; i++) {
+                long value = src[i];
+                dst[counts[((int) (value >>> shift) & 0xFF) ^ flip]++] = value;
+            }
+
+            long[] swap = src;
+            src = dst;
+            dst = swap;
+
+            int swapOffset = srcOffset;
+            srcOffset = dstOffset;
+            dstOffset = swapOffset;
+        }
+
+        if (src != a) {
+            System.arraycopy(src, srcOffset, a, fromIndex, count);
+        }
+    }
+}
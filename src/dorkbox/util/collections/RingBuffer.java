@@ -0,0 +1,332 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import dorkbox.util.ActionHandler;
+import dorkbox.util.MathUtil;
+
+/**
+ * A bounded, array-backed, lock-free multi-producer/multi-consumer queue (which is also suitable as a MPSC queue).
+ * <p>
+ * Every slot has its own sequence number, so producers and consumers only ever CAS on the (padded) head/tail counters, and never
+ * allocate once the buffer is created. Based on the bounded MPMC queue by Dmitry Vyukov.
+ * <p>
+ * Null elements are not permitted.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final
+class RingBuffer<T> {
+    /**
+     * A sequence counter that is padded so that the producer and consumer counters do not share a cache line.
+     */
+    @SuppressWarnings("unused")
+    private static final
+    class Sequence extends AtomicLong {
+        private static final long serialVersionUID = 1L;
+
+        public volatile long p1, p2, p3, p4, p5, p6, p7 = 7L;
+
+        Sequence() {
+            super(0L);
+        }
+
+        // prevents the padding from being optimized away
+        long sumPadding() {
+            return p1 + p2 + p3 + p4 + p5 + p6 + p7;
+        }
+    }
+
+
+    private final Sequence head = new Sequence(); // next position to consume
+    private final Sequence tail = new Sequence(); // next position to produce
+
+    private final int mask;
+    private final Object[] buffer;
+    private final AtomicLongArray sequences;
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * Creates a ring buffer that uses the {@link WaitStrategy#PARK} strategy when blocking.
+     *
+     * @param capacity the minimum capacity of the buffer. This will be rounded up to the next power of two.
+     */
+    public
+    RingBuffer(final int capacity) {
+        this(capacity, WaitStrategy.PARK);
+    }
+
+    /**
+     * @param capacity the minimum capacity of the buffer. This will be rounded up to the next power of two.
+     * @param waitStrategy what to do while blocked in {@link #put(Object)} or {@link #take()}
+     */
+    public
+    RingBuffer(final int capacity, final WaitStrategy waitStrategy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be > 0: " + capacity);
+        }
+        if (waitStrategy == null) {
+            throw new NullPointerException("waitStrategy");
+        }
+
+        int size = MathUtil.nextPowerOfTwo(capacity);
+
+        this.mask = size - 1;
+        this.buffer = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.waitStrategy = waitStrategy;
+
+        for (int i = 0; i < size; i++) {
+            sequences.lazySet(i, i);
+        }
+    }
+
+    /**
+     * Inserts the element, if there is space available.
+     *
+     * @return true if the element was added, false if the buffer is full
+     */
+    public
+    boolean offer(final T element) {
+        if (element == null) {
+            throw new NullPointerException("Null elements are not permitted");
+        }
+
+        final int mask = this.mask;
+        final AtomicLongArray sequences = this.sequences;
+
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0L) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    buffer[index] = element;
+
+                    // publish the element to the consumers
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            }
+            else if (difference < 0L) {
+                // the slot has not been consumed yet. We are full.
+                return false;
+            }
+
+            position = tail.get();
+        }
+    }
+
+    /**
+     * Removes the next element, if there is one available.
+     *
+     * @return the next element, or null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    public
+    T poll() {
+        final int mask = this.mask;
+        final AtomicLongArray sequences = this.sequences;
+
+        long position = head.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - (position + 1);
+
+            if (difference == 0L) {
+                if (head.compareAndSet(position, position + 1)) {
+                    Object element = buffer[index];
+                    buffer[index] = null;
+
+                    // release the slot to the producers, for the next lap around the buffer
+                    sequences.lazySet(index, position + mask + 1);
+                    return (T) element;
+                }
+            }
+            else if (difference < 0L) {
+                // the slot has not been produced yet. We are empty.
+                return null;
+            }
+
+            position = head.get();
+        }
+    }
+
+    /**
+     * Inserts the element, waiting (via the wait strategy) for space to become available.
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting for space
+     */
+    public
+    void put(final T element) throws InterruptedException {
+        int counter = 0;
+        while (!offer(element)) {
+            counter = waitStrategy.idle(counter);
+        }
+    }
+
+    /**
+     * Removes the next element, waiting (via the wait strategy) for one to become available.
+     *
+     * @throws InterruptedException if the current thread is interrupted while waiting for an element
+     */
+    public
+    T take() throws InterruptedException {
+        int counter = 0;
+        T element;
+        while ((element = poll()) == null) {
+            counter = waitStrategy.idle(counter);
+        }
+
+        return element;
+    }
+
+    /**
+     * Removes up to maxElements from the buffer as a single batch, passing each one (in order) to the handler. The batch is claimed with
+     * a single CAS, so other consumers will not interleave elements with this batch.
+     * <p>
+     * If the handler throws an exception, the rest of the batch is still removed from the buffer (and is not passed to the handler), so
+     * that the slots are released to the producers. The exception is then rethrown.
+     *
+     * @return the number of elements that were removed
+     */
+    @SuppressWarnings("unchecked")
+    public
+    int drain(final ActionHandler<T> handler, final int maxElements) {
+        final int mask = this.mask;
+        final Object[] buffer = this.buffer;
+        final AtomicLongArray sequences = this.sequences;
+
+        while (true) {
+            final long position = head.get();
+
+            // figure out how many consecutive slots have been published
+            int count = 0;
+            while (count < maxElements && count <= mask && sequences.get((int) (position + count) & mask) == position + count + 1) {
+                count++;
+            }
+
+            if (count == 0) {
+                return 0;
+            }
+
+            if (head.compareAndSet(position, position + count)) {
+                int released = 0;
+                try {
+                    while (released < count) {
+                        long sequence = position + released;
+                        int index = (int) sequence & mask;
+
+                        Object element = buffer[index];
+                        buffer[index] = null;
+                        sequences.lazySet(index, sequence + mask + 1);
+                        released++;
+
+                        handler.handle((T) element);
+                    }
+                } finally {
+                    // the handler threw. The whole batch was claimed, so the remaining slots must still be released or producers that
+                    // wrap around to them will wait forever
+                    for (; released < count; released++) {
+                        long sequence = position + released;
+                        int index = (int) sequence & mask;
+
+                        buffer[index] = null;
+                        sequences.lazySet(index, sequence + mask + 1);
+                    }
+                }
+
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Removes up to maxElements from the buffer as a single batch, adding them (in order) to the collection.
+     *
+     * @return the number of elements that were removed
+     */
+    public
+    int drainTo(final Collection<? super T> collection, final int maxElements) {
+        return drain(new ActionHandler<T>() {
+            @Override
+            public
+            void handle(final T value) {
+                collection.add(value);
+            }
+        }, maxElements);
+    }
+
+    /**
+     * @return the approximate number of elements in the buffer. This is only exact when there are no concurrent modifications.
+     */
+    public
+    int size() {
+        while (true) {
+            long before = head.get();
+            long currentTail = tail.get();
+            long after = head.get();
+
+            if (before == after) {
+                long size = currentTail - after;
+                if (size < 0L) {
+                    return 0;
+                }
+                if (size > buffer.length) {
+                    return buffer.length;
+                }
+
+                return (int) size;
+            }
+        }
+    }
+
+    /**
+     * @return true if there are no elements in the buffer. This is only exact when there are no concurrent modifications.
+     */
+    public
+    boolean isEmpty() {
+        return head.get() >= tail.get();
+    }
+
+    /**
+     * @return the maximum number of elements this buffer can hold
+     */
+    public
+    int capacity() {
+        return buffer.length;
+    }
+
+    /**
+     * Removes all of the elements from the buffer. This is only exact when there are no concurrent modifications.
+     */
+    public
+    void clear() {
+        while (poll() != null) {
+            // nothing
+        }
+    }
+
+    @Override
+    public
+    String toString() {
+        return "RingBuffer{size=" + size() + ", capacity=" + capacity() + "}";
+    }
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+import dorkbox.util.IndexedThreadLocal;
+import dorkbox.util.MathUtil;
+
+/**
+ * A pool of objects that have a capacity (arrays, buffers, etc), where the objects are grouped into power-of-two size classes.
+ * <p>
+ * Each thread has its own cache of free objects for every size class, so {@link #obtain(int)} and {@link #free(Object)} do not
+ * synchronize or allocate in the common case. When a thread cache is full, half of it is moved to a global (synchronized) cache, and
+ * when a thread cache is empty, it is refilled from the global cache. Objects that are larger than the largest size class are never
+ * pooled, and if the global cache is full, freed objects are left for the GC.
+ * <p>
+ * To help find leaks, the pool counts how many objects have been obtained and freed. If {@link #outstanding()} keeps growing in a
+ * steady-state, objects are not being freed. These counters are approximate while other threads are using the pool.
+ *
+ * @param <T> the type of object in the pool
+ */
+@SuppressWarnings({"unchecked", "unused", "WeakerAccess"})
+public abstract
+class SizeClassPool<T> {
+    private final int minShift;
+    private final int classCount;
+    private final int threadCacheSize;
+    private final int globalCacheSize;
+
+    private final Object[][] globalItems;
+    private final int[] globalCounts;
+
+    // guarded by "caches"
+    private final ArrayList<ThreadCache> caches = new ArrayList<ThreadCache>();
+    private long exitedObtained;
+    private long exitedFreed;
+    private long exitedCreated;
+
+    private final IndexedThreadLocal<ThreadCache> threadCache = new IndexedThreadLocal<ThreadCache>() {
+        @Override
+        public
+        ThreadCache initialValue() {
+            ThreadCache cache = new ThreadCache(classCount, threadCacheSize);
+            synchronized (caches) {
+                caches.add(cache);
+            }
+            return cache;
+        }
+
+        @Override
+        protected
+        void threadExited(final ThreadCache cache) {
+            // keep the counters, but the cached objects of the exited thread are left for the GC
+            synchronized (caches) {
+                caches.remove(cache);
+                exitedObtained += cache.obtained;
+                exitedFreed += cache.freed;
+                exitedCreated += cache.created;
+            }
+        }
+    };
+
+
+    private static final
+    class ThreadCache {
+        final Object[][] items;
+        final int[] counts;
+
+        // only written by the owning thread (via lazySet, so there is no store fence), and read (approximately) by any thread
+        volatile long obtained;
+        volatile long freed;
+        volatile long created;
+
+        // Recommended for best performance while adhering to the "single writer principle". Must be static-final
+        static final AtomicLongFieldUpdater<ThreadCache> obtainedREF = AtomicLongFieldUpdater.newUpdater(ThreadCache.class, "obtained");
+        static final AtomicLongFieldUpdater<ThreadCache> freedREF = AtomicLongFieldUpdater.newUpdater(ThreadCache.class, "freed");
+        static final AtomicLongFieldUpdater<ThreadCache> createdREF = AtomicLongFieldUpdater.newUpdater(ThreadCache.class, "created");
+
+        ThreadCache(final int classCount, final int size) {
+            items = new Object[classCount][size];
+            counts = new int[classCount];
+        }
+    }
+
+
+    /**
+     * @param minCapacity the capacity of the smallest size class. Rounded up to a power of two.
+     * @param maxCapacity the capacity of the largest size class. Rounded up to a power of two.
+     * @param threadCacheSize the number of free objects (per size class) that each thread keeps
+     * @param globalCacheSize the number of free objects (per size class) that are shared by all threads
+     */
+    protected
+    SizeClassPool(final int minCapacity, final int maxCapacity, final int threadCacheSize, final int globalCacheSize) {
+        if (minCapacity <= 0) {
+            throw new IllegalArgumentException("minCapacity must be > 0: " + minCapacity);
+        }
+        if (maxCapacity < minCapacity || maxCapacity > 1 << 30) {
+            throw new IllegalArgumentException("maxCapacity must be >= minCapacity and <= 2^30: " + maxCapacity);
+        }
+        if (threadCacheSize < 2) {
+            throw new IllegalArgumentException("threadCacheSize must be >= 2: " + threadCacheSize);
+        }
+        if (globalCacheSize < 0) {
+            throw new IllegalArgumentException("globalCacheSize must be >= 0: " + globalCacheSize);
+        }
+
+        this.minShift = Integer.numberOfTrailingZeros(MathUtil.nextPowerOfTwo(minCapacity));
+        int maxShift = Integer.numberOfTrailingZeros(MathUtil.nextPowerOfTwo(maxCapacity));
+
+        this.classCount = maxShift - minShift + 1;
+        this.threadCacheSize = threadCacheSize;
+        this.globalCacheSize = globalCacheSize;
+
+        this.globalItems = new Object[classCount][globalCacheSize];
+        this.globalCounts = new int[classCount];
+    }
+
+    /**
+     * @return a new object, that has exactly this capacity
+     */
+    protected abstract
+    T create(int capacity);
+
+    /**
+     * @return the current capacity of the object (which might be larger than when it was created)
+     */
+    protected abstract
+    int capacity(T object);
+
+    /**
+     * Resets the object, so it can be obtained again. The capacity must not be reduced.
+     */
+    protected abstract
+    void reset(T object);
+
+    /**
+     * @return the smallest capacity that objects in the pool will have
+     */
+    public
+    int minCapacity() {
+        return 1 << minShift;
+    }
+
+    /**
+     * @return the largest capacity that will be pooled
+     */
+    public
+    int maxCapacity() {
+        return 1 << (minShift + classCount - 1);
+    }
+
+    /**
+     * Obtains an object that has at least the minimum capacity.
+     */
+    public
+    T obtain() {
+        return obtain(1);
+    }
+
+    /**
+     * Obtains an object that has at least this capacity. It should be returned with {@link #free(Object)} when it is no longer used.
+     */
+    public
+    T obtain(final int minCapacity) {
+        ThreadCache cache = threadCache.get();
+        ThreadCache.obtainedREF.lazySet(cache, cache.obtained + 1);
+
+        // round UP to the size class, so that every object in the class is large enough
+        int sizeClass = minCapacity <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(minCapacity - 1) - minShift;
+        if (sizeClass < 0) {
+            sizeClass = 0;
+        }
+        else if (sizeClass >= classCount) {
+            // too large to be pooled
+            ThreadCache.createdREF.lazySet(cache, cache.created + 1);
+            return create(minCapacity);
+        }
+
+        int count = cache.counts[sizeClass];
+        if (count == 0) {
+            count = refill(cache, sizeClass);
+            if (count == 0) {
+                ThreadCache.createdREF.lazySet(cache, cache.created + 1);
+                return create(1 << (sizeClass + minShift));
+            }
+        }
+
+        Object[] items = cache.items[sizeClass];
+        count--;
+        T object = (T) items[count];
+        items[count] = null;
+        cache.counts[sizeClass] = count;
+
+        return object;
+    }
+
+    /**
+     * Returns an object to the pool. The object is reset, and must not be used by the caller afterwards.
+     */
+    public
+    void free(final T object) {
+        if (object == null) {
+            throw new IllegalArgumentException("object cannot be null.");
+        }
+
+        ThreadCache cache = threadCache.get();
+        ThreadCache.freedREF.lazySet(cache, cache.freed + 1);
+
+        // round DOWN to the size class, because the object might have grown since it was obtained
+        int capacity = capacity(object);
+        if (capacity <= 0) {
+            return;
+        }
+
+        int sizeClass = 31 - Integer.numberOfLeadingZeros(capacity) - minShift;
+        if (sizeClass < 0 || sizeClass >= classCount) {
+            // not poolable, leave it for the GC
+            return;
+        }
+
+        reset(object);
+
+        int count = cache.counts[sizeClass];
+        if (count == threadCacheSize) {
+            count = spill(cache, sizeClass);
+        }
+
+        cache.items[sizeClass][count] = object;
+        cache.counts[sizeClass] = count + 1;
+    }
+
+    /**
+     * Moves up to half of a thread cache from the global cache.
+     *
+     * @return the new count for the thread cache
+     */
+    private
+    int refill(final ThreadCache cache, final int sizeClass) {
+        if (globalCacheSize == 0) {
+            return 0;
+        }
+
+        Object[] items = cache.items[sizeClass];
+        Object[] global = globalItems[sizeClass];
+
+        synchronized (global) {
+            int globalCount = globalCounts[sizeClass];
+            int moved = Math.min(globalCount, threadCacheSize >> 1);
+
+            globalCount -= moved;
+            System.arraycopy(global, globalCount, items, 0, moved);
+            Arrays.fill(global, globalCount, globalCount + moved, null);
+            globalCounts[sizeClass] = globalCount;
+
+            cache.counts[sizeClass] = moved;
+            return moved;
+        }
+    }
+
+    /**
+     * Moves half of a (full) thread cache to the global cache. Whatever does not fit in the global cache is discarded.
+     *
+     * @return the new count for the thread cache
+     */
+    private
+    int spill(final ThreadCache cache, final int sizeClass) {
+        Object[] items = cache.items[sizeClass];
+        int half = threadCacheSize >> 1;
+        int remaining = threadCacheSize - half;
+
+        if (globalCacheSize > 0) {
+            Object[] global = globalItems[sizeClass];
+
+            synchronized (global) {
+                int globalCount = globalCounts[sizeClass];
+                int moved = Math.min(half, globalCacheSize - globalCount);
+
+                System.arraycopy(items, remaining, global, globalCount, moved);
+                globalCounts[sizeClass] = globalCount + moved;
+            }
+        }
+
+        Arrays.fill(items, remaining, threadCacheSize, null);
+        cache.counts[sizeClass] = remaining;
+        return remaining;
+    }
+
+    /**
+     * @return the (approximate) number of times that {@link #obtain(int)} was called
+     */
+    public
+    long obtained() {
+        synchronized (caches) {
+            long count = exitedObtained;
+            for (int i = 0, n = caches.size(); i < n; i++) {
+                count += caches.get(i).obtained;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * @return the (approximate) number of times that {@link #free(Object)} was called
+     */
+    public
+    long freed() {
+        synchronized (caches) {
+            long count = exitedFreed;
+            for (int i = 0, n = caches.size(); i < n; i++) {
+                count += caches.get(i).freed;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * @return the (approximate) number of new objects that had to be created, because none were available in the pool
+     */
+    public
+    long created() {
+        synchronized (caches) {
+            long count = exitedCreated;
+            for (int i = 0, n = caches.size(); i < n; i++) {
+                count += caches.get(i).created;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * @return the (approximate) number of objects that have been obtained, but not freed. If this keeps growing, there is a leak.
+     */
+    public
+    long outstanding() {
+        return obtained() - freed();
+    }
+
+    /**
+     * Removes all of the objects in the global cache. The thread caches are not affected.
+     */
+    public
+    void clearGlobal() {
+        for (int i = 0; i < classCount; i++) {
+            Object[] global = globalItems[i];
+            synchronized (global) {
+                Arrays.fill(global, null);
+                globalCounts[i] = 0;
+            }
+        }
+    }
+
+    @Override
+    public
+    String toString() {
+        return getClass().getSimpleName() + " (obtained=" + obtained() + ", freed=" + freed() + ", created=" + created() + ")";
+    }
+}
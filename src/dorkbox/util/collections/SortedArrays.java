@@ -0,0 +1,637 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+/**
+ * Linear-time set operations (union, intersection, difference) and de-duplication for sorted int and long arrays.
+ * <p>
+ * The set operations require that each input is sorted (ascending) and contains no duplicates (see {@link #dedupe(IntArray)}). When
+ * one input is much smaller than the other, the larger input is searched by galloping (exponential search) instead of being walked
+ * element-by-element, so the cost is closer to O(small * log(large)).
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public final
+class SortedArrays {
+    /**
+     * When one array is this many times larger than the other, gallop through the larger array instead of merging.
+     */
+    private static final int GALLOP_RATIO = 16;
+
+    private
+    SortedArrays() {
+    }
+
+    /**
+     * Removes duplicate values from the sorted array (in place).
+     *
+     * @return the new size of the array
+     */
+    public static
+    int dedupe(final IntArray a) {
+        a.size = dedupe(a.items, 0, a.size);
+        return a.size;
+    }
+
+    /**
+     * Removes duplicate values from the sorted range (fromIndex inclusive, toIndex exclusive) of the array, by moving the unique values
+     * to the start of the range.
+     *
+     * @return the number of unique values, which start at fromIndex
+     */
+    public static
+    int dedupe(final int[] a, final int fromIndex, final int toIndex) {
+        if (toIndex - fromIndex < 2) {
+            return toIndex - fromIndex;
+        }
+
+        int last = a[fromIndex];
+        int write = fromIndex + 1;
+        for (int i = fromIndex + 1; i < toIndex; i++) {
+            int value = a[i];
+            if (value != last) {
+                a[write++] = value;
+                last = value;
+            }
+        }
+
+        return write - fromIndex;
+    }
+
+    /**
+     * Computes the union of two sorted arrays, that contain no duplicates.
+     *
+     * @param result where the union is stored (the previous contents are discarded). If null, a new array is created. This must not be
+     *         'a' or 'b'.
+     *
+     * @return the result array, which is sorted and contains no duplicates
+     */
+    public static
+    IntArray union(final IntArray a, final IntArray b, IntArray result) {
+        result = prepare(a, b, result, a.size + b.size);
+
+        // always gallop through the larger array
+        if (a.size < b.size) {
+            result.size = union(a.items, a.size, b.items, b.size, result.items);
+        }
+        else {
+            result.size = union(b.items, b.size, a.items, a.size, result.items);
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the intersection of two sorted arrays, that contain no duplicates.
+     *
+     * @param result where the intersection is stored (the previous contents are discarded). If null, a new array is created. This must
+     *         not be 'a' or 'b'.
+     *
+     * @return the result array, which is sorted and contains no duplicates
+     */
+    public static
+    IntArray intersect(final IntArray a, final IntArray b, IntArray result) {
+        result = prepare(a, b, result, Math.min(a.size, b.size));
+
+        // always gallop through the larger array
+        if (a.size < b.size) {
+            result.size = intersect(a.items, a.size, b.items, b.size, result.items);
+        }
+        else {
+            result.size = intersect(b.items, b.size, a.items, a.size, result.items);
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the difference (a - b) of two sorted arrays, that contain no duplicates.
+     *
+     * @param result where the difference is stored (the previous contents are discarded). If null, a new array is created. This must
+     *         not be 'a' or 'b'.
+     *
+     * @return the result array, which is sorted and contains no duplicates
+     */
+    public static
+    IntArray difference(final IntArray a, final IntArray b, IntArray result) {
+        result = prepare(a, b, result, a.size);
+        result.size = difference(a.items, a.size, b.items, b.size, result.items);
+        return result;
+    }
+
+    private static
+    IntArray prepare(final IntArray a, final IntArray b, IntArray result, final int capacity) {
+        if (result == null) {
+            return new IntArray(true, Math.max(capacity, 1));
+        }
+        if (result == a || result == b) {
+            throw new IllegalArgumentException("result cannot be the same as either input.");
+        }
+
+        result.clear();
+        result.ensureCapacity(capacity);
+        return result;
+    }
+
+    /**
+     * Searches (exponentially, then binary) for the first index in [fromIndex, toIndex) whose value is >= key. This is faster than a
+     * binary search when the result is expected to be close to fromIndex.
+     *
+     * @return the first index whose value is >= key, or toIndex if there is none
+     */
+    public static
+    int gallop(final int[] a, int fromIndex, final int toIndex, final int key) {
+        if (fromIndex >= toIndex || a[fromIndex] >= key) {
+            return fromIndex;
+        }
+
+        // a[fromIndex] < key, so find a bound where a[hi] >= key
+        int step = 1;
+        int hi = fromIndex + step;
+        while (hi < toIndex && a[hi] < key) {
+            fromIndex = hi;
+            step <<= 1;
+            hi = fromIndex + step;
+        }
+        if (hi > toIndex) {
+            hi = toIndex;
+        }
+
+        // invariant: a[fromIndex] < key, and a[hi] >= key (or hi == toIndex)
+        int lo = fromIndex + 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    // 'small' should be the smaller array. Returns the size of the result
+    private static
+    int union(final int[] small, final int smallSize, final int[] large, final int largeSize, final int[] result) {
+        int r = 0;
+        int s = 0;
+        int l = 0;
+
+        if ((long) smallSize * GALLOP_RATIO < largeSize) {
+            while (s < smallSize) {
+                int value = small[s++];
+
+                // copy everything from 'large' that is before the value
+                int index = gallop(large, l, largeSize, value);
+                System.arraycopy(large, l, result, r, index - l);
+                r += index - l;
+                l = index;
+
+                if (l < largeSize && large[l] == value) {
+                    l++;
+                }
+                result[r++] = value;
+            }
+        }
+        else {
+            while (s < smallSize && l < largeSize) {
+                int sv = small[s];
+                int lv = large[l];
+
+                if (sv < lv) {
+                    result[r++] = sv;
+                    s++;
+                }
+                else if (lv < sv) {
+                    result[r++] = lv;
+                    l++;
+                }
+                else {
+                    result[r++] = sv;
+                    s++;
+                    l++;
+                }
+            }
+
+            System.arraycopy(small, s, result, r, smallSize - s);
+            r += smallSize - s;
+        }
+
+        System.arraycopy(large, l, result, r, largeSize - l);
+        return r + largeSize - l;
+    }
+
+    // 'small' should be the smaller array. Returns the size of the result
+    private static
+    int intersect(final int[] small, final int smallSize, final int[] large, final int largeSize, final int[] result) {
+        int r = 0;
+        int s = 0;
+        int l = 0;
+
+        if ((long) smallSize * GALLOP_RATIO < largeSize) {
+            while (s < smallSize && l < largeSize) {
+                int value = small[s++];
+
+                l = gallop(large, l, largeSize, value);
+                if (l < largeSize && large[l] == value) {
+                    result[r++] = value;
+                    l++;
+                }
+            }
+        }
+        else {
+            while (s < smallSize && l < largeSize) {
+                int sv = small[s];
+                int lv = large[l];
+
+                if (sv < lv) {
+                    s++;
+                }
+                else if (lv < sv) {
+                    l++;
+                }
+                else {
+                    result[r++] = sv;
+                    s++;
+                    l++;
+                }
+            }
+        }
+
+        return r;
+    }
+
+    // Returns the size of the result
+    private static
+    int difference(final int[] a, final int aSize, final int[] b, final int bSize, final int[] result) {
+        int r = 0;
+        int i = 0;
+        int j = 0;
+
+        if ((long) aSize * GALLOP_RATIO < bSize) {
+            // 'a' is much smaller, so gallop through 'b'
+            while (i < aSize && j < bSize) {
+                int value = a[i++];
+
+                j = gallop(b, j, bSize, value);
+                if (j < bSize && b[j] == value) {
+                    j++;
+                }
+                else {
+                    result[r++] = value;
+                }
+            }
+        }
+        else if ((long) bSize * GALLOP_RATIO < aSize) {
+            // 'b' is much smaller, so gallop through 'a' and copy the runs between the removed values
+            while (j < bSize && i < aSize) {
+                int value = b[j++];
+
+                int index = gallop(a, i, aSize, value);
+                System.arraycopy(a, i, result, r, index - i);
+                r += index - i;
+                i = index;
+
+                if (i < aSize && a[i] == value) {
+                    i++;
+                }
+            }
+        }
+        else {
+            while (i < aSize && j < bSize) {
+                int av = a[i];
+                int bv = b[j];
+
+                if (av < bv) {
+                    result[r++] = av;
+                    i++;
+                }
+                else if (bv < av) {
+                    j++;
+                }
+                else {
+                    i++;
+                    j++;
+                }
+            }
+        }
+
+        System.arraycopy(a, i, result, r, aSize - i);
+        return r + aSize - i;
+    }
+
+
+    /**
+     * Removes duplicate values from the sorted array (in place).
+     *
+     * @return the new size of the array
+     */
+    public static
+    int dedupe(final LongArray a) {
+        a.size = dedupe(a.items, 0, a.size);
+        return a.size;
+    }
+
+    /**
+     * Removes duplicate values from the sorted range (fromIndex inclusive, toIndex exclusive) of the array, by moving the unique values
+     * to the start of the range.
+     *
+     * @return the number of unique values, which start at fromIndex
+     */
+    public static
+    int dedupe(final long[] a, final int fromIndex, final int toIndex) {
+        if (toIndex - fromIndex < 2) {
+            return toIndex - fromIndex;
+        }
+
+        long last = a[fromIndex];
+        int write = fromIndex + 1;
+        for (int i = fromIndex + 1; i < toIndex; i++) {
+            long value = a[i];
+            if (value != last) {
+                a[write++] = value;
+                last = value;
+            }
+        }
+
+        return write - fromIndex;
+    }
+
+    /**
+     * Computes the union of two sorted arrays, that contain no duplicates.
+     *
+     * @param result where the union is stored (the previous contents are discarded). If null, a new array is created. This must not be
+     *         'a' or 'b'.
+     *
+     * @return the result array, which is sorted and contains no duplicates
+     */
+    public static
+    LongArray union(final LongArray a, final LongArray b, LongArray result) {
+        result = prepare(a, b, result, a.size + b.size);
+
+        // always gallop through the larger array
+        if (a.size < b.size) {
+            result.size = union(a.items, a.size, b.items, b.size, result.items);
+        }
+        else {
+            result.size = union(b.items, b.size, a.items, a.size, result.items);
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the intersection of two sorted arrays, that contain no duplicates.
+     *
+     * @param result where the intersection is stored (the previous contents are discarded). If null, a new array is created. This must
+     *         not be 'a' or 'b'.
+     *
+     * @return the result array, which is sorted and contains no duplicates
+     */
+    public static
+    LongArray intersect(final LongArray a, final LongArray b, LongArray result) {
+        result = prepare(a, b, result, Math.min(a.size, b.size));
+
+        // always gallop through the larger array
+        if (a.size < b.size) {
+            result.size = intersect(a.items, a.size, b.items, b.size, result.items);
+        }
+        else {
+            result.size = intersect(b.items, b.size, a.items, a.size, result.items);
+        }
+
+        return result;
+    }
+
+    /**
+     * Computes the difference (a - b) of two sorted arrays, that contain no duplicates.
+     *
+     * @param result where the difference is stored (the previous contents are discarded). If null, a new array is created. This must
+     *         not be 'a' or 'b'.
+     *
+     * @return the result array, which is sorted and contains no duplicates
+     */
+    public static
+    LongArray difference(final LongArray a, final LongArray b, LongArray result) {
+        result = prepare(a, b, result, a.size);
+        result.size = difference(a.items, a.size, b.items, b.size, result.items);
+        return result;
+    }
+
+    private static
+    LongArray prepare(final LongArray a, final LongArray b, LongArray result, final int capacity) {
+        if (result == null) {
+            return new LongArray(true, Math.max(capacity, 1));
+        }
+        if (result == a || result == b) {
+            throw new IllegalArgumentException("result cannot be the same as either input.");
+        }
+
+        result.clear();
+        result.ensureCapacity(capacity);
+        return result;
+    }
+
+    /**
+     * Searches (exponentially, then binary) for the first index in [fromIndex, toIndex) whose value is >= key. This is faster than a
+     * binary search when the result is expected to be close to fromIndex.
+     *
+     * @return the first index whose value is >= key, or toIndex if there is none
+     */
+    public static
+    int gallop(final long[] a, int fromIndex, final int toIndex, final long key) {
+        if (fromIndex >= toIndex || a[fromIndex] >= key) {
+            return fromIndex;
+        }
+
+        // a[fromIndex] < key, so find a bound where a[hi] >= key
+        int step = 1;
+        int hi = fromIndex + step;
+        while (hi < toIndex && a[hi] < key) {
+            fromIndex = hi;
+            step <<= 1;
+            hi = fromIndex + step;
+        }
+        if (hi > toIndex) {
+            hi = toIndex;
+        }
+
+        // invariant: a[fromIndex] < key, and a[hi] >= key (or hi == toIndex)
+        int lo = fromIndex + 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+
+        return lo;
+    }
+
+    // 'small' should be the smaller array. Returns the size of the result
+    private static
+    int union(final long[] small, final int smallSize, final long[] large, final int largeSize, final long[] result) {
+        int r = 0;
+        int s = 0;
+        int l = 0;
+
+        if ((long) smallSize * GALLOP_RATIO < largeSize) {
+            while (s < smallSize) {
+                long value = small[s++];
+
+                // copy everything from 'large' that is before the value
+                int index = gallop(large, l, largeSize, value);
+                System.arraycopy(large, l, result, r, index - l);
+                r += index - l;
+                l = index;
+
+                if (l < largeSize && large[l] == value) {
+                    l++;
+                }
+                result[r++] = value;
+            }
+        }
+        else {
+            while (s < smallSize && l < largeSize) {
+                long sv = small[s];
+                long lv = large[l];
+
+                if (sv < lv) {
+                    result[r++] = sv;
+                    s++;
+                }
+                else if (lv < sv) {
+                    result[r++] = lv;
+                    l++;
+                }
+                else {
+                    result[r++] = sv;
+                    s++;
+                    l++;
+                }
+            }
+
+            System.arraycopy(small, s, result, r, smallSize - s);
+            r += smallSize - s;
+        }
+
+        System.arraycopy(large, l, result, r, largeSize - l);
+        return r + largeSize - l;
+    }
+
+    // 'small' should be the smaller array. Returns the size of the result
+    private static
+    int intersect(final long[] small, final int smallSize, final long[] large, final int largeSize, final long[] result) {
+        int r = 0;
+        int s = 0;
+        int l = 0;
+
+        if ((long) smallSize * GALLOP_RATIO < largeSize) {
+            while (s < smallSize && l < largeSize) {
+                long value = small[s++];
+
+                l = gallop(large, l, largeSize, value);
+                if (l < largeSize && large[l] == value) {
+                    result[r++] = value;
+                    l++;
+                }
+            }
+        }
+        else {
+            while (s < smallSize && l < largeSize) {
+                long sv = small[s];
+                long lv = large[l];
+
+                if (sv < lv) {
+                    s++;
+                }
+                else if (lv < sv) {
+                    l++;
+                }
+                else {
+                    result[r++] = sv;
+                    s++;
+                    l++;
+                }
+            }
+        }
+
+        return r;
+    }
+
+    // Returns the size of the result
+    private static
+    int difference(final long[] a, final int aSize, final long[] b, final int bSize, final long[] result) {
+        int r = 0;
+        int i = 0;
+        int j = 0;
+
+        if ((long) aSize * GALLOP_RATIO < bSize) {
+            // 'a' is much smaller, so gallop through 'b'
+            while (i < aSize && j < bSize) {
+                long value = a[i++];
+
+                j = gallop(b, j, bSize, value);
+                if (j < bSize && b[j] == value) {
+                    j++;
+                }
+                else {
+                    result[r++] = value;
+                }
+            }
+        }
+        else if ((long) bSize * GALLOP_RATIO < aSize) {
+            // 'b' is much smaller, so gallop through 'a' and copy the runs between the removed values
+            while (j < bSize && i < aSize) {
+                long value = b[j++];
+
+                int index = gallop(a, i, aSize, value);
+                System.arraycopy(a, i, result, r, index - i);
+                r += index - i;
+                i = index;
+
+                if (i < aSize && a[i] == value) {
+                    i++;
+                }
+            }
+        }
+        else {
+            while (i < aSize && j < bSize) {
+                long av = a[i];
+                long bv = b[j];
+
+                if (av < bv) {
+                    result[r++] = av;
+                    i++;
+                }
+                else if (bv < av) {
+                    j++;
+                }
+                else {
+                    i++;
+                    j++;
+                }
+            }
+        }
+
+        System.arraycopy(a, i, result, r, aSize - i);
+        return r + aSize - i;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.List;
+
+/**
+ * A static, read-only index for {@link BinarySearch}, for when the same (large) sorted data is searched many times.
+ * <p>
+ * The keys are evaluated ONCE (instead of calling the {@link BinarySearch.Evaluator} and {@link BinarySearch.Indexed} on every probe),
+ * and stored in a long[] in Eytzinger (breadth-first) order. The top levels of the implicit tree are stored next to each other, so they
+ * stay in the cache, and each probe is a (branch-free) comparison that only decides if the next slot is 2k or 2k+1.
+ * <p>
+ * The data must be sorted from low to high, and must not change after the index is created. Searches are thread-safe.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public
+class SortedLongIndex<T> {
+    /**
+     * The maximum number of elements that can be indexed (so that the tree position cannot overflow)
+     */
+    public static final int MAX_SIZE = (Integer.MAX_VALUE >>> 1) - 1;
+
+    private final BinarySearch.Evaluator<T> eval;
+    private final BinarySearch.Indexed<T> indexed;
+
+    // 1-based, in Eytzinger order. Slot 0 is unused
+    private final long[] tree;
+
+    // the keys, in sorted order (for the neighbors of a match)
+    private final long[] sorted;
+    private final int size;
+
+    // the depth of the last level of the tree, and how many nodes are in it (used to convert a tree slot into a position)
+    private final int height;
+    private final int lastLevelCount;
+
+    /**
+     * Creates a new index.
+     *
+     * @param eval The thing which converts elements into numbers
+     * @param indexed A collection, list or array
+     */
+    public
+    SortedLongIndex(final BinarySearch.Evaluator<T> eval, final BinarySearch.Indexed<T> indexed) {
+        long size = indexed.size();
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException("Too many elements to index: " + size);
+        }
+
+        this.eval = eval;
+        this.indexed = indexed;
+        this.size = (int) size;
+        this.sorted = new long[this.size];
+
+        long previous = Long.MIN_VALUE;
+        for (int i = 0; i < this.size; i++) {
+            long value = eval.getValue(indexed.get(i));
+            if (value < previous) {
+                throw new IllegalArgumentException("Collection is not sorted at " + i + " - " + indexed);
+            }
+            sorted[i] = value;
+            previous = value;
+        }
+
+        this.tree = new long[this.size + 1];
+        build(1, 0);
+
+        this.height = 31 - Integer.numberOfLeadingZeros(Math.max(1, this.size));
+        this.lastLevelCount = this.size - ((1 << height) - 1);
+    }
+
+    public
+    SortedLongIndex(final BinarySearch.Evaluator<T> eval, final List<T> list) {
+        this(eval, new ListIndexed<T>(list));
+    }
+
+    /**
+     * Fills the tree via an in-order traversal, so that the sorted keys are placed in Eytzinger order.
+     *
+     * @return the next sorted position
+     */
+    private
+    int build(final int k, int position) {
+        // the depth is log2(size), so recursion is OK
+        if (k <= size) {
+            position = build(k << 1, position);
+            tree[k] = sorted[position];
+            position++;
+            position = build((k << 1) + 1, position);
+        }
+        return position;
+    }
+
+    /**
+     * Converts a (1-based) tree slot into its position in the sorted data, which is the in-order rank of that node.
+     * <p>
+     * In a perfect tree that includes the entire last level, the rank only depends on the depth of the node and its offset inside that
+     * level. The last level is only partially filled (from the left), and every missing last-level node would have been at an even
+     * rank, so the missing nodes that come before this node are subtracted.
+     */
+    private
+    int position(final int k) {
+        final int depth = 31 - Integer.numberOfLeadingZeros(k);
+        final int rank = ((((k - (1 << depth)) << 1) + 1) << (height - depth)) - 1;
+
+        final int missing = Math.min((rank + 1) >>> 1, 1 << height) - lastLevelCount;
+        return missing > 0 ? rank - missing : rank;
+    }
+
+    /**
+     * @return the number of indexed elements
+     */
+    public
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the position of the first element with a value >= the specified value, or {@link #size()} if there is none
+     */
+    public
+    int lowerBound(final long value) {
+        final long[] tree = this.tree;
+        final int n = size;
+
+        int k = 1;
+        while (k <= n) {
+            // branch free: the JIT compiles this to a conditional move
+            k = (k << 1) + (tree[k] < value ? 1 : 0);
+        }
+
+        // remove the trailing "went right" moves (and the last "went left"), to find the last node where we went left
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k == 0 ? n : position(k);
+    }
+
+    /**
+     * @return the position of the first element with a value > the specified value, or {@link #size()} if there is none
+     */
+    public
+    int upperBound(final long value) {
+        final long[] tree = this.tree;
+        final int n = size;
+
+        int k = 1;
+        while (k <= n) {
+            k = (k << 1) + (tree[k] <= value ? 1 : 0);
+        }
+
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+        return k == 0 ? n : position(k);
+    }
+
+    /**
+     * @return the value (as returned by the Evaluator) of the element at the specified position
+     */
+    public
+    long valueAt(final int position) {
+        return sorted[position];
+    }
+
+    /**
+     * Searches for the position of the specified value. The result is always the same as {@link BinarySearch#search(long, Bias)} for the
+     * same data, except that an empty index returns -1.
+     * <ul>
+     * <li>{@link Bias#BACKWARD} returns the last element that is <= the value, or the first element if there is none</li>
+     * <li>{@link Bias#FORWARD} returns the element after the last element that is <= the value, or the last element if there is none</li>
+     * <li>{@link Bias#NEAREST} returns the closer of those two elements (the second one, if both are the same distance)</li>
+     * <li>{@link Bias#NONE} returns whichever of those two elements is an exact match, or -1 if neither is</li>
+     * </ul>
+     * Exact matches with duplicate values return the last matching element. If there is only one element, it is always returned.
+     *
+     * @return the position, or -1 if there is no element that satisfies the bias
+     */
+    public
+    long search(final long value, final Bias bias) {
+        final int n = size;
+        if (n <= 1) {
+            return n - 1;
+        }
+
+        // the two neighbors that BinarySearch narrows down to
+        final int start = Math.min(Math.max(upperBound(value) - 1, 0), n - 2);
+        final int end = start + 1;
+
+        final long v1 = sorted[start];
+        final long v2 = sorted[end];
+
+        switch (bias) {
+            case BACKWARD:
+                return start;
+            case FORWARD:
+                return end;
+            case NEAREST:
+                if (v1 == value) {
+                    return start;
+                }
+                if (v2 == value) {
+                    return end;
+                }
+                if (Math.abs(v1 - value) < Math.abs(v2 - value)) {
+                    return start;
+                }
+                return end;
+            case NONE:
+                if (v1 == value) {
+                    return start;
+                }
+                if (v2 == value) {
+                    return end;
+                }
+                return -1;
+            default:
+                throw new AssertionError(bias);
+        }
+    }
+
+    public
+    T match(final T prototype, final Bias bias) {
+        return searchFor(eval.getValue(prototype), bias);
+    }
+
+    public
+    T searchFor(final long value, final Bias bias) {
+        long index = search(value, bias);
+        return index == -1 ? null : indexed.get(index);
+    }
+
+    /**
+     * Copies the elements with values between 'from' (inclusive) and 'to' (exclusive) into the array.
+     *
+     * @return the number of elements that were added to the array
+     */
+    public
+    int range(final long from, final long to, final Array<? super T> array) {
+        if (to <= from) {
+            return 0;
+        }
+
+        int start = lowerBound(from);
+        int end = lowerBound(to);
+
+        array.ensureCapacity(end - start);
+        for (int i = start; i < end; i++) {
+            array.add(indexed.get(i));
+        }
+        return end - start;
+    }
+
+    private static final
+    class ListIndexed<T> implements BinarySearch.Indexed<T> {
+        private final List<T> list;
+
+        ListIndexed(final List<T> list) {
+            this.list = list;
+        }
+
+        @Override
+        public
+        T get(final long index) {
+            return list.get((int) index);
+        }
+
+        @Override
+        public
+        long size() {
+            return list.size();
+        }
+
+        @Override
+        public
+        String toString() {
+            return super.toString() + '{' + list + '}';
+        }
+    }
+}
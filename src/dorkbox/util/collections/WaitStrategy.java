@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.collections;
+
+import java.util.concurrent.locks.LockSupport;
+
+import dorkbox.util.Property;
+
+/**
+ * Determines what a thread does while it waits for a lock-free structure (ie: {@link RingBuffer}) to become available.
+ * <p>
+ * The counter is owned by the caller, starts at 0 for every new wait, and is whatever the previous call to {@link #idle(int)} returned.
+ */
+public
+interface WaitStrategy {
+    /**
+     * Number of nanoseconds to park for, once the {@link #PARK} strategy has finished spinning and yielding
+     */
+    @Property
+    long PARK_NANOS = 100000L;
+
+    /**
+     * Busy-spins. Lowest latency, but burns an entire CPU core while waiting.
+     */
+    WaitStrategy SPIN = new WaitStrategy() {
+        @Override
+        public
+        int idle(final int counter) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            return counter + 1;
+        }
+    };
+
+    /**
+     * Yields to other threads. Good latency, while still being (somewhat) friendly to other threads on the same core.
+     */
+    WaitStrategy YIELD = new WaitStrategy() {
+        @Override
+        public
+        int idle(final int counter) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            Thread.yield();
+            return counter + 1;
+        }
+    };
+
+    /**
+     * Spins, then yields, then parks for {@link #PARK_NANOS}. Worst latency, but is the only strategy suitable for threads that can wait
+     * for a long time.
+     */
+    WaitStrategy PARK = new WaitStrategy() {
+        @Override
+        public
+        int idle(final int counter) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            if (counter < 100) {
+                // spin
+            }
+            else if (counter < 200) {
+                Thread.yield();
+            }
+            else {
+                LockSupport.parkNanos(PARK_NANOS);
+                return counter;
+            }
+
+            return counter + 1;
+        }
+    };
+
+    /**
+     * Waits (once) for the condition to change.
+     *
+     * @param counter the value returned by the previous call, or 0 if this is the first time waiting
+     *
+     * @return the new counter value that must be passed in the next time
+     *
+     * @throws InterruptedException if the current thread was interrupted while waiting
+     */
+    int idle(int counter) throws InterruptedException;
+}
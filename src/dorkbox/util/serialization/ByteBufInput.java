@@ -0,0 +1,635 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.serialization;
+
+import java.io.InputStream;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+
+import dorkbox.util.bytes.ByteBufCodec;
+import dorkbox.util.bytes.OptimizeUtilsByteBuf;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * A Kryo {@link Input} that reads directly from a Netty {@link ByteBuf} (heap, direct, pooled or composite), starting at the reader
+ * index of the buffer when it was set. The reader index is moved forward by exactly the number of bytes that were read, so nothing has
+ * to be copied (or skipped) when deserialization is done.
+ * <p>
+ * This reads the same bytes as the normal Kryo 5 {@link Input}, including {@link #setVariableLengthEncoding(boolean)}, and fixed size
+ * values are LITTLE_ENDIAN.
+ * <p>
+ * {@link #position()} is the number of bytes read since the buffer was set, and {@link #limit()} is the number of bytes that were
+ * readable when the buffer was set. Changing the reader index of the buffer from the outside while it is being used by this input is not
+ * supported.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public
+class ByteBufInput extends Input {
+    private ByteBuf byteBuf;
+    private int startIndex;
+
+    /**
+     * Creates an uninitialized Input. {@link #setByteBuf(ByteBuf)} must be called before the Input is used.
+     */
+    public
+    ByteBufInput() {
+    }
+
+    /**
+     * Creates a new Input for reading from the buffer, starting at the current reader index.
+     */
+    public
+    ByteBufInput(final ByteBuf buffer) {
+        setByteBuf(buffer);
+    }
+
+    /**
+     * Sets the buffer that will be read from, starting at the current reader index. The position and total are reset.
+     */
+    public
+    void setByteBuf(final ByteBuf buffer) {
+        this.byteBuf = buffer;
+        this.startIndex = buffer.readerIndex();
+        this.total = 0;
+    }
+
+    /**
+     * @return the buffer that is read from.
+     */
+    public
+    ByteBuf getByteBuf() {
+        return byteBuf;
+    }
+
+    /**
+     * Not supported, use {@link #setByteBuf(ByteBuf)} instead.
+     */
+    @Override
+    public
+    void setBuffer(final byte[] bytes) {
+        throw new UnsupportedOperationException("ByteBufInput can only read from a ByteBuf");
+    }
+
+    /**
+     * Not supported, use {@link #setByteBuf(ByteBuf)} instead.
+     */
+    @Override
+    public
+    void setBuffer(final byte[] bytes, final int offset, final int count) {
+        throw new UnsupportedOperationException("ByteBufInput can only read from a ByteBuf");
+    }
+
+    /**
+     * Not supported, use {@link #getByteBuf()} instead.
+     */
+    @Override
+    public
+    byte[] getBuffer() {
+        throw new UnsupportedOperationException("ByteBufInput can only read from a ByteBuf");
+    }
+
+    /**
+     * Not supported, use {@link #getByteBuf()} instead.
+     */
+    @Override
+    public
+    InputStream getInputStream() {
+        return null;
+    }
+
+    /**
+     * Not supported, use {@link #setByteBuf(ByteBuf)} instead.
+     */
+    @Override
+    public
+    void setInputStream(final InputStream inputStream) {
+        throw new UnsupportedOperationException("ByteBufInput can only read from a ByteBuf");
+    }
+
+    @Override
+    public
+    long total() {
+        return total + position();
+    }
+
+    /**
+     * @return the number of bytes read since the buffer was set.
+     */
+    @Override
+    public
+    int position() {
+        return byteBuf.readerIndex() - startIndex;
+    }
+
+    /**
+     * Sets the current position, relative to the reader index of the buffer when it was set.
+     */
+    @Override
+    public
+    void setPosition(final int position) {
+        byteBuf.readerIndex(startIndex + position);
+    }
+
+    /**
+     * @return the number of bytes that can be read, relative to the reader index of the buffer when it was set.
+     */
+    @Override
+    public
+    int limit() {
+        return byteBuf.writerIndex() - startIndex;
+    }
+
+    /**
+     * Sets the limit, relative to the reader index of the buffer when it was set. This moves the writer index of the buffer.
+     */
+    @Override
+    public
+    void setLimit(final int limit) {
+        byteBuf.writerIndex(startIndex + limit);
+    }
+
+    /**
+     * Moves the reader index of the buffer back to where it was when the buffer was set, and sets the total to zero.
+     */
+    @Override
+    public
+    void reset() {
+        byteBuf.readerIndex(startIndex);
+        total = 0;
+    }
+
+    @Override
+    public
+    void skip(final int count) throws KryoException {
+        require(count);
+        byteBuf.skipBytes(count);
+    }
+
+    @Override
+    public
+    long skip(final long count) throws KryoException {
+        int skip = (int) Math.min(byteBuf.readableBytes(), count);
+        byteBuf.skipBytes(skip);
+        return skip;
+    }
+
+    /**
+     * There is nothing to fill the buffer from.
+     *
+     * @return always -1 (end of stream)
+     */
+    @Override
+    protected
+    int fill(final byte[] buffer, final int offset, final int count) throws KryoException {
+        return -1;
+    }
+
+    /**
+     * @return the number of bytes remaining
+     *
+     * @throws KryoException if there are not enough bytes remaining in the buffer
+     */
+    @Override
+    protected
+    int require(final int required) throws KryoException {
+        int remaining = byteBuf.readableBytes();
+        if (remaining < required) {
+            throw new KryoException("Buffer underflow.");
+        }
+        return remaining;
+    }
+
+    /**
+     * @return the number of bytes remaining, but not more than optional, or -1 if there are no bytes remaining.
+     */
+    @Override
+    protected
+    int optional(final int optional) throws KryoException {
+        int remaining = byteBuf.readableBytes();
+        if (remaining == 0 && optional > 0) {
+            return -1;
+        }
+        return Math.min(remaining, optional);
+    }
+
+    @Override
+    public
+    boolean end() {
+        return !byteBuf.isReadable();
+    }
+
+    @Override
+    public
+    int available() {
+        return byteBuf.readableBytes();
+    }
+
+    /**
+     * Does nothing, the buffer is owned (and released) by the caller.
+     */
+    @Override
+    public
+    void close() throws KryoException {
+    }
+
+    // InputStream
+
+    @Override
+    public
+    int read() throws KryoException {
+        if (!byteBuf.isReadable()) {
+            return -1;
+        }
+        return byteBuf.readByte() & 0xFF;
+    }
+
+    @Override
+    public
+    int read(final byte[] bytes) throws KryoException {
+        return read(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public
+    int read(final byte[] bytes, final int offset, final int count) throws KryoException {
+        if (bytes == null) {
+            throw new IllegalArgumentException("bytes cannot be null.");
+        }
+        int length = Math.min(byteBuf.readableBytes(), count);
+        if (length == 0 && count > 0) {
+            return -1;
+        }
+        byteBuf.readBytes(bytes, offset, length);
+        return length;
+    }
+
+    // byte
+
+    @Override
+    public
+    byte readByte() throws KryoException {
+        require(1);
+        return byteBuf.readByte();
+    }
+
+    @Override
+    public
+    int readByteUnsigned() throws KryoException {
+        require(1);
+        return byteBuf.readByte() & 0xFF;
+    }
+
+    @Override
+    public
+    byte[] readBytes(final int length) throws KryoException {
+        byte[] bytes = new byte[length];
+        readBytes(bytes, 0, length);
+        return bytes;
+    }
+
+    @Override
+    public
+    void readBytes(final byte[] bytes) throws KryoException {
+        readBytes(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public
+    void readBytes(final byte[] bytes, final int offset, final int count) throws KryoException {
+        if (bytes == null) {
+            throw new IllegalArgumentException("bytes cannot be null.");
+        }
+        require(count);
+        byteBuf.readBytes(bytes, offset, count);
+    }
+
+    // int
+
+    @Override
+    public
+    int readInt() throws KryoException {
+        require(4);
+        return byteBuf.readIntLE();
+    }
+
+    @Override
+    public
+    int readInt(final boolean optimizePositive) throws KryoException {
+        if (!varEncoding) {
+            return readInt();
+        }
+        return readVarInt(optimizePositive);
+    }
+
+    @Override
+    public
+    int readVarInt(final boolean optimizePositive) throws KryoException {
+        try {
+            return OptimizeUtilsByteBuf.readInt(byteBuf, optimizePositive);
+        } catch (IndexOutOfBoundsException e) {
+            throw new KryoException("Buffer underflow.", e);
+        }
+    }
+
+    @Override
+    public
+    boolean canReadInt() throws KryoException {
+        if (!varEncoding) {
+            return byteBuf.readableBytes() >= 4;
+        }
+        return canReadVarInt();
+    }
+
+    @Override
+    public
+    boolean canReadVarInt() throws KryoException {
+        return OptimizeUtilsByteBuf.canReadInt(byteBuf) > 0;
+    }
+
+    @Override
+    public
+    boolean readVarIntFlag() {
+        require(1);
+        return ByteBufCodec.readVarIntFlag(byteBuf);
+    }
+
+    @Override
+    public
+    int readVarIntFlag(final boolean optimizePositive) {
+        try {
+            return ByteBufCodec.readVarIntFlag(byteBuf, optimizePositive);
+        } catch (IndexOutOfBoundsException e) {
+            throw new KryoException("Buffer underflow.", e);
+        }
+    }
+
+    // long
+
+    @Override
+    public
+    long readLong() throws KryoException {
+        require(8);
+        return byteBuf.readLongLE();
+    }
+
+    @Override
+    public
+    long readLong(final boolean optimizePositive) throws KryoException {
+        if (!varEncoding) {
+            return readLong();
+        }
+        return readVarLong(optimizePositive);
+    }
+
+    @Override
+    public
+    long readVarLong(final boolean optimizePositive) throws KryoException {
+        try {
+            return OptimizeUtilsByteBuf.readLong(byteBuf, optimizePositive);
+        } catch (IndexOutOfBoundsException e) {
+            throw new KryoException("Buffer underflow.", e);
+        }
+    }
+
+    @Override
+    public
+    boolean canReadLong() throws KryoException {
+        if (!varEncoding) {
+            return byteBuf.readableBytes() >= 8;
+        }
+        return canReadVarLong();
+    }
+
+    @Override
+    public
+    boolean canReadVarLong() throws KryoException {
+        return OptimizeUtilsByteBuf.canReadLong(byteBuf) > 0;
+    }
+
+    // float
+
+    @Override
+    public
+    float readFloat() throws KryoException {
+        require(4);
+        return Float.intBitsToFloat(byteBuf.readIntLE());
+    }
+
+    @Override
+    public
+    float readVarFloat(final float precision, final boolean optimizePositive) throws KryoException {
+        return readVarInt(optimizePositive) / precision;
+    }
+
+    // double
+
+    @Override
+    public
+    double readDouble() throws KryoException {
+        require(8);
+        return Double.longBitsToDouble(byteBuf.readLongLE());
+    }
+
+    @Override
+    public
+    double readVarDouble(final double precision, final boolean optimizePositive) throws KryoException {
+        return readVarLong(optimizePositive) / precision;
+    }
+
+    // short, char, boolean
+
+    @Override
+    public
+    short readShort() throws KryoException {
+        require(2);
+        return byteBuf.readShortLE();
+    }
+
+    @Override
+    public
+    int readShortUnsigned() throws KryoException {
+        require(2);
+        return byteBuf.readUnsignedShortLE();
+    }
+
+    @Override
+    public
+    char readChar() throws KryoException {
+        require(2);
+        return (char) byteBuf.readShortLE();
+    }
+
+    @Override
+    public
+    boolean readBoolean() throws KryoException {
+        require(1);
+        return byteBuf.readByte() == 1;
+    }
+
+    // string
+
+    @Override
+    public
+    String readString() {
+        try {
+            return ByteBufCodec.readString(byteBuf);
+        } catch (IndexOutOfBoundsException e) {
+            throw new KryoException("Buffer underflow.", e);
+        }
+    }
+
+    @Override
+    public
+    StringBuilder readStringBuilder() {
+        try {
+            return ByteBufCodec.readStringBuilder(byteBuf);
+        } catch (IndexOutOfBoundsException e) {
+            throw new KryoException("Buffer underflow.", e);
+        }
+    }
+
+    // arrays
+
+    @Override
+    public
+    int[] readInts(final int length) throws KryoException {
+        require(length << 2);
+
+        ByteBuf buffer = this.byteBuf;
+        int[] array = new int[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = buffer.readIntLE();
+        }
+        return array;
+    }
+
+    @Override
+    public
+    int[] readInts(final int length, final boolean optimizePositive) throws KryoException {
+        if (!varEncoding) {
+            return readInts(length);
+        }
+
+        try {
+            ByteBuf buffer = this.byteBuf;
+            int[] array = new int[length];
+            for (int i = 0; i < length; i++) {
+                array[i] = OptimizeUtilsByteBuf.readInt(buffer, optimizePositive);
+            }
+            return array;
+        } catch (IndexOutOfBoundsException e) {
+            throw new KryoException("Buffer underflow.", e);
+        }
+    }
+
+    @Override
+    public
+    long[] readLongs(final int length) throws KryoException {
+        require(length << 3);
+
+        ByteBuf buffer = this.byteBuf;
+        long[] array = new long[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = buffer.readLongLE();
+        }
+        return array;
+    }
+
+    @Override
+    public
+    long[] readLongs(final int length, final boolean optimizePositive) throws KryoException {
+        if (!varEncoding) {
+            return readLongs(length);
+        }
+
+        try {
+            ByteBuf buffer = this.byteBuf;
+            long[] array = new long[length];
+            for (int i = 0; i < length; i++) {
+                array[i] = OptimizeUtilsByteBuf.readLong(buffer, optimizePositive);
+            }
+            return array;
+        } catch (IndexOutOfBoundsException e) {
+            throw new KryoException("Buffer underflow.", e);
+        }
+    }
+
+    @Override
+    public
+    float[] readFloats(final int length) throws KryoException {
+        require(length << 2);
+
+        ByteBuf buffer = this.byteBuf;
+        float[] array = new float[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = Float.intBitsToFloat(buffer.readIntLE());
+        }
+        return array;
+    }
+
+    @Override
+    public
+    double[] readDoubles(final int length) throws KryoException {
+        require(length << 3);
+
+        ByteBuf buffer = this.byteBuf;
+        double[] array = new double[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = Double.longBitsToDouble(buffer.readLongLE());
+        }
+        return array;
+    }
+
+    @Override
+    public
+    short[] readShorts(final int length) throws KryoException {
+        require(length << 1);
+
+        ByteBuf buffer = this.byteBuf;
+        short[] array = new short[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = buffer.readShortLE();
+        }
+        return array;
+    }
+
+    @Override
+    public
+    char[] readChars(final int length) throws KryoException {
+        require(length << 1);
+
+        ByteBuf buffer = this.byteBuf;
+        char[] array = new char[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = (char) buffer.readShortLE();
+        }
+        return array;
+    }
+
+    @Override
+    public
+    boolean[] readBooleans(final int length) throws KryoException {
+        require(length);
+
+        ByteBuf buffer = this.byteBuf;
+        boolean[] array = new boolean[length];
+        for (int i = 0; i < length; i++) {
+            array[i] = buffer.readByte() == 1;
+        }
+        return array;
+    }
+}
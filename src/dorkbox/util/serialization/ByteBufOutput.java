@@ -0,0 +1,470 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util.serialization;
+
+import java.io.OutputStream;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Output;
+
+import dorkbox.util.bytes.ByteBufCodec;
+import dorkbox.util.bytes.OptimizeUtilsByteBuf;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * A Kryo {@link Output} that writes directly to a Netty {@link ByteBuf} (heap, direct, pooled or composite), starting at the writer
+ * index of the buffer when it was set. There is no intermediate <code>byte[]</code>, so nothing has to be copied when serialization is
+ * done, and the buffer grows as needed (up to its max capacity).
+ * <p>
+ * The bytes are exactly the same as the normal Kryo 5 {@link Output}, so they can be read by a normal {@link com.esotericsoftware.kryo.io.Input}
+ * (or by {@link ByteBufInput}). This includes {@link #setVariableLengthEncoding(boolean)}, and fixed size values are LITTLE_ENDIAN.
+ * <p>
+ * {@link #position()} is the number of bytes written since the buffer was set. Changing the writer index of the buffer from the outside
+ * while it is being used by this output is not supported.
+ */
+@SuppressWarnings({"unused", "WeakerAccess"})
+public
+class ByteBufOutput extends Output {
+    private ByteBuf byteBuf;
+    private int startIndex;
+
+    /**
+     * Creates an uninitialized Output. {@link #setByteBuf(ByteBuf)} must be called before the Output is used.
+     */
+    public
+    ByteBufOutput() {
+    }
+
+    /**
+     * Creates a new Output for writing to the buffer, starting at the current writer index.
+     */
+    public
+    ByteBufOutput(final ByteBuf buffer) {
+        setByteBuf(buffer);
+    }
+
+    /**
+     * Sets the buffer that will be written to, starting at the current writer index. The position and total are reset.
+     */
+    public
+    void setByteBuf(final ByteBuf buffer) {
+        this.byteBuf = buffer;
+        this.startIndex = buffer.writerIndex();
+        this.total = 0;
+    }
+
+    /**
+     * @return the buffer that is written to.
+     */
+    public
+    ByteBuf getByteBuf() {
+        return byteBuf;
+    }
+
+    /**
+     * Not supported, use {@link #getByteBuf()} instead.
+     */
+    @Override
+    public
+    OutputStream getOutputStream() {
+        return null;
+    }
+
+    /**
+     * Not supported, use {@link #setByteBuf(ByteBuf)} instead.
+     */
+    @Override
+    public
+    void setOutputStream(final OutputStream outputStream) {
+        throw new UnsupportedOperationException("ByteBufOutput can only write to a ByteBuf");
+    }
+
+    /**
+     * Not supported, use {@link #setByteBuf(ByteBuf)} instead.
+     */
+    @Override
+    public
+    void setBuffer(final byte[] buffer) {
+        throw new UnsupportedOperationException("ByteBufOutput can only write to a ByteBuf");
+    }
+
+    /**
+     * Not supported, use {@link #setByteBuf(ByteBuf)} instead.
+     */
+    @Override
+    public
+    void setBuffer(final byte[] buffer, final int maxBufferSize) {
+        throw new UnsupportedOperationException("ByteBufOutput can only write to a ByteBuf");
+    }
+
+    /**
+     * Not supported, use {@link #getByteBuf()} instead.
+     */
+    @Override
+    public
+    byte[] getBuffer() {
+        throw new UnsupportedOperationException("ByteBufOutput can only write to a ByteBuf");
+    }
+
+    /**
+     * Returns a new byte array containing the bytes written since the buffer was set. The buffer is not changed.
+     */
+    @Override
+    public
+    byte[] toBytes() {
+        byte[] bytes = new byte[position()];
+        byteBuf.getBytes(startIndex, bytes);
+        return bytes;
+    }
+
+    /**
+     * @return the number of bytes written since the buffer was set.
+     */
+    @Override
+    public
+    int position() {
+        return byteBuf.writerIndex() - startIndex;
+    }
+
+    /**
+     * Sets the current position, relative to the writer index of the buffer when it was set.
+     */
+    @Override
+    public
+    void setPosition(final int position) {
+        byteBuf.writerIndex(startIndex + position);
+    }
+
+    @Override
+    public
+    long total() {
+        return total + position();
+    }
+
+    @Override
+    public
+    int getMaxCapacity() {
+        return byteBuf.maxCapacity() - startIndex;
+    }
+
+    /**
+     * Sets the position and total to zero, which moves the writer index of the buffer back to where it was when the buffer was set.
+     */
+    @Override
+    public
+    void reset() {
+        byteBuf.writerIndex(startIndex);
+        total = 0;
+    }
+
+    /**
+     * The buffer grows as needed, so this only makes sure there is space for the bytes.
+     */
+    @Override
+    protected
+    boolean require(final int required) throws KryoException {
+        try {
+            byteBuf.ensureWritable(required);
+        } catch (IndexOutOfBoundsException e) {
+            throw new KryoException("Buffer overflow. Max capacity: " + byteBuf.maxCapacity() + ", required: " + required, e);
+        }
+        return false;
+    }
+
+    /**
+     * Does nothing, the bytes are already in the buffer.
+     */
+    @Override
+    public
+    void flush() throws KryoException {
+    }
+
+    /**
+     * Does nothing, the buffer is owned (and released) by the caller.
+     */
+    @Override
+    public
+    void close() throws KryoException {
+    }
+
+    // byte
+
+    @Override
+    public
+    void write(final int value) throws KryoException {
+        byteBuf.writeByte(value);
+    }
+
+    @Override
+    public
+    void write(final byte[] bytes) throws KryoException {
+        if (bytes == null) {
+            throw new IllegalArgumentException("bytes cannot be null.");
+        }
+        byteBuf.writeBytes(bytes);
+    }
+
+    @Override
+    public
+    void write(final byte[] bytes, final int offset, final int length) throws KryoException {
+        if (bytes == null) {
+            throw new IllegalArgumentException("bytes cannot be null.");
+        }
+        byteBuf.writeBytes(bytes, offset, length);
+    }
+
+    @Override
+    public
+    void writeByte(final byte value) throws KryoException {
+        byteBuf.writeByte(value);
+    }
+
+    @Override
+    public
+    void writeByte(final int value) throws KryoException {
+        byteBuf.writeByte(value);
+    }
+
+    @Override
+    public
+    void writeBytes(final byte[] bytes) throws KryoException {
+        write(bytes);
+    }
+
+    @Override
+    public
+    void writeBytes(final byte[] bytes, final int offset, final int count) throws KryoException {
+        write(bytes, offset, count);
+    }
+
+    // int
+
+    @Override
+    public
+    void writeInt(final int value) throws KryoException {
+        byteBuf.writeIntLE(value);
+    }
+
+    @Override
+    public
+    int writeInt(final int value, final boolean optimizePositive) throws KryoException {
+        if (!varEncoding) {
+            byteBuf.writeIntLE(value);
+            return 4;
+        }
+        return OptimizeUtilsByteBuf.writeInt(byteBuf, value, optimizePositive);
+    }
+
+    @Override
+    public
+    int writeVarInt(final int value, final boolean optimizePositive) throws KryoException {
+        return OptimizeUtilsByteBuf.writeInt(byteBuf, value, optimizePositive);
+    }
+
+    @Override
+    public
+    int writeVarIntFlag(final boolean flag, final int value, final boolean optimizePositive) throws KryoException {
+        return ByteBufCodec.writeVarIntFlag(byteBuf, flag, value, optimizePositive);
+    }
+
+    // long
+
+    @Override
+    public
+    void writeLong(final long value) throws KryoException {
+        byteBuf.writeLongLE(value);
+    }
+
+    @Override
+    public
+    int writeLong(final long value, final boolean optimizePositive) throws KryoException {
+        if (!varEncoding) {
+            byteBuf.writeLongLE(value);
+            return 8;
+        }
+        return OptimizeUtilsByteBuf.writeLong(byteBuf, value, optimizePositive);
+    }
+
+    @Override
+    public
+    int writeVarLong(final long value, final boolean optimizePositive) throws KryoException {
+        return OptimizeUtilsByteBuf.writeLong(byteBuf, value, optimizePositive);
+    }
+
+    // float
+
+    @Override
+    public
+    void writeFloat(final float value) throws KryoException {
+        byteBuf.writeIntLE(Float.floatToIntBits(value));
+    }
+
+    @Override
+    public
+    int writeVarFloat(final float value, final float precision, final boolean optimizePositive) throws KryoException {
+        return ByteBufCodec.writeFloat(byteBuf, value, precision, optimizePositive);
+    }
+
+    // double
+
+    @Override
+    public
+    void writeDouble(final double value) throws KryoException {
+        byteBuf.writeLongLE(Double.doubleToLongBits(value));
+    }
+
+    @Override
+    public
+    int writeVarDouble(final double value, final double precision, final boolean optimizePositive) throws KryoException {
+        return ByteBufCodec.writeDouble(byteBuf, value, precision, optimizePositive);
+    }
+
+    // short, char, boolean
+
+    @Override
+    public
+    void writeShort(final int value) throws KryoException {
+        byteBuf.writeShortLE(value);
+    }
+
+    @Override
+    public
+    void writeChar(final char value) throws KryoException {
+        byteBuf.writeShortLE(value);
+    }
+
+    @Override
+    public
+    void writeBoolean(final boolean value) throws KryoException {
+        byteBuf.writeByte(value ? 1 : 0);
+    }
+
+    // string
+
+    @Override
+    public
+    void writeString(final String value) throws KryoException {
+        ByteBufCodec.writeString(byteBuf, value, ByteBufCodec.KRYO_MAX_ASCII_LENGTH);
+    }
+
+    @Override
+    public
+    void writeAscii(final String value) throws KryoException {
+        ByteBufCodec.writeAscii(byteBuf, value);
+    }
+
+    // arrays
+
+    @Override
+    public
+    void writeInts(final int[] array, int offset, final int count) throws KryoException {
+        ByteBuf buffer = this.byteBuf;
+        buffer.ensureWritable(count << 2);
+        for (int n = offset + count; offset < n; offset++) {
+            buffer.writeIntLE(array[offset]);
+        }
+    }
+
+    @Override
+    public
+    void writeInts(final int[] array, int offset, final int count, final boolean optimizePositive) throws KryoException {
+        if (!varEncoding) {
+            writeInts(array, offset, count);
+            return;
+        }
+
+        ByteBuf buffer = this.byteBuf;
+        buffer.ensureWritable(count);
+        for (int n = offset + count; offset < n; offset++) {
+            OptimizeUtilsByteBuf.writeInt(buffer, array[offset], optimizePositive);
+        }
+    }
+
+    @Override
+    public
+    void writeLongs(final long[] array, int offset, final int count) throws KryoException {
+        ByteBuf buffer = this.byteBuf;
+        buffer.ensureWritable(count << 3);
+        for (int n = offset + count; offset < n; offset++) {
+            buffer.writeLongLE(array[offset]);
+        }
+    }
+
+    @Override
+    public
+    void writeLongs(final long[] array, int offset, final int count, final boolean optimizePositive) throws KryoException {
+        if (!varEncoding) {
+            writeLongs(array, offset, count);
+            return;
+        }
+
+        ByteBuf buffer = this.byteBuf;
+        buffer.ensureWritable(count);
+        for (int n = offset + count; offset < n; offset++) {
+            OptimizeUtilsByteBuf.writeLong(buffer, array[offset], optimizePositive);
+        }
+    }
+
+    @Override
+    public
+    void writeFloats(final float[] array, int offset, final int count) throws KryoException {
+        ByteBuf buffer = this.byteBuf;
+        buffer.ensureWritable(count << 2);
+        for (int n = offset + count; offset < n; offset++) {
+            buffer.writeIntLE(Float.floatToIntBits(array[offset]));
+        }
+    }
+
+    @Override
+    public
+    void writeDoubles(final double[] array, int offset, final int count) throws KryoException {
+        ByteBuf buffer = this.byteBuf;
+        buffer.ensureWritable(count << 3);
+        for (int n = offset + count; offset < n; offset++) {
+            buffer.writeLongLE(Double.doubleToLongBits(array[offset]));
+        }
+    }
+
+    @Override
+    public
+    void writeShorts(final short[] array, int offset, final int count) throws KryoException {
+        ByteBuf buffer = this.byteBuf;
+        buffer.ensureWritable(count << 1);
+        for (int n = offset + count; offset < n; offset++) {
+            buffer.writeShortLE(array[offset]);
+        }
+    }
+
+    @Override
+    public
+    void writeChars(final char[] array, int offset, final int count) throws KryoException {
+        ByteBuf buffer = this.byteBuf;
+        buffer.ensureWritable(count << 1);
+        for (int n = offset + count; offset < n; offset++) {
+            buffer.writeShortLE(array[offset]);
+        }
+    }
+
+    @Override
+    public
+    void writeBooleans(final boolean[] array, int offset, final int count) throws KryoException {
+        ByteBuf buffer = this.byteBuf;
+        buffer.ensureWritable(count);
+        for (int n = offset + count; offset < n; offset++) {
+            buffer.writeByte(array[offset] ? 1 : 0);
+        }
+    }
+}
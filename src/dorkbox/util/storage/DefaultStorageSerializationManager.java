@@ -25,6 +25,8 @@ import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.esotericsoftware.minlog.Log;
 
+import dorkbox.util.serialization.ByteBufInput;
+import dorkbox.util.serialization.ByteBufOutput;
 import dorkbox.util.serialization.SerializationManager;
 import io.netty.buffer.ByteBuf;
 
@@ -65,21 +67,15 @@ class DefaultStorageSerializationManager implements SerializationManager {
     @Override
     public
     void write(final ByteBuf buffer, final Object message) {
-        final Output output = new Output();
-        writeFullClassAndObject(output, message);
-        buffer.writeBytes(output.getBuffer());
+        // writes directly into the buffer, there is no intermediate byte[] to copy
+        writeFullClassAndObject(new ByteBufOutput(buffer), message);
     }
 
     @Override
     public
     Object read(final ByteBuf buffer, final int length) throws IOException {
-        final Input input = new Input();
-        buffer.readBytes(input.getBuffer());
-
-        final Object o = readFullClassAndObject(input);
-        buffer.skipBytes(input.position());
-
-        return o;
+        // reads directly from the buffer, and the reader index is moved forward by exactly the number of bytes read
+        return readFullClassAndObject(new ByteBufInput(buffer));
     }
 
     @Override
@@ -0,0 +1,408 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Random;
+
+import org.junit.Test;
+
+import dorkbox.util.bytes.AbstractByteBuffer2;
+import dorkbox.util.bytes.ByteBuffer2;
+import dorkbox.util.bytes.ChunkedByteBuffer2;
+import dorkbox.util.bytes.DirectByteBuffer2;
+import dorkbox.util.bytes.DirectByteBufferPool;
+
+public class AbstractByteBuffer2Test {
+    private static final int OPS = 23;
+
+    @Test
+    public void sameWireFormatAsByteBuffer2() {
+        Random random = new Random(42);
+
+        for (int run = 0; run < 50; run++) {
+            long seed = random.nextLong();
+
+            ByteBuffer2 expected = new ByteBuffer2(16, -1);
+            DirectByteBuffer2 direct = new DirectByteBuffer2(16, -1, null);
+            DirectByteBuffer2 pooled = new DirectByteBuffer2(16, -1, new DirectByteBufferPool(16, 1024 * 1024, 4, 16));
+            ChunkedByteBuffer2 chunked = new ChunkedByteBuffer2(16);
+
+            write(expected, new Random(seed));
+            write(direct, new Random(seed));
+            write(pooled, new Random(seed));
+            write(chunked, new Random(seed));
+
+            byte[] bytes = expected.toBytes();
+            assertArrayEquals(bytes, direct.toBytes());
+            assertArrayEquals(bytes, pooled.toBytes());
+            assertArrayEquals(bytes, chunked.toBytes());
+
+            // the bytes written by ByteBuffer2 can be read by the others
+            DirectByteBuffer2 directReader = new DirectByteBuffer2(16, -1, null);
+            directReader.writeBytes(bytes);
+            directReader.setPosition(0);
+            read(directReader, new Random(seed));
+            assertEquals(bytes.length, directReader.position());
+
+            ChunkedByteBuffer2 chunkedReader = new ChunkedByteBuffer2(16);
+            chunkedReader.writeBytes(bytes);
+            chunkedReader.setPosition(0);
+            read(chunkedReader, new Random(seed));
+            assertEquals(bytes.length, chunkedReader.position());
+
+            direct.release();
+            pooled.release();
+        }
+    }
+
+    @Test
+    public void partialWritesContinue() throws Exception {
+        DirectByteBuffer2 direct = new DirectByteBuffer2(16, -1, null);
+        ChunkedByteBuffer2 chunked = new ChunkedByteBuffer2(16);
+        for (int i = 0; i < 100; i++) {
+            direct.writeInt(i, true);
+            direct.writeString("value " + i);
+            chunked.writeInt(i, true);
+            chunked.writeString("value " + i);
+        }
+        byte[] expected = direct.toBytes();
+
+        TrickleChannel channel = new TrickleChannel(7);
+        while (direct.flushed() < direct.position()) {
+            direct.writeTo(channel);
+        }
+        assertArrayEquals(expected, channel.toBytes());
+        assertEquals(0, direct.writeTo(channel));
+
+        channel = new TrickleChannel(7);
+        while (chunked.flushed() < chunked.position()) {
+            chunked.writeTo(channel);
+        }
+        assertArrayEquals(expected, channel.toBytes());
+        assertEquals(0, chunked.writeTo(channel));
+
+        // gathering writes of multiple buffers
+        DirectByteBuffer2 first = new DirectByteBuffer2(16, -1, null);
+        DirectByteBuffer2 second = new DirectByteBuffer2(16, -1, null);
+        first.writeBytes(expected, 0, 100);
+        second.writeBytes(expected, 100, expected.length - 100);
+
+        channel = new TrickleChannel(5);
+        long total = 0;
+        while (second.flushed() < second.position()) {
+            total += DirectByteBuffer2.writeTo(channel, first, second);
+        }
+        assertEquals(expected.length, total);
+        assertArrayEquals(expected, channel.toBytes());
+
+        // clearing the buffer starts over
+        direct.clear();
+        assertEquals(0, direct.flushed());
+        direct.writeByte(1);
+        channel = new TrickleChannel(7);
+        assertEquals(1, direct.writeTo(channel));
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        chunked.clear();
+        chunked.writeBytes(expected);
+        chunked.writeTo(stream);
+        chunked.writeTo(stream);
+        assertArrayEquals(expected, stream.toByteArray());
+    }
+
+    @Test
+    public void callerBuffersAreNotPooled() {
+        DirectByteBufferPool pool = new DirectByteBufferPool(4096, 4096, 4, 16);
+        ByteBuffer mine = ByteBuffer.allocateDirect(4096);
+
+        DirectByteBuffer2 buffer = new DirectByteBuffer2(4096, -1, pool);
+        buffer.setBuffer(mine, -1);
+        buffer.writeInt(1);
+        buffer.release();
+
+        for (int i = 0; i < 32; i++) {
+            assertNotSame(mine, pool.obtain(4096));
+        }
+
+        // growing out of the caller's buffer does not pool it either
+        buffer.setBuffer(mine, -1);
+        buffer.writeBytes(new byte[5000]);
+        buffer.release();
+
+        for (int i = 0; i < 32; i++) {
+            assertNotSame(mine, pool.obtain(4096));
+        }
+    }
+
+    @Test
+    public void readStringVariants() {
+        ChunkedByteBuffer2 buffer = new ChunkedByteBuffer2(16);
+        buffer.writeString("ascii text");
+        buffer.writeString("été 中文 and more text to cross chunks");
+        buffer.writeString((String) null);
+        buffer.setPosition(0);
+
+        char[] chars = new char[64];
+        assertEquals(10, buffer.readString(chars, 2));
+        assertEquals("ascii text", new String(chars, 2, 10));
+
+        StringBuilder builder = new StringBuilder("> ");
+        assertTrue(buffer.readString(builder));
+        assertEquals("> été 中文 and more text to cross chunks", builder.toString());
+
+        assertEquals(false, buffer.readString(CharBuffer.allocate(4)));
+    }
+
+    private static void write(ByteBuffer2 buffer, Random random) {
+        for (int i = 0, n = 20 + random.nextInt(60); i < n; i++) {
+            int op = random.nextInt(OPS);
+            long value = random.nextLong() >> random.nextInt(64);
+            boolean optimizePositive = random.nextBoolean();
+
+            switch (op) {
+                case 0 : buffer.writeByte((int) value); break;
+                case 1 : buffer.writeInt((int) value); break;
+                case 2 : buffer.writeInt((int) value, optimizePositive); break;
+                case 3 : buffer.writeLong(value); break;
+                case 4 : buffer.writeLong(value, optimizePositive); break;
+                case 5 : buffer.writeShort((int) value); break;
+                case 6 : buffer.writeChar((char) value); break;
+                case 7 : buffer.writeFloat(Float.intBitsToFloat((int) value)); break;
+                case 8 : buffer.writeDouble(Double.longBitsToDouble(value)); break;
+                case 9 : buffer.writeBoolean(optimizePositive); break;
+                case 10 : buffer.writeString(string(random)); break;
+                case 11 : buffer.writeString((CharSequence) string(random)); break;
+                case 12 : buffer.writeAscii(ascii(random)); break;
+                case 13 : buffer.writeBytes(bytes(random)); break;
+                case 14 : buffer.writeInts(ints(random), optimizePositive); break;
+                case 15 : buffer.writeLongs(longs(random), optimizePositive); break;
+                case 16 : buffer.writeInts(ints(random)); break;
+                case 17 : buffer.writeLongs(longs(random)); break;
+                case 18 : buffer.writeFloats(floats(random)); break;
+                case 19 : buffer.writeShorts(shorts(random)); break;
+                case 20 : buffer.writeChars(chars(random)); break;
+                case 21 : buffer.writeDoubles(doubles(random)); break;
+                default : buffer.writeVarLong(value, optimizePositive); break;
+            }
+        }
+    }
+
+    private static void write(AbstractByteBuffer2 buffer, Random random) {
+        for (int i = 0, n = 20 + random.nextInt(60); i < n; i++) {
+            int op = random.nextInt(OPS);
+            long value = random.nextLong() >> random.nextInt(64);
+            boolean optimizePositive = random.nextBoolean();
+
+            switch (op) {
+                case 0 : buffer.writeByte((int) value); break;
+                case 1 : buffer.writeInt((int) value); break;
+                case 2 : buffer.writeInt((int) value, optimizePositive); break;
+                case 3 : buffer.writeLong(value); break;
+                case 4 : buffer.writeLong(value, optimizePositive); break;
+                case 5 : buffer.writeShort((int) value); break;
+                case 6 : buffer.writeChar((char) value); break;
+                case 7 : buffer.writeFloat(Float.intBitsToFloat((int) value)); break;
+                case 8 : buffer.writeDouble(Double.longBitsToDouble(value)); break;
+                case 9 : buffer.writeBoolean(optimizePositive); break;
+                case 10 : buffer.writeString(string(random)); break;
+                case 11 : buffer.writeString((CharSequence) string(random)); break;
+                case 12 : buffer.writeAscii(ascii(random)); break;
+                case 13 : buffer.writeBytes(bytes(random)); break;
+                case 14 : buffer.writeInts(ints(random), optimizePositive); break;
+                case 15 : buffer.writeLongs(longs(random), optimizePositive); break;
+                case 16 : buffer.writeInts(ints(random)); break;
+                case 17 : buffer.writeLongs(longs(random)); break;
+                case 18 : buffer.writeFloats(floats(random)); break;
+                case 19 : buffer.writeShorts(shorts(random)); break;
+                case 20 : buffer.writeChars(chars(random)); break;
+                case 21 : buffer.writeDoubles(doubles(random)); break;
+                default : buffer.writeVarLong(value, optimizePositive); break;
+            }
+        }
+    }
+
+    private static void read(AbstractByteBuffer2 buffer, Random random) {
+        for (int i = 0, n = 20 + random.nextInt(60); i < n; i++) {
+            int op = random.nextInt(OPS);
+            long value = random.nextLong() >> random.nextInt(64);
+            boolean optimizePositive = random.nextBoolean();
+
+            switch (op) {
+                case 0 : assertEquals((byte) value, buffer.readByte()); break;
+                case 1 : assertEquals((int) value, buffer.readInt()); break;
+                case 2 : assertEquals((int) value, buffer.readInt(optimizePositive)); break;
+                case 3 : assertEquals(value, buffer.readLong()); break;
+                case 4 : assertEquals(value, buffer.readLong(optimizePositive)); break;
+                case 5 : assertEquals((short) value, buffer.readShort()); break;
+                case 6 : assertEquals((char) value, buffer.readChar()); break;
+                case 7 : assertEquals(Float.floatToIntBits(Float.intBitsToFloat((int) value)), Float.floatToIntBits(buffer.readFloat())); break;
+                case 8 : assertEquals(Double.doubleToLongBits(Double.longBitsToDouble(value)), Double.doubleToLongBits(buffer.readDouble())); break;
+                case 9 : assertEquals(optimizePositive, buffer.readBoolean()); break;
+                case 10 : assertEquals(string(random), buffer.readString()); break;
+                case 11 : assertEquals(String.valueOf(string(random)), String.valueOf(buffer.readStringBuilder())); break;
+                case 12 : assertEquals(ascii(random), buffer.readString()); break;
+                case 13 : { byte[] expected = bytes(random); assertArrayEquals(expected, buffer.readBytes(expected.length)); break; }
+                case 14 : { int[] expected = ints(random); assertArrayEquals(expected, buffer.readInts(expected.length, optimizePositive)); break; }
+                case 15 : { long[] expected = longs(random); assertArrayEquals(expected, buffer.readLongs(expected.length, optimizePositive)); break; }
+                case 16 : { int[] expected = ints(random); assertArrayEquals(expected, buffer.readInts(expected.length)); break; }
+                case 17 : { long[] expected = longs(random); assertArrayEquals(expected, buffer.readLongs(expected.length)); break; }
+                case 18 : { float[] expected = floats(random); assertArrayEquals(expected, buffer.readFloats(expected.length), 0F); break; }
+                case 19 : { short[] expected = shorts(random); assertArrayEquals(expected, buffer.readShorts(expected.length)); break; }
+                case 20 : { char[] expected = chars(random); assertArrayEquals(expected, buffer.readChars(expected.length)); break; }
+                case 21 : { double[] expected = doubles(random); assertArrayEquals(expected, buffer.readDoubles(expected.length), 0D); break; }
+                default : assertEquals(value, buffer.readLong(optimizePositive)); break;
+            }
+        }
+    }
+
+    private static String string(Random random) {
+        int length = random.nextInt(10) == 0 ? -1 : random.nextInt(random.nextBoolean() ? 8 : 100);
+        if (length < 0) {
+            return null;
+        }
+
+        int range = random.nextInt(3);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(range + 1)) {
+                case 0 : chars[i] = (char) (32 + random.nextInt(95)); break;
+                case 1 : chars[i] = (char) (0x80 + random.nextInt(0x780)); break;
+                default : chars[i] = (char) (0x800 + random.nextInt(0xD000)); break;
+            }
+        }
+        return new String(chars);
+    }
+
+    private static String ascii(Random random) {
+        char[] chars = new char[random.nextInt(70)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (32 + random.nextInt(95));
+        }
+        return new String(chars);
+    }
+
+    private static byte[] bytes(Random random) {
+        byte[] array = new byte[random.nextInt(40)];
+        random.nextBytes(array);
+        return array;
+    }
+
+    private static int[] ints(Random random) {
+        int[] array = new int[random.nextInt(10)];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = random.nextInt() >> random.nextInt(32);
+        }
+        return array;
+    }
+
+    private static long[] longs(Random random) {
+        long[] array = new long[random.nextInt(10)];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = random.nextLong() >> random.nextInt(64);
+        }
+        return array;
+    }
+
+    private static float[] floats(Random random) {
+        float[] array = new float[random.nextInt(10)];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = random.nextFloat() * random.nextInt();
+        }
+        return array;
+    }
+
+    private static short[] shorts(Random random) {
+        short[] array = new short[random.nextInt(10)];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = (short) random.nextInt();
+        }
+        return array;
+    }
+
+    private static char[] chars(Random random) {
+        char[] array = new char[random.nextInt(10)];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = (char) random.nextInt();
+        }
+        return array;
+    }
+
+    private static double[] doubles(Random random) {
+        double[] array = new double[random.nextInt(10)];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = random.nextDouble() * random.nextLong();
+        }
+        return array;
+    }
+
+    /**
+     * A non-blocking channel that only accepts a few bytes per write.
+     */
+    private static class TrickleChannel implements GatheringByteChannel {
+        private final int bytesPerWrite;
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        TrickleChannel(int bytesPerWrite) {
+            this.bytesPerWrite = bytesPerWrite;
+        }
+
+        byte[] toBytes() {
+            return this.written.toByteArray();
+        }
+
+        @Override
+        public int write(ByteBuffer source) {
+            int count = Math.min(this.bytesPerWrite, source.remaining());
+            for (int i = 0; i < count; i++) {
+                this.written.write(source.get());
+            }
+            return count;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                if (sources[i].hasRemaining()) {
+                    return write(sources[i]);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public long write(ByteBuffer[] sources) {
+            return write(sources, 0, sources.length);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -15,9 +15,17 @@
  */
 package dorkbox.util;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -39,4 +47,198 @@ public class Base64FastTest {
 
         randomData = null;
     }
+
+    @Test
+    public void streamTest() throws IOException {
+        Random random = new Random(42);
+
+        for (int length : new int[] {0, 1, 2, 3, 56, 57, 58, 8190, 8191, 100000}) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+
+            for (boolean lineSep : new boolean[] {false, true}) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                OutputStream out = new Base64FastOutputStream(bytes, lineSep);
+
+                // odd sized writes, so that blocks are split everywhere
+                for (int i = 0; i < length; ) {
+                    int count = Math.min(length - i, random.nextInt(1000));
+                    if (count == 1) {
+                        out.write(data[i]);
+                    }
+                    else {
+                        out.write(data, i, count);
+                    }
+                    i += count;
+                }
+                out.close();
+
+                byte[] encoded = bytes.toByteArray();
+                assertArrayEquals(Base64Fast.encodeToByte(data, lineSep), encoded);
+
+                InputStream in = new Base64FastInputStream(new ByteArrayInputStream(encoded));
+                ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+                byte[] buffer = new byte[777];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    decoded.write(buffer, 0, read);
+                }
+                in.close();
+
+                assertArrayEquals(data, decoded.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void byteBufferTest() {
+        Random random = new Random(42);
+        byte[] data = new byte[10000];
+        random.nextBytes(data);
+
+        for (boolean direct : new boolean[] {false, true}) {
+            Base64FastEncoder encoder = Base64FastEncoder.mime();
+            ByteBuffer src = ByteBuffer.wrap(data);
+            ByteBuffer encoded = direct ? ByteBuffer.allocateDirect(20000) : ByteBuffer.allocate(20000);
+
+            // a small destination, so the encoder has to stop and continue
+            ByteBuffer small = ByteBuffer.allocate(50);
+            while (!encoder.encode(src, small, true)) {
+                small.flip();
+                encoded.put(small);
+                small.clear();
+            }
+            small.flip();
+            encoded.put(small);
+            encoded.flip();
+
+            byte[] encodedBytes = new byte[encoded.remaining()];
+            encoded.duplicate().get(encodedBytes);
+            assertArrayEquals(Base64Fast.encodeToByte(data, true), encodedBytes);
+
+            Base64FastDecoder decoder = Base64FastDecoder.basic();
+            ByteBuffer decoded = direct ? ByteBuffer.allocateDirect(data.length) : ByteBuffer.allocate(data.length);
+
+            // feed the characters in small pieces
+            while (encoded.hasRemaining()) {
+                ByteBuffer piece = encoded.slice();
+                piece.limit(Math.min(piece.remaining(), 1 + random.nextInt(13)));
+                encoded.position(encoded.position() + piece.limit());
+                decoder.decode(piece, decoded, !encoded.hasRemaining());
+                assertEquals(0, piece.remaining());
+            }
+
+            decoded.flip();
+            byte[] decodedBytes = new byte[decoded.remaining()];
+            decoded.get(decodedBytes);
+            assertArrayEquals(data, decodedBytes);
+        }
+    }
+
+    @Test
+    public void tinyDecodeBufferTest() {
+        Random random = new Random(7);
+
+        // every length of the last block, with and without padding
+        for (int length = 0; length < 20; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+
+            for (boolean padded : new boolean[] {false, true}) {
+                String encoded = Base64Fast.encodeToString(data, false);
+                if (!padded) {
+                    encoded = encoded.replace("=", "");
+                }
+
+                // a destination of 1 and 2 bytes is smaller than a decoded block, so the decoder has to keep the rest
+                for (int capacity = 1; capacity <= 3; capacity++) {
+                    Base64FastDecoder decoder = Base64FastDecoder.basic();
+                    ByteBuffer src = ByteBuffer.wrap(encoded.getBytes());
+                    ByteBuffer dst = ByteBuffer.allocate(capacity);
+                    ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+
+                    int calls = 0;
+                    while (!decoder.decode(src, dst, true)) {
+                        dst.flip();
+                        decoded.write(dst.array(), 0, dst.limit());
+                        dst.clear();
+                        assertTrue("The decoder did not make progress", ++calls <= data.length);
+                    }
+                    dst.flip();
+                    decoded.write(dst.array(), 0, dst.limit());
+
+                    assertEquals(0, src.remaining());
+                    assertArrayEquals(encoded + " into " + capacity, data, decoded.toByteArray());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void urlSafeTest() {
+        byte[] data = new byte[] {(byte) 0xFB, (byte) 0xFF, (byte) 0xBF, 0x01};
+
+        ByteBuffer encoded = ByteBuffer.allocate(8);
+        Base64FastEncoder.urlSafe().encode(ByteBuffer.wrap(data), encoded, true);
+        assertEquals("-_-_AQ==", new String(encoded.array()));
+
+        ByteBuffer decoded = ByteBuffer.allocate(4);
+        Base64FastDecoder.urlSafe().decode(ByteBuffer.wrap("-_-_AQ".getBytes()), decoded, true);
+        assertArrayEquals(data, decoded.array());
+
+        try {
+            Base64FastDecoder.basic().decode(ByteBuffer.wrap("-_-_AQ==".getBytes()), ByteBuffer.allocate(4), true);
+            fail("'-' is not in the basic alphabet");
+        } catch (IllegalArgumentException ignored) {
+        }
+
+        // the MIME variant ignores it instead
+        decoded = ByteBuffer.allocate(4);
+        Base64FastDecoder.mime().decode(ByteBuffer.wrap("+/+/ A\tQ==".getBytes()), decoded, true);
+        assertArrayEquals(data, decoded.array());
+    }
+
+    @Test
+    public void swarTest() {
+        Random random = new Random(42);
+
+        for (int length = 0; length < 300; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+
+            for (boolean lineSep : new boolean[] {false, true}) {
+                byte[] expected = Base64Fast.encodeToByte(data, lineSep);
+                byte[] encoded = Base64Swar.encodeToByte(data, lineSep);
+                assertArrayEquals(expected, encoded);
+
+                String string = Base64Swar.encodeToString(data, lineSep);
+                assertEquals(new String(Base64Fast.encodeToChar(data, lineSep)), string);
+
+                assertArrayEquals(data, Base64Swar.decodeFast(encoded));
+                assertArrayEquals(data, Base64Swar.decodeFast(string));
+                assertArrayEquals(data, Base64Swar.decodeFast(string.toCharArray()));
+            }
+        }
+
+        byte[] data = new byte[100000];
+        random.nextBytes(data);
+        assertArrayEquals(data, Base64Swar.decodeFast(Base64Swar.encodeToByte(data, true)));
+
+        // unpadded and surrounding whitespace
+        assertArrayEquals(new byte[] {1, 2}, Base64Swar.decodeFast(" AQI \n"));
+
+        String[] invalid = new String[] {"AQ=I", "A===", "A", "AQIDB", "AQ\u0141D", "AQ-D", "AQ\r\nID"};
+        for (String value : invalid) {
+            try {
+                Base64Swar.decodeFast(value);
+                fail(value);
+            } catch (IllegalArgumentException ignored) {
+            }
+            try {
+                Base64Swar.decodeFast(value.getBytes());
+                fail(value);
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import dorkbox.util.bytes.ByteArrayWrapper;
+import dorkbox.util.bytes.ByteBuffer2;
+import dorkbox.util.collections.BloomFilter;
+
+public class BloomFilterTest {
+    private static
+    byte[] toBytes(final BloomFilter filter) {
+        ByteBuffer2 buffer = new ByteBuffer2(64, -1);
+        filter.write(buffer);
+        return buffer.toBytes();
+    }
+
+    @Test
+    public void noFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10000, 0.01D);
+
+        for (long i = 0; i < 10000; i++) {
+            filter.add(i * 31L);
+        }
+        for (long i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain(i * 31L));
+        }
+
+        // byte[] and ByteArrayWrapper are hashed by their contents, including a range of a larger array
+        Random random = new Random(42);
+        byte[] bytes = new byte[40];
+        random.nextBytes(bytes);
+
+        filter.add(bytes.clone());
+        assertTrue(filter.mightContain(bytes));
+        assertTrue(filter.mightContain(ByteArrayWrapper.copy(bytes)));
+        assertTrue(filter.mightContain((Object) bytes.clone()));
+
+        byte[] larger = new byte[50];
+        System.arraycopy(bytes, 0, larger, 7, bytes.length);
+        assertTrue(filter.mightContain(larger, 7, bytes.length));
+
+        filter.add("a string");
+        assertTrue(filter.mightContain(new String("a string")));
+
+        // adding a value again does not change any bit
+        assertFalse(filter.add(0L));
+        assertFalse(filter.add("a string"));
+
+        filter.clear();
+        assertFalse(filter.mightContain("a string"));
+    }
+
+    @Test
+    public void falsePositiveRate() {
+        for (double rate : new double[] {0.1D, 0.01D, 0.001D}) {
+            int count = 20000;
+            BloomFilter filter = new BloomFilter(count, rate);
+
+            Random random = new Random(42);
+            for (int i = 0; i < count; i++) {
+                filter.add(random.nextLong());
+            }
+
+            // different values, that were never added
+            int tests = 200000;
+            int falsePositives = 0;
+            for (int i = 0; i < tests; i++) {
+                if (filter.mightContain(random.nextLong())) {
+                    falsePositives++;
+                }
+            }
+
+            double measured = (double) falsePositives / tests;
+            assertTrue(rate + " measured " + measured, measured < rate * 1.5D);
+            assertTrue(rate + " measured " + measured, measured > rate / 1.5D);
+
+            assertTrue(rate + " estimated " + filter.estimatedFalsePositiveRate(), filter.estimatedFalsePositiveRate() < rate * 1.5D);
+            assertTrue("estimated count " + filter.estimatedCount(), Math.abs(filter.estimatedCount() - count) < count / 20);
+        }
+    }
+
+    @Test
+    public void concurrentAdd() throws Exception {
+        final int threadCount = 4;
+        final int countPerThread = 50000;
+
+        final BloomFilter filter = new BloomFilter(threadCount * countPerThread, 0.01D);
+        final CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < threadCount; t++) {
+            final int thread = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException ignored) {
+                    }
+
+                    // the threads interleave their values, so they are constantly setting bits in the same words
+                    for (long i = thread; i < threadCount * countPerThread; i += threadCount) {
+                        filter.add(i);
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (long i = 0; i < threadCount * countPerThread; i++) {
+            assertTrue(filter.mightContain(i));
+        }
+
+        // no bit was lost, so the filter is identical to one that was filled by a single thread
+        BloomFilter expected = new BloomFilter(threadCount * countPerThread, 0.01D);
+        for (long i = 0; i < threadCount * countPerThread; i++) {
+            expected.add(i);
+        }
+        assertArrayEquals(toBytes(expected), toBytes(filter));
+    }
+
+    @Test
+    public void writeAndRead() {
+        BloomFilter filter = new BloomFilter(5000, 0.02D);
+        for (int i = 0; i < 5000; i++) {
+            filter.add("value" + i);
+        }
+
+        byte[] bytes = toBytes(filter);
+        BloomFilter read = BloomFilter.read(new ByteBuffer2(bytes));
+
+        assertEquals(filter.bitSize(), read.bitSize());
+        assertEquals(filter.hashCount(), read.hashCount());
+        assertArrayEquals(bytes, toBytes(read));
+
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(read.mightContain("value" + i));
+        }
+        for (int i = 5000; i < 20000; i++) {
+            assertEquals(filter.mightContain("value" + i), read.mightContain("value" + i));
+        }
+
+        // a filter that was read can be combined with one of the same size
+        BloomFilter other = new BloomFilter(5000, 0.02D);
+        other.add("other");
+        read.addAll(other);
+        assertTrue(read.mightContain("other"));
+        assertTrue(read.mightContain("value0"));
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import dorkbox.util.bytes.ByteBufCodec;
+import dorkbox.util.bytes.ByteBuffer2;
+import dorkbox.util.serialization.ByteBufInput;
+import dorkbox.util.serialization.ByteBufOutput;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+/**
+ * The ByteBuf input/output must write exactly the same bytes as the normal Kryo output, and ByteBufCodec exactly the same bytes as
+ * ByteBuffer2, for every kind of buffer.
+ */
+public class ByteBufCodecTest {
+    private static final String[] STRINGS = new String[] {null, "", "a", "ab", "hello world", "héllo", "中文", "x😀y",
+                                                          repeat('z', 32), repeat('z', 33), repeat('z', 63), repeat('z', 64),
+                                                          repeat('é', 70), repeat('q', 9000)};
+
+    @Test
+    public void heapBuffer() {
+        roundTrip(Unpooled.buffer(4), true);
+        roundTrip(Unpooled.buffer(4), false);
+    }
+
+    @Test
+    public void directBuffer() {
+        roundTrip(Unpooled.directBuffer(4), true);
+        roundTrip(Unpooled.directBuffer(4), false);
+    }
+
+    @Test
+    public void pooledBuffer() {
+        ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer(4);
+        try {
+            roundTrip(buffer, true);
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Test
+    public void compositeBuffer() {
+        // written into a composite buffer, which grows by adding components
+        CompositeByteBuf buffer = Unpooled.compositeBuffer();
+        buffer.addComponent(true, Unpooled.buffer(3));
+        roundTrip(buffer, true);
+    }
+
+    @Test
+    public void compositeRead() {
+        Output kryoOutput = new Output(64, -1);
+        write(kryoOutput);
+        byte[] expected = kryoOutput.toBytes();
+
+        // every value is split over many small components
+        CompositeByteBuf buffer = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        for (int i = 0; i < expected.length; i += 7) {
+            buffer.addComponent(true, Unpooled.wrappedBuffer(expected, i, Math.min(7, expected.length - i)));
+        }
+
+        ByteBufInput input = new ByteBufInput(buffer);
+        read(input);
+        assertEquals(expected.length, input.position());
+        assertFalse(buffer.isReadable());
+    }
+
+    @Test
+    public void codecMatchesByteBuffer2() {
+        ByteBuffer2 expected = new ByteBuffer2(64, -1);
+        for (String string : STRINGS) {
+            expected.writeString(string);
+            expected.writeString((CharSequence) string);
+        }
+        expected.writeFloat(3.14159F, 1000F, true);
+        expected.writeDouble(-2.5D, 1000D, false);
+        expected.writeInts(new int[] {1, -1, Integer.MAX_VALUE}, true);
+        expected.writeLongs(new long[] {1, -1, Long.MIN_VALUE}, false);
+        expected.writeInts(new int[] {1, -1});
+        expected.writeDoubles(new double[] {0.5D, -0.25D});
+        byte[] bytes = expected.toBytes();
+
+        ByteBuf[] buffers = new ByteBuf[] {Unpooled.buffer(4), Unpooled.directBuffer(4), Unpooled.compositeBuffer()};
+        for (ByteBuf buffer : buffers) {
+            for (String string : STRINGS) {
+                ByteBufCodec.writeString(buffer, string);
+                ByteBufCodec.writeString(buffer, (CharSequence) string);
+            }
+            ByteBufCodec.writeFloat(buffer, 3.14159F, 1000F, true);
+            ByteBufCodec.writeDouble(buffer, -2.5D, 1000D, false);
+            ByteBufCodec.writeInts(buffer, new int[] {1, -1, Integer.MAX_VALUE}, true);
+            ByteBufCodec.writeLongs(buffer, new long[] {1, -1, Long.MIN_VALUE}, false);
+            ByteBufCodec.writeInts(buffer, new int[] {1, -1});
+            ByteBufCodec.writeDoubles(buffer, new double[] {0.5D, -0.25D});
+
+            byte[] actual = new byte[buffer.readableBytes()];
+            buffer.getBytes(buffer.readerIndex(), actual);
+            assertArrayEquals(bytes, actual);
+
+            for (String string : STRINGS) {
+                assertEquals(string, ByteBufCodec.readString(buffer));
+                StringBuilder builder = ByteBufCodec.readStringBuilder(buffer);
+                assertEquals(string, builder == null ? null : builder.toString());
+            }
+            assertEquals(3.141F, ByteBufCodec.readFloat(buffer, 1000F, true), 0F);
+            assertEquals(-2.5D, ByteBufCodec.readDouble(buffer, 1000D, false), 0D);
+            assertArrayEquals(new int[] {1, -1, Integer.MAX_VALUE}, ByteBufCodec.readInts(buffer, 3, true));
+            assertArrayEquals(new long[] {1, -1, Long.MIN_VALUE}, ByteBufCodec.readLongs(buffer, 3, false));
+            assertArrayEquals(new int[] {1, -1}, ByteBufCodec.readInts(buffer, 2));
+            assertArrayEquals(new double[] {0.5D, -0.25D}, ByteBufCodec.readDoubles(buffer, 2), 0D);
+            assertFalse(buffer.isReadable());
+        }
+    }
+
+    @Test
+    public void kryoObjects() {
+        Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(false);
+
+        HashMap<String, Object> map = new HashMap<String, Object>();
+        map.put("a", 1);
+        map.put("b", 2.5F);
+        map.put("c", "été");
+        List<Object> list = new ArrayList<Object>();
+        list.add(1L);
+        list.add("c");
+        map.put("d", list);
+
+        ByteBuf[] buffers = new ByteBuf[] {Unpooled.buffer(1), Unpooled.compositeBuffer()};
+        for (ByteBuf buffer : buffers) {
+            ByteBufOutput output = new ByteBufOutput(buffer);
+            kryo.writeClassAndObject(output, map);
+            kryo.writeClassAndObject(output, "tail");
+
+            Output kryoOutput = new Output(64, -1);
+            kryo.writeClassAndObject(kryoOutput, map);
+            kryo.writeClassAndObject(kryoOutput, "tail");
+            assertArrayEquals(kryoOutput.toBytes(), output.toBytes());
+
+            assertEquals(map, kryo.readClassAndObject(new ByteBufInput(buffer)));
+            assertEquals("tail", kryo.readClassAndObject(new ByteBufInput(buffer)));
+            assertFalse(buffer.isReadable());
+        }
+    }
+
+    private static void roundTrip(ByteBuf buffer, boolean varEncoding) {
+        Output kryoOutput = new Output(64, -1);
+        kryoOutput.setVariableLengthEncoding(varEncoding);
+        write(kryoOutput);
+        byte[] expected = kryoOutput.toBytes();
+
+        // does not start at 0
+        buffer.writeByte(99);
+
+        ByteBufOutput output = new ByteBufOutput(buffer);
+        output.setVariableLengthEncoding(varEncoding);
+        write(output);
+        assertEquals(expected.length, output.position());
+        assertEquals(expected.length, output.total());
+        assertArrayEquals(expected, output.toBytes());
+
+        buffer.readByte();
+        ByteBufInput input = new ByteBufInput(buffer);
+        input.setVariableLengthEncoding(varEncoding);
+        read(input);
+        assertEquals(expected.length, input.position());
+        assertFalse(buffer.isReadable());
+
+        Input kryoInput = new Input(expected);
+        kryoInput.setVariableLengthEncoding(varEncoding);
+        read(kryoInput);
+    }
+
+    private static void write(Output output) {
+        for (String string : STRINGS) {
+            output.writeString(string);
+        }
+        output.writeAscii(null);
+        output.writeAscii("a");
+        output.writeAscii("ascii");
+
+        output.writeInt(-5);
+        output.writeInt(300, true);
+        output.writeInt(-300, false);
+        output.writeVarInt(-300, true);
+        output.writeVarIntFlag(true, 5000, true);
+        output.writeVarIntFlag(false, -5000, false);
+        output.writeLong(Long.MIN_VALUE, true);
+        output.writeVarLong(Long.MAX_VALUE, false);
+        output.writeLong(123456789012L);
+        output.writeFloat(1.5F);
+        output.writeVarFloat(3.14159F, 1000F, true);
+        output.writeVarDouble(-2.5D, 1000D, false);
+        output.writeDouble(Math.PI);
+        output.writeShort(-2);
+        output.writeChar('ሴ');
+        output.writeBoolean(true);
+        output.writeByte(7);
+        output.write(new byte[] {1, 2, 3});
+
+        output.writeInts(new int[] {1, -1, Integer.MAX_VALUE}, 0, 3, true);
+        output.writeLongs(new long[] {1, -1, Long.MIN_VALUE}, 0, 3, false);
+        output.writeInts(new int[] {9, 1, -1}, 1, 2);
+        output.writeLongs(new long[] {5, -5}, 0, 2);
+        output.writeFloats(new float[] {1F, 2F}, 0, 2);
+        output.writeShorts(new short[] {3, -3}, 0, 2);
+        output.writeChars(new char[] {'a', 'ÿ'}, 0, 2);
+        output.writeDoubles(new double[] {0.5D, -0.25D}, 0, 2);
+        output.writeBooleans(new boolean[] {true, false, true}, 0, 3);
+    }
+
+    private static void read(Input input) {
+        for (String string : STRINGS) {
+            assertEquals(string, input.readString());
+        }
+        assertEquals(null, input.readString());
+        StringBuilder builder = input.readStringBuilder();
+        assertEquals("a", builder.toString());
+        assertEquals("ascii", input.readString());
+
+        assertEquals(-5, input.readInt());
+        assertEquals(300, input.readInt(true));
+        assertEquals(-300, input.readInt(false));
+        assertEquals(-300, input.readVarInt(true));
+        assertEquals(true, input.readVarIntFlag());
+        assertEquals(5000, input.readVarIntFlag(true));
+        assertEquals(false, input.readVarIntFlag());
+        assertEquals(-5000, input.readVarIntFlag(false));
+        assertEquals(Long.MIN_VALUE, input.readLong(true));
+        assertEquals(Long.MAX_VALUE, input.readVarLong(false));
+        assertEquals(123456789012L, input.readLong());
+        assertEquals(1.5F, input.readFloat(), 0F);
+        assertEquals(3.141F, input.readVarFloat(1000F, true), 0F);
+        assertEquals(-2.5D, input.readVarDouble(1000D, false), 0D);
+        assertEquals(Math.PI, input.readDouble(), 0D);
+        assertEquals(-2, input.readShort());
+        assertEquals('ሴ', input.readChar());
+        assertEquals(true, input.readBoolean());
+        assertEquals(7, input.readByte());
+        assertArrayEquals(new byte[] {1, 2, 3}, input.readBytes(3));
+
+        assertArrayEquals(new int[] {1, -1, Integer.MAX_VALUE}, input.readInts(3, true));
+        assertArrayEquals(new long[] {1, -1, Long.MIN_VALUE}, input.readLongs(3, false));
+        assertArrayEquals(new int[] {1, -1}, input.readInts(2));
+        assertArrayEquals(new long[] {5, -5}, input.readLongs(2));
+        assertArrayEquals(new float[] {1F, 2F}, input.readFloats(2), 0F);
+        assertArrayEquals(new short[] {3, -3}, input.readShorts(2));
+        assertArrayEquals(new char[] {'a', 'ÿ'}, input.readChars(2));
+        assertArrayEquals(new double[] {0.5D, -0.25D}, input.readDoubles(2), 0D);
+        assertEquals("[true, false, true]", Arrays.toString(input.readBooleans(3)));
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -16,7 +16,9 @@
 package dorkbox.util;
 
 import java.lang.reflect.Array;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.Random;
 
@@ -24,6 +26,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import dorkbox.util.bytes.ByteBuffer2;
+import dorkbox.util.bytes.InternPool;
 
 public class ByteBuffer2Test {
 
@@ -761,6 +764,209 @@ public class ByteBuffer2Test {
         Assert.assertEquals(10, in.remaining());
     }
 
+    @Test
+    public void testReserve() {
+        ByteBuffer2 buffer = new ByteBuffer2(4, -1);
+        buffer.writeInt(42);
+
+        // grows once, straight to the required size
+        Assert.assertTrue(buffer.reserve(100));
+        Assert.assertEquals(104, buffer.capacity());
+        Assert.assertFalse(buffer.reserve(100));
+
+        Assert.assertTrue(buffer.ensureCapacity(200));
+        Assert.assertEquals(200, buffer.capacity());
+        Assert.assertFalse(buffer.ensureCapacity(150));
+
+        buffer.skip(1000);
+        Assert.assertEquals(1004, buffer.position());
+        Assert.assertEquals(1004, buffer.capacity());
+
+        buffer.setPosition(0);
+        Assert.assertEquals(42, buffer.readInt());
+
+        ByteBuffer2 bounded = new ByteBuffer2(4, 16);
+        bounded.writeInt(1);
+        try {
+            bounded.reserve(13);
+            Assert.fail("Expected a buffer overflow");
+        } catch (RuntimeException ignored) {
+        }
+        bounded.reserve(12);
+        Assert.assertEquals(16, bounded.capacity());
+    }
+
+    @Test
+    public void testBulkGrowth() {
+        int[] ints = new int[] {1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        long[] longs = new long[] {1, -1, Long.MAX_VALUE, Long.MIN_VALUE};
+        short[] shorts = new short[] {1, -1, Short.MAX_VALUE, Short.MIN_VALUE};
+        char[] chars = new char[] {'a', 0, Character.MAX_VALUE, 0x1234};
+        float[] floats = new float[] {1.5F, -0F, Float.NaN, Float.MAX_VALUE};
+        double[] doubles = new double[] {1.5D, -0D, Double.NaN, Double.MAX_VALUE};
+        String utf8 = "\u00e9t\u00e9 \u4e2d\u6587 long enough to not be written as ASCII, with more than sixty-four chars";
+
+        // every bulk write has to grow the buffer
+        ByteBuffer2 write = new ByteBuffer2(1, -1);
+        write.writeInts(ints);
+        write.writeLongs(longs);
+        write.writeShorts(shorts);
+        write.writeChars(chars);
+        write.writeFloats(floats);
+        write.writeDoubles(doubles);
+        write.writeString(utf8);
+        write.writeAscii("ascii");
+        write.writeBytes(new byte[] {1, 2, 3});
+
+        ByteBuffer2 read = new ByteBuffer2(write.toBytes());
+        Assert.assertArrayEquals(ints, read.readInts(4));
+        Assert.assertArrayEquals(longs, read.readLongs(4));
+        Assert.assertArrayEquals(shorts, read.readShorts(4));
+        Assert.assertArrayEquals(chars, read.readChars(4));
+        Assert.assertArrayEquals(floats, read.readFloats(4), 0F);
+        Assert.assertArrayEquals(doubles, read.readDoubles(4), 0D);
+        Assert.assertEquals(utf8, read.readString());
+        Assert.assertEquals("ascii", read.readString());
+        Assert.assertArrayEquals(new byte[] {1, 2, 3}, read.readBytes(3));
+    }
+
+    @Test
+    public void testReadStringVariants() {
+        String utf8 = "\u00e9t\u00e9 \u4e2d\u6587";
+        String[] strings = new String[] {"", "a", "ascii", utf8, null, "x"};
+
+        ByteBuffer2 write = new ByteBuffer2(16, -1);
+        for (String string : strings) {
+            write.writeString(string);
+        }
+        write.writeAscii("ascii only");
+        byte[] bytes = write.toBytes();
+
+        // char[] at an offset
+        ByteBuffer2 read = new ByteBuffer2(bytes);
+        char[] chars = new char[32];
+        for (String string : strings) {
+            int count = read.readString(chars, 3);
+            if (string == null) {
+                Assert.assertEquals(-1, count);
+            }
+            else {
+                Assert.assertEquals(string, new String(chars, 3, count));
+            }
+        }
+        Assert.assertEquals("ascii only", new String(chars, 3, read.readString(chars, 3)));
+        Assert.assertEquals(bytes.length, read.position());
+
+        // StringBuilder, appended to the existing content
+        read = new ByteBuffer2(bytes);
+        for (String string : strings) {
+            StringBuilder builder = new StringBuilder("prefix");
+            Assert.assertEquals(string != null, read.readString(builder));
+            Assert.assertEquals(string == null ? "prefix" : "prefix" + string, builder.toString());
+        }
+        StringBuilder builder = new StringBuilder();
+        Assert.assertTrue(read.readString(builder));
+        Assert.assertEquals("ascii only", builder.toString());
+
+        // CharBuffer
+        read = new ByteBuffer2(bytes);
+        for (String string : strings) {
+            CharBuffer buffer = CharBuffer.allocate(32);
+            Assert.assertEquals(string != null, read.readString(buffer));
+            buffer.flip();
+            Assert.assertEquals(string == null ? "" : string, buffer.toString());
+        }
+        CharBuffer buffer = CharBuffer.allocate(32);
+        Assert.assertTrue(read.readString(buffer));
+        buffer.flip();
+        Assert.assertEquals("ascii only", buffer.toString());
+    }
+
+    @Test
+    public void testReadStringTooLong() {
+        String utf8 = "\u00e9t\u00e9 \u4e2d\u6587";
+
+        ByteBuffer2 write = new ByteBuffer2(16, -1);
+        write.writeString("ascii");
+        write.writeString(utf8);
+
+        // the string does not fit, so the position is not changed and the string can still be read
+        ByteBuffer2 read = new ByteBuffer2(write.toBytes());
+        try {
+            read.readString(new char[5], 1);
+            Assert.fail("Expected an IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ignored) {
+        }
+        Assert.assertEquals(0, read.position());
+        Assert.assertEquals("ascii", read.readString());
+
+        int start = read.position();
+        CharBuffer buffer = CharBuffer.allocate(utf8.length() - 1);
+        try {
+            read.readString(buffer);
+            Assert.fail("Expected a BufferOverflowException");
+        } catch (BufferOverflowException ignored) {
+        }
+        Assert.assertEquals(start, read.position());
+        Assert.assertEquals(0, buffer.position());
+        Assert.assertEquals(utf8, read.readString());
+    }
+
+    @Test
+    public void testStringPool() {
+        String utf8 = "\u00e9t\u00e9";
+        String tooLong = "longer than the maximum pooled length";
+
+        ByteBuffer2 write = new ByteBuffer2(16, -1);
+        for (int i = 0; i < 3; i++) {
+            write.writeString("key");
+            write.writeString(utf8);
+            write.writeString("");
+            write.writeString(null);
+            write.writeString(tooLong);
+        }
+        byte[] bytes = write.toBytes();
+
+        InternPool pool = new InternPool();
+        ByteBuffer2 read = new ByteBuffer2(bytes);
+        read.setStringPool(pool, 16);
+
+        String key = read.readString();
+        String pooledUtf8 = read.readString();
+        Assert.assertEquals("key", key);
+        Assert.assertEquals(utf8, pooledUtf8);
+        Assert.assertEquals("", read.readString());
+        Assert.assertNull(read.readString());
+        String long1 = read.readString();
+        Assert.assertEquals(tooLong, long1);
+
+        for (int i = 1; i < 3; i++) {
+            // short strings are the same instance every time, longer strings are not pooled
+            Assert.assertSame(key, read.readString());
+            Assert.assertSame(pooledUtf8, read.readString());
+            Assert.assertEquals("", read.readString());
+            Assert.assertNull(read.readString());
+
+            String long2 = read.readString();
+            Assert.assertEquals(tooLong, long2);
+            Assert.assertNotSame(long1, long2);
+        }
+
+        // a second buffer with the same pool gets the same instances
+        ByteBuffer2 other = new ByteBuffer2(bytes);
+        other.setStringPool(pool, 16);
+        Assert.assertSame(key, other.readString());
+        Assert.assertSame(pooledUtf8, other.readString());
+
+        // without a pool, every read is a new instance
+        ByteBuffer2 unpooled = new ByteBuffer2(bytes);
+        unpooled.setStringPool(null, 16);
+        String first = unpooled.readString();
+        unpooled.setPosition(0);
+        Assert.assertEquals(key, first);
+        Assert.assertNotSame(first, unpooled.readString());
+    }
+
     @Test
     public void testSmallBuffers() throws Exception {
         ByteBuffer buf = ByteBuffer.allocate(1024);
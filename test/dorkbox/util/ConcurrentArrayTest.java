@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import dorkbox.util.collections.ConcurrentArray;
+
+public class ConcurrentArrayTest {
+    @Test
+    public void addAndRemove() {
+        ConcurrentArray<String> array = new ConcurrentArray<String>(String.class);
+        String a = "a";
+        String b = "b";
+        String c = "c";
+
+        assertEquals(0, array.elements().length);
+        assertTrue(array.add(a));
+        assertFalse(array.add(a));
+        assertEquals(2, array.addAll(b, c, b));
+        assertArrayEquals(new String[] {a, b, c}, array.elements());
+
+        assertTrue(array.remove(b));
+        assertFalse(array.remove(b));
+        assertArrayEquals(new String[] {a, c}, array.elements());
+        assertTrue(array.contains(c));
+        assertFalse(array.contains(b));
+
+        // elements are compared by identity, not equals()
+        assertFalse(array.contains(new String("c")));
+        assertFalse(array.remove(new String("c")));
+        assertTrue(array.add(new String("c")));
+        assertEquals(3, array.size());
+
+        assertTrue(array.remove(c));
+        assertEquals(2, array.size());
+        assertSame(a, array.elements()[0]);
+
+        // duplicates and missing elements are not counted
+        assertEquals(2, array.addAll(b, c));
+        assertEquals(2, array.removeAll(a, c, a, new String("b")));
+        assertEquals(2, array.size());
+        assertSame(b, array.elements()[1]);
+        assertEquals(0, array.removeAll(a, c));
+
+        array.clear();
+        assertEquals(0, array.size());
+        assertEquals(0, array.elements().length);
+    }
+
+    @Test
+    public void snapshotsAreNotModified() {
+        ConcurrentArray<Object> array = new ConcurrentArray<Object>();
+        Object a = new Object();
+        Object b = new Object();
+        array.addAll(a, b);
+
+        Object[] snapshot = array.elements();
+        array.remove(a);
+        array.add(new Object());
+        array.clear();
+
+        assertEquals(2, snapshot.length);
+        assertSame(a, snapshot[0]);
+        assertSame(b, snapshot[1]);
+    }
+
+    @Test
+    public void concurrentIteration() throws Exception {
+        final ConcurrentArray<Integer> array = new ConcurrentArray<Integer>(Integer.class);
+
+        // these are never removed, so every snapshot must contain them, in order
+        final Integer[] permanent = new Integer[] {-1, -2, -3};
+        array.addAll(permanent);
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final List<String> errors = new ArrayList<String>();
+        final List<Thread> readers = new ArrayList<Thread>();
+
+        for (int r = 0; r < 4; r++) {
+            readers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        Integer[] elements = array.elements();
+                        int found = 0;
+                        for (int i = 0; i < elements.length; i++) {
+                            Integer element = elements[i];
+                            if (element == null) {
+                                addError(errors, "null element at " + i);
+                                return;
+                            }
+                            if (found < permanent.length && element == permanent[found]) {
+                                found++;
+                            }
+                        }
+
+                        if (found != permanent.length) {
+                            addError(errors, "missing permanent elements");
+                            return;
+                        }
+                    }
+                }
+            }));
+        }
+
+        for (Thread reader : readers) {
+            reader.start();
+        }
+
+        Integer[] values = new Integer[64];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = new Integer(i);
+        }
+
+        for (int round = 0; round < 2000; round++) {
+            for (int i = 0; i < values.length; i++) {
+                array.add(values[i]);
+            }
+            for (int i = 0; i < values.length; i += 2) {
+                array.remove(values[i]);
+            }
+            array.removeAll(values);
+        }
+
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join(10000);
+        }
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertArrayEquals(permanent, array.elements());
+    }
+
+    private static void addError(final List<String> errors, final String error) {
+        synchronized (errors) {
+            errors.add(error);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import dorkbox.util.collections.ConcurrentIntSet;
+import dorkbox.util.collections.IntSet;
+
+public class ConcurrentIntSetTest {
+    @Test
+    public void addContainsRemove() {
+        ConcurrentIntSet set = new ConcurrentIntSet(2, 0.7F);
+        assertTrue(set.isEmpty());
+
+        // 0, negative numbers and the extremes are ordinary keys
+        int[] keys = {0, -1, 1, Integer.MIN_VALUE, Integer.MAX_VALUE, 42};
+        for (int key : keys) {
+            assertTrue(set.add(key));
+            assertFalse(set.add(key));
+        }
+        assertEquals(keys.length, set.size());
+
+        for (int key : keys) {
+            assertTrue(set.contains(key));
+            assertTrue(set.remove(key));
+            assertFalse(set.remove(key));
+            assertFalse(set.contains(key));
+        }
+        assertTrue(set.isEmpty());
+
+        // re-adding removed keys must not leave duplicates behind
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(set.add(i));
+            assertTrue(set.remove(i));
+            assertTrue(set.add(i));
+        }
+        assertEquals(1000, set.size());
+        assertEquals(1000, set.toArray().size);
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(1));
+    }
+
+    @Test
+    public void concurrentAddRemove() throws Exception {
+        final int threadCount = 4;
+        final int ownKeys = 2000;
+        final int sharedKeys = 5000;
+        final int rounds = 20;
+
+        // a tiny initial capacity, so the table is resized many times while the threads are running
+        final ConcurrentIntSet set = new ConcurrentIntSet(2, 0.7F);
+
+        final List<String> errors = new ArrayList<String>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger sharedAdded = new AtomicInteger();
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < threadCount; t++) {
+            final int thread = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    awaitQuietly(start);
+
+                    // only this thread changes its own keys, so every result is exact
+                    int base = -(thread + 1) * 1000000;
+                    for (int round = 0; round < rounds; round++) {
+                        for (int i = 0; i < ownKeys; i++) {
+                            int key = base - i;
+                            if (!set.add(key)) {
+                                addError(errors, "add(" + key + ") returned false in round " + round);
+                                return;
+                            }
+                            if (!set.contains(key)) {
+                                addError(errors, "contains(" + key + ") returned false after add in round " + round);
+                                return;
+                            }
+                        }
+
+                        // leave the last round in the set
+                        if (round == rounds - 1) {
+                            break;
+                        }
+
+                        for (int i = 0; i < ownKeys; i++) {
+                            int key = base - i;
+                            if (!set.remove(key)) {
+                                addError(errors, "remove(" + key + ") returned false in round " + round);
+                                return;
+                            }
+                            if (set.contains(key)) {
+                                addError(errors, "contains(" + key + ") returned true after remove in round " + round);
+                                return;
+                            }
+                        }
+                    }
+
+                    // every thread adds every shared key, but only one add per key may succeed
+                    for (int i = 0; i < sharedKeys; i++) {
+                        int key = thread % 2 == 0 ? i : sharedKeys - 1 - i;
+                        if (set.add(key)) {
+                            sharedAdded.incrementAndGet();
+                        }
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(sharedKeys, sharedAdded.get());
+
+        int expectedSize = threadCount * ownKeys + sharedKeys;
+        assertEquals(expectedSize, set.size());
+        assertEquals(expectedSize, set.toArray().size);
+
+        IntSet copy = set.toIntSet();
+        assertEquals(expectedSize, copy.size);
+        for (int i = 0; i < sharedKeys; i++) {
+            assertTrue(set.contains(i));
+            assertTrue(copy.contains(i));
+        }
+        for (int t = 0; t < threadCount; t++) {
+            int base = -(t + 1) * 1000000;
+            for (int i = 0; i < ownKeys; i++) {
+                assertTrue(set.contains(base - i));
+                assertTrue(copy.contains(base - i));
+            }
+        }
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private static void addError(final List<String> errors, final String error) {
+        synchronized (errors) {
+            errors.add(error);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.junit.Test;
+
+import dorkbox.util.collections.ConcurrentObjectSet;
+import dorkbox.util.collections.ObjectSet;
+
+public class ConcurrentObjectSetTest {
+    @Test
+    public void addGetRemove() {
+        ConcurrentObjectSet<String> set = new ConcurrentObjectSet<String>(2, 0.7F);
+        assertTrue(set.isEmpty());
+
+        String first = new String("key");
+        assertTrue(set.add(first));
+        assertFalse(set.add(new String("key")));
+        assertSame(first, set.get(new String("key")));
+        assertNull(set.get("missing"));
+
+        assertTrue(set.remove(new String("key")));
+        assertFalse(set.remove("key"));
+        assertFalse(set.contains("key"));
+        assertTrue(set.isEmpty());
+
+        // re-adding removed keys must not leave duplicates behind
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(set.add("key" + i));
+            assertTrue(set.remove("key" + i));
+            assertTrue(set.add("key" + i));
+        }
+        assertEquals(1000, set.size());
+        assertEquals(1000, set.toArray().size);
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains("key1"));
+    }
+
+    @Test
+    public void concurrentAddRemove() throws Exception {
+        final int threadCount = 4;
+        final int ownKeys = 2000;
+        final int sharedKeys = 5000;
+        final int rounds = 20;
+
+        // a tiny initial capacity, so the table is resized many times while the threads are running
+        final ConcurrentObjectSet<String> set = new ConcurrentObjectSet<String>(2, 0.7F);
+
+        final List<String> errors = new ArrayList<String>();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        // the instance whose add() succeeded, for each shared key
+        final AtomicReferenceArray<String> winners = new AtomicReferenceArray<String>(sharedKeys);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < threadCount; t++) {
+            final int thread = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    awaitQuietly(start);
+
+                    // only this thread changes its own keys, so every result is exact
+                    String prefix = "thread" + thread + "-";
+                    for (int round = 0; round < rounds; round++) {
+                        for (int i = 0; i < ownKeys; i++) {
+                            String key = prefix + i;
+                            if (!set.add(key)) {
+                                addError(errors, "add(" + key + ") returned false in round " + round);
+                                return;
+                            }
+                            if (set.get(prefix + i) != key) {
+                                addError(errors, "get(" + key + ") did not return the added key in round " + round);
+                                return;
+                            }
+                        }
+
+                        // leave the last round in the set
+                        if (round == rounds - 1) {
+                            break;
+                        }
+
+                        for (int i = 0; i < ownKeys; i++) {
+                            String key = prefix + i;
+                            if (!set.remove(key)) {
+                                addError(errors, "remove(" + key + ") returned false in round " + round);
+                                return;
+                            }
+                            if (set.contains(key)) {
+                                addError(errors, "contains(" + key + ") returned true after remove in round " + round);
+                                return;
+                            }
+                        }
+                    }
+
+                    // every thread adds every shared key (as its own instance), but only one add per key may succeed
+                    for (int i = 0; i < sharedKeys; i++) {
+                        int index = thread % 2 == 0 ? i : sharedKeys - 1 - i;
+                        String key = new String("shared" + index);
+                        if (set.add(key) && !winners.compareAndSet(index, null, key)) {
+                            addError(errors, "add(" + key + ") succeeded more than once");
+                            return;
+                        }
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(errors.toString(), errors.isEmpty());
+
+        int expectedSize = threadCount * ownKeys + sharedKeys;
+        assertEquals(expectedSize, set.size());
+        assertEquals(expectedSize, set.toArray().size);
+
+        ObjectSet<String> copy = set.toObjectSet();
+        assertEquals(expectedSize, copy.size);
+        for (int i = 0; i < sharedKeys; i++) {
+            assertSame(winners.get(i), set.get("shared" + i));
+            assertTrue(copy.contains("shared" + i));
+        }
+        for (int t = 0; t < threadCount; t++) {
+            for (int i = 0; i < ownKeys; i++) {
+                assertTrue(set.contains("thread" + t + "-" + i));
+                assertTrue(copy.contains("thread" + t + "-" + i));
+            }
+        }
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private static void addError(final List<String> errors, final String error) {
+        synchronized (errors) {
+            errors.add(error);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import dorkbox.util.bytes.ByteBuffer2;
+import dorkbox.util.collections.CuckooFilter;
+
+public class CuckooFilterTest {
+    @Test
+    public void addContainsRemove() {
+        CuckooFilter filter = new CuckooFilter(10000, 0.001D);
+
+        int added = 0;
+        for (long i = 0; i < 10000; i++) {
+            if (filter.add(i)) {
+                added++;
+            }
+        }
+        assertEquals(10000, added);
+        assertEquals(10000, filter.size());
+
+        for (long i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain(i));
+        }
+
+        int falsePositives = 0;
+        for (long i = 10000; i < 110000; i++) {
+            if (filter.mightContain(i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("false positives: " + falsePositives, falsePositives < 300);
+
+        for (long i = 0; i < 10000; i += 2) {
+            assertTrue(filter.remove(i));
+        }
+        assertEquals(5000, filter.size());
+        for (long i = 1; i < 10000; i += 2) {
+            assertTrue(filter.mightContain(i));
+        }
+
+        filter.clear();
+        assertEquals(0, filter.size());
+        assertFalse(filter.mightContain(1L));
+    }
+
+    @Test
+    public void writeAndRead() {
+        CuckooFilter filter = new CuckooFilter(2000, 0.01D);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.add(("value" + i).getBytes()));
+            assertTrue(filter.add("string" + i));
+        }
+
+        ByteBuffer2 buffer = new ByteBuffer2(64, -1);
+        filter.write(buffer);
+        buffer.rewind();
+
+        CuckooFilter read = CuckooFilter.read(buffer);
+        assertEquals(filter.size(), read.size());
+        assertEquals(filter.capacity(), read.capacity());
+        assertEquals(filter.fingerprintBits(), read.fingerprintBits());
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(read.mightContain(("value" + i).getBytes()));
+            assertTrue(read.mightContain("string" + i));
+        }
+    }
+
+    // values that were added must always be found, even while other values are being relocated to make room
+    @Test
+    public void concurrentAddAndContains() throws Exception {
+        for (int round = 0; round < 10; round++) {
+            final int count = 1 << 16;
+            final CuckooFilter filter = new CuckooFilter(count, 0.001D);
+
+            final AtomicInteger added = new AtomicInteger();
+            final AtomicBoolean running = new AtomicBoolean(true);
+            final List<String> errors = new ArrayList<String>();
+            final List<Thread> readers = new ArrayList<Thread>();
+
+            for (int r = 0; r < 3; r++) {
+                final int seed = r;
+                readers.add(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        int random = 0x2545F491 + seed;
+                        while (running.get()) {
+                            int max = added.get();
+                            if (max == 0) {
+                                continue;
+                            }
+
+                            // check the most recent values (more likely to be relocated) as well as random older ones
+                            random ^= random << 13;
+                            random ^= random >>> 17;
+                            random ^= random << 5;
+
+                            int value = (random & 1) == 0 ? max - 1 - ((random >>> 1) & 63) : (random >>> 1) % max;
+                            if (value >= 0 && !filter.mightContain((long) value)) {
+                                synchronized (errors) {
+                                    errors.add("missing " + value + " of " + max);
+                                }
+                                return;
+                            }
+                        }
+                    }
+                }));
+            }
+
+            for (Thread reader : readers) {
+                reader.start();
+            }
+
+            // fill the filter until it is full, which forces more and longer relocations
+            for (int i = 0; i < filter.capacity(); i++) {
+                if (!filter.add((long) i)) {
+                    break;
+                }
+                added.lazySet(i + 1);
+            }
+
+            running.set(false);
+            for (Thread reader : readers) {
+                reader.join(10000);
+            }
+
+            assertTrue(errors.toString(), errors.isEmpty());
+            assertTrue(added.get() > count * 9 / 10);
+        }
+    }
+}
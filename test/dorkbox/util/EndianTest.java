@@ -0,0 +1,274 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import dorkbox.util.bytes.BigEndian;
+import dorkbox.util.bytes.LittleEndian;
+
+/**
+ * The bulk array conversions must give exactly the same bytes (and values) as the scalar conversions.
+ */
+public class EndianTest {
+    private static final int COUNT = 1027;
+    private static final int OFFSET = 3; // not aligned
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void bigEndianShorts() {
+        short[] values = new short[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            values[i] = (short) this.random.nextInt();
+        }
+
+        byte[] expected = new byte[OFFSET + COUNT * 2];
+        for (int i = 0; i < COUNT; i++) {
+            BigEndian.Short_.toBytes(values[i], expected, OFFSET + i * 2);
+        }
+
+        byte[] bytes = new byte[OFFSET + COUNT * 2];
+        BigEndian.Short_.toBytes(values, bytes, OFFSET);
+        assertArrayEquals(expected, bytes);
+
+        short[] actual = new short[COUNT];
+        BigEndian.Short_.from(bytes, OFFSET, actual);
+        assertArrayEquals(values, actual);
+
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(values[i], BigEndian.Short_.from(bytes, OFFSET + i * 2, 2));
+        }
+    }
+
+    @Test
+    public void littleEndianShorts() {
+        short[] values = new short[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            values[i] = (short) this.random.nextInt();
+        }
+
+        byte[] expected = new byte[OFFSET + COUNT * 2];
+        for (int i = 0; i < COUNT; i++) {
+            LittleEndian.Short_.toBytes(values[i], expected, OFFSET + i * 2);
+        }
+
+        byte[] bytes = new byte[OFFSET + COUNT * 2];
+        LittleEndian.Short_.toBytes(values, bytes, OFFSET);
+        assertArrayEquals(expected, bytes);
+
+        short[] actual = new short[COUNT];
+        LittleEndian.Short_.from(bytes, OFFSET, actual);
+        assertArrayEquals(values, actual);
+
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(values[i], LittleEndian.Short_.from(bytes, OFFSET + i * 2, 2));
+        }
+    }
+
+    @Test
+    public void bigEndianInts() {
+        int[] values = new int[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            values[i] = this.random.nextInt();
+        }
+
+        byte[] expected = new byte[OFFSET + COUNT * 4];
+        for (int i = 0; i < COUNT; i++) {
+            BigEndian.Int_.toBytes(values[i], expected, OFFSET + i * 4);
+        }
+
+        byte[] bytes = new byte[OFFSET + COUNT * 4];
+        BigEndian.Int_.toBytes(values, bytes, OFFSET);
+        assertArrayEquals(expected, bytes);
+
+        int[] actual = new int[COUNT];
+        BigEndian.Int_.from(bytes, OFFSET, actual);
+        assertArrayEquals(values, actual);
+
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(values[i], BigEndian.Int_.from(bytes, OFFSET + i * 4, 4));
+        }
+    }
+
+    @Test
+    public void littleEndianInts() {
+        int[] values = new int[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            values[i] = this.random.nextInt();
+        }
+
+        byte[] expected = new byte[OFFSET + COUNT * 4];
+        for (int i = 0; i < COUNT; i++) {
+            LittleEndian.Int_.toBytes(values[i], expected, OFFSET + i * 4);
+        }
+
+        byte[] bytes = new byte[OFFSET + COUNT * 4];
+        LittleEndian.Int_.toBytes(values, bytes, OFFSET);
+        assertArrayEquals(expected, bytes);
+
+        int[] actual = new int[COUNT];
+        LittleEndian.Int_.from(bytes, OFFSET, actual);
+        assertArrayEquals(values, actual);
+
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(values[i], LittleEndian.Int_.from(bytes, OFFSET + i * 4, 4));
+        }
+    }
+
+    @Test
+    public void bigEndianLongs() {
+        long[] values = new long[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            values[i] = this.random.nextLong();
+        }
+
+        byte[] expected = new byte[OFFSET + COUNT * 8];
+        for (int i = 0; i < COUNT; i++) {
+            BigEndian.Long_.toBytes(values[i], expected, OFFSET + i * 8);
+        }
+
+        byte[] bytes = new byte[OFFSET + COUNT * 8];
+        BigEndian.Long_.toBytes(values, bytes, OFFSET);
+        assertArrayEquals(expected, bytes);
+
+        long[] actual = new long[COUNT];
+        BigEndian.Long_.from(bytes, OFFSET, actual);
+        assertArrayEquals(values, actual);
+
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(values[i], BigEndian.Long_.from(bytes, OFFSET + i * 8, 8));
+        }
+    }
+
+    @Test
+    public void littleEndianLongs() {
+        long[] values = new long[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            values[i] = this.random.nextLong();
+        }
+
+        byte[] expected = new byte[OFFSET + COUNT * 8];
+        for (int i = 0; i < COUNT; i++) {
+            LittleEndian.Long_.toBytes(values[i], expected, OFFSET + i * 8);
+        }
+
+        byte[] bytes = new byte[OFFSET + COUNT * 8];
+        LittleEndian.Long_.toBytes(values, bytes, OFFSET);
+        assertArrayEquals(expected, bytes);
+
+        long[] actual = new long[COUNT];
+        LittleEndian.Long_.from(bytes, OFFSET, actual);
+        assertArrayEquals(values, actual);
+
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(values[i], LittleEndian.Long_.from(bytes, OFFSET + i * 8, 8));
+        }
+    }
+
+    @Test
+    public void floats() {
+        float[] values = new float[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            values[i] = Float.intBitsToFloat(this.random.nextInt());
+        }
+
+        byte[] big = new byte[OFFSET + COUNT * 4];
+        byte[] little = new byte[OFFSET + COUNT * 4];
+        BigEndian.Float_.toBytes(values, big, OFFSET);
+        LittleEndian.Float_.toBytes(values, little, OFFSET);
+
+        for (int i = 0; i < COUNT; i++) {
+            int bits = Float.floatToRawIntBits(values[i]);
+            assertEquals(bits, BigEndian.Int_.from(big, OFFSET + i * 4, 4));
+            assertEquals(bits, LittleEndian.Int_.from(little, OFFSET + i * 4, 4));
+            assertEquals(bits, Float.floatToRawIntBits(BigEndian.Float_.from(big, OFFSET + i * 4)));
+            assertEquals(bits, Float.floatToRawIntBits(LittleEndian.Float_.from(little, OFFSET + i * 4)));
+        }
+
+        float[] actual = new float[COUNT];
+        BigEndian.Float_.from(big, OFFSET, actual);
+        assertFloatBitsEqual(values, actual);
+
+        actual = new float[COUNT];
+        LittleEndian.Float_.from(little, OFFSET, actual);
+        assertFloatBitsEqual(values, actual);
+    }
+
+    @Test
+    public void doubles() {
+        double[] values = new double[COUNT];
+        for (int i = 0; i < COUNT; i++) {
+            values[i] = Double.longBitsToDouble(this.random.nextLong());
+        }
+
+        byte[] big = new byte[OFFSET + COUNT * 8];
+        byte[] little = new byte[OFFSET + COUNT * 8];
+        BigEndian.Double_.toBytes(values, big, OFFSET);
+        LittleEndian.Double_.toBytes(values, little, OFFSET);
+
+        for (int i = 0; i < COUNT; i++) {
+            long bits = Double.doubleToRawLongBits(values[i]);
+            assertEquals(bits, BigEndian.Long_.from(big, OFFSET + i * 8, 8));
+            assertEquals(bits, LittleEndian.Long_.from(little, OFFSET + i * 8, 8));
+            assertEquals(bits, Double.doubleToRawLongBits(BigEndian.Double_.from(big, OFFSET + i * 8)));
+            assertEquals(bits, Double.doubleToRawLongBits(LittleEndian.Double_.from(little, OFFSET + i * 8)));
+        }
+
+        double[] actual = new double[COUNT];
+        BigEndian.Double_.from(big, OFFSET, actual);
+        assertDoubleBitsEqual(values, actual);
+
+        actual = new double[COUNT];
+        LittleEndian.Double_.from(little, OFFSET, actual);
+        assertDoubleBitsEqual(values, actual);
+    }
+
+    @Test
+    public void partialRange() {
+        int[] values = new int[] {1, 2, 3, 4, 5, 6, 7, 8};
+
+        byte[] bytes = new byte[12];
+        BigEndian.Int_.toBytes(values, 2, 3, bytes, 0);
+        assertEquals(3, BigEndian.Int_.from(bytes, 0, 4));
+        assertEquals(4, BigEndian.Int_.from(bytes, 4, 4));
+        assertEquals(5, BigEndian.Int_.from(bytes, 8, 4));
+
+        int[] actual = new int[5];
+        BigEndian.Int_.from(bytes, 4, actual, 1, 2);
+        assertArrayEquals(new int[] {0, 4, 5, 0, 0}, actual);
+    }
+
+    // NaN values must keep their exact bits, which assertArrayEquals for floats/doubles does not check
+    private static void assertFloatBitsEqual(float[] expected, float[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(Float.floatToRawIntBits(expected[i]), Float.floatToRawIntBits(actual[i]));
+        }
+    }
+
+    private static void assertDoubleBitsEqual(double[] expected, double[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(expected[i]), Double.doubleToRawLongBits(actual[i]));
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class IndexedThreadLocalTest {
+    @Test
+    public void getSetRemove() throws Exception {
+        final IndexedThreadLocal<String> local = new IndexedThreadLocal<String>() {
+            @Override
+            public String initialValue() {
+                return "initial";
+            }
+        };
+
+        assertEquals("initial", local.get());
+        local.set("main");
+        assertEquals("main", local.get());
+
+        // other threads (of both kinds) have their own value
+        final List<String> seen = new ArrayList<String>();
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                String first = local.get();
+                local.set(Thread.currentThread().getName());
+                synchronized (seen) {
+                    seen.add(first);
+                    seen.add(local.get());
+                }
+            }
+        };
+
+        Thread thread = new Thread(runnable, "plain");
+        thread.start();
+        thread.join();
+
+        thread = new IndexedThread(runnable, "indexed");
+        thread.start();
+        thread.join();
+
+        assertEquals("[initial, plain, initial, indexed]", seen.toString());
+        assertEquals("main", local.get());
+
+        local.remove();
+        assertEquals("initial", local.get());
+    }
+
+    @Test
+    public void namedThreadFactory() throws Exception {
+        final IndexedThreadLocal<Object> local = new IndexedThreadLocal<Object>();
+        final Object value = new Object();
+        final Object[] result = new Object[2];
+
+        Thread thread = new NamedThreadFactory("indexedTest", false).newThread(new Runnable() {
+            @Override
+            public void run() {
+                result[0] = local.get();
+                local.set(value);
+                result[1] = local.get();
+            }
+        });
+        assertTrue(thread instanceof IndexedThread);
+
+        thread.start();
+        thread.join();
+
+        assertNull(result[0]);
+        assertSame(value, result[1]);
+    }
+
+    // many threads at the same time, so that the chunks have to be grown while other threads are using them
+    @Test
+    public void concurrentThreads() throws Exception {
+        final IndexedThreadLocal<Integer> local = new IndexedThreadLocal<Integer>();
+        final int threadCount = 200;
+
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        final List<Thread> threads = new ArrayList<Thread>();
+
+        for (int i = 0; i < threadCount; i++) {
+            final Integer value = i;
+            Runnable runnable = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < 10000; j++) {
+                            local.set(value);
+                            if (local.get() != value) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+
+            threads.add(i % 2 == 0 ? new Thread(runnable) : new IndexedThread(runnable));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, failures.get());
+    }
+
+    // the values of exited threads are removed (and their indices reused) once the threads are garbage collected
+    @Test
+    public void threadExited() throws Exception {
+        final List<Object> exited = new ArrayList<Object>();
+        final IndexedThreadLocal<Object> local = new IndexedThreadLocal<Object>() {
+            @Override
+            protected void threadExited(final Object value) {
+                synchronized (exited) {
+                    exited.add(value);
+                }
+            }
+        };
+
+        final int threadCount = 8;
+        final Object[] values = new Object[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            values[i] = "value" + i;
+        }
+
+        startAndJoin(local, values);
+
+        long deadline = System.currentTimeMillis() + 30000;
+        while (System.currentTimeMillis() < deadline) {
+            System.gc();
+            IndexedThreadLocal.expungeExitedThreads();
+
+            synchronized (exited) {
+                if (exited.size() == threadCount) {
+                    break;
+                }
+            }
+            Thread.sleep(10);
+        }
+
+        synchronized (exited) {
+            assertEquals(threadCount, exited.size());
+            for (Object value : values) {
+                assertTrue(exited.contains(value));
+            }
+        }
+
+        // the indices of the exited threads are reused, instead of growing
+        int indexCount = IndexedThreadLocal.indexCount();
+        startAndJoin(local, values);
+        assertEquals(indexCount, IndexedThreadLocal.indexCount());
+    }
+
+    // the threads are not referenced after this returns, so they can be collected
+    private static void startAndJoin(final IndexedThreadLocal<Object> local, final Object[] values) throws InterruptedException {
+        Thread[] threads = new Thread[values.length];
+        for (int i = 0; i < values.length; i++) {
+            final Object value = values[i];
+            Runnable runnable = new Runnable() {
+                @Override
+                public void run() {
+                    local.set(value);
+                }
+            };
+            threads[i] = i % 2 == 0 ? new Thread(runnable) : new IndexedThread(runnable);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
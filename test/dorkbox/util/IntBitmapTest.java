@@ -0,0 +1,230 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import dorkbox.util.bytes.ByteBuffer2;
+import dorkbox.util.collections.IntBitmap;
+
+public class IntBitmapTest {
+    // the chunks (high 16 bits) that values are generated in, including both ends of the int range and both sides of zero
+    private static final int[] CHUNKS = new int[] {0, 1, 7, -1, -2, 0x7FFF, -0x8000};
+
+    /**
+     * Generates a value in one of a few chunks. Values are clustered near the start of each chunk, so that chunks become dense enough to be
+     * stored as bitmaps.
+     */
+    private static
+    int value(final Random random) {
+        int chunk = CHUNKS[random.nextInt(CHUNKS.length)];
+        int low = random.nextBoolean() ? random.nextInt(65536) : random.nextInt(12000);
+        return chunk << 16 | low;
+    }
+
+    private static
+    void addRange(final IntBitmap bitmap, final TreeSet<Integer> expected, final int start, final int length) {
+        for (int i = 0; i < length; i++) {
+            int value = start + i;
+            assertEquals(expected.add(value), bitmap.add(value));
+        }
+    }
+
+    private static
+    void removeRange(final IntBitmap bitmap, final TreeSet<Integer> expected, final int start, final int length) {
+        for (int i = 0; i < length; i++) {
+            int value = start + i;
+            assertEquals(expected.remove(value), bitmap.remove(value));
+        }
+    }
+
+    private static
+    int[] toArray(final TreeSet<Integer> set) {
+        int[] array = new int[set.size()];
+        int i = 0;
+        for (Integer value : set) {
+            array[i++] = value;
+        }
+        return array;
+    }
+
+    private static
+    void check(final IntBitmap bitmap, final TreeSet<Integer> expected, final Random random) {
+        int[] values = toArray(expected);
+
+        assertEquals(values.length, bitmap.size);
+        assertEquals(values.length, bitmap.cardinality());
+        assertEquals(values.length == 0, bitmap.isEmpty());
+        assertArrayEquals(values, bitmap.toArray());
+
+        IntBitmap.BitmapIterator iterator = new IntBitmap.BitmapIterator(bitmap);
+        for (int value : values) {
+            assertTrue(iterator.hasNext);
+            assertEquals(value, iterator.next());
+        }
+        assertFalse(iterator.hasNext);
+
+        if (values.length > 0) {
+            assertEquals(values[0], bitmap.first());
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            int value = value(random);
+            assertEquals(expected.contains(value), bitmap.contains(value));
+        }
+
+        // a round trip through the wire format keeps the containers as they are
+        ByteBuffer2 buffer = new ByteBuffer2(16, -1);
+        bitmap.write(buffer);
+        IntBitmap read = IntBitmap.read(new ByteBuffer2(buffer.toBytes()));
+        assertEquals(bitmap, read);
+        assertEquals(bitmap.hashCode(), read.hashCode());
+        assertArrayEquals(values, read.toArray());
+    }
+
+    @Test
+    public void matchesTreeSet() {
+        for (int seed = 0; seed < 10; seed++) {
+            Random random = new Random(seed);
+            IntBitmap bitmap = new IntBitmap(1);
+            TreeSet<Integer> expected = new TreeSet<Integer>();
+
+            for (int op = 0; op < 2000; op++) {
+                int choice = random.nextInt(100);
+                if (choice < 40) {
+                    int value = value(random);
+                    assertEquals(expected.add(value), bitmap.add(value));
+                }
+                else if (choice < 55) {
+                    // long runs make array chunks into bitmaps, and are compressed by runOptimize()
+                    addRange(bitmap, expected, value(random), random.nextInt(6000));
+                }
+                else if (choice < 80) {
+                    int value = value(random);
+                    assertEquals(expected.remove(value), bitmap.remove(value));
+                }
+                else if (choice < 90) {
+                    // removing a long range turns bitmaps back into arrays, and empties chunks
+                    removeRange(bitmap, expected, value(random), random.nextInt(20000));
+                }
+                else if (choice < 98) {
+                    bitmap.runOptimize();
+                }
+                else {
+                    check(bitmap, expected, random);
+                }
+            }
+
+            check(bitmap, expected, random);
+            bitmap.runOptimize();
+            check(bitmap, expected, random);
+
+            // the values must be the same, whatever the containers are
+            IntBitmap copy = new IntBitmap(1);
+            copy.addAll(bitmap.toArray());
+            assertArrayEquals(bitmap.toArray(), copy.toArray());
+
+            bitmap.clear();
+            expected.clear();
+            check(bitmap, expected, random);
+        }
+    }
+
+    @Test
+    public void setOperations() {
+        for (int seed = 0; seed < 25; seed++) {
+            Random random = new Random(seed);
+
+            IntBitmap a = new IntBitmap();
+            IntBitmap b = new IntBitmap();
+            TreeSet<Integer> expectedA = new TreeSet<Integer>();
+            TreeSet<Integer> expectedB = new TreeSet<Integer>();
+
+            // each set has a different mix of sparse values and runs, so every pair of container types is combined
+            for (int i = 0, n = random.nextInt(6); i < n; i++) {
+                addRange(a, expectedA, value(random), random.nextInt(8000));
+                addRange(b, expectedB, value(random), random.nextInt(8000));
+            }
+            for (int i = 0, n = random.nextInt(3000); i < n; i++) {
+                int value = value(random);
+                a.add(value);
+                expectedA.add(value);
+            }
+            for (int i = 0, n = random.nextInt(3000); i < n; i++) {
+                int value = value(random);
+                b.add(value);
+                expectedB.add(value);
+            }
+
+            if (random.nextBoolean()) {
+                a.runOptimize();
+            }
+            if (random.nextBoolean()) {
+                b.runOptimize();
+            }
+
+            TreeSet<Integer> and = new TreeSet<Integer>(expectedA);
+            and.retainAll(expectedB);
+            TreeSet<Integer> or = new TreeSet<Integer>(expectedA);
+            or.addAll(expectedB);
+            TreeSet<Integer> andNot = new TreeSet<Integer>(expectedA);
+            andNot.removeAll(expectedB);
+
+            check(IntBitmap.and(a, b), and, random);
+            check(IntBitmap.or(a, b), or, random);
+            check(IntBitmap.andNot(a, b), andNot, random);
+            assertEquals(!and.isEmpty(), IntBitmap.intersects(a, b));
+            assertEquals(!and.isEmpty(), IntBitmap.intersects(b, a));
+
+            // the inputs are not changed
+            check(a, expectedA, random);
+            check(b, expectedB, random);
+
+            IntBitmap union = new IntBitmap(a);
+            union.addAll(b);
+            check(union, or, random);
+            check(a, expectedA, random);
+        }
+    }
+
+    @Test
+    public void emptyAndExtremes() {
+        IntBitmap bitmap = new IntBitmap();
+        try {
+            bitmap.first();
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException ignored) {
+        }
+
+        // ordered the same as signed ints
+        bitmap.addAll(Integer.MAX_VALUE, 0, -1, Integer.MIN_VALUE, 65536, -65536);
+        assertArrayEquals(new int[] {Integer.MIN_VALUE, -65536, -1, 0, 65536, Integer.MAX_VALUE}, bitmap.toArray());
+        assertEquals(Integer.MIN_VALUE, bitmap.first());
+
+        assertFalse(IntBitmap.intersects(bitmap, new IntBitmap()));
+        assertTrue(IntBitmap.and(bitmap, new IntBitmap()).isEmpty());
+        assertEquals(bitmap, IntBitmap.or(bitmap, new IntBitmap()));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import dorkbox.util.collections.LockFreeIdBiMap;
+
+public class LockFreeIdBiMapTest {
+    @Test
+    public void internAndGet() {
+        LockFreeIdBiMap<String> map = new LockFreeIdBiMap<String>(2, 0.7F);
+        assertTrue(map.isEmpty());
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.intern("key" + i));
+        }
+
+        // equal (not identical) keys get the same id
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, map.intern(new String("key" + i)));
+            assertEquals(i, map.get("key" + i));
+            assertEquals("key" + i, map.get(i));
+        }
+
+        assertEquals(1000, map.size());
+        assertEquals(LockFreeIdBiMap.NOT_FOUND, map.get("missing"));
+        assertFalse(map.containsKey("missing"));
+        assertNull(map.get(1000));
+        assertNull(map.get(-1));
+    }
+
+    @Test
+    public void concurrentIntern() throws Exception {
+        final int keyCount = 20000;
+        final int writerCount = 4;
+
+        // a tiny initial capacity, so the table is resized many times while the threads are interning
+        final LockFreeIdBiMap<String> map = new LockFreeIdBiMap<String>(2, 0.7F);
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final List<String> errors = new ArrayList<String>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final int[][] ids = new int[writerCount][keyCount];
+
+        List<Thread> writers = new ArrayList<Thread>();
+        for (int w = 0; w < writerCount; w++) {
+            final int writer = w;
+            writers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    awaitQuietly(start);
+
+                    // every writer interns every key, but in a different order
+                    for (int i = 0; i < keyCount; i++) {
+                        int key = writer % 2 == 0 ? i : keyCount - 1 - i;
+                        ids[writer][key] = map.intern("key" + key);
+                    }
+                }
+            }));
+        }
+
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int r = 0; r < 2; r++) {
+            readers.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    awaitQuietly(start);
+
+                    int key = 0;
+                    while (running.get()) {
+                        // if the ID of an object is visible, so is the object for that ID
+                        String value = "key" + key;
+                        int id = map.get(value);
+                        if (id != LockFreeIdBiMap.NOT_FOUND && !value.equals(map.get(id))) {
+                            addError(errors, value + " has id " + id + ", but that id maps to " + map.get(id));
+                            return;
+                        }
+
+                        key = (key + 7) % keyCount;
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : writers) {
+            thread.start();
+        }
+        for (Thread thread : readers) {
+            thread.start();
+        }
+
+        start.countDown();
+        for (Thread thread : writers) {
+            thread.join();
+        }
+        running.set(false);
+        for (Thread thread : readers) {
+            thread.join();
+        }
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(keyCount, map.size());
+
+        // every writer saw the same id for a key, and the ids are exactly 0..keyCount-1
+        Set<Integer> seen = new HashSet<Integer>();
+        for (int key = 0; key < keyCount; key++) {
+            int id = ids[0][key];
+            for (int w = 1; w < writerCount; w++) {
+                assertEquals(id, ids[w][key]);
+            }
+
+            assertTrue(id >= 0 && id < keyCount);
+            assertTrue(seen.add(id));
+            assertEquals("key" + key, map.get(id));
+            assertEquals(id, map.get("key" + key));
+        }
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private static void addError(final List<String> errors, final String error) {
+        synchronized (errors) {
+            errors.add(error);
+        }
+    }
+}
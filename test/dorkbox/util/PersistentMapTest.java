@@ -0,0 +1,337 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import dorkbox.util.collections.IntMap;
+import dorkbox.util.collections.ObjectMap;
+import dorkbox.util.collections.PersistentIntMap;
+import dorkbox.util.collections.PersistentObjectMap;
+
+public class PersistentMapTest {
+    /**
+     * A key with a chosen hash code, so that keys can be forced to collide (completely, or only in some levels of the trie).
+     */
+    private static final
+    class Key {
+        final int id;
+        final int hash;
+
+        Key(final int id, final int hash) {
+            this.id = id;
+            this.hash = hash;
+        }
+
+        @Override
+        public
+        int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public
+        boolean equals(final Object obj) {
+            return obj instanceof Key && ((Key) obj).id == id;
+        }
+
+        @Override
+        public
+        String toString() {
+            return "Key " + id + " (" + Integer.toHexString(hash) + ")";
+        }
+    }
+
+    private static
+    Key key(final Random random) {
+        int id = random.nextInt(3000);
+        switch (id % 4) {
+            case 0:
+                // groups of 8 keys with exactly the same hash
+                return new Key(id, id >>> 3);
+            case 1:
+                // the same low bits, so these only differ deep in the trie
+                return new Key(id, (id << 22) | 0x15);
+            case 2:
+                // every key has the same hash
+                return new Key(id, 0x12345678);
+            default:
+                return new Key(id, id * 0x9E3779B9);
+        }
+    }
+
+    private static
+    void check(final PersistentObjectMap<Key, Integer> map, final Map<Key, Integer> expected) {
+        assertEquals(expected.size(), map.size);
+        assertEquals(expected.isEmpty(), map.isEmpty());
+
+        for (Map.Entry<Key, Integer> entry : expected.entrySet()) {
+            assertTrue(map.containsKey(entry.getKey()));
+            assertEquals(entry.getValue(), map.get(entry.getKey(), -1));
+        }
+
+        // every entry is iterated exactly once
+        int count = 0;
+        for (ObjectMap.Entry<Key, Integer> entry : map.entries()) {
+            assertTrue(expected.containsKey(entry.key));
+            assertEquals(expected.get(entry.key), entry.value);
+            count++;
+        }
+        assertEquals(expected.size(), count);
+    }
+
+    private static
+    void check(final PersistentIntMap<Integer> map, final Map<Integer, Integer> expected) {
+        assertEquals(expected.size(), map.size);
+        assertEquals(expected.isEmpty(), map.isEmpty());
+
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertTrue(map.containsKey(entry.getKey()));
+            assertEquals(entry.getValue(), map.get(entry.getKey(), -1));
+        }
+
+        int count = 0;
+        for (IntMap.Entry<Integer> entry : map.entries()) {
+            assertTrue(expected.containsKey(entry.key));
+            assertEquals(expected.get(entry.key), entry.value);
+            count++;
+        }
+        assertEquals(expected.size(), count);
+    }
+
+    @Test
+    public void objectMapMatchesHashMap() {
+        for (int seed = 0; seed < 10; seed++) {
+            Random random = new Random(seed);
+
+            PersistentObjectMap<Key, Integer> map = PersistentObjectMap.empty();
+            Map<Key, Integer> expected = new HashMap<Key, Integer>();
+
+            List<PersistentObjectMap<Key, Integer>> snapshots = new ArrayList<PersistentObjectMap<Key, Integer>>();
+            List<Map<Key, Integer>> expectedSnapshots = new ArrayList<Map<Key, Integer>>();
+
+            for (int op = 0; op < 20000; op++) {
+                Key key = key(random);
+
+                if (random.nextInt(10) < 6) {
+                    // null values are allowed
+                    Integer value = random.nextInt(20) == 0 ? null : random.nextInt(5);
+                    boolean same = expected.containsKey(key) && (value == null ? expected.get(key) == null : value.equals(expected.get(key)));
+
+                    PersistentObjectMap<Key, Integer> newMap = map.put(key, value);
+                    if (same) {
+                        assertSame(map, newMap);
+                    }
+                    expected.put(key, value);
+                    map = newMap;
+                }
+                else {
+                    boolean present = expected.containsKey(key);
+
+                    PersistentObjectMap<Key, Integer> newMap = map.remove(key);
+                    if (!present) {
+                        assertSame(map, newMap);
+                    }
+                    expected.remove(key);
+                    map = newMap;
+                }
+
+                assertEquals(expected.size(), map.size);
+
+                if (op % 500 == 0) {
+                    snapshots.add(map);
+                    expectedSnapshots.add(new HashMap<Key, Integer>(expected));
+                }
+            }
+            check(map, expected);
+
+            // the earlier versions are not changed by the later puts and removes
+            for (int i = 0; i < snapshots.size(); i++) {
+                check(snapshots.get(i), expectedSnapshots.get(i));
+            }
+
+            // the same entries, added in a different order, make an equal map
+            PersistentObjectMap<Key, Integer> other = PersistentObjectMap.empty();
+            List<Key> keys = new ArrayList<Key>(expected.keySet());
+            for (int i = keys.size() - 1; i >= 0; i--) {
+                other = other.put(keys.get(i), expected.get(keys.get(i)));
+            }
+            assertEquals(map, other);
+            assertEquals(map.hashCode(), other.hashCode());
+
+            // removing everything gives an empty map
+            for (Key key : keys) {
+                map = map.remove(key);
+            }
+            assertTrue(map.isEmpty());
+            assertEquals(PersistentObjectMap.<Key, Integer>empty(), map);
+            check(snapshots.get(snapshots.size() - 1), expectedSnapshots.get(expectedSnapshots.size() - 1));
+        }
+    }
+
+    @Test
+    public void objectMapCopies() {
+        // ObjectMap (cuckoo hashing) can not hold hundreds of colliding keys, so this uses keys with ordinary hash codes
+        Random random = new Random(42);
+        PersistentObjectMap<String, Integer> map = PersistentObjectMap.empty();
+        for (int i = 0; i < 5000; i++) {
+            map = map.put("key" + random.nextInt(10000), i);
+        }
+
+        ObjectMap<String, Integer> copy = map.toObjectMap();
+        assertEquals(map.size, copy.size);
+        for (ObjectMap.Entry<String, Integer> entry : map.entries()) {
+            assertEquals(entry.value, copy.get(entry.key));
+        }
+
+        PersistentObjectMap<String, Integer> from = PersistentObjectMap.from(copy);
+        assertEquals(map, from);
+
+        // the persistent map is not a view of the copy
+        copy.clear();
+        assertEquals(map.size, from.size);
+
+        PersistentObjectMap<String, Integer> added = PersistentObjectMap.<String, Integer>empty().put("a", 1).putAll(map.toObjectMap());
+        assertEquals(map.size + 1, added.size);
+        assertEquals(1, (int) added.get("a"));
+    }
+
+    @Test
+    public void fullCollisions() {
+        PersistentObjectMap<Key, Integer> map = PersistentObjectMap.empty();
+        Map<Key, Integer> expected = new HashMap<Key, Integer>();
+        List<PersistentObjectMap<Key, Integer>> snapshots = new ArrayList<PersistentObjectMap<Key, Integer>>();
+
+        for (int i = 0; i < 100; i++) {
+            map = map.put(new Key(i, 42), i);
+            expected.put(new Key(i, 42), i);
+            snapshots.add(map);
+        }
+        check(map, expected);
+        assertFalse(map.containsKey(new Key(100, 42)));
+        assertNull(map.get(new Key(100, 42)));
+
+        // removing a colliding key leaves the others (and the earlier versions) alone
+        for (int i = 0; i < 100; i += 2) {
+            map = map.remove(new Key(i, 42));
+            expected.remove(new Key(i, 42));
+        }
+        check(map, expected);
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i + 1, snapshots.get(i).size);
+            assertEquals(i, (int) snapshots.get(i).get(new Key(i, 42)));
+            assertFalse(snapshots.get(i).containsKey(new Key(i + 1, 42)));
+        }
+    }
+
+    @Test
+    public void intMapMatchesHashMap() {
+        for (int seed = 0; seed < 10; seed++) {
+            Random random = new Random(seed);
+
+            PersistentIntMap<Integer> map = PersistentIntMap.empty();
+            Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+
+            List<PersistentIntMap<Integer>> snapshots = new ArrayList<PersistentIntMap<Integer>>();
+            List<Map<Integer, Integer>> expectedSnapshots = new ArrayList<Map<Integer, Integer>>();
+
+            for (int op = 0; op < 20000; op++) {
+                int key;
+                switch (random.nextInt(4)) {
+                    case 0:
+                        key = random.nextInt(2000) - 1000;
+                        break;
+                    case 1:
+                        // the same low bits, so these only differ deep in the trie
+                        key = random.nextInt(64) << 26 | 0x1F;
+                        break;
+                    case 2:
+                        key = random.nextBoolean() ? Integer.MIN_VALUE + random.nextInt(4) : Integer.MAX_VALUE - random.nextInt(4);
+                        break;
+                    default:
+                        key = random.nextInt();
+                        break;
+                }
+
+                if (random.nextInt(10) < 6) {
+                    Integer value = random.nextInt(20) == 0 ? null : random.nextInt(5);
+                    boolean same = expected.containsKey(key) && (value == null ? expected.get(key) == null : value.equals(expected.get(key)));
+
+                    PersistentIntMap<Integer> newMap = map.put(key, value);
+                    if (same) {
+                        assertSame(map, newMap);
+                    }
+                    expected.put(key, value);
+                    map = newMap;
+                }
+                else {
+                    boolean present = expected.containsKey(key);
+
+                    PersistentIntMap<Integer> newMap = map.remove(key);
+                    if (!present) {
+                        assertSame(map, newMap);
+                    }
+                    expected.remove(key);
+                    map = newMap;
+                }
+
+                assertEquals(expected.size(), map.size);
+
+                if (op % 500 == 0) {
+                    snapshots.add(map);
+                    expectedSnapshots.add(new HashMap<Integer, Integer>(expected));
+                }
+            }
+            check(map, expected);
+
+            for (int i = 0; i < snapshots.size(); i++) {
+                check(snapshots.get(i), expectedSnapshots.get(i));
+            }
+
+            PersistentIntMap<Integer> other = PersistentIntMap.empty();
+            List<Integer> keys = new ArrayList<Integer>(expected.keySet());
+            for (int i = keys.size() - 1; i >= 0; i--) {
+                other = other.put(keys.get(i), expected.get(keys.get(i)));
+            }
+            assertEquals(map, other);
+            assertEquals(map.hashCode(), other.hashCode());
+
+            IntMap<Integer> copy = map.toIntMap();
+            assertEquals(expected.size(), copy.size);
+            assertEquals(map, PersistentIntMap.from(copy));
+
+            for (int key : keys) {
+                map = map.remove(key);
+            }
+            assertTrue(map.isEmpty());
+            assertEquals(PersistentIntMap.<Integer>empty(), map);
+            check(snapshots.get(snapshots.size() - 1), expectedSnapshots.get(expectedSnapshots.size() - 1));
+        }
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.junit.Test;
+
+import dorkbox.util.collections.RingBuffer;
+import dorkbox.util.collections.WaitStrategy;
+
+public class RingBufferTest {
+    @Test
+    public void offerAndPoll() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(5);
+        assertEquals(8, buffer.capacity());
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+
+        // wraps around the buffer several times
+        int next = 0;
+        int expected = 0;
+        for (int lap = 0; lap < 10; lap++) {
+            while (buffer.offer(next)) {
+                next++;
+            }
+            assertEquals(8, buffer.size());
+
+            for (int i = 0; i < 5; i++) {
+                assertEquals(expected++, (int) buffer.poll());
+            }
+            assertEquals(3, buffer.size());
+        }
+
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void drain() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(16);
+        for (int i = 0; i < 10; i++) {
+            buffer.offer(i);
+        }
+
+        List<Integer> drained = new ArrayList<Integer>();
+        assertEquals(4, buffer.drainTo(drained, 4));
+        assertEquals(6, buffer.drainTo(drained, 100));
+        assertEquals(0, buffer.drainTo(drained, 100));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, (int) drained.get(i));
+        }
+
+        // the slots can be used again
+        for (int i = 0; i < 16; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(16));
+    }
+
+    @Test
+    public void drainWithThrowingHandler() throws Exception {
+        final RingBuffer<Integer> buffer = new RingBuffer<Integer>(8, WaitStrategy.SPIN);
+        for (int i = 0; i < 8; i++) {
+            assertTrue(buffer.offer(i));
+        }
+
+        // a bounded collection that is full after 3 elements
+        final List<Integer> drained = new ArrayList<Integer>();
+        try {
+            buffer.drain(new ActionHandler<Integer>() {
+                @Override
+                public
+                void handle(final Integer value) {
+                    if (drained.size() == 3) {
+                        throw new IllegalStateException("full");
+                    }
+                    drained.add(value);
+                }
+            }, 100);
+            fail("Expected an IllegalStateException");
+        } catch (IllegalStateException ignored) {
+        }
+
+        assertEquals(3, drained.size());
+        assertTrue(buffer.isEmpty());
+
+        // every slot of the batch was released, so a producer can wrap around the whole buffer without blocking
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 8; i++) {
+                        buffer.put(100 + i);
+                    }
+                    done.countDown();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        producer.start();
+        producer.join(10000);
+        producer.interrupt();
+
+        assertEquals(0, done.getCount());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(100 + i, (int) buffer.poll());
+        }
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void nullsAreRejected() {
+        try {
+            new RingBuffer<Object>(4).offer(null);
+            fail("Expected a NullPointerException");
+        } catch (NullPointerException ignored) {
+        }
+    }
+
+    @Test
+    public void interruptedTake() throws Exception {
+        final RingBuffer<Object> buffer = new RingBuffer<Object>(4, WaitStrategy.PARK);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    buffer.take();
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        });
+        thread.start();
+        thread.interrupt();
+        thread.join(10000);
+
+        assertEquals(0, interrupted.getCount());
+    }
+
+    @Test
+    public void concurrentProducersAndConsumers() throws Exception {
+        runStress(WaitStrategy.PARK);
+        runStress(WaitStrategy.YIELD);
+    }
+
+    // every element that is put must be taken exactly once
+    private static void runStress(final WaitStrategy waitStrategy) throws Exception {
+        final int producers = 4;
+        final int consumers = 4;
+        final int perProducer = 50000;
+        final int total = producers * perProducer;
+
+        final RingBuffer<Long> buffer = new RingBuffer<Long>(64, waitStrategy);
+        final AtomicLongArray seen = new AtomicLongArray(total);
+        final AtomicLong taken = new AtomicLong();
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        final List<Thread> threads = new ArrayList<Thread>();
+
+        for (int p = 0; p < producers; p++) {
+            final int start = p * perProducer;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < perProducer; i++) {
+                            buffer.put((long) (start + i));
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            }));
+        }
+
+        for (int c = 0; c < consumers; c++) {
+            final boolean batch = c % 2 == 0;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (taken.get() < total) {
+                            if (batch) {
+                                int count = buffer.drain(new ActionHandler<Long>() {
+                                    @Override
+                                    public void handle(final Long value) {
+                                        seen.incrementAndGet(value.intValue());
+                                    }
+                                }, 16);
+                                taken.addAndGet(count);
+                            }
+                            else {
+                                Long value = buffer.poll();
+                                if (value != null) {
+                                    seen.incrementAndGet(value.intValue());
+                                    taken.incrementAndGet();
+                                }
+                            }
+                        }
+                    } catch (Throwable e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(60000);
+        }
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(total, taken.get());
+        for (int i = 0; i < total; i++) {
+            assertEquals(1, seen.get(i));
+        }
+        assertTrue(buffer.isEmpty());
+    }
+}
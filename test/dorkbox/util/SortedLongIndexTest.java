@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import dorkbox.util.collections.Array;
+import dorkbox.util.collections.Bias;
+import dorkbox.util.collections.BinarySearch;
+import dorkbox.util.collections.SortedLongIndex;
+
+public class SortedLongIndexTest {
+    private static final BinarySearch.Evaluator<Long> EVALUATOR = new BinarySearch.Evaluator<Long>() {
+        @Override
+        public long getValue(final Long obj) {
+            return obj;
+        }
+    };
+
+    // the index must return exactly the same positions as the binary search, for every bias
+    @Test
+    public void matchesBinarySearch() {
+        Random random = new Random(3);
+
+        for (int iteration = 0; iteration < 4000; iteration++) {
+            int size = 1 + random.nextInt(iteration < 2000 ? 30 : 300);
+            int range = 1 + random.nextInt(size * 2);
+
+            List<Long> list = new ArrayList<Long>(size);
+            for (int i = 0; i < size; i++) {
+                list.add((long) random.nextInt(range));
+            }
+            Collections.sort(list);
+
+            BinarySearch<Long> search = new BinarySearch<Long>(EVALUATOR, list);
+            SortedLongIndex<Long> index = search.toIndex();
+
+            for (long value = -3; value < range + 3; value++) {
+                for (Bias bias : Bias.values()) {
+                    assertEquals(list + " value=" + value + " " + bias, search.search(value, bias), index.search(value, bias));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void extremeValues() {
+        List<Long> list = new ArrayList<Long>();
+        list.add(Long.MIN_VALUE);
+        list.add(-1L);
+        list.add(0L);
+        list.add(Long.MAX_VALUE);
+
+        BinarySearch<Long> search = new BinarySearch<Long>(EVALUATOR, list);
+        SortedLongIndex<Long> index = search.toIndex();
+
+        long[] values = new long[] {Long.MIN_VALUE, Long.MIN_VALUE + 1, -2, -1, 0, 1, Long.MAX_VALUE - 1, Long.MAX_VALUE};
+        for (long value : values) {
+            for (Bias bias : Bias.values()) {
+                assertEquals(value + " " + bias, search.search(value, bias), index.search(value, bias));
+            }
+        }
+    }
+
+    @Test
+    public void bounds() {
+        Random random = new Random(7);
+
+        for (int size = 0; size < 200; size++) {
+            long[] values = new long[size];
+            List<Long> list = new ArrayList<Long>(size);
+            for (int i = 0; i < size; i++) {
+                list.add((long) random.nextInt(size + 1));
+            }
+            Collections.sort(list);
+            for (int i = 0; i < size; i++) {
+                values[i] = list.get(i);
+            }
+
+            SortedLongIndex<Long> index = new SortedLongIndex<Long>(EVALUATOR, list);
+            assertEquals(size, index.size());
+
+            for (long value = -1; value <= size + 1; value++) {
+                int lower = 0;
+                while (lower < size && values[lower] < value) {
+                    lower++;
+                }
+                int upper = lower;
+                while (upper < size && values[upper] <= value) {
+                    upper++;
+                }
+
+                assertEquals(lower, index.lowerBound(value));
+                assertEquals(upper, index.upperBound(value));
+
+                Array<Long> array = new Array<Long>();
+                assertEquals(upper - lower, index.range(value, value + 1, array));
+                assertEquals(upper - lower, array.size);
+            }
+
+            for (int i = 0; i < size; i++) {
+                assertEquals(values[i], index.valueAt(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SysTest {
+
+    @Test
+    public void hexTest() {
+        Random random = new Random(42);
+
+        for (int length = 0; length < 40; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+
+            StringBuilder expected = new StringBuilder();
+            StringBuilder expectedPadded = new StringBuilder();
+            for (byte b : bytes) {
+                expected.append(Sys.HEX_CHARS[(b & 0xF0) >> 4])
+                        .append(Sys.HEX_CHARS[b & 0x0F]);
+                expectedPadded.append(Sys.HEX_CHARS[(b & 0xF0) >> 4])
+                              .append(Sys.HEX_CHARS[b & 0x0F])
+                              .append(' ');
+            }
+
+            assertEquals(expected.toString(), Sys.toHexString(bytes));
+            assertEquals(expected.toString(), Sys.bytesToHex(bytes));
+            assertEquals(expectedPadded.toString(), Sys.bytesToHex(bytes, true));
+
+            assertArrayEquals(bytes, Sys.hexToBytes(expected));
+            assertArrayEquals(bytes, Sys.hexToBytes(expected.toString().toLowerCase()));
+        }
+
+        String[] invalid = new String[] {"0", "0G", "g0", "0İ", " 00"};
+        for (String value : invalid) {
+            try {
+                Sys.hexToBytes(value);
+                fail(value);
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+}
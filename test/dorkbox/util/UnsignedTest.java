@@ -0,0 +1,186 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.Test;
+
+import dorkbox.util.bytes.UIntegerArray;
+import dorkbox.util.bytes.ULong;
+import dorkbox.util.bytes.ULongArray;
+import dorkbox.util.bytes.Unsigned;
+
+/**
+ * The primitive unsigned helpers must give the same results as {@link BigInteger}.
+ */
+public class UnsignedTest {
+    private static final BigInteger TWO_64 = BigInteger.ONE.shiftLeft(64);
+
+    private static final long[] LONGS = new long[] {0L, 1L, 2L, 9L, 10L, 11L, 99L, Integer.MAX_VALUE, 0xFFFFFFFFL, 0x100000000L,
+                                                   Long.MAX_VALUE - 1, Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE + 1, -11L, -10L,
+                                                   -2L, -1L};
+
+    private final Random random = new Random(42);
+
+    private static BigInteger big(long value) {
+        BigInteger big = BigInteger.valueOf(value);
+        return value < 0 ? big.add(TWO_64) : big;
+    }
+
+    private long[] values() {
+        long[] values = new long[LONGS.length + 200];
+        System.arraycopy(LONGS, 0, values, 0, LONGS.length);
+        for (int i = LONGS.length; i < values.length; i++) {
+            // random bit lengths, so that small values are covered as well
+            values[i] = this.random.nextLong() >>> this.random.nextInt(64);
+        }
+        return values;
+    }
+
+    @Test
+    public void longs() {
+        long[] values = values();
+        for (long x : values) {
+            assertEquals(big(x).toString(), Unsigned.toString(x));
+            assertEquals(big(x).toString(), Unsigned.append(new StringBuilder(), x).toString());
+            assertEquals(x, Unsigned.parseLong(big(x).toString()));
+            assertEquals(big(x).toString(), ULong.valueOf(x).toString());
+
+            for (long y : values) {
+                assertEquals(big(x).compareTo(big(y)), Unsigned.compare(x, y));
+                if (y != 0) {
+                    assertEquals(big(x).divide(big(y)).longValue(), Unsigned.divide(x, y));
+                    assertEquals(big(x).remainder(big(y)).longValue(), Unsigned.remainder(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void ints() {
+        long[] values = values();
+        for (long l : values) {
+            int x = (int) l;
+            long ux = x & 0xFFFFFFFFL;
+            assertEquals(Long.toString(ux), Unsigned.toString(x));
+            assertEquals(Long.toString(ux), Unsigned.append(new StringBuilder(), x).toString());
+            assertEquals(x, Unsigned.parseInt(Long.toString(ux)));
+
+            for (long m : values) {
+                int y = (int) m;
+                long uy = y & 0xFFFFFFFFL;
+                assertEquals(Long.signum(ux - uy), Integer.signum(Unsigned.compare(x, y)));
+                if (y != 0) {
+                    assertEquals((int) (ux / uy), Unsigned.divide(x, y));
+                    assertEquals((int) (ux % uy), Unsigned.remainder(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void parseLimits() {
+        assertEquals(-1L, Unsigned.parseLong("18446744073709551615"));
+        assertEquals(-1L, Unsigned.parseLong("+18446744073709551615"));
+        assertEquals(-1, Unsigned.parseInt("4294967295"));
+
+        String[] invalid = new String[] {"18446744073709551616", "99999999999999999999", "184467440737095516150", "-1", "", "12a",
+                                         "1844674407370955161a"};
+        for (String value : invalid) {
+            try {
+                Unsigned.parseLong(value);
+                fail(value);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+
+        try {
+            Unsigned.parseInt("4294967296");
+            fail();
+        } catch (NumberFormatException ignored) {
+        }
+    }
+
+    @Test
+    public void longArray() {
+        ULongArray array = new ULongArray(3);
+        array.set(0, -2L);
+        assertEquals(-1L, array.add(0, 1));
+        try {
+            array.add(0, 1);
+            fail();
+        } catch (NumberFormatException ignored) {
+        }
+        assertEquals(-1L, array.get(0));
+
+        try {
+            array.subtract(1, 1);
+            fail();
+        } catch (NumberFormatException ignored) {
+        }
+
+        array.set(1, 0x8000000000000000L);
+        try {
+            array.multiply(1, 2);
+            fail();
+        } catch (NumberFormatException ignored) {
+        }
+        array.set(1, 0x4000000000000000L);
+        assertEquals(0x8000000000000000L, array.multiply(1, 2));
+
+        assertEquals(1, array.remainder(0, 2));
+        assertEquals(Long.MAX_VALUE, array.divide(0, 2));
+        assertEquals(1, array.compare(1, array.get(0)));
+
+        assertEquals("[9223372036854775807, 9223372036854775808, 0]", array.toString());
+        assertEquals("9223372036854775808", array.toString(1));
+    }
+
+    @Test
+    public void intArray() {
+        UIntegerArray array = new UIntegerArray(3);
+        array.set(0, -1);
+        assertEquals(0xFFFFFFFFL, array.get(0));
+        try {
+            array.add(0, 1);
+            fail();
+        } catch (NumberFormatException ignored) {
+        }
+        try {
+            array.set(1, -1L);
+            fail();
+        } catch (NumberFormatException ignored) {
+        }
+
+        assertEquals(5, array.add(1, 5));
+        assertEquals(2, array.subtract(1, 3));
+        try {
+            array.subtract(1, 3);
+            fail();
+        } catch (NumberFormatException ignored) {
+        }
+
+        assertEquals(0x7FFFFFFFL, array.divide(0, 2));
+        assertEquals(1, array.remainder(0, 2));
+        assertEquals(1, array.compare(0, 2));
+        assertEquals("[2147483647, 2, 0]", array.toString());
+    }
+}
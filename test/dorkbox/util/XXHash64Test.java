@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 dorkbox, llc
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dorkbox.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import dorkbox.util.bytes.ByteArrayWrapper;
+import dorkbox.util.bytes.XXHash64;
+
+public class XXHash64Test {
+    private static
+    byte[] ascii(final String string) {
+        byte[] bytes = new byte[string.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) string.charAt(i);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void referenceVectors() {
+        // the published xxHash64 test vectors
+        assertEquals(0xef46db3751d8e999L, XXHash64.hash(ascii("")));
+        assertEquals(0xd24ec4f1a98c6e5bL, XXHash64.hash(ascii("a")));
+        assertEquals(0x44bc2cf5ad770999L, XXHash64.hash(ascii("abc")));
+        assertEquals(0x32dd38952c4bc720L, XXHash64.hash(ascii("xxhash")));
+
+        // 39 bytes, so this goes through the 4-lane loop once, and then the 4 byte and 1 byte tails
+        assertEquals(0xfbcea83c8a378bf1L, XXHash64.hash(ascii("Nobody inspects the spammish repetition")));
+
+        byte[] xxhash = ascii("xxhash");
+        assertEquals(0xb559b98d844e0635L, XXHash64.hash(xxhash, 0, xxhash.length, 20141025L));
+
+        // the 4-lane loop several times, with and without a seed
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        assertEquals(0x1facbe8406cd904bL, XXHash64.hash(bytes));
+        assertEquals(0x819d2b726001d507L, XXHash64.hash(bytes, 0, 100, 42L));
+    }
+
+    @Test
+    public void offsets() {
+        Random random = new Random(42);
+        byte[] bytes = new byte[300];
+        random.nextBytes(bytes);
+
+        // every length (so every combination of the loop and the tails), at an offset into a larger array
+        for (int length = 0; length <= 100; length++) {
+            int offset = random.nextInt(bytes.length - length + 1);
+            byte[] copy = Arrays.copyOfRange(bytes, offset, offset + length);
+
+            long hash = XXHash64.hash(copy);
+            assertEquals(hash, XXHash64.hash(bytes, offset, length, 0L));
+            assertEquals((int) (hash ^ (hash >>> 32)), XXHash64.hash32(bytes, offset, length));
+        }
+    }
+
+    @Test
+    public void byteArrayWrapper() {
+        Random random = new Random(42);
+        Map<ByteArrayWrapper, Integer> map = new HashMap<ByteArrayWrapper, Integer>();
+
+        for (int length = 0; length < 100; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+
+            // equal contents in different arrays
+            ByteArrayWrapper wrapper = ByteArrayWrapper.wrap(bytes);
+            ByteArrayWrapper copy = ByteArrayWrapper.copy(bytes);
+            assertNotSame(wrapper.getBytes(), copy.getBytes());
+
+            // before and after the hash codes have been calculated
+            assertTrue(wrapper.equals(copy));
+            assertEquals(wrapper.hashCode(), copy.hashCode());
+            assertTrue(wrapper.equals(copy));
+            assertTrue(copy.equals(wrapper));
+
+            assertEquals(ByteArrayWrapper.hashCode(bytes, 0, length), wrapper.hashCode());
+            assertTrue(wrapper.hashCode() != 0);
+
+            map.put(wrapper, length);
+            assertEquals(length, (int) map.get(ByteArrayWrapper.copy(bytes)));
+
+            if (length > 0) {
+                byte[] different = bytes.clone();
+                different[length - 1]++;
+                assertFalse(wrapper.equals(ByteArrayWrapper.wrap(different)));
+                assertFalse(ByteArrayWrapper.wrap(different).equals(wrapper));
+            }
+        }
+        assertEquals(100, map.size());
+
+        assertFalse(ByteArrayWrapper.wrap(new byte[] {1, 2}).equals(ByteArrayWrapper.wrap(new byte[] {1, 2, 0})));
+    }
+}